@@ -0,0 +1,59 @@
+package com.diy.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ *   Entry point of benchmarks.jar
+ *
+ *   <p>Without argument : every benchmark, for 1, 2, 4 and 8 threads, with the GC profiler (allocation rate
+ *   per operation), results in jmh-result-<threads>.json. With arguments : the standard JMH command line.
+ *
+ *   <pre>
+ *   mvn -pl benchmarks -am package
+ *   java -jar benchmarks/target/benchmarks.jar                       # full baseline
+ *   java -jar benchmarks/target/benchmarks.jar QueryBenchmark -t 4 -prof gc
+ *   </pre>
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+public final class BenchmarkMain {
+
+    private static final int[] THREADS = {1, 2, 4, 8};
+
+
+    private BenchmarkMain() {
+    }
+
+
+    public static void main(String[] args) throws Exception {
+
+        if (args.length > 0) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        for (int threads : THREADS) {
+            runAll(threads);
+        }
+    }
+
+
+    private static void runAll(int threads) throws RunnerException {
+
+        new Runner(new OptionsBuilder()
+                .include(BenchmarkMain.class.getPackage().getName() + ".*Benchmark")
+                .threads(threads)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result("jmh-result-" + threads + ".json")
+                .build())
+                .run();
+    }
+}
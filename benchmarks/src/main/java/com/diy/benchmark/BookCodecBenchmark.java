@@ -0,0 +1,79 @@
+package com.diy.benchmark;
+
+import com.diy.orderbookmanager.BookCodec;
+import com.diy.orderbookmanager.OrderBookList;
+import com.diy.orderbookmanager.OrderBookType;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ *   BookCodec round trip of a pre-filled OrderBookList through a direct ByteBuffer
+ *
+ *   <p>The bytes counter gives the rate in bytes per second of snapshot written or read. decode rebuilds the books
+ *   in an empty OrderBookList each time, so it includes the inserts into the storage engine.
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BookCodecBenchmark {
+
+    @Param({"SKIP_LIST", "PRICE_LADDER"})
+    OrderBookType type;
+
+    @Param({"1000", "10000"})
+    int depth;
+
+    private OrderBookList orderBookList;
+    private ByteBuffer buffer;
+    private int size;              // bytes of the snapshot
+
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Bytes {
+        public long bytes;
+    }
+
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+
+        orderBookList = BookFixture.newBook(type, depth);
+        buffer = ByteBuffer.allocateDirect(64 * BookFixture.ORDERS_PER_LEVEL * depth);
+        BookCodec.encode(orderBookList, buffer);
+        size = buffer.position();
+    }
+
+
+
+    @Benchmark
+    public ByteBuffer encode(Bytes bytes) throws IOException {
+
+        buffer.clear();
+        BookCodec.encode(orderBookList, buffer);
+        bytes.bytes += buffer.position();
+        return buffer;
+    }
+
+
+    @Benchmark
+    public OrderBookList decode(Bytes bytes) throws IOException {
+
+        buffer.clear().limit(size);
+        OrderBookList decoded = new OrderBookList(type);
+        BookCodec.decode(buffer, decoded);
+        bytes.bytes += size;
+        return decoded;
+    }
+}
@@ -0,0 +1,84 @@
+package com.diy.benchmark;
+
+import com.diy.Side.Side;
+import com.diy.domain.Order;
+import com.diy.metrics.OrderBookMetrics;
+import com.diy.orderbookmanager.OrderBookList;
+import com.diy.orderbookmanager.OrderBookType;
+
+import java.util.SplittableRandom;
+
+
+/**
+ *   Builds the books and the messages used by the benchmarks
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+final class BookFixture {
+
+    static final String INSTRUMENT = "BTCUSD";
+
+    /** asks start here, bids end just below : levels are 1 tick apart */
+    static final long MID_PRICE = 50_000; // 500.00
+
+    /** resting orders per level */
+    static final int ORDERS_PER_LEVEL = 4;
+
+
+    private BookFixture() {
+    }
+
+
+
+    /**
+     * @param type storage engine
+     * @param depth number of levels on each side
+     * @return OrderBookList with depth levels of ORDERS_PER_LEVEL orders on each side of INSTRUMENT
+     */
+    static OrderBookList newBook(OrderBookType type, int depth) {
+        return newBook(type, depth, null);
+    }
+
+
+    /**
+     * @param type storage engine
+     * @param depth number of levels on each side
+     * @param metrics records the latency of each call, null for none
+     * @return OrderBookList with depth levels of ORDERS_PER_LEVEL orders on each side of INSTRUMENT
+     */
+    static OrderBookList newBook(OrderBookType type, int depth, OrderBookMetrics metrics) {
+
+        OrderBookList orderBookList = new OrderBookList(type, metrics);
+        SplittableRandom random = new SplittableRandom(42);
+
+        for (int level = 0; level < depth; level++) {
+            for (int n = 0; n < ORDERS_PER_LEVEL; n++) {
+                long timestamp = restingTimestamp(level, n);
+                orderBookList.updateOrder(new Order(INSTRUMENT, Side.BUY, bidPrice(level), quantity(random), timestamp));
+                orderBookList.updateOrder(new Order(INSTRUMENT, Side.SELL, askPrice(level), quantity(random), timestamp));
+            }
+        }
+        return orderBookList;
+    }
+
+
+    static long bidPrice(int level) {
+        return MID_PRICE - 1 - level;
+    }
+
+    static long askPrice(int level) {
+        return MID_PRICE + level;
+    }
+
+    /** timestamp of the n-th resting order of a level, never used by the generated messages */
+    static long restingTimestamp(int level, int n) {
+        return level * (long) ORDERS_PER_LEVEL + n;
+    }
+
+    /** 0.01 - 10000.00 */
+    static long quantity(SplittableRandom random) {
+        return 1 + random.nextInt(1_000_000);
+    }
+}
@@ -0,0 +1,116 @@
+package com.diy.benchmark;
+
+import com.diy.Side.Side;
+import com.diy.conflation.ConflatedDepth;
+import com.diy.conflation.ConflatedSubscriber;
+import com.diy.conflation.LevelHandler;
+import com.diy.domain.Order;
+import com.diy.orderbookmanager.OrderBookList;
+import com.diy.orderbookmanager.OrderBookType;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ *   Cost of the ConflatedDepth fan-out for the book writer, with readers draining at the same time
+ *
+ *   <p>One writer thread updates the book (add then delete, the depth stays the same) while the reader threads
+ *   drain their ConflatedSubscriber as fast as they can. The writer time should not move with the number of
+ *   readers (-tg 1,N) nor with conflated=false, which runs the same writes without the fan-out.
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConflationBenchmark {
+
+    private static final int MESSAGES = 1 << 12;  // power of 2
+
+
+    @State(Scope.Group)
+    public static class Book {
+
+        @Param({"SKIP_LIST", "PRICE_LADDER"})
+        OrderBookType type;
+
+        @Param({"false", "true"})
+        boolean conflated;
+
+        OrderBookList orderBookList;
+        ConflatedDepth conflatedDepth = new ConflatedDepth();
+        Order[] adds = new Order[MESSAGES];
+        Order[] deletes = new Order[MESSAGES];
+
+        @Setup(Level.Trial)
+        public void setUp() {
+
+            orderBookList = BookFixture.newBook(type, 1_000);
+            if (conflated) {
+                orderBookList.addDepthListener(conflatedDepth);
+            }
+
+            SplittableRandom random = new SplittableRandom(1);
+            for (int i = 0; i < MESSAGES; i++) {
+                int level = random.nextInt(1_000);
+                Side side = random.nextBoolean() ? Side.BUY : Side.SELL;
+                long price = side == Side.BUY ? BookFixture.bidPrice(level) : BookFixture.askPrice(level);
+                adds[i] = new Order(BookFixture.INSTRUMENT, side, price, BookFixture.quantity(random), 1_000_000_000L + i);
+                deletes[i] = new Order(BookFixture.INSTRUMENT, side, price, 0, 1_000_000_000L + i);
+            }
+        }
+    }
+
+
+    @State(Scope.Thread)
+    public static class Reader implements LevelHandler {
+
+        ConflatedSubscriber subscriber;
+        long quantities;
+
+        @Setup(Level.Trial)
+        public void setUp(Book book) {
+            subscriber = book.conflatedDepth.subscribe(BookFixture.INSTRUMENT);
+        }
+
+        @Override
+        public void onLevel(Side side, long price, long quantity, int orderCount) {
+            quantities += quantity;
+        }
+    }
+
+
+    @State(Scope.Thread)
+    public static class Writer {
+        int next;
+    }
+
+
+
+    /** one add then one delete of the same order, each one a level change for the fan-out */
+    @Benchmark
+    @Group("fanOut")
+    @GroupThreads(1)
+    @OperationsPerInvocation(2)
+    public boolean write(Book book, Writer writer) {
+
+        int i = writer.next++ & (MESSAGES - 1);
+        return book.orderBookList.updateOrder(book.adds[i]) & book.orderBookList.updateOrder(book.deletes[i]);
+    }
+
+
+    /** latest state of the levels changed since the previous drain */
+    @Benchmark
+    @Group("fanOut")
+    @GroupThreads(2)
+    public long drain(Reader reader) {
+        reader.subscriber.drain(reader);
+        return reader.quantities;
+    }
+}
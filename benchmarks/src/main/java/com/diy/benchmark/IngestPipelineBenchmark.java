@@ -0,0 +1,80 @@
+package com.diy.benchmark;
+
+import com.diy.orderbookmanager.OrderBookList;
+import com.diy.orderbookmanager.OrderBookType;
+import com.diy.parser.OrderParser;
+import com.diy.pipeline.IngestPipeline;
+import com.diy.pipeline.WaitStrategy;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ *   IngestPipeline throughput : the benchmark thread is the source, it publishes a burst of raw messages then waits
+ *   for every stage to be done with them (parse, apply and one empty consumer)
+ *
+ *   <p>Each stage needs a core of its own : with BUSY_SPIN the stages spin on their sequence, fewer cores than
+ *   threads only measures the scheduler.
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IngestPipelineBenchmark {
+
+    private static final int BURST = 1 << 10;  // messages per invocation
+
+    @Param({"BUSY_SPIN", "YIELD", "PARK"})
+    WaitStrategy waitStrategy;
+
+    private IngestPipeline pipeline;
+    private byte[][] messages;
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        OrderBookList orderBookList = BookFixture.newBook(OrderBookType.PRICE_LADDER, 1_000);
+        pipeline = new IngestPipeline(orderBookList, new OrderParser(), IngestPipeline.DEFAULT_CAPACITY, IngestPipeline.DEFAULT_MAX_MESSAGE_LENGTH,
+                waitStrategy, runnable -> {
+                    Thread thread = new Thread(runnable, runnable.toString());
+                    thread.setDaemon(true);
+                    return thread;
+                }, (event, sequence, endOfBatch) -> { });
+
+        // add then delete of one order per level, the book keeps its depth
+        messages = new byte[BURST][];
+        for (int i = 0; i < BURST; i += 2) {
+            long price = BookFixture.askPrice(i % 1_000);
+            String order = "t=" + (1_000_000_000L + i) + "|i=" + BookFixture.INSTRUMENT + "|p=" + price / 100 + "." + String.format("%02d", price % 100);
+            messages[i] = (order + "|q=1.00|s=s").getBytes(StandardCharsets.US_ASCII);
+            messages[i + 1] = (order + "|q=0|s=s").getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pipeline.close();
+    }
+
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public long burst() {
+
+        for (byte[] message : messages) {
+            pipeline.publish(message, 0, message.length);
+        }
+        pipeline.drain();
+        return pipeline.getPublished();
+    }
+}
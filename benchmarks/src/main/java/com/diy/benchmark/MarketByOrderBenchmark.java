@@ -0,0 +1,112 @@
+package com.diy.benchmark;
+
+import com.diy.Side.Side;
+import com.diy.domain.Order;
+import com.diy.orderbookmanager.OrderBookList;
+import com.diy.orderbookmanager.OrderBookType;
+import com.diy.orderbookmanager.UpdateResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ *   Per-order operations of a market by order book : modify and cancel by exchange order id
+ *
+ *   <p>The book holds depth levels of ORDERS_PER_LEVEL orders on each side, every order with an id. Each call picks
+ *   the next resting order of a precomputed sequence, so the cost measured is the id lookup plus the level work,
+ *   whatever the depth.
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MarketByOrderBenchmark {
+
+    private static final int MESSAGES = 1 << 12;  // power of 2
+
+    @Param({"SKIP_LIST", "PRICE_LADDER"})
+    OrderBookType type;
+
+    @Param({"10", "1000"})
+    int depth;
+
+    private OrderBookList orderBookList;
+    private final long[] orderIds = new long[MESSAGES];
+    private final long[] prices = new long[MESSAGES];      // current price of orderIds[i]
+    private final long[] newPrices = new long[MESSAGES];   // another level of the same side
+    private final long[] quantities = new long[MESSAGES];
+    private final Order[] orders = new Order[MESSAGES];    // resting version of orderIds[i], to add it back
+    private int next;
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        orderBookList = new OrderBookList(type, null, true);
+        SplittableRandom random = new SplittableRandom(42);
+        int perSide = depth * BookFixture.ORDERS_PER_LEVEL;
+        for (int level = 0; level < depth; level++) {
+            for (int n = 0; n < BookFixture.ORDERS_PER_LEVEL; n++) {
+                long timestamp = BookFixture.restingTimestamp(level, n);
+                long orderId = timestamp + 1;
+                orderBookList.updateOrder(new Order(BookFixture.INSTRUMENT, orderId, Side.BUY, BookFixture.bidPrice(level), BookFixture.quantity(random), timestamp));
+                orderBookList.updateOrder(new Order(BookFixture.INSTRUMENT, orderId + perSide, Side.SELL, BookFixture.askPrice(level), BookFixture.quantity(random), timestamp));
+            }
+        }
+
+        for (int i = 0; i < MESSAGES; i++) {
+            orderIds[i] = 1 + random.nextInt(2 * perSide);
+            orders[i] = orderBookList.getOrder(BookFixture.INSTRUMENT, orderIds[i]);
+            prices[i] = orders[i].getPriceTicks();
+            int level = random.nextInt(depth);
+            newPrices[i] = orders[i].getSide() == Side.BUY ? BookFixture.bidPrice(level) : BookFixture.askPrice(level);
+            quantities[i] = BookFixture.quantity(random);
+        }
+    }
+
+
+    @Setup(Level.Iteration)
+    public void rewind() {
+        next = 0;
+    }
+
+
+
+    /** new quantity at the same price : the order keeps its place */
+    @Benchmark
+    public UpdateResult modifyQuantity() {
+
+        int i = next++ & (MESSAGES - 1);
+        return orderBookList.modifyOrder(BookFixture.INSTRUMENT, orderIds[i], prices[i], quantities[i]);
+    }
+
+
+    /** new price : the order moves to another level and back, one move per operation */
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public UpdateResult modifyPrice() {
+
+        int i = next++ & (MESSAGES - 1);
+        orderBookList.modifyOrder(BookFixture.INSTRUMENT, orderIds[i], newPrices[i], quantities[i]);
+        return orderBookList.modifyOrder(BookFixture.INSTRUMENT, orderIds[i], prices[i], quantities[i]);
+    }
+
+
+    /** cancel by id, then the same order added back */
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public UpdateResult cancelAndAdd() {
+
+        int i = next++ & (MESSAGES - 1);
+        orderBookList.cancelOrder(BookFixture.INSTRUMENT, orderIds[i]);
+        return orderBookList.update(orders[i]);
+    }
+}
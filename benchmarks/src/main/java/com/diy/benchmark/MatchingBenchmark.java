@@ -0,0 +1,99 @@
+package com.diy.benchmark;
+
+import com.diy.Side.Side;
+import com.diy.domain.Order;
+import com.diy.matching.MatchingEngine;
+import com.diy.matching.TimeInForce;
+import com.diy.orderbookmanager.FillListener;
+import com.diy.orderbookmanager.OrderBook;
+import com.diy.orderbookmanager.OrderBookType;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ *   Latency distribution (Mode.SampleTime : percentiles and histogram) of MatchingEngine on a pre-filled book
+ *
+ *   <p>Each invocation sends an IOC buy which sweeps the first levels of the asks and fills the last one partially,
+ *   then puts the filled orders back (the same Order objects, nothing is allocated for them), so the book looks the
+ *   same for every sample. Run with -prof gc to see the allocation per match.
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatchingBenchmark {
+
+    private static final int DEPTH = 100;
+
+
+    @State(Scope.Thread)
+    public static class Book implements FillListener {
+
+        @Param({"SKIP_LIST", "PRICE_LADDER", "TREE_MAP", "OFF_HEAP"})
+        OrderBookType type;
+
+        @Param({"1", "10"})
+        int levels;   // levels swept by each aggressive order
+
+        MatchingEngine engine;
+        Order[] resting;        // orders of the levels swept, in arrival order
+        long quantity;          // of the aggressive order : all of the levels but 1 tick
+        long limit;             // price of the last level swept
+
+        long filled;            // sink of the fills
+
+        @Setup(Level.Trial)
+        public void setUp() {
+
+            OrderBook orderBook = new OrderBook(BookFixture.INSTRUMENT, type);
+            SplittableRandom random = new SplittableRandom(42);
+
+            resting = new Order[levels * BookFixture.ORDERS_PER_LEVEL];
+            for (int level = 0; level < DEPTH; level++) {
+                for (int n = 0; n < BookFixture.ORDERS_PER_LEVEL; n++) {
+                    long timestamp = BookFixture.restingTimestamp(level, n);
+                    Order ask = new Order(BookFixture.INSTRUMENT, Side.SELL, BookFixture.askPrice(level), BookFixture.quantity(random), timestamp);
+                    orderBook.update(ask);
+                    orderBook.update(new Order(BookFixture.INSTRUMENT, Side.BUY, BookFixture.bidPrice(level), BookFixture.quantity(random), timestamp));
+                    if (level < levels) {
+                        resting[level * BookFixture.ORDERS_PER_LEVEL + n] = ask;
+                        quantity += ask.getQuantityTicks();
+                    }
+                }
+            }
+            quantity--;
+            limit = BookFixture.askPrice(levels - 1);
+            engine = new MatchingEngine(orderBook);
+        }
+
+        @Override
+        public void onFill(int instrumentId, Side aggressorSide, long price, long quantity, long restingTimestamp, long restingLeft) {
+            filled += quantity;
+        }
+
+        /** the order left with 1 tick gets its quantity back, the filled ones are added again */
+        void restore() {
+            for (Order order : resting) {
+                engine.getOrderBook().update(order);
+            }
+        }
+    }
+
+
+
+    @Benchmark
+    public long sweep(Book book) {
+
+        long filled = book.engine.submitLimit(Side.BUY, book.limit, book.quantity, 0, TimeInForce.IOC, book);
+        book.restore();
+        return filled;
+    }
+}
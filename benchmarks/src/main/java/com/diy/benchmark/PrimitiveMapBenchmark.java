@@ -0,0 +1,123 @@
+package com.diy.benchmark;
+
+import com.diy.collections.LongObjectHashMap;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ *   LongObjectHashMap against HashMap<Long, V>, with prices in ticks as keys
+ *
+ *   <p>lookup reads an existing key (the update of an existing level or order), churn inserts then removes a key
+ *   (a level created then emptied). Run with -prof gc : gc.alloc.rate.norm shows the Long and the Node a HashMap
+ *   allocates per insert, against nothing for the primitive map. The footprint* benchmarks build a full map once
+ *   per invocation, their gc.alloc.rate.norm is the memory of a map of that size plus the tables dropped by its resizes.
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PrimitiveMapBenchmark {
+
+    private static final int KEYS = 1 << 12;   // lookups per cycle, power of 2
+
+    /** entries in the map */
+    @Param({"100", "10000"})
+    int size;
+
+    private final Object value = new Object();
+    private long[] keys;       // KEYS present keys, in random order
+    private long[] absent;     // KEYS keys which are not in the maps
+    private Map<Long, Object> hashMap;
+    private LongObjectHashMap<Object> primitiveMap;
+    private int next;
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        SplittableRandom random = new SplittableRandom(7);
+        hashMap = new HashMap<>();
+        primitiveMap = new LongObjectHashMap<>();
+        for (int i = 0; i < size; i++) {
+            hashMap.put(price(i), value);
+            primitiveMap.put(price(i), value);
+        }
+
+        keys = new long[KEYS];
+        absent = new long[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = price(random.nextInt(size));
+            absent[i] = price(size + random.nextInt(size));
+        }
+    }
+
+
+    /** prices 1 tick apart, as on a busy side */
+    private static long price(int i) {
+        return 10_000 + i;
+    }
+
+
+
+    @Benchmark
+    public Object lookupHashMap() {
+        return hashMap.get(keys[next++ & (KEYS - 1)]);
+    }
+
+
+    @Benchmark
+    public Object lookupPrimitiveMap() {
+        return primitiveMap.get(keys[next++ & (KEYS - 1)]);
+    }
+
+
+    @Benchmark
+    public Object churnHashMap() {
+
+        long key = absent[next++ & (KEYS - 1)];
+        hashMap.put(key, value);
+        return hashMap.remove(key);
+    }
+
+
+    @Benchmark
+    public Object churnPrimitiveMap() {
+
+        long key = absent[next++ & (KEYS - 1)];
+        primitiveMap.put(key, value);
+        return primitiveMap.remove(key);
+    }
+
+
+    @Benchmark
+    public Map<Long, Object> footprintHashMap() {
+
+        Map<Long, Object> map = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            map.put(price(i), value);
+        }
+        return map;
+    }
+
+
+    @Benchmark
+    public LongObjectHashMap<Object> footprintPrimitiveMap() {
+
+        LongObjectHashMap<Object> map = new LongObjectHashMap<>();
+        for (int i = 0; i < size; i++) {
+            map.put(price(i), value);
+        }
+        return map;
+    }
+}
@@ -0,0 +1,73 @@
+package com.diy.benchmark;
+
+import com.diy.Side.Side;
+import com.diy.domain.Order;
+import com.diy.orderbookmanager.OrderBookList;
+import com.diy.orderbookmanager.OrderBookType;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ *   OrderBookList read paths on a pre-filled book
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QueryBenchmark {
+
+    @Param({"SKIP_LIST", "PRICE_LADDER"})
+    OrderBookType type;
+
+    @Param({"10", "1000", "10000"})
+    int depth;
+
+    /** levels read by the depth queries */
+    @Param({"10"})
+    int level;
+
+    private OrderBookList orderBookList;
+
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        orderBookList = BookFixture.newBook(type, depth);
+    }
+
+
+    @Benchmark
+    public Optional<BigDecimal> getBestPrice() {
+        return orderBookList.getBestPrice(BookFixture.INSTRUMENT, Side.SELL);
+    }
+
+
+    @Benchmark
+    public Map<BigDecimal, Set<Order>> getOrdersUpToLevel() {
+        return orderBookList.getOrdersUpToLevel(BookFixture.INSTRUMENT, Side.BUY, level);
+    }
+
+
+    @Benchmark
+    public BigDecimal getAveragePriceOverLevel() {
+        return orderBookList.getAveragePriceOverLevel(BookFixture.INSTRUMENT, Side.BUY, level);
+    }
+
+
+    @Benchmark
+    public Map<BigDecimal, List<Number>> getVolumeWeightedPriceOverLevel() {
+        return orderBookList.getVolumeWeightedPriceOverLevel(BookFixture.INSTRUMENT, Side.SELL, level);
+    }
+}
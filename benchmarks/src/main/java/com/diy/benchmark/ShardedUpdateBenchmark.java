@@ -0,0 +1,96 @@
+package com.diy.benchmark;
+
+import com.diy.Side.Side;
+import com.diy.domain.Order;
+import com.diy.orderbookmanager.OrderBookList;
+import com.diy.orderbookmanager.OrderBookType;
+import com.diy.orderbookmanager.ShardedOrderBookList;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ *   One feed per instrument : OrderBookList (shared concurrent books) against ShardedOrderBookList (one owner thread per shard)
+ *
+ *   <p>Each JMH thread is the feed of its own instrument. With the sharded list the feed only enqueues (submit),
+ *   the bounded queue pushes back when the shard falls behind, so the measured rate is the rate the shards apply.
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShardedUpdateBenchmark {
+
+    private static final int MESSAGES = 1 << 12;  // per thread, power of 2
+
+
+    @State(Scope.Benchmark)
+    public static class Books {
+
+        @Param({"TREE_MAP", "OFF_HEAP"})
+        String shardedType;   // storage engine of the sharded books
+
+        OrderBookList orderBookList;
+        ShardedOrderBookList shardedOrderBookList;
+
+        @Setup(Level.Trial)
+        public void setUp(ThreadParams threadParams) {
+            orderBookList = new OrderBookList(OrderBookType.SKIP_LIST);
+            shardedOrderBookList = new ShardedOrderBookList(threadParams.getThreadCount(), OrderBookType.valueOf(shardedType),
+                    ShardedOrderBookList.DEFAULT_QUEUE_CAPACITY);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            shardedOrderBookList.close();
+        }
+    }
+
+
+    @State(Scope.Thread)
+    public static class Feed {
+
+        Order[] messages;  // add then delete of the same order
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp(ThreadParams threadParams) {
+
+            String instrument = "SYM" + threadParams.getThreadIndex();
+            SplittableRandom random = new SplittableRandom(threadParams.getThreadIndex());
+
+            messages = new Order[MESSAGES];
+            for (int i = 0; i < MESSAGES; i += 2) {
+                Side side = random.nextBoolean() ? Side.BUY : Side.SELL;
+                long price = side == Side.BUY ? BookFixture.bidPrice(random.nextInt(100)) : BookFixture.askPrice(random.nextInt(100));
+                messages[i] = new Order(instrument, side, price, BookFixture.quantity(random), i);
+                messages[i + 1] = new Order(instrument, side, price, 0, i);
+            }
+        }
+
+        Order next() {
+            return messages[next++ & (MESSAGES - 1)];
+        }
+    }
+
+
+
+    @Benchmark
+    public boolean concurrent(Books books, Feed feed) {
+        return books.orderBookList.updateOrder(feed.next());
+    }
+
+
+    @Benchmark
+    public void sharded(Books books, Feed feed) {
+        books.shardedOrderBookList.submit(feed.next());
+    }
+}
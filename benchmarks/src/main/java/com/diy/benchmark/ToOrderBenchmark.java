@@ -0,0 +1,94 @@
+package com.diy.benchmark;
+
+import com.diy.Side.Side;
+import com.diy.Utils.Utils;
+import com.diy.domain.Order;
+import com.diy.parser.OrderMessageHandler;
+import com.diy.parser.OrderParser;
+import com.diy.parser.ParseError;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ *   Message decoding : Utils.toOrder (String -> Order) against OrderParser (bytes -> primitives)
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ToOrderBenchmark {
+
+    private static final String[] MESSAGES = {
+            "t=1638848595|i=BTCUSD|p=32.99|q=100|s=b",
+            "t=1638848596|i=ETHUSD|p=999.9|q=10737418.23|s=s",
+            "t=1638848597|i=SOLUSD|p=0.01|q=0|s=b",
+            "t=1638848598|i=BTCUSD|p=12.3|q=55.5|s=s",
+    };
+
+    private byte[][] bytes;
+    private int next;
+    private OrderParser parser;
+    private BlackholeHandler handler;
+
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+
+        bytes = new byte[MESSAGES.length][];
+        for (int i = 0; i < MESSAGES.length; i++) {
+            bytes[i] = MESSAGES[i].getBytes(StandardCharsets.US_ASCII);
+        }
+        parser = new OrderParser();
+        handler = new BlackholeHandler(blackhole);
+    }
+
+
+    @Benchmark
+    public Order toOrder() {
+        return Utils.toOrder(MESSAGES[next++ & 3]);
+    }
+
+
+    @Benchmark
+    public boolean orderParser() {
+        byte[] message = bytes[next++ & 3];
+        return parser.parse(message, 0, message.length, handler);
+    }
+
+
+
+    /** sinks the decoded fields so that the JIT cannot drop them */
+    private static final class BlackholeHandler implements OrderMessageHandler {
+
+        private final Blackhole blackhole;
+
+        BlackholeHandler(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void onOrder(int instrumentId, String instrument, Side side, long price, long quantity, long timestamp) {
+            blackhole.consume(instrumentId);
+            blackhole.consume(instrument);
+            blackhole.consume(side);
+            blackhole.consume(price);
+            blackhole.consume(quantity);
+            blackhole.consume(timestamp);
+        }
+
+        @Override
+        public void onError(ParseError error, int offset, int length) {
+            blackhole.consume(error);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.diy.benchmark;
+
+import com.diy.Side.Side;
+import com.diy.domain.Order;
+import com.diy.metrics.OrderBookMetrics;
+import com.diy.orderbookmanager.OrderBookList;
+import com.diy.orderbookmanager.OrderBookType;
+import com.diy.orderbookmanager.UpdateResult;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ *   OrderBookList.updateOrder for add, modify and delete mixes on a pre-filled book
+ *
+ *   <p>Every thread works on its own orders (own timestamps) spread over the existing levels, and each
+ *   benchmark leaves the book as it found it, so the depth stays the same during the whole run.
+ *   With measured=true every update also goes through OrderBookMetrics (two System.nanoTime and one Recorder).
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UpdateOrderBenchmark {
+
+    private static final int MESSAGES = 1 << 12;  // per thread, power of 2
+
+
+    @State(Scope.Benchmark)
+    public static class Book {
+
+        @Param({"SKIP_LIST", "PRICE_LADDER"})
+        OrderBookType type;
+
+        @Param({"10", "1000", "10000"})
+        int depth;
+
+        @Param({"false", "true"})
+        boolean measured;
+
+        OrderBookList orderBookList;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            orderBookList = BookFixture.newBook(type, depth, measured ? new OrderBookMetrics() : null);
+        }
+    }
+
+
+    @State(Scope.Thread)
+    public static class Messages {
+
+        Order[] adds;       // new orders
+        Order[] modifies;   // same orders, other quantity
+        Order[] deletes;    // same orders, quantity 0
+        List<Order>[] batches;  // the mixed sequence as one packet
+        UpdateResult[] results = new UpdateResult[4];
+        int next;
+
+        @Setup(Level.Trial)
+        @SuppressWarnings("unchecked")
+        public void setUp(Book book, ThreadParams threadParams) {
+
+            SplittableRandom random = new SplittableRandom(threadParams.getThreadIndex());
+            long firstTimestamp = 1_000_000_000L * (threadParams.getThreadIndex() + 1); // far from the resting orders
+
+            adds = new Order[MESSAGES];
+            modifies = new Order[MESSAGES];
+            deletes = new Order[MESSAGES];
+            batches = new List[MESSAGES];
+            for (int i = 0; i < MESSAGES; i++) {
+
+                int level = random.nextInt(book.depth);
+                Side side = random.nextBoolean() ? Side.BUY : Side.SELL;
+                long price = side == Side.BUY ? BookFixture.bidPrice(level) : BookFixture.askPrice(level);
+                long timestamp = firstTimestamp + i;
+                long quantity = BookFixture.quantity(random);
+
+                adds[i] = new Order(BookFixture.INSTRUMENT, side, price, quantity, timestamp);
+                modifies[i] = new Order(BookFixture.INSTRUMENT, side, price, quantity + 1, timestamp);
+                deletes[i] = new Order(BookFixture.INSTRUMENT, side, price, 0, timestamp);
+                batches[i] = Arrays.asList(adds[i], modifies[i], adds[i], deletes[i]);
+            }
+        }
+    }
+
+
+
+    /** one add then one delete of the same order */
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public boolean addThenDelete(Book book, Messages messages) {
+
+        int i = messages.next++ & (MESSAGES - 1);
+        return book.orderBookList.updateOrder(messages.adds[i]) & book.orderBookList.updateOrder(messages.deletes[i]);
+    }
+
+
+    /** quantity change of a resting order, back and forth */
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public boolean modify(Book book, Messages messages, ModifyState state) {
+
+        int i = messages.next++ & (MESSAGES - 1);
+        return book.orderBookList.updateOrder(messages.modifies[i]) & book.orderBookList.updateOrder(messages.adds[i]);
+    }
+
+
+    /** typical feed : 1 add, 2 modifies, 1 delete */
+    @Benchmark
+    @OperationsPerInvocation(4)
+    public boolean mixed(Book book, Messages messages) {
+
+        int i = messages.next++ & (MESSAGES - 1);
+        OrderBookList orderBookList = book.orderBookList;
+        return orderBookList.updateOrder(messages.adds[i])
+                & orderBookList.updateOrder(messages.modifies[i])
+                & orderBookList.updateOrder(messages.adds[i])
+                & orderBookList.updateOrder(messages.deletes[i]);
+    }
+
+
+
+    /** same messages as mixed, sent as one batch : the book is taken once, the top of book published once */
+    @Benchmark
+    @OperationsPerInvocation(4)
+    public UpdateResult[] mixedBatch(Book book, Messages messages) {
+
+        int i = messages.next++ & (MESSAGES - 1);
+        book.orderBookList.updateOrders(messages.batches[i], messages.results);
+        return messages.results;
+    }
+
+
+
+    /** the modify benchmark needs its orders resting in the book */
+    @State(Scope.Thread)
+    public static class ModifyState {
+
+        @Setup(Level.Trial)
+        public void setUp(Book book, Messages messages) {
+            for (Order order : messages.adds) {
+                book.orderBookList.updateOrder(order);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown(Book book, Messages messages) {
+            for (Order order : messages.deletes) {
+                book.orderBookList.updateOrder(order);
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.diy.Utils;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+import static java.util.Objects.requireNonNull;
+
+
+/**
+ *   Fixed-point helpers : prices and quantities are held as a scaled long ("ticks" of 0.01)
+ *
+ *   <p>The exchange sends price and quantity with a scale between 0 and 2, price in [0.01 , 999.99]
+ *   and quantity in [0 , 10737418.23], so every value fits in a long once multiplied by 100.
+ *   BigDecimal is only created at the OrderBookManager API edge.
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   16/01/2022
+ */
+public final class FixedPoint {
+
+    /** number of decimals carried by a tick */
+    public static final int SCALE = 2;
+
+    /** 10^SCALE */
+    public static final long ONE = 100L;
+
+    /** returned by the books when there is no price on a side */
+    public static final long NO_PRICE = -1L;
+
+    /** highest price of the exchange range (999.99), in ticks : Order and OrderParser reject a price above it */
+    public static final long MAX_PRICE = 99_999L;
+
+    /** every price of the exchange range (0.01 - 999.99) is converted once, then shared */
+    private static final BigDecimal[] CACHE = new BigDecimal[(int) MAX_PRICE + 1]; // BigDecimal is immutable, racy init is fine
+
+
+    private FixedPoint() {
+    }
+
+
+
+    /**
+     *   BigDecimal -> ticks, extra decimals are dropped (RoundingMode.DOWN) as Order always did
+     *
+     * @param value
+     * @return long ticks
+     */
+    public static long toTicks(BigDecimal value) {
+
+        requireNonNull(value);
+        return value.setScale(SCALE, RoundingMode.DOWN).unscaledValue().longValueExact();
+    }
+
+
+
+    /**
+     *   ticks -> BigDecimal with a scale of 2
+     *
+     * @param ticks
+     * @return BigDecimal
+     */
+    public static BigDecimal toBigDecimal(long ticks) {
+
+        if (ticks < 0 || ticks >= CACHE.length) {
+            return BigDecimal.valueOf(ticks, SCALE);
+        }
+        BigDecimal value = CACHE[(int) ticks];
+        if (value == null) {
+            value = BigDecimal.valueOf(ticks, SCALE);
+            CACHE[(int) ticks] = value;
+        }
+        return value;
+    }
+
+
+
+    /**
+     *   Build an unsigned 128 bits value (hi:lo) as a BigDecimal
+     *
+     *   <p>Sum of price x quantity over a full side can exceed Long.MAX_VALUE (99999 x 1073741823 per level),
+     *   so the books accumulate it on 2 longs with Math.multiplyHigh and only convert once at the end.
+     *
+     * @param hi high 64 bits
+     * @param lo low 64 bits (unsigned)
+     * @param scale
+     * @return BigDecimal
+     */
+    public static BigDecimal toBigDecimal(long hi, long lo, int scale) {
+
+        if (hi == 0 && lo >= 0) {
+            return BigDecimal.valueOf(lo, scale);
+        }
+        BigInteger unscaled = BigInteger.valueOf(hi).shiftLeft(64)
+                .add(BigInteger.valueOf(lo >>> 1).shiftLeft(1))
+                .add(BigInteger.valueOf(lo & 1L));
+        return new BigDecimal(unscaled, scale);
+    }
+
+}
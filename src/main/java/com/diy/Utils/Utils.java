@@ -2,16 +2,18 @@ package com.diy.Utils;
 
 import com.diy.Side.Side;
 import com.diy.domain.Order;
+import com.diy.parser.OrderMessageHandler;
+import com.diy.parser.OrderParser;
+import com.diy.parser.ParseError;
 import lombok.extern.slf4j.Slf4j;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
 import java.sql.Timestamp;
 import java.util.GregorianCalendar;
-import java.util.Locale;
 import java.util.TimeZone;
 
-import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Objects.requireNonNull;
 
 
@@ -19,47 +21,50 @@ import static java.util.Objects.requireNonNull;
 public class Utils {
 
 
+    private static final ThreadLocal<OrderParser> PARSER = ThreadLocal.withInitial(() -> new OrderParser(true, OrderParser.DEFAULT_UNIVERSE));
+
+
+
     /**
+     *   Build an Order from one exchange message (t=...|i=...|p=...|q=...|s=...)
+     *
+     *   <p>Convenience for tests and tools, the ingestion path should use OrderParser directly
+     *   (no String, no exception, nothing allocated per message).
      *
-     * @param order
-     * @return
+     * @param order message
+     * @return Order
+     * @throws NumberFormatException if the message is not in the exchange format
+     * @throws IllegalArgumentException if price is not positive or quantity is negative
      */
     public static Order toOrder(String order){
 
-
-        String[] arg = order.split("\\|");
-
-        requireNonNull(arg[0].substring(2)); // timestamp
-        String instrument=requireNonNull(arg[1].substring(2)); // Instrument
-
-        BigDecimal price=new BigDecimal(arg[2].substring(2));  // price
-        checkArgument(price.signum()> 0, "price must be positive");
-
-        BigDecimal quantity=new BigDecimal(arg[3].substring(2));  // Qty
-        checkArgument(quantity.signum() >= 0, "quantity cant be negative");
-
-        requireNonNull(arg[4]); // Side
-
-        Side side = null;
-        switch(arg[4].substring(2).toLowerCase(Locale.ROOT)) {
-
-            case "b":
-                side=Side.BUY;
-                break;
-
-            case "s":
-                side=Side.SELL;
-                break;
-        }
-
-        String timestampStr = arg[0].substring(2);
-        long time=Long.valueOf(timestampStr).longValue();
-        Timestamp timestamp= new Timestamp(time);
-
-        Order vOrder = new Order( instrument, side, price, quantity,timestamp);
+        requireNonNull(order);
+        byte[] bytes = order.getBytes(StandardCharsets.US_ASCII);
+
+        Order[] vOrder = new Order[1];
+        PARSER.get().parse(bytes, 0, bytes.length, new OrderMessageHandler() {
+
+            @Override
+            public void onOrder(int instrumentId, String instrument, Side side, long price, long quantity, long timestamp) {
+                vOrder[0] = new Order( instrumentId, side, price, quantity, timestamp);
+            }
+
+            @Override
+            public void onOrder(int instrumentId, String instrument, long orderId, Side side, long price, long quantity, long timestamp) {
+                vOrder[0] = new Order( instrumentId, orderId, side, price, quantity, timestamp);
+            }
+
+            @Override
+            public void onError(ParseError error, int offset, int length) {
+                if (error.isFormatError()) {
+                    throw new NumberFormatException(error + " : '" + order + "'");
+                }
+                throw new IllegalArgumentException(error + " : '" + order + "'");
+            }
+        });
         //log.info("vOrder="+vOrder);
 
-        return vOrder;
+        return vOrder[0];
 
     }
 
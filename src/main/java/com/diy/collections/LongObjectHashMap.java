@@ -0,0 +1,318 @@
+package com.diy.collections;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+
+/**
+ *   Map from a primitive long to an object, open addressing with linear probing
+ *
+ *   <p>Keys and values sit in two parallel arrays : no boxing of the key, no node per entry, a lookup is a hash and
+ *   a few adjacent reads. A null value marks a free slot, so null values are not allowed.
+ *   A remove shifts the following entries back (no tombstone), the table doubles above half full.
+ *   About 24 bytes per entry against about 56 for a HashMap<Long, V> (node, boxed key, table slot).
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@NotThreadSafe
+public final class LongObjectHashMap<V> {
+
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private long[] keys;
+    private Object[] values;   // null for a free slot
+    private int mask;
+    private int size;
+    private int resizeAt;
+    private final Collection<V> valuesView = new Values();
+
+
+
+    public LongObjectHashMap() {
+        this(8);
+    }
+
+
+    /**
+     * @param expectedSize number of entries held without resizing
+     */
+    public LongObjectHashMap(int expectedSize) {
+
+        checkArgument(expectedSize >= 0 && expectedSize <= MAX_CAPACITY / 2, "expectedSize out of range");
+        allocate(Math.max(2, Integer.highestOneBit(Math.max(1, expectedSize * 2 - 1)) << 1));
+    }
+
+
+
+    /**
+     * @param key
+     * @return the value of that key, or null
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+
+        int slot = slot(key, mask);
+        Object value;
+        while ((value = values[slot]) != null) {
+            if (keys[slot] == key) {
+                return (V) value;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+
+
+    /**
+     * @param key
+     * @param value not null
+     * @return the previous value of that key, or null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+
+        requireNonNull(value);
+        int slot = slot(key, mask);
+        Object previous;
+        while ((previous = values[slot]) != null) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return (V) previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > resizeAt) {
+            rehash(values.length << 1);
+        }
+        return null;
+    }
+
+
+
+    /**
+     * @param key
+     * @return the removed value, or null
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+
+        int slot = slot(key, mask);
+        Object value;
+        while ((value = values[slot]) != null) {
+            if (keys[slot] == key) {
+                size--;
+                shiftBack(slot);
+                return (V) value;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+
+
+    /** close the gap left at a removed slot : entries of the same probe sequence move back by one or more slots */
+    private void shiftBack(int gap) {
+
+        int slot = gap;
+        while (true) {
+            slot = (slot + 1) & mask;
+            Object value = values[slot];
+            if (value == null) {
+                values[gap] = null;
+                return;
+            }
+            int home = slot(keys[slot], mask);
+            boolean reachable = gap <= slot ? gap < home && home <= slot : gap < home || home <= slot;
+            if (!reachable) {  // its probe sequence goes through the gap : move it there
+                keys[gap] = keys[slot];
+                values[gap] = value;
+                gap = slot;
+            }
+        }
+    }
+
+
+
+    public int size() {
+        return size;
+    }
+
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+
+    public void clear() {
+
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+
+
+    /**
+     *   Visit every entry, in no particular order
+     *
+     * @param action
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(EntryConsumer<? super V> action) {
+
+        for (int slot = 0; slot < values.length; slot++) {
+            Object value = values[slot];
+            if (value != null) {
+                action.accept(keys[slot], (V) value);
+            }
+        }
+    }
+
+
+    /**
+     * @param action called for every value, in no particular order
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachValue(Consumer<? super V> action) {
+
+        for (Object value : values) {
+            if (value != null) {
+                action.accept((V) value);
+            }
+        }
+    }
+
+
+    /**
+     * @return live read-only view of the values
+     */
+    public Collection<V> values() {
+        return valuesView;
+    }
+
+
+
+    private void rehash(int capacity) {
+
+        checkArgument(capacity <= MAX_CAPACITY, "LongObjectHashMap is full");
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = slot(oldKeys[i], mask);
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+
+    private void allocate(int capacity) {
+
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        resizeAt = capacity / 2;
+    }
+
+
+    /** spread the bits of the key : prices and timestamps are close to each other */
+    private static int slot(long key, int mask) {
+
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+
+    @Override
+    public String toString() {
+
+        StringBuilder builder = new StringBuilder("{");
+        forEach((key, value) -> builder.append(builder.length() == 1 ? "" : ", ").append(key).append('=').append(value));
+        return builder.append('}').toString();
+    }
+
+
+
+    /**
+     *   Receives a primitive key and its value
+     */
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+
+        void accept(long key, V value);
+    }
+
+
+
+    /** read-only values, the iterator walks the table */
+    private final class Values extends AbstractCollection<V> {
+
+        @Override
+        public Iterator<V> iterator() {
+
+            return new Iterator<V>() {   // no remove()
+
+                private int next = advance(0);
+
+                @Override
+                public boolean hasNext() {
+                    return next < values.length;
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public V next() {
+
+                    if (next >= values.length) {
+                        throw new NoSuchElementException();
+                    }
+                    V value = (V) values[next];
+                    next = advance(next + 1);
+                    return value;
+                }
+
+                private int advance(int from) {
+                    while (from < values.length && values[from] == null) {
+                        from++;
+                    }
+                    return from;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void forEach(Consumer<? super V> action) {
+            forEachValue(action);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.diy.conflation;
+
+import com.diy.Side.Side;
+import com.diy.collections.LongObjectHashMap;
+
+import java.util.Arrays;
+
+
+/**
+ *   Level slots of one instrument, plus a ring of the slots written last, by sequence
+ *
+ *   <p>One writer at a time (the thread holding the book lock) : it overwrites the slot of the level, puts it in the
+ *   ring and publishes the sequence, whatever the number of subscribers. The ring is never waited for : a
+ *   subscriber lapped by the writer scans the slots instead (see ConflatedSubscriber).
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+final class ConflatedBook {
+
+    private final String instrument;
+    private final LevelSlot[] ring;
+    private final int mask;
+
+    // writer only : price to slot of each side
+    private final LongObjectHashMap<LevelSlot> bids = new LongObjectHashMap<>();
+    private final LongObjectHashMap<LevelSlot> asks = new LongObjectHashMap<>();
+
+    private volatile LevelSlot[] slots = new LevelSlot[64];  // every level seen so far, grown by the writer
+    private volatile int slotCount;
+    private volatile long cursor;                            // sequence of the last write, 0 before the first one
+
+
+
+    ConflatedBook(String instrument, int ringCapacity) {
+        this.instrument = instrument;
+        this.ring = new LevelSlot[ringCapacity];
+        this.mask = ringCapacity - 1;
+    }
+
+
+
+    /** writer only */
+    void write(Side side, long price, long quantity, int orderCount) {
+
+        LongObjectHashMap<LevelSlot> index = side == Side.BUY ? bids : asks;
+        LevelSlot slot = index.get(price);
+        if (slot == null) {
+            slot = new LevelSlot(side, price);
+            index.put(price, slot);
+            append(slot);
+        }
+
+        long sequence = cursor + 1;
+        slot.write(quantity, orderCount, sequence);
+        ring[(int) sequence & mask] = slot;
+        cursor = sequence;   // publishes the slot and the ring entry
+    }
+
+
+    private void append(LevelSlot slot) {
+
+        int count = slotCount;
+        LevelSlot[] current = slots;
+        if (count == current.length) {
+            current = Arrays.copyOf(current, count * 2);
+            slots = current;    // published before the count
+        }
+        current[count] = slot;
+        slotCount = count + 1;
+    }
+
+
+
+    long cursor() {
+        return cursor;
+    }
+
+    int capacity() {
+        return ring.length;
+    }
+
+    /** @return slot written at that sequence, unless the writer has lapped it since */
+    LevelSlot entry(long sequence) {
+        return ring[(int) sequence & mask];
+    }
+
+    int slotCount() {
+        return slotCount;
+    }
+
+    /** @return the slots, at least slotCount() of them when read after it */
+    LevelSlot[] slots() {
+        return slots;
+    }
+
+    String getInstrument() {
+        return instrument;
+    }
+}
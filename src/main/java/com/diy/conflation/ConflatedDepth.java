@@ -0,0 +1,98 @@
+package com.diy.conflation;
+
+import com.diy.orderbookmanager.DepthEvent;
+import com.diy.orderbookmanager.DepthEventType;
+import com.diy.orderbookmanager.DepthListener;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+
+/**
+ *   Conflating fan-out of the level changes of the books : one slot per instrument, side and price holds the
+ *   latest state of the level, and any number of ConflatedSubscribers drain it at their own pace
+ *
+ *   <p>Registered as a DepthListener of an OrderBookList, before its first update. The writer only overwrites the
+ *   slot of the level and publishes a sequence : its cost does not depend on the number of subscribers nor on how
+ *   slow they are, and a subscriber never holds more than the levels of the book. The subscribers never touch
+ *   the books either, so reading the depth no longer competes with the writers for the book structures.
+ *
+ *   <pre>
+ *   ConflatedDepth conflatedDepth = new ConflatedDepth();
+ *   orderBookList.addDepthListener(conflatedDepth);
+ *   ConflatedSubscriber subscriber = conflatedDepth.subscribe("BTCUSD");
+ *   subscriber.drain((side, price, quantity, orderCount) -> ...);   // on the subscriber thread, as often as it likes
+ *   </pre>
+ *
+ *   <p>Slots are kept for every price seen, empty levels included (quantity 0).
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@ThreadSafe
+public final class ConflatedDepth implements DepthListener {
+
+    /** changes a subscriber can miss before it resyncs by a scan of the slots */
+    public static final int DEFAULT_RING_CAPACITY = 1 << 12;
+
+
+    private final int ringCapacity;
+    private final ConcurrentHashMap<String, ConflatedBook> books = new ConcurrentHashMap<>();
+
+
+
+    public ConflatedDepth() {
+        this(DEFAULT_RING_CAPACITY);
+    }
+
+
+    /**
+     * @param ringCapacity sequences kept per instrument, power of 2
+     */
+    public ConflatedDepth(int ringCapacity) {
+
+        checkArgument(ringCapacity > 0 && Integer.bitCount(ringCapacity) == 1, "ringCapacity must be a power of 2");
+        this.ringCapacity = ringCapacity;
+    }
+
+
+
+    /** on the book writer thread, under the book lock : one writer per instrument at a time */
+    @Override
+    public void onDepthEvent(DepthEvent event) {
+
+        if (event.getType() == DepthEventType.BEST_PRICE_CHANGED) {
+            return;  // the level change came with it
+        }
+        book(event.getInstrument()).write(event.getSide(), event.getPrice(), event.getQuantity(), event.getOrderCount());
+    }
+
+
+    private ConflatedBook book(String instrument) {
+
+        ConflatedBook book = books.get(instrument);
+        return book != null ? book : books.computeIfAbsent(instrument, key -> new ConflatedBook(key, ringCapacity));
+    }
+
+
+
+    /**
+     * @param instrument may have no book yet
+     * @return a new subscriber, for one reader thread
+     */
+    public ConflatedSubscriber subscribe(String instrument) {
+        return new ConflatedSubscriber(book(instrument));
+    }
+
+
+    @Override
+    public String toString() {
+        return "ConflatedDepth{" +
+                "instruments=" + books.keySet() +
+                ", ringCapacity=" + ringCapacity +
+                '}';
+    }
+}
@@ -0,0 +1,140 @@
+package com.diy.conflation;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+
+/**
+ *   Reader of the conflated levels of one instrument, at its own pace : each drain hands over the latest state
+ *   of every level changed since the previous drain, once
+ *
+ *   <p>While the subscriber is within the ring of the ConflatedBook, it walks the sequences it missed and takes the
+ *   slot of each one only if that was its last write, so a level changed a thousand times is delivered once. A
+ *   subscriber lapped by the writer (it drained less often than ring capacity changes) scans every slot instead
+ *   and takes those written since its previous drain : the cost of being slow is on the subscriber, never on the
+ *   writer. After such a resync a level may be delivered twice, always with its latest state.
+ *
+ *   <p>A new subscriber starts from the first change of the book, so it gets every level known to it.
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@NotThreadSafe
+public final class ConflatedSubscriber {
+
+    private final ConflatedBook book;
+
+    private long lastSequence;  // of the last drain
+    private long resyncs;
+
+    // consistent copy of the slot being read
+    private long quantity;
+    private int orderCount;
+    private long version;
+
+
+
+    ConflatedSubscriber(ConflatedBook book) {
+        this.book = book;
+    }
+
+
+
+    /**
+     *   Hand over the latest state of each level changed since the previous drain
+     *
+     * @param handler called on this thread, once per level
+     * @return number of levels handed over
+     */
+    public int drain(LevelHandler handler) {
+
+        long available = book.cursor();
+        if (available == lastSequence) {
+            return 0;
+        }
+
+        int delivered = 0;
+        if (available - lastSequence <= book.capacity()) {
+
+            for (long sequence = lastSequence + 1; sequence <= available; sequence++) {
+                LevelSlot slot = book.entry(sequence);
+                read(slot);
+                if (version == sequence) {   // else written again since, it comes later
+                    handler.onLevel(slot.side, slot.price, quantity, orderCount);
+                    delivered++;
+                }
+            }
+            if (book.cursor() - book.capacity() <= lastSequence) {   // no entry read was overwritten
+                lastSequence = available;
+                return delivered;
+            }
+        }
+
+        resyncs++;
+        int count = book.slotCount();
+        LevelSlot[] slots = book.slots();
+        for (int i = 0; i < count; i++) {
+            LevelSlot slot = slots[i];
+            read(slot);
+            if (version > lastSequence) {
+                handler.onLevel(slot.side, slot.price, quantity, orderCount);
+                delivered++;
+            }
+        }
+        lastSequence = available;
+        return delivered;
+    }
+
+
+    /** seqlock read of the slot into the fields */
+    private void read(LevelSlot slot) {
+
+        while (true) {
+            long stamp = slot.readStamp();
+            quantity = slot.quantity;
+            orderCount = slot.orderCount;
+            version = slot.version;
+            if (slot.validate(stamp)) {
+                return;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+
+
+    /**
+     * @return true if changes happened since the last drain
+     */
+    public boolean hasChanges() {
+        return book.cursor() != lastSequence;
+    }
+
+    /**
+     * @return sequence of the book at the last drain
+     */
+    public long getSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * @return number of drains which had to scan the slots because the writer lapped the ring
+     */
+    public long getResyncs() {
+        return resyncs;
+    }
+
+    public String getInstrument() {
+        return book.getInstrument();
+    }
+
+
+    @Override
+    public String toString() {
+        return "ConflatedSubscriber{" +
+                "instrument=" + book.getInstrument() +
+                ", sequence=" + lastSequence +
+                ", resyncs=" + resyncs +
+                '}';
+    }
+}
@@ -0,0 +1,24 @@
+package com.diy.conflation;
+
+import com.diy.Side.Side;
+
+
+/**
+ *   Receives the latest state of the levels drained by a ConflatedSubscriber
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@FunctionalInterface
+public interface LevelHandler {
+
+    /**
+     * @param side
+     * @param price in ticks of 0.01
+     * @param quantity total quantity of the level in ticks of 0.01, 0 if the level is gone
+     * @param orderCount number of orders of the level
+     */
+    void onLevel(Side side, long price, long quantity, int orderCount);
+
+}
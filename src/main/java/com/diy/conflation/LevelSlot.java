@@ -0,0 +1,63 @@
+package com.diy.conflation;
+
+import com.diy.Side.Side;
+
+import java.lang.invoke.VarHandle;
+
+
+/**
+ *   Latest state of one price level, overwritten in place by the book writer and read by any number of subscribers
+ *
+ *   <p>Seqlock : the stamp is odd while the writer is in, a reader retries until it has read the fields between
+ *   two equal even stamps. The writer never waits for the readers.
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+final class LevelSlot {
+
+    final Side side;
+    final long price;
+
+    // guarded by stamp
+    long quantity;      // 0 once the level is removed
+    int orderCount;
+    long version;       // sequence of the last write, in the ConflatedBook
+
+    private volatile long stamp;
+
+
+
+    LevelSlot(Side side, long price) {
+        this.side = side;
+        this.price = price;
+    }
+
+
+
+    /** writer only */
+    void write(long quantity, int orderCount, long version) {
+
+        long before = stamp;
+        stamp = before + 1;
+        VarHandle.storeStoreFence();
+        this.quantity = quantity;
+        this.orderCount = orderCount;
+        this.version = version;
+        stamp = before + 2;
+    }
+
+
+    /** @return stamp to give to validate after reading the fields, odd if a write is in progress */
+    long readStamp() {
+        return stamp;
+    }
+
+
+    /** @return true if the fields read since readStamp are consistent */
+    boolean validate(long readStamp) {
+        VarHandle.loadLoadFence();
+        return (readStamp & 1) == 0 && stamp == readStamp;
+    }
+}
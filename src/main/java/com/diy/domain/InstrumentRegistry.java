@@ -0,0 +1,228 @@
+package com.diy.domain;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+
+/**
+ *   Dense int identifier of each instrument : 0, 1, 2 ... in the order they are first seen
+ *
+ *   <p>One registry for the process, so an id means the same instrument for the parser, the Orders and the books,
+ *   which index their instruments in arrays instead of hashing Strings. An instrument is registered at startup or
+ *   the first time it is seen, and is never removed.
+ *
+ *   <p>Lookups are lock-free : the symbols are in a table published through a volatile field, with an open
+ *   addressing index on the hash of the ASCII bytes (the same value as String.hashCode, so a symbol is found from
+ *   a String or straight from the bytes of a message). Registration is rare and synchronized, the index is
+ *   copied on write.
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@ThreadSafe
+public final class InstrumentRegistry {
+
+    /** returned for a symbol which is not registered */
+    public static final int UNKNOWN = -1;
+
+    private static final InstrumentRegistry INSTANCE = new InstrumentRegistry();
+
+    private volatile Table table = new Table(16);
+
+
+
+    private InstrumentRegistry() {
+    }
+
+
+    public static InstrumentRegistry getInstance() {
+        return INSTANCE;
+    }
+
+
+
+    /**
+     * @param symbol
+     * @return id of that symbol, or UNKNOWN
+     */
+    public int getId(String symbol) {
+
+        Table current = table;
+        int mask = current.index.length - 1;
+        for (int slot = spread(symbol.hashCode()) & mask; ; slot = (slot + 1) & mask) {
+            int id = current.index[slot] - 1;
+            if (id == UNKNOWN || current.symbols[id].equals(symbol)) {
+                return id;
+            }
+        }
+    }
+
+
+
+    /**
+     *   Find a symbol from its ASCII bytes, nothing is allocated
+     *
+     * @param buffer read with absolute gets
+     * @param offset start of the symbol
+     * @param length length of the symbol
+     * @return id of that symbol, or UNKNOWN
+     */
+    public int getId(ByteBuffer buffer, int offset, int length) {
+
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + buffer.get(offset + i);  // String.hashCode of an ASCII symbol
+        }
+
+        Table current = table;
+        int mask = current.index.length - 1;
+        for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            int id = current.index[slot] - 1;
+            if (id == UNKNOWN || matches(current.ascii[id], buffer, offset, length)) {
+                return id;
+            }
+        }
+    }
+
+
+
+    /**
+     * @param symbol
+     * @return id of that symbol, a new one the first time it is seen
+     */
+    public int register(String symbol) {
+
+        int id = getId(requireNonNull(symbol));
+        return id != UNKNOWN ? id : add(symbol);
+    }
+
+
+
+    /**
+     * @param id
+     * @return the symbol of that id
+     * @throws IllegalArgumentException if no instrument has that id
+     */
+    public String getSymbol(int id) {
+
+        Table current = table;
+        checkArgument(id >= 0 && id < current.size, "unknown instrument id %s", id);
+        return current.symbols[id];
+    }
+
+
+
+    /**
+     * @return number of instruments registered, the ids are 0 to size() - 1
+     */
+    public int size() {
+        return table.size;
+    }
+
+
+
+    private synchronized int add(String symbol) {
+
+        Table current = table;
+        int id = getId(symbol);
+        if (id != UNKNOWN) {
+            return id;  // registered by another thread meanwhile
+        }
+
+        byte[] ascii = symbol.getBytes(StandardCharsets.US_ASCII);
+        checkArgument(new String(ascii, StandardCharsets.US_ASCII).equals(symbol), "instrument must be ASCII : %s", symbol);
+
+        Table next = current.size < current.symbols.length ? new Table(current) : new Table(current, current.symbols.length * 2);
+        next.add(symbol.intern(), ascii);   // the same String as the literals of the code
+        table = next;  // publish
+        return current.size;
+    }
+
+
+
+    private static boolean matches(byte[] ascii, ByteBuffer buffer, int offset, int length) {
+
+        if (ascii.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(offset + i) != ascii[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+
+    @Override
+    public String toString() {
+
+        Table current = table;
+        return "InstrumentRegistry" + Arrays.toString(Arrays.copyOf(current.symbols, current.size));
+    }
+
+
+
+    /**
+     *   Never changed once published, except the arrays by id beyond size, which only the next table uses
+     */
+    private static final class Table {
+
+        final String[] symbols;   // by id
+        final byte[][] ascii;     // by id
+        final int[] index;        // id + 1 by slot, 0 for a free slot
+        int size;
+
+        /** empty table */
+        Table(int capacity) {
+            this.symbols = new String[capacity];
+            this.ascii = new byte[capacity][];
+            this.index = new int[capacity * 2];
+        }
+
+        /** same capacity : the arrays by id are shared, they only grow at the end, the index is copied */
+        Table(Table table) {
+            this.symbols = table.symbols;
+            this.ascii = table.ascii;
+            this.index = table.index.clone();
+            this.size = table.size;
+        }
+
+        /** larger capacity : everything is copied, the index is rebuilt */
+        Table(Table table, int capacity) {
+            this.symbols = Arrays.copyOf(table.symbols, capacity);
+            this.ascii = Arrays.copyOf(table.ascii, capacity);
+            this.index = new int[capacity * 2];
+            for (int id = 0; id < table.size; id++) {
+                insert(id);
+            }
+            this.size = table.size;
+        }
+
+        void add(String symbol, byte[] bytes) {
+            symbols[size] = symbol;
+            ascii[size] = bytes;
+            insert(size++);
+        }
+
+        private void insert(int id) {
+            int mask = index.length - 1;
+            int slot = spread(symbols[id].hashCode()) & mask;
+            while (index[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            index[slot] = id + 1;
+        }
+    }
+}
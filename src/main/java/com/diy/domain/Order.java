@@ -4,31 +4,42 @@ import com.diy.Side.Side;
 
 import javax.annotation.concurrent.Immutable;
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.sql.Timestamp;
 
+import static com.diy.Utils.FixedPoint.MAX_PRICE;
+import static com.diy.Utils.FixedPoint.toBigDecimal;
+import static com.diy.Utils.FixedPoint.toTicks;
 import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Objects.requireNonNull;
 
 @Immutable
-public final class Order {
+public final class Order implements OrderView {
+
+    /** order id of the orders of a feed by price level, which carries none */
+    public static final long NO_ORDER_ID = 0;
 
 
     /** identifier of an instrument */
     private final String instrument;
 
+    /** dense id of the instrument in the InstrumentRegistry, compared instead of the String */
+    private final int instrumentId;
+
     /** either buy or sell */
     private final Side side;
 
-    /** limit price for the order, always positive */
-    private final BigDecimal price;   // memory usage :  36 + Ceiling(log2(n)/8.0) bytes
-                                // BigDecimal hit the performance a bit, but it's very accurate in calculation.
+    /** limit price for the order, always positive, at most 999.99, in ticks of 0.01 (see FixedPoint) */
+    private final long price;   // memory usage : 8 bytes, no allocation
+                                // BigDecimal is only built at the OrderBookManager API edge
+
+    /** required quantity, always positive, in ticks of 0.01 (see FixedPoint) */
+    private final long quantity;  // memory usage : 8 bytes, no allocation
 
-    /** required quantity, always positive */
-    private final BigDecimal quantity;  // memory usage :  36 + Ceiling(log2(n)/8.0) bytes
-                                 // BigDecimal hit the performance a bit, but it's very accurate in calculation.
+    /** UNIX timestamp (milliseconds since epoch) */
+    private final long timestamp;
 
-    private final Timestamp timestamp;
+    /** exchange order id of a market by order feed, or NO_ORDER_ID */
+    private final long orderId;
 
 
     /**
@@ -37,7 +48,7 @@ public final class Order {
      * @param order an order to make copy from
      */
     public Order(Order order) {
-        this( order.instrument, order.side, order.price, order.quantity, order.timestamp);
+        this( order.instrumentId, order.instrument, order.orderId, order.side, order.price, order.quantity, order.timestamp);
 
     }
 
@@ -51,15 +62,114 @@ public final class Order {
      */
     public Order( String instrument, Side side, BigDecimal price, BigDecimal quantity, Timestamp timestamp) {
 
-        requireNonNull(instrument);
-        checkArgument(price.signum() > 0, "price must be positive");
-        checkArgument(quantity.signum() >= 0 /*> -1*/, "quantity cant be negative");
-        requireNonNull(timestamp);
+        this(instrument, side, toTicks(checkPrice(price)), toTicks(checkQuantity(quantity)), requireNonNull(timestamp).getTime());
+    }
+
+    /**
+     * Fixed-point ctor, used on the update path : no BigDecimal is involved
+     *
+     * @param instrument identifier of an instrument
+     * @param side either buy or sell
+     * @param price limit price in ticks of 0.01, always positive
+     * @param quantity required quantity in ticks of 0.01, always positive
+     * @param timestamp UNIX timestamp (milliseconds since epoch)
+     */
+    public Order( String instrument, Side side, long price, long quantity, long timestamp) {
+
+        this(InstrumentRegistry.getInstance().register(instrument), instrument, NO_ORDER_ID, side, price, quantity, timestamp);
+    }
+
+    /**
+     * Fixed-point ctor of a market by order feed
+     *
+     * @param instrument identifier of an instrument
+     * @param orderId exchange order id, positive
+     * @param side either buy or sell
+     * @param price limit price in ticks of 0.01, always positive
+     * @param quantity required quantity in ticks of 0.01, always positive
+     * @param timestamp UNIX timestamp (milliseconds since epoch)
+     */
+    public Order( String instrument, long orderId, Side side, long price, long quantity, long timestamp) {
+
+        this(InstrumentRegistry.getInstance().register(instrument), instrument, checkOrderId(orderId), side, price, quantity, timestamp);
+    }
+
+    /**
+     * Fixed-point ctor with the instrument already resolved (OrderParser) : no String is hashed
+     *
+     * @param instrumentId id in the InstrumentRegistry
+     * @param side either buy or sell
+     * @param price limit price in ticks of 0.01, always positive
+     * @param quantity required quantity in ticks of 0.01, always positive
+     * @param timestamp UNIX timestamp (milliseconds since epoch)
+     */
+    public Order( int instrumentId, Side side, long price, long quantity, long timestamp) {
+
+        this(instrumentId, InstrumentRegistry.getInstance().getSymbol(instrumentId), NO_ORDER_ID, side, price, quantity, timestamp);
+    }
+
+    /**
+     * Fixed-point ctor of a market by order feed, with the instrument already resolved (OrderParser)
+     *
+     * @param instrumentId id in the InstrumentRegistry
+     * @param orderId exchange order id, positive, or NO_ORDER_ID if the message has none
+     * @param side either buy or sell
+     * @param price limit price in ticks of 0.01, always positive
+     * @param quantity required quantity in ticks of 0.01, always positive
+     * @param timestamp UNIX timestamp (milliseconds since epoch)
+     */
+    public Order( int instrumentId, long orderId, Side side, long price, long quantity, long timestamp) {
+
+        this(instrumentId, InstrumentRegistry.getInstance().getSymbol(instrumentId), orderId == NO_ORDER_ID ? orderId : checkOrderId(orderId), side, price, quantity, timestamp);
+    }
+
+    private Order( int instrumentId, String instrument, long orderId, Side side, long price, long quantity, long timestamp) {
+
+        checkArgument(price > 0, "price must be positive");
+        checkArgument(price <= MAX_PRICE, "price above the exchange range (999.99)");
+        checkArgument(quantity >= 0 /*> -1*/, "quantity cant be negative");
+        this.instrumentId = instrumentId;
         this.instrument = instrument;
+        this.orderId = orderId;
         this.side = side;
-        this.price = price.setScale(2, RoundingMode.DOWN);
-        this.quantity = quantity.setScale(2, RoundingMode.DOWN);//BigDecimal.valueOf(quantity).setScale(2, RoundingMode.DOWN).doubleValue();
-        this.timestamp=(Timestamp) timestamp.clone();
+        this.price = price;
+        this.quantity = quantity;
+        this.timestamp = timestamp;
+    }
+
+
+    /**
+     * @param quantity new quantity in ticks of 0.01
+     * @return the same order with that quantity, no lookup in the InstrumentRegistry
+     */
+    public Order withQuantity(long quantity) {
+        return new Order(instrumentId, instrument, orderId, side, price, quantity, timestamp);
+    }
+
+
+    /**
+     * @param price new price in ticks of 0.01
+     * @param quantity new quantity in ticks of 0.01
+     * @return the same order (same order id and timestamp) at another price, no lookup in the InstrumentRegistry
+     */
+    public Order withPriceAndQuantity(long price, long quantity) {
+        return new Order(instrumentId, instrument, orderId, side, price, quantity, timestamp);
+    }
+
+
+    private static BigDecimal checkPrice(BigDecimal price) {
+        checkArgument(price.signum() > 0, "price must be positive");
+        return price;
+    }
+
+    private static long checkOrderId(long orderId) {
+        checkArgument(orderId > 0, "orderId must be positive");
+        return orderId;
+    }
+
+    private static BigDecimal checkQuantity(BigDecimal quantity) {
+        checkArgument(quantity.signum() >= 0 /*> -1*/, "quantity cant be negative");
+        return quantity;
     }
 
 
@@ -67,18 +177,38 @@ public final class Order {
     public String getInstrument() {
         return instrument;
     }
+    public int getInstrumentId() {
+        return instrumentId;
+    }
     public Side getSide() {
         return side;
     }
     public BigDecimal getPrice() {
-        return price;
+        return toBigDecimal(price);
     }
     public BigDecimal getQuantity() {
-        return quantity;
+        return toBigDecimal(quantity);
     }
     public Timestamp getTimestamp() {
+        return new Timestamp(timestamp);
+    }
+
+    /** @return price in ticks of 0.01 */
+    public long getPriceTicks() {
+        return price;
+    }
+    /** @return quantity in ticks of 0.01 */
+    public long getQuantityTicks() {
+        return quantity;
+    }
+    /** @return UNIX timestamp (milliseconds since epoch) */
+    public long getTimestampMillis() {
         return timestamp;
     }
+    /** @return exchange order id, or NO_ORDER_ID */
+    public long getOrderId() {
+        return orderId;
+    }
 
     @Override
     public boolean equals(Object o) {
@@ -91,14 +221,14 @@ public final class Order {
 
         Order order = (Order) o;
 
-        if (! (price.compareTo(order.price)==0)) {
+        if (price != order.price) {
             return false; // same price
         }
-        if (!instrument.equals(order.instrument)) {
+        if (instrumentId != order.instrumentId) {
             return false;// same instrument
         }
-        if (timestamp != null ? !timestamp.equals(order.timestamp) : order.timestamp != null) {
-            return false; // null or same timestamp
+        if (timestamp != order.timestamp) {
+            return false; // same timestamp
         }
         return side == order.side; // same side
     }
@@ -107,10 +237,10 @@ public final class Order {
     @Override
     public int hashCode() {
 
-        int result = (instrument != null ? instrument.hashCode() : 0);
-        result = 31 * result + (timestamp != null ? timestamp.hashCode() : 0);
+        int result = instrumentId;
+        result = 31 * result + Long.hashCode(timestamp);
         result = 31 * result + (side != null ? side.hashCode() : 0);
-        result = 31 * result + (int) (price.longValue() ^ (price.longValue()>>> 32));
+        result = 31 * result + Long.hashCode(price);
         return result;
     }
 
@@ -119,10 +249,11 @@ public final class Order {
     public String toString() {
         return "Order{" +
                 "instrument='" + instrument + '\'' +
+                (orderId == NO_ORDER_ID ? "" : ", orderId=" + orderId) +
                 ", side=" + side +
-                ", price=" + price +
-                ", quantity=" + quantity +
-                ", timestamp=" + timestamp +
+                ", price=" + getPrice() +
+                ", quantity=" + getQuantity() +
+                ", timestamp=" + getTimestamp() +
                 '}';
     }
 
@@ -0,0 +1,44 @@
+package com.diy.domain;
+
+import com.diy.Side.Side;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+
+
+/**
+ *   Read accessors of an order
+ *
+ *   <p>Implemented by Order and by OrderFlyweight, a reusable view over an order record stored off-heap :
+ *   code which only reads orders can take either without allocating.
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+public interface OrderView {
+
+    /** @return identifier of an instrument */
+    String getInstrument();
+
+    /** @return id of the instrument in the InstrumentRegistry */
+    int getInstrumentId();
+
+    /** @return either buy or sell */
+    Side getSide();
+
+    BigDecimal getPrice();
+
+    BigDecimal getQuantity();
+
+    Timestamp getTimestamp();
+
+    /** @return price in ticks of 0.01 */
+    long getPriceTicks();
+
+    /** @return quantity in ticks of 0.01 */
+    long getQuantityTicks();
+
+    /** @return UNIX timestamp (milliseconds since epoch) */
+    long getTimestampMillis();
+}
@@ -0,0 +1,414 @@
+package com.diy.feed;
+
+import com.diy.Side.Side;
+import com.diy.domain.Order;
+import com.diy.orderbookmanager.OrderBookManager;
+import com.diy.orderbookmanager.UpdateResult;
+import com.diy.parser.OrderMessageHandler;
+import com.diy.parser.OrderParser;
+import com.diy.parser.ParseError;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+
+/**
+ *   Non-blocking UDP feed : sequenced packets of exchange messages applied to an OrderBookManager in order
+ *
+ *   <p>Packet (see LoopbackPublisher) :
+ *   <pre>
+ *   long sequence (big endian, from 1, +1 per packet)
+ *   newline-delimited messages in the exchange format : t=1638848595|i=BTCUSD|p=32.99|q=100|s=b
+ *   </pre>
+ *   poll() drains the socket into a direct buffer and decodes each packet in place with OrderParser, its orders
+ *   applied as one batch (OrderBookManager.updateOrders). Nothing is allocated per packet but the Orders kept by
+ *   the books.
+ *
+ *   <p>Gaps : a packet ahead of the expected sequence is copied into a reorder buffer (preallocated slots, one per
+ *   sequence ahead) and applied as soon as the missing ones arrive. If the gap is still open after the reorder
+ *   timeout, or a packet is too far ahead for the buffer, the missing packets are deemed lost : the FeedRecovery
+ *   rebuilds the books from a snapshot, the feed goes on after the snapshot sequence and the buffered packets up to
+ *   it are dropped. A packet behind the expected sequence is a duplicate and is dropped.
+ *
+ *   <p>One thread calls poll, in its own duty cycle (spin, yield or park between empty polls).
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@Slf4j
+@NotThreadSafe
+public final class FeedHandler implements Closeable {
+
+    public static final int HEADER_SIZE = 8;  // sequence
+
+    /** largest packet, a bigger datagram is truncated by the socket */
+    public static final int DEFAULT_MAX_PACKET_SIZE = 1 << 13;
+
+    /** packets kept ahead of a gap */
+    public static final int DEFAULT_REORDER_CAPACITY = 64;
+
+    /** how long a gap may stay open before the missing packets are deemed lost */
+    public static final long DEFAULT_REORDER_TIMEOUT_NANOS = 5_000_000;
+
+    private static final long EMPTY = -1;
+
+
+    private final DatagramChannel channel;
+    private final OrderBookManager orderBookManager;
+    private final FeedRecovery recovery;
+    private final OrderParser parser;
+    private final long reorderTimeoutNanos;
+
+    private final ByteBuffer packet;          // receive buffer
+    private final ByteBuffer[] slots;         // reorder buffer, by sequence & mask
+    private final long[] slotSequences;       // sequence held by each slot, or EMPTY
+    private final int mask;
+    private int buffered;                     // packets in the reorder buffer
+    private long gapSinceNanos;               // when the current gap was seen
+
+    private final List<Order> orders = new ArrayList<>();  // of one packet, reused
+    private UpdateResult[] results = new UpdateResult[64];
+
+    private long expectedSequence;
+    private long packets;
+    private long messages;
+    private long duplicates;
+    private long gaps;
+    private long recoveries;
+    private long parseErrors;
+
+
+
+    /**
+     * @param channel bound, switched to non-blocking
+     * @param orderBookManager receives the orders
+     * @param recovery called when packets are lost
+     */
+    public FeedHandler(DatagramChannel channel, OrderBookManager orderBookManager, FeedRecovery recovery) throws IOException {
+        this(channel, orderBookManager, recovery, new OrderParser(true, OrderParser.DEFAULT_UNIVERSE),
+                DEFAULT_MAX_PACKET_SIZE, DEFAULT_REORDER_CAPACITY, DEFAULT_REORDER_TIMEOUT_NANOS, 1);
+    }
+
+
+    /**
+     * @param channel bound, switched to non-blocking
+     * @param orderBookManager receives the orders
+     * @param recovery called when packets are lost
+     * @param parser decoder, with the instrument universe of the feed
+     * @param maxPacketSize largest packet in bytes
+     * @param reorderCapacity packets kept ahead of a gap, power of 2
+     * @param reorderTimeoutNanos how long a gap may stay open
+     * @param firstSequence sequence of the first packet expected ; joining a feed later starts with a recovery
+     */
+    public FeedHandler(DatagramChannel channel, OrderBookManager orderBookManager, FeedRecovery recovery, OrderParser parser,
+                       int maxPacketSize, int reorderCapacity, long reorderTimeoutNanos, long firstSequence) throws IOException {
+
+        checkArgument(maxPacketSize > HEADER_SIZE, "maxPacketSize must be bigger than the header");
+        checkArgument(reorderCapacity > 0 && Integer.bitCount(reorderCapacity) == 1, "reorderCapacity must be a power of 2");
+        checkArgument(reorderTimeoutNanos >= 0, "reorderTimeoutNanos must not be negative");
+        this.channel = requireNonNull(channel);
+        this.orderBookManager = requireNonNull(orderBookManager);
+        this.recovery = requireNonNull(recovery);
+        this.parser = requireNonNull(parser);
+        this.reorderTimeoutNanos = reorderTimeoutNanos;
+        this.expectedSequence = firstSequence;
+
+        this.packet = ByteBuffer.allocateDirect(maxPacketSize);
+        this.mask = reorderCapacity - 1;
+        this.slots = new ByteBuffer[reorderCapacity];
+        this.slotSequences = new long[reorderCapacity];
+        ByteBuffer reorder = ByteBuffer.allocateDirect(reorderCapacity * maxPacketSize);  // one block, sliced
+        for (int i = 0; i < reorderCapacity; i++) {
+            reorder.limit((i + 1) * maxPacketSize).position(i * maxPacketSize);
+            slots[i] = reorder.slice();
+            slotSequences[i] = EMPTY;
+        }
+
+        channel.configureBlocking(false);
+    }
+
+
+
+    /**
+     * @param address local address and port of the feed
+     * @return DatagramChannel bound to it, for a unicast feed or a loopback publisher
+     */
+    public static DatagramChannel open(InetSocketAddress address) throws IOException {
+
+        DatagramChannel channel = DatagramChannel.open(StandardProtocolFamily.INET);
+        channel.setOption(StandardSocketOptions.SO_RCVBUF, 1 << 22);  // absorbs the bursts between two polls
+        return channel.bind(address);
+    }
+
+
+    /**
+     * @param group multicast address of the feed
+     * @param port port of the feed
+     * @param networkInterface interface which receives the feed
+     * @return DatagramChannel which has joined the group
+     */
+    public static DatagramChannel openMulticast(InetAddress group, int port, NetworkInterface networkInterface) throws IOException {
+
+        DatagramChannel channel = DatagramChannel.open(StandardProtocolFamily.INET);
+        channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        channel.setOption(StandardSocketOptions.SO_RCVBUF, 1 << 22);
+        channel.bind(new InetSocketAddress(port));
+        channel.join(group, networkInterface);
+        return channel;
+    }
+
+
+
+    /**
+     *   Read every packet waiting in the socket, apply what is in sequence, then check the open gap
+     *
+     * @return number of packets received
+     */
+    public int poll() throws IOException {
+
+        int received = 0;
+        while (true) {
+            packet.clear();
+            if (channel.receive(packet) == null) {
+                break;
+            }
+            packet.flip();
+            received++;
+            if (packet.remaining() < HEADER_SIZE) {
+                log.warn("packet of " + packet.remaining() + " bytes dropped, shorter than the header");
+                continue;
+            }
+            onPacket(packet.getLong(0), packet);
+        }
+
+        if (buffered > 0 && System.nanoTime() - gapSinceNanos > reorderTimeoutNanos) {
+            log.warn("packets " + expectedSequence + " and after lost : recovery");
+            recover();
+        }
+        return received;
+    }
+
+
+
+    private void onPacket(long sequence, ByteBuffer bytes) throws IOException {
+
+        packets++;
+        if (sequence < expectedSequence) {
+            duplicates++;
+            return;
+        }
+        if (sequence == expectedSequence) {
+            apply(bytes);
+            expectedSequence++;
+            drainReorderBuffer();
+            return;
+        }
+
+        if (sequence - expectedSequence > mask) {  // beyond the reorder buffer : no use waiting
+            log.warn("packet " + sequence + " received while " + expectedSequence + " is expected : recovery");
+            if (buffered == 0) {
+                gaps++;
+            }
+            recover();
+            if (sequence < expectedSequence) {
+                return;   // in the snapshot
+            }
+            if (sequence == expectedSequence) {
+                apply(bytes);
+                expectedSequence++;
+                drainReorderBuffer();
+                return;
+            }
+            if (sequence - expectedSequence > mask) {
+                log.warn("packet " + sequence + " dropped, the snapshot is at " + (expectedSequence - 1));
+                return;
+            }
+        }
+        store(sequence, bytes);
+    }
+
+
+    private void store(long sequence, ByteBuffer bytes) {
+
+        int index = (int) sequence & mask;
+        if (slotSequences[index] == sequence) {
+            duplicates++;
+            return;
+        }
+        if (buffered == 0) {
+            gaps++;
+            gapSinceNanos = System.nanoTime();
+        }
+        ByteBuffer slot = slots[index];
+        slot.clear();
+        slot.put(bytes);   // the received packet is not read after this
+        slot.flip();
+        slotSequences[index] = sequence;
+        buffered++;
+    }
+
+
+    /** apply the buffered packets which follow the expected sequence ; a gap left behind starts its timeout again */
+    private void drainReorderBuffer() {
+
+        while (buffered > 0) {
+            int index = (int) expectedSequence & mask;
+            if (slotSequences[index] != expectedSequence) {
+                gapSinceNanos = System.nanoTime();
+                return;
+            }
+            apply(slots[index]);
+            slotSequences[index] = EMPTY;
+            buffered--;
+            expectedSequence++;
+        }
+    }
+
+
+    private void recover() throws IOException {
+
+        recoveries++;
+        long snapshotSequence = recovery.recover();
+        expectedSequence = snapshotSequence + 1;
+
+        for (int i = 0; i < slotSequences.length; i++) {
+            if (slotSequences[i] != EMPTY && slotSequences[i] < expectedSequence) {
+                slotSequences[i] = EMPTY;   // in the snapshot
+                buffered--;
+            }
+        }
+        drainReorderBuffer();
+    }
+
+
+
+    /** decode the messages of one packet in place and apply them as one batch */
+    private void apply(ByteBuffer bytes) {
+
+        orders.clear();
+        int length = bytes.limit() - HEADER_SIZE;
+        int consumed = parser.parseLines(bytes, HEADER_SIZE, length, handler);
+        if (consumed < length) {
+            parser.parse(bytes, HEADER_SIZE + consumed, length - consumed, handler);  // last message without '\n'
+        }
+
+        int size = orders.size();
+        if (size == 0) {
+            return;
+        }
+        if (results.length < size) {
+            results = new UpdateResult[Math.max(size, results.length * 2)];
+        }
+        orderBookManager.updateOrders(orders, results);
+        messages += size;
+    }
+
+
+    private final OrderMessageHandler handler = new OrderMessageHandler() {
+
+        @Override
+        public void onOrder(int instrumentId, String instrument, Side side, long price, long quantity, long timestamp) {
+            orders.add(new Order(instrumentId, side, price, quantity, timestamp));
+        }
+
+        @Override
+        public void onOrder(int instrumentId, String instrument, long orderId, Side side, long price, long quantity, long timestamp) {
+            orders.add(new Order(instrumentId, orderId, side, price, quantity, timestamp));
+        }
+
+        @Override
+        public void onError(ParseError error, int offset, int length) {
+            parseErrors++;
+            log.debug("message skipped : {}", error);
+        }
+    };
+
+
+
+    /**
+     * @return sequence of the next packet to apply
+     */
+    public long getExpectedSequence() {
+        return expectedSequence;
+    }
+    /**
+     * @return packets received with a sequence
+     */
+    public long getPackets() {
+        return packets;
+    }
+    /**
+     * @return messages applied
+     */
+    public long getMessages() {
+        return messages;
+    }
+    /**
+     * @return packets dropped because already applied or already buffered
+     */
+    public long getDuplicates() {
+        return duplicates;
+    }
+    /**
+     * @return gaps seen, closed by a late packet or by a recovery
+     */
+    public long getGaps() {
+        return gaps;
+    }
+    /**
+     * @return calls to the FeedRecovery
+     */
+    public long getRecoveries() {
+        return recoveries;
+    }
+    /**
+     * @return messages which could not be decoded
+     */
+    public long getParseErrors() {
+        return parseErrors;
+    }
+
+
+    /**
+     * @return address the feed is received on
+     */
+    public SocketAddress getLocalAddress() throws IOException {
+        return channel.getLocalAddress();
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+
+    @Override
+    public String toString() {
+        return "FeedHandler{" +
+                "expectedSequence=" + expectedSequence +
+                ", packets=" + packets +
+                ", messages=" + messages +
+                ", duplicates=" + duplicates +
+                ", gaps=" + gaps +
+                ", recoveries=" + recoveries +
+                ", parseErrors=" + parseErrors +
+                '}';
+    }
+}
@@ -0,0 +1,23 @@
+package com.diy.feed;
+
+import java.io.IOException;
+
+
+/**
+ *   Brings the books back in line with the exchange after packets of the feed have been lost
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@FunctionalInterface
+public interface FeedRecovery {
+
+    /**
+     *   Called on the thread of the FeedHandler, which does not read the socket meanwhile
+     *
+     * @return sequence of the last packet the books now include : the feed goes on from the next one
+     */
+    long recover() throws IOException;
+
+}
@@ -0,0 +1,205 @@
+package com.diy.feed;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+
+/**
+ *   Stand-in for the exchange multicast : replays a capture file (newline-delimited exchange format) to a
+ *   FeedHandler over UDP, in sequenced packets (see FeedHandler)
+ *
+ *   <p>Messages are packed up to messagesPerPacket per packet. The rate is in messages per second, reached by
+ *   bursts : burstPackets packets back to back, then a pause until the average rate is back on schedule, so the
+ *   handler sees the bursty traffic of a real feed. A rate of 0 sends as fast as the socket takes them.
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@Slf4j
+@NotThreadSafe
+public final class LoopbackPublisher implements Closeable {
+
+    private static final long SPIN_THRESHOLD_NANOS = 100_000; // below that we spin, above we park
+
+
+    private final DatagramChannel channel;
+    private final ByteBuffer packet;
+    private final int messagesPerPacket;
+    private final long messagesPerSecond;
+    private final int burstPackets;
+
+    private long sequence;            // of the last packet sent
+    private int packetMessages;       // in the packet being filled
+
+    // pacing of the current replay
+    private long sentMessages;
+    private int burst;
+    private long startNanos;
+
+
+
+    /**
+     *   As fast as possible, 16 messages per packet
+     *
+     * @param target address of the FeedHandler
+     */
+    public LoopbackPublisher(InetSocketAddress target) throws IOException {
+        this(target, FeedHandler.DEFAULT_MAX_PACKET_SIZE, 16, 0, 1);
+    }
+
+
+    /**
+     * @param target address of the FeedHandler
+     * @param maxPacketSize largest packet in bytes, at most the one of the FeedHandler
+     * @param messagesPerPacket messages packed in one packet
+     * @param messagesPerSecond average rate, 0 for no pacing
+     * @param burstPackets packets sent back to back between two pauses
+     */
+    public LoopbackPublisher(InetSocketAddress target, int maxPacketSize, int messagesPerPacket, long messagesPerSecond, int burstPackets) throws IOException {
+
+        checkArgument(maxPacketSize > FeedHandler.HEADER_SIZE, "maxPacketSize must be bigger than the header");
+        checkArgument(messagesPerPacket > 0, "messagesPerPacket must be positive");
+        checkArgument(messagesPerSecond >= 0, "messagesPerSecond must not be negative");
+        checkArgument(burstPackets > 0, "burstPackets must be positive");
+        this.channel = DatagramChannel.open().connect(requireNonNull(target));
+        this.packet = ByteBuffer.allocateDirect(maxPacketSize);
+        this.messagesPerPacket = messagesPerPacket;
+        this.messagesPerSecond = messagesPerSecond;
+        this.burstPackets = burstPackets;
+    }
+
+
+
+    /**
+     *   Send every line of the file, empty lines skipped, in packets following the last sequence sent
+     *
+     * @param file capture file, under 2GB
+     * @return number of packets sent
+     * @throws IOException if the file cannot be mapped, or if a line does not fit in a packet
+     */
+    public long replay(Path file) throws IOException {
+
+        long firstSequence = sequence;
+        sentMessages = 0;
+        burst = 0;
+        startNanos = System.nanoTime();
+        packet.clear().position(FeedHandler.HEADER_SIZE);
+        packetMessages = 0;
+
+        try (FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+
+            checkArgument(fileChannel.size() <= Integer.MAX_VALUE, "%s is bigger than 2GB", file);
+            int size = (int) fileChannel.size();
+            MappedByteBuffer bytes = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            int lineStart = 0;
+            for (int i = 0; i <= size; i++) {
+                if (i == size || bytes.get(i) == '\n') {
+                    int end = i > lineStart && bytes.get(i - 1) == '\r' ? i - 1 : i;
+                    if (end > lineStart) {
+                        append(bytes, lineStart, end - lineStart);
+                    }
+                    lineStart = i + 1;
+                }
+            }
+        }
+        if (packetMessages > 0) {
+            flush();
+        }
+
+        log.info("replay of " + file + " completed : " + sentMessages + " messages in " + (sequence - firstSequence) + " packets");
+        return sequence - firstSequence;
+    }
+
+
+    /** add one message and its '\n' to the packet, sent first if it is full */
+    private void append(ByteBuffer bytes, int offset, int length) throws IOException {
+
+        if (packetMessages == messagesPerPacket || packet.remaining() < length + 1) {
+            flush();
+        }
+        if (packet.remaining() < length + 1) {
+            throw new IOException("message of " + length + " bytes does not fit in a packet of " + packet.capacity() + " bytes");
+        }
+        for (int i = 0; i < length; i++) {
+            packet.put(bytes.get(offset + i));
+        }
+        packet.put((byte) '\n');
+        packetMessages++;
+    }
+
+
+    private void flush() throws IOException {
+
+        packet.putLong(0, ++sequence).flip();
+        channel.write(packet);
+        sentMessages += packetMessages;
+        packet.clear().position(FeedHandler.HEADER_SIZE);
+        packetMessages = 0;
+
+        if (messagesPerSecond > 0 && ++burst == burstPackets) {
+            burst = 0;
+            pace();
+        }
+    }
+
+
+    /** wait until the messages sent so far are due at the configured rate */
+    private void pace() {
+
+        long dueNanos = startNanos + sentMessages * 1_000_000_000L / messagesPerSecond;
+        for (long remaining = dueNanos - System.nanoTime(); remaining > 0; remaining = dueNanos - System.nanoTime()) {
+            if (remaining > SPIN_THRESHOLD_NANOS) {
+                LockSupport.parkNanos(remaining - SPIN_THRESHOLD_NANOS);
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+
+
+    /**
+     *   Send one packet as is, out of any replay : to reorder, repeat or skip sequences
+     *
+     * @param packetSequence sequence of the packet
+     * @param messages newline-delimited messages, from position to limit (not changed)
+     */
+    public void send(long packetSequence, ByteBuffer messages) throws IOException {
+
+        checkArgument(messages.remaining() <= packet.capacity() - FeedHandler.HEADER_SIZE, "messages do not fit in a packet");
+        packet.clear();
+        packet.putLong(packetSequence).put(messages.duplicate()).flip();
+        channel.write(packet);
+        sequence = Math.max(sequence, packetSequence);
+    }
+
+
+    /**
+     * @return sequence of the last packet sent
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
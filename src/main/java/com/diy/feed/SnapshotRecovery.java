@@ -0,0 +1,100 @@
+package com.diy.feed;
+
+import com.diy.Side.Side;
+import com.diy.domain.Order;
+import com.diy.orderbookmanager.BookCodec;
+import com.diy.orderbookmanager.OrderBookList;
+import com.diy.orderbookmanager.UpdateResult;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Objects.requireNonNull;
+
+
+/**
+ *   FeedRecovery from a full snapshot : the books are reconciled with it rather than rebuilt, so they stay
+ *   readable during the recovery
+ *
+ *   <p>The snapshot is decoded into a scratch OrderBookList, then one batch of updates is applied to the live books :
+ *   a delete for each resting order the snapshot does not have, the snapshot quantity for the others. An order
+ *   present on both sides with the same quantity is a DUPLICATE, it keeps its place in its level.
+ *
+ *   <p>Recovery is rare, it allocates freely.
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@Slf4j
+public final class SnapshotRecovery implements FeedRecovery {
+
+    private final OrderBookList orderBookList;
+    private final SnapshotSource source;
+    private final ByteBuffer buffer;
+
+
+
+    /**
+     * @param orderBookList live books fed by the FeedHandler
+     * @param source gives the snapshot
+     * @param maxSnapshotSize bytes of the largest snapshot
+     */
+    public SnapshotRecovery(OrderBookList orderBookList, SnapshotSource source, int maxSnapshotSize) {
+
+        checkArgument(maxSnapshotSize > 0, "maxSnapshotSize must be positive");
+        checkState(!orderBookList.isMarketByOrder(), "the snapshot does not carry order ids : the books are market by order");
+        this.orderBookList = requireNonNull(orderBookList);
+        this.source = requireNonNull(source);
+        this.buffer = ByteBuffer.allocateDirect(maxSnapshotSize);
+    }
+
+
+
+    @Override
+    public long recover() throws IOException {
+
+        buffer.clear();
+        long sequence = source.snapshot(buffer);
+        buffer.flip();
+
+        OrderBookList snapshot = new OrderBookList();
+        BookCodec.decode(buffer, snapshot);
+        Set<Order> resting = new LinkedHashSet<>();   // in snapshot order ; Order.equals ignores the quantity
+        visit(snapshot, resting::add);
+
+        List<Order> updates = new ArrayList<>();
+        visit(orderBookList, order -> {
+            if (!resting.contains(order)) {
+                updates.add(order.withQuantity(0));
+            }
+        });
+        int deletes = updates.size();
+        updates.addAll(resting);
+
+        UpdateResult[] results = new UpdateResult[updates.size()];
+        orderBookList.updateOrders(updates, results);
+        log.info("books reconciled with the snapshot at sequence " + sequence + " : " + deletes + " orders deleted, " + resting.size() + " orders set");
+        return sequence;
+    }
+
+
+    /** copy of each resting order of every book : an OrderView is only valid during the visit */
+    private static void visit(OrderBookList orderBookList, Consumer<Order> action) {
+
+        orderBookList.forEachOrderBook(orderBook -> {
+            for (Side side : Side.values()) {
+                orderBook.forEachOrder(side, order -> action.accept(new Order(order.getInstrumentId(), side,
+                        order.getPriceTicks(), order.getQuantityTicks(), order.getTimestampMillis())));
+            }
+        });
+    }
+}
@@ -0,0 +1,23 @@
+package com.diy.feed;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+
+/**
+ *   Where a SnapshotRecovery gets the state of the books, e.g. the snapshot channel of the exchange
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@FunctionalInterface
+public interface SnapshotSource {
+
+    /**
+     * @param buffer receives every book in BookCodec format, from its position
+     * @return sequence of the last feed packet included in the snapshot
+     */
+    long snapshot(ByteBuffer buffer) throws IOException;
+
+}
@@ -0,0 +1,244 @@
+package com.diy.gateway;
+
+import com.diy.Side.Side;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+
+/**
+ *   Client of a MarketDataGateway : keeps an L2 view of each instrument it subscribed to, built from the snapshot
+ *   then the deltas it reads, for the services which need the books without embedding an OrderBookList
+ *
+ *   <p>poll() reads and applies what the gateway sent. The view of an instrument is the one of the last frame
+ *   applied ; after a resynchronisation (the client was too slow) the snapshot replaces it whole.
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@NotThreadSafe
+public final class GatewayClient implements Closeable {
+
+    private final SocketChannel channel;
+    private final Selector selector;
+    private final Map<String, View> views = new HashMap<>();
+    private ByteBuffer input = ByteBuffer.allocate(1 << 16);
+
+    private long snapshots;
+    private long deltas;
+
+
+
+    /**
+     * @param address of the gateway
+     */
+    public GatewayClient(InetSocketAddress address) throws IOException {
+        this(address, 0);
+    }
+
+
+    /**
+     * @param address of the gateway
+     * @param receiveBufferSize SO_RCVBUF, 0 for the system default
+     */
+    public GatewayClient(InetSocketAddress address, int receiveBufferSize) throws IOException {
+
+        checkArgument(receiveBufferSize >= 0, "receiveBufferSize must not be negative");
+        this.channel = SocketChannel.open();
+        if (receiveBufferSize > 0) {
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, receiveBufferSize);
+        }
+        channel.connect(requireNonNull(address));
+        channel.configureBlocking(false);
+        this.selector = Selector.open();
+        channel.register(selector, SelectionKey.OP_READ);
+    }
+
+
+
+    /**
+     *   Snapshot of the first levels of the instrument, then its deltas. A new depth replaces the previous one.
+     *
+     * @param instrument
+     * @param depth levels on each side, up to MarketDataGateway.MAX_DEPTH
+     */
+    public void subscribe(String instrument, int depth) throws IOException {
+
+        checkArgument(depth > 0 && depth <= MarketDataGateway.MAX_DEPTH, "depth must be between 1 and %s", MarketDataGateway.MAX_DEPTH);
+        send(GatewayProtocol.SUBSCRIBE + " " + instrument + " " + depth);
+        views.putIfAbsent(instrument, new View());
+    }
+
+
+    /**
+     * @param instrument its view is dropped
+     */
+    public void unsubscribe(String instrument) throws IOException {
+
+        send(GatewayProtocol.UNSUBSCRIBE + " " + instrument);
+        views.remove(instrument);
+    }
+
+
+    private void send(String command) throws IOException {
+
+        checkArgument(command.indexOf('\n') < 0, "bad command %s", command);
+        ByteBuffer bytes = ByteBuffer.wrap((command + "\n").getBytes(StandardCharsets.US_ASCII));
+        while (bytes.hasRemaining()) {
+            if (channel.write(bytes) == 0) {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+
+
+    /**
+     *   Apply every frame received so far, waiting for some if there is none
+     *
+     * @param timeoutMillis longest wait, 0 not to wait
+     * @return number of frames applied
+     * @throws IOException if the gateway closed the connection
+     */
+    public int poll(long timeoutMillis) throws IOException {
+
+        int applied = decode();
+        if (applied == 0 && timeoutMillis > 0) {
+            selector.select(timeoutMillis);
+            selector.selectedKeys().clear();
+        }
+        if (channel.read(input) < 0) {
+            throw new IOException("connection closed by the gateway");
+        }
+        return applied + decode();
+    }
+
+
+    /** apply the complete frames of the input buffer */
+    private int decode() {
+
+        input.flip();
+        int applied = 0;
+        while (input.remaining() >= 4 && input.remaining() >= 4 + input.getInt(input.position())) {
+            int end = input.position() + 4 + input.getInt();
+            byte type = input.get();
+            byte[] ascii = new byte[input.get() & 0xFF];
+            input.get(ascii);
+            long sequence = input.getLong();
+
+            View view = views.get(new String(ascii, StandardCharsets.US_ASCII));
+            if (view != null) {   // else unsubscribed, still in flight
+                view.sequence = sequence;
+                if (type == GatewayProtocol.SNAPSHOT) {
+                    for (Side side : Side.values()) {
+                        NavigableMap<Long, Long> levels = view.levels(side);
+                        levels.clear();
+                        for (int count = input.getShort(); count > 0; count--) {
+                            levels.put(input.getLong(), input.getLong());
+                        }
+                    }
+                    snapshots++;
+                } else {
+                    for (int count = input.getShort(); count > 0; count--) {
+                        NavigableMap<Long, Long> levels = view.levels(Side.values()[input.get()]);
+                        long price = input.getLong();
+                        long quantity = input.getLong();
+                        if (quantity == 0) {
+                            levels.remove(price);
+                        } else {
+                            levels.put(price, quantity);
+                        }
+                    }
+                    deltas++;
+                }
+            }
+            input.position(end);
+            applied++;
+        }
+        input.compact();
+
+        if (input.position() >= 4 && 4 + input.getInt(0) > input.capacity()) {
+            ByteBuffer bigger = ByteBuffer.allocate(4 + input.getInt(0));
+            input.flip();
+            input = bigger.put(input);
+        }
+        return applied;
+    }
+
+
+
+    /**
+     * @param instrument
+     * @param side
+     * @return price to quantity of the levels in view, best first, empty if not subscribed
+     */
+    public NavigableMap<Long, Long> getLevels(String instrument, Side side) {
+        View view = views.get(instrument);
+        return view == null ? Collections.emptyNavigableMap() : Collections.unmodifiableNavigableMap(view.levels(side));
+    }
+
+    /**
+     * @param instrument
+     * @return book sequence of the last frame applied, -1 before the snapshot
+     */
+    public long getSequence(String instrument) {
+        View view = views.get(instrument);
+        return view == null ? -1 : view.sequence;
+    }
+
+    public long getSnapshots() {
+        return snapshots;
+    }
+
+    public long getDeltas() {
+        return deltas;
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        selector.close();
+        channel.close();
+    }
+
+
+    @Override
+    public String toString() {
+        return "GatewayClient{" +
+                "instruments=" + views.keySet() +
+                ", snapshots=" + snapshots +
+                ", deltas=" + deltas +
+                '}';
+    }
+
+
+
+    private static final class View {
+
+        final NavigableMap<Long, Long> bids = new TreeMap<>(Comparator.reverseOrder());
+        final NavigableMap<Long, Long> asks = new TreeMap<>();
+        long sequence = -1;
+
+        NavigableMap<Long, Long> levels(Side side) {
+            return side == Side.BUY ? bids : asks;
+        }
+    }
+}
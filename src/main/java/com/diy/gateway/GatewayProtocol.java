@@ -0,0 +1,57 @@
+package com.diy.gateway;
+
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ *   Wire format of the MarketDataGateway, shared with the GatewayClient
+ *
+ *   <p>Client to gateway, one ASCII command per line : "SUB &lt;instrument&gt; &lt;depth&gt;" (a new depth replaces
+ *   the previous subscription of the instrument) and "UNSUB &lt;instrument&gt;".
+ *
+ *   <p>Gateway to client, binary frames, big endian :
+ *   <pre>
+ *   int   length of the frame after this field
+ *   byte  SNAPSHOT or DELTA
+ *   byte  length of the instrument, then the instrument in ASCII
+ *   long  book sequence of the image
+ *   SNAPSHOT : for BUY then SELL, short levels, then price and quantity (long, long) of each level, best first
+ *   DELTA    : short changes, then side (byte, Side ordinal), price and quantity (long, long) of each change ;
+ *              a quantity of 0 means the level left the view of the client
+ *   </pre>
+ *   Prices and quantities are in ticks of 0.01 (see FixedPoint).
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+final class GatewayProtocol {
+
+    static final byte SNAPSHOT = 1;
+    static final byte DELTA = 2;
+
+    static final String SUBSCRIBE = "SUB";
+    static final String UNSUBSCRIBE = "UNSUB";
+
+    static final int MAX_INSTRUMENT_LENGTH = 255;
+
+    static final int LEVEL_SIZE = 16;      // price, quantity
+    static final int CHANGE_SIZE = 17;     // side, price, quantity
+
+
+
+    private GatewayProtocol() {
+    }
+
+
+
+    /** bytes of a frame before its levels or changes, length field included */
+    static int headerSize(byte[] instrument) {
+        return 4 + 1 + 1 + instrument.length + 8;
+    }
+
+
+    static byte[] ascii(String instrument) {
+        return instrument.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,733 @@
+package com.diy.gateway;
+
+import com.diy.Side.Side;
+import com.diy.orderbookmanager.BookSnapshot;
+import com.diy.orderbookmanager.DepthEvent;
+import com.diy.orderbookmanager.DepthListener;
+import com.diy.orderbookmanager.OrderBookList;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+
+/**
+ *   TCP market-data gateway : serves the books of an OrderBookList to remote subscribers, an L2 snapshot of the
+ *   depth they asked for, then the deltas (see GatewayProtocol for the wire format)
+ *
+ *   <p>One selector thread does all the work, the book writers only flag the instrument as dirty (DepthListener :
+ *   one CAS, and a selector wakeup when the instrument was clean). The gateway thread then takes one BookSnapshot
+ *   of the instrument, diffs it with the image of each subscribed depth, and encodes each delta frame once, into
+ *   a direct buffer shared by every client of that depth : the same bytes go to every socket, nothing is copied
+ *   per client. Several book updates between two passes are coalesced into one delta.
+ *
+ *   <p>Each client has its own bounded queue of frames, written with gathering writes. A client which cannot keep
+ *   up (the queue would go beyond maxQueuedBytes) has its queued frames dropped and its subscriptions marked
+ *   stale : it gets no more delta until its socket drains, then one fresh snapshot of each subscription. A slow
+ *   reader therefore costs a bounded amount of memory and never holds up the book writers or the other clients.
+ *   A client which sends a bad command is disconnected.
+ *
+ *   <p>Java 11 has no virtual threads, hence the selector rather than a thread per connection : one thread serves
+ *   thousands of local subscribers.
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@Slf4j
+@ThreadSafe
+public final class MarketDataGateway implements DepthListener, Closeable {
+
+    /** bytes queued for one client before it is resynchronised */
+    public static final int DEFAULT_MAX_QUEUED_BYTES = 1 << 20;
+
+    /** deepest subscription */
+    public static final int MAX_DEPTH = 100;
+
+    private static final int MAX_COMMAND_LENGTH = 256;
+    private static final int MAX_GATHER = 64;              // frames per gathering write
+    private static final int CHUNK_SIZE = 1 << 20;         // direct memory the frames are cut from
+    private static final long SELECT_TIMEOUT_MILLIS = 100;
+
+
+    private final OrderBookList orderBookList;
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final int maxQueuedBytes;
+    private final int sendBufferSize;
+    private final Thread thread;
+
+    private final Map<String, Instrument> instruments = new ConcurrentHashMap<>();  // subscribed, read by the book writers
+    private final Queue<Instrument> dirty = new ConcurrentLinkedQueue<>();
+
+    // gateway thread only
+    private final List<Client> pending = new ArrayList<>();       // clients given frames during the current pass
+    private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+    private final byte[] changeSides = new byte[4 * MAX_DEPTH];
+    private final long[] changePrices = new long[4 * MAX_DEPTH];
+    private final long[] changeQuantities = new long[4 * MAX_DEPTH];
+    private int changes;
+    private ByteBuffer chunk = ByteBuffer.allocateDirect(CHUNK_SIZE);
+
+    private volatile boolean running = true;
+    private volatile int clients;
+    private volatile long frames;
+    private volatile long resyncs;
+    private volatile long disconnects;
+
+
+
+    /**
+     * @param orderBookList books served
+     * @param address to listen on, port 0 for any free port
+     */
+    public MarketDataGateway(OrderBookList orderBookList, InetSocketAddress address) throws IOException {
+        this(orderBookList, address, DEFAULT_MAX_QUEUED_BYTES, 0);
+    }
+
+
+    /**
+     * @param orderBookList books served
+     * @param address to listen on, port 0 for any free port
+     * @param maxQueuedBytes frames queued for one client before it is resynchronised
+     * @param sendBufferSize SO_SNDBUF of the client sockets, 0 for the system default : a small one brings the
+     *                       resynchronisation of a slow reader sooner
+     */
+    public MarketDataGateway(OrderBookList orderBookList, InetSocketAddress address, int maxQueuedBytes, int sendBufferSize) throws IOException {
+
+        checkArgument(maxQueuedBytes > 0, "maxQueuedBytes must be positive");
+        checkArgument(sendBufferSize >= 0, "sendBufferSize must not be negative");
+        this.orderBookList = requireNonNull(orderBookList);
+        this.maxQueuedBytes = maxQueuedBytes;
+        this.sendBufferSize = sendBufferSize;
+
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        server.bind(requireNonNull(address));
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+
+        orderBookList.addDepthListener(this);
+        this.thread = new Thread(this::run, "market-data-gateway");
+        thread.setDaemon(true);
+        thread.start();
+        log.info("market data gateway listening on " + server.getLocalAddress());
+    }
+
+
+
+    /** on the book writer thread : the instrument is published on the next pass of the gateway thread */
+    @Override
+    public void onDepthEvent(DepthEvent event) {
+
+        Instrument instrument = instruments.get(event.getInstrument());
+        if (instrument != null && instrument.dirty.compareAndSet(false, true)) {
+            dirty.offer(instrument);
+            selector.wakeup();
+        }
+    }
+
+
+
+    private void run() {
+
+        try {
+            while (running) {
+                selector.select(this::handle, SELECT_TIMEOUT_MILLIS);
+                for (Instrument instrument = dirty.poll(); instrument != null; instrument = dirty.poll()) {
+                    if (instrument.dirty.compareAndSet(true, false) && !instrument.groups.isEmpty()) {
+                        publish(instrument);
+                    }
+                }
+                flushPending();
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("market data gateway stopped", e);
+        } finally {
+            orderBookList.removeDepthListener(this);
+            for (SelectionKey key : selector.keys()) {
+                closeQuietly(key.channel());
+            }
+            closeQuietly(selector);
+        }
+    }
+
+
+    private void handle(SelectionKey key) {
+
+        Client client = (Client) key.attachment();
+        try {
+            if (key.isAcceptable()) {
+                accept();
+                return;
+            }
+            if (key.isReadable()) {
+                read(client);
+            }
+            if (key.isValid() && key.isWritable()) {
+                flush(client);
+            }
+        } catch (IOException | CancelledKeyException e) {
+            disconnect(client, e);
+        }
+    }
+
+
+    private void accept() throws IOException {
+
+        for (SocketChannel channel = server.accept(); channel != null; channel = server.accept()) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            if (sendBufferSize > 0) {
+                channel.setOption(StandardSocketOptions.SO_SNDBUF, sendBufferSize);
+            }
+            Client client = new Client(channel);
+            client.key = channel.register(selector, SelectionKey.OP_READ, client);
+            clients++;
+            log.debug("client {} connected", channel.getRemoteAddress());
+        }
+    }
+
+
+    private void disconnect(Client client, Exception cause) {
+
+        if (client == null || !client.channel.isOpen()) {
+            return;
+        }
+        log.debug("client {} disconnected : {}", client, cause.toString());
+        for (String instrument : new ArrayList<>(client.subscriptions.keySet())) {
+            unsubscribe(client, instrument);
+        }
+        clients--;
+        disconnects++;
+        client.key.cancel();
+        closeQuietly(client.channel);
+        client.clear();
+    }
+
+
+
+    //////////////////////////////////////////////////// commands
+
+
+
+    private void read(Client client) throws IOException {
+
+        ByteBuffer input = client.input;
+        if (client.channel.read(input) < 0) {
+            throw new IOException("end of stream");
+        }
+
+        int start = 0;
+        for (int i = 0; i < input.position(); i++) {
+            if (input.get(i) == '\n') {
+                command(client, new String(input.array(), start, i - start, StandardCharsets.US_ASCII).trim());
+                start = i + 1;
+            }
+        }
+        input.flip().position(start);
+        input.compact();
+        if (!input.hasRemaining()) {
+            throw new IOException("command longer than " + MAX_COMMAND_LENGTH + " bytes");
+        }
+    }
+
+
+    private void command(Client client, String line) throws IOException {
+
+        String[] words = line.split(" +");
+        try {
+            if (words.length == 3 && words[0].equals(GatewayProtocol.SUBSCRIBE)) {
+                int depth = Integer.parseInt(words[2]);
+                if (depth > 0 && depth <= MAX_DEPTH && words[1].length() <= GatewayProtocol.MAX_INSTRUMENT_LENGTH) {
+                    subscribe(client, words[1], depth);
+                    return;
+                }
+            } else if (words.length == 2 && words[0].equals(GatewayProtocol.UNSUBSCRIBE)) {
+                unsubscribe(client, words[1]);
+                return;
+            } else if (line.isEmpty()) {
+                return;
+            }
+        } catch (NumberFormatException e) {
+            // bad command below
+        }
+        throw new IOException("bad command : " + line);
+    }
+
+
+    private void subscribe(Client client, String name, int depth) {
+
+        unsubscribe(client, name);
+        Instrument instrument = instruments.computeIfAbsent(name, Instrument::new);  // flagged by the writers from now on
+        Group group = instrument.group(depth);
+        publish(instrument);   // takes the image of a new group, brings the others up to date : not for this client yet
+
+        group.clients.add(client);
+        client.subscriptions.put(name, group);
+        enqueue(client, group.snapshot().duplicate(), group);   // its first frame, the deltas follow
+    }
+
+
+    private void unsubscribe(Client client, String name) {
+
+        Group group = client.subscriptions.remove(name);
+        if (group == null) {
+            return;
+        }
+        client.stale.remove(group);
+        group.clients.remove(client);
+        if (group.clients.isEmpty()) {
+            Instrument instrument = group.instrument;
+            instrument.groups.remove(group);
+            if (instrument.groups.isEmpty()) {
+                instruments.remove(name);
+            }
+        }
+    }
+
+
+
+    //////////////////////////////////////////////////// publication
+
+
+
+    /** one snapshot of the book, then one delta frame per depth group, shared by its clients */
+    private void publish(Instrument instrument) {
+
+        BookSnapshot snapshot = instrument.snapshot;
+        orderBookList.snapshot(instrument.name, snapshot);
+        for (Group group : instrument.groups) {
+            ByteBuffer delta = update(group, snapshot);
+            if (delta != null) {
+                for (Client client : group.clients) {
+                    enqueue(client, delta, group);
+                }
+            }
+        }
+    }
+
+
+    /**
+     *   Bring the image of the group to the snapshot, by a merge of the levels of each side (both sorted best first)
+     *
+     * @return the delta frame of the changes within the depth of the group, null if there is none
+     */
+    private ByteBuffer update(Group group, BookSnapshot snapshot) {
+
+        changes = 0;
+        for (Side side : Side.values()) {
+
+            long[] prices = group.prices[side.ordinal()];
+            long[] quantities = group.quantities[side.ordinal()];
+            int oldDepth = group.depths[side.ordinal()];
+            int newDepth = Math.min(group.depth, snapshot.getDepth(side));
+
+            int i = 0;
+            int j = 0;
+            while (i < oldDepth || j < newDepth) {
+                long price = j < newDepth ? snapshot.getPrice(side, j) : 0;
+                if (j == newDepth || (i < oldDepth && ahead(side, prices[i], price))) {
+                    change(side, prices[i++], 0);       // gone, or pushed out of the view
+                } else if (i == oldDepth || ahead(side, price, prices[i])) {
+                    change(side, price, snapshot.getQuantity(side, j++));
+                } else {
+                    if (quantities[i] != snapshot.getQuantity(side, j)) {
+                        change(side, price, snapshot.getQuantity(side, j));
+                    }
+                    i++;
+                    j++;
+                }
+            }
+
+            for (int level = 0; level < newDepth; level++) {
+                prices[level] = snapshot.getPrice(side, level);
+                quantities[level] = snapshot.getQuantity(side, level);
+            }
+            group.depths[side.ordinal()] = newDepth;
+        }
+        group.sequence = snapshot.getSequence();
+
+        if (!group.published) {
+            group.published = true;  // new group : its clients start from a snapshot
+            return null;
+        }
+        if (changes == 0) {
+            return null;
+        }
+        group.snapshot = null;
+
+        ByteBuffer frame = frame(group.instrument, GatewayProtocol.DELTA, group.sequence, 2 + changes * GatewayProtocol.CHANGE_SIZE);
+        frame.putShort((short) changes);
+        for (int c = 0; c < changes; c++) {
+            frame.put(changeSides[c]).putLong(changePrices[c]).putLong(changeQuantities[c]);
+        }
+        return frame.flip();
+    }
+
+
+    private static boolean ahead(Side side, long price, long other) {
+        return side == Side.BUY ? price > other : price < other;
+    }
+
+
+    private void change(Side side, long price, long quantity) {
+        changeSides[changes] = (byte) side.ordinal();
+        changePrices[changes] = price;
+        changeQuantities[changes] = quantity;
+        changes++;
+    }
+
+
+    /** a frame with its header, ready for a body of bodySize bytes, cut from the current chunk of direct memory */
+    private ByteBuffer frame(Instrument instrument, byte type, long sequence, int bodySize) {
+
+        int size = GatewayProtocol.headerSize(instrument.ascii) + bodySize;
+        if (chunk.remaining() < size) {
+            chunk = ByteBuffer.allocateDirect(Math.max(CHUNK_SIZE, size));  // the old one is freed with its last frame
+        }
+        ByteBuffer frame = chunk.slice().limit(size);
+        chunk.position(chunk.position() + size);
+        frames++;
+
+        return frame.putInt(size - 4).put(type).put((byte) instrument.ascii.length).put(instrument.ascii).putLong(sequence);
+    }
+
+
+
+    //////////////////////////////////////////////////// client queues
+
+
+
+    /**
+     *   Queue a frame for a client, or drop everything it has queued if that would be too much. Frames are
+     *   queued as they are : only the gateway thread touches their position, during a write.
+     */
+    private void enqueue(Client client, ByteBuffer frame, Group group) {
+
+        if (client.stale.contains(group)) {
+            return;  // a snapshot follows once the client has drained
+        }
+        if (client.queuedBytes + frame.limit() > maxQueuedBytes) {
+            overflow(client);
+            return;
+        }
+        client.add(frame);
+        if (!client.pending) {
+            client.pending = true;
+            pending.add(client);
+        }
+    }
+
+
+    private void overflow(Client client) {
+
+        client.dropAllButHead();
+        client.stale.addAll(client.subscriptions.values());
+        resyncs++;
+        if (client.key.isValid()) {
+            client.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);  // resync once writable
+        }
+        log.debug("client {} too slow, {} subscriptions to resynchronise", client, client.stale.size());
+    }
+
+
+    private void flushPending() {
+
+        for (Client client : pending) {
+            client.pending = false;
+            try {
+                flush(client);
+            } catch (IOException | CancelledKeyException e) {
+                disconnect(client, e);
+            }
+        }
+        pending.clear();
+    }
+
+
+    /** write what the socket takes, then the snapshots of the stale subscriptions once the queue is empty */
+    private void flush(Client client) throws IOException {
+
+        if (!client.channel.isOpen()) {
+            return;
+        }
+        while (true) {
+            if (client.size == 0) {
+                if (client.stale.isEmpty()) {
+                    client.key.interestOps(SelectionKey.OP_READ);
+                    return;
+                }
+                for (Group group : client.stale) {
+                    client.add(group.snapshot().duplicate());
+                }
+                client.stale.clear();
+            }
+
+            int count = Math.min(client.size, MAX_GATHER);
+            long bytes = -client.headOffset;
+            for (int i = 0; i < count; i++) {
+                gather[i] = client.get(i);
+                bytes += gather[i].limit();
+            }
+            gather[0].position(client.headOffset);
+            long written;
+            try {
+                written = client.channel.write(gather, 0, count);
+            } finally {
+                for (int i = 0; i < count; i++) {
+                    gather[i].position(0);   // shared with the other clients
+                    gather[i] = null;
+                }
+            }
+            client.consume(written);
+
+            if (written < bytes) {
+                client.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);  // the socket is full
+                return;
+            }
+        }
+    }
+
+
+
+    //////////////////////////////////////////////////// state
+
+
+
+    /** subscribed instrument : its depth groups, and the flag set by the book writers */
+    private final class Instrument {
+
+        final String name;
+        final byte[] ascii;
+        final AtomicBoolean dirty = new AtomicBoolean();
+        final List<Group> groups = new ArrayList<>();   // gateway thread only
+        BookSnapshot snapshot = new BookSnapshot(1);    // as deep as the deepest group
+
+        Instrument(String name) {
+            this.name = name;
+            this.ascii = GatewayProtocol.ascii(name);
+        }
+
+        Group group(int depth) {
+            for (Group group : groups) {
+                if (group.depth == depth) {
+                    return group;
+                }
+            }
+            if (depth > snapshot.getMaxDepth()) {
+                snapshot = new BookSnapshot(depth);
+            }
+            Group group = new Group(this, depth);
+            groups.add(group);
+            return group;
+        }
+    }
+
+
+    /** the clients of one instrument at one depth, and the image they were last sent */
+    private final class Group {
+
+        final Instrument instrument;
+        final int depth;
+        final List<Client> clients = new ArrayList<>();
+        final long[][] prices;
+        final long[][] quantities;
+        final int[] depths = new int[2];
+        long sequence;
+        boolean published;
+        ByteBuffer snapshot;   // frame of the image, until it changes
+
+        Group(Instrument instrument, int depth) {
+            this.instrument = instrument;
+            this.depth = depth;
+            this.prices = new long[2][depth];
+            this.quantities = new long[2][depth];
+        }
+
+        ByteBuffer snapshot() {
+
+            if (snapshot == null) {
+                int levels = depths[0] + depths[1];
+                ByteBuffer frame = frame(instrument, GatewayProtocol.SNAPSHOT, sequence, 4 + levels * GatewayProtocol.LEVEL_SIZE);
+                for (Side side : Side.values()) {
+                    frame.putShort((short) depths[side.ordinal()]);
+                    for (int level = 0; level < depths[side.ordinal()]; level++) {
+                        frame.putLong(prices[side.ordinal()][level]).putLong(quantities[side.ordinal()][level]);
+                    }
+                }
+                snapshot = frame.flip();
+            }
+            return snapshot;
+        }
+    }
+
+
+    /** one connection : its commands, its subscriptions and its queue of frames (a ring, first one maybe half written) */
+    private static final class Client {
+
+        final SocketChannel channel;
+        final ByteBuffer input = ByteBuffer.allocate(MAX_COMMAND_LENGTH);
+        final Map<String, Group> subscriptions = new HashMap<>();
+        final Set<Group> stale = new HashSet<>();   // waiting for a snapshot
+        SelectionKey key;
+        boolean pending;
+
+        ByteBuffer[] queue = new ByteBuffer[16];
+        int head;
+        int size;
+        int headOffset;   // bytes of the first frame already written
+        int queuedBytes;
+
+        Client(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        ByteBuffer get(int index) {
+            return queue[(head + index) & (queue.length - 1)];
+        }
+
+        void add(ByteBuffer frame) {
+            if (size == queue.length) {
+                ByteBuffer[] bigger = new ByteBuffer[queue.length * 2];
+                for (int i = 0; i < size; i++) {
+                    bigger[i] = get(i);
+                }
+                queue = bigger;
+                head = 0;
+            }
+            queue[(head + size++) & (queue.length - 1)] = frame;
+            queuedBytes += frame.limit();
+        }
+
+        void consume(long written) {
+            queuedBytes -= written;
+            long left = written + headOffset;
+            while (size > 0 && left >= queue[head].limit()) {
+                left -= queue[head].limit();
+                queue[head] = null;
+                head = (head + 1) & (queue.length - 1);
+                size--;
+            }
+            headOffset = (int) left;
+        }
+
+        void dropAllButHead() {
+            int keep = headOffset > 0 ? 1 : 0;   // the stream must stay framed
+            for (int i = keep; i < size; i++) {
+                queue[(head + i) & (queue.length - 1)] = null;
+            }
+            size = keep;
+            queuedBytes = keep == 1 ? queue[head].limit() - headOffset : 0;
+            headOffset = keep == 1 ? headOffset : 0;
+        }
+
+        void clear() {
+            Arrays.fill(queue, null);
+            size = 0;
+            queuedBytes = 0;
+            stale.clear();
+        }
+
+        @Override
+        public String toString() {
+            try {
+                SocketAddress address = channel.getRemoteAddress();
+                return String.valueOf(address);
+            } catch (IOException e) {
+                return "closed";
+            }
+        }
+    }
+
+
+
+    //////////////////////////////////////////////////// lifecycle
+
+
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            log.debug("close failed", e);
+        }
+    }
+
+
+    /**
+     * @return address the gateway listens on
+     */
+    public InetSocketAddress getLocalAddress() throws IOException {
+        return (InetSocketAddress) server.getLocalAddress();
+    }
+
+    public int getClients() {
+        return clients;
+    }
+
+    /** frames encoded, snapshots and deltas, each one shared by the clients it went to */
+    public long getFrames() {
+        return frames;
+    }
+
+    /** times a client was too slow and had its queue dropped */
+    public long getResyncs() {
+        return resyncs;
+    }
+
+    public long getDisconnects() {
+        return disconnects;
+    }
+
+
+    /** stop the gateway thread, close every connection and unregister from the books */
+    @Override
+    public void close() throws IOException {
+
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    @Override
+    public String toString() {
+        return "MarketDataGateway{" +
+                "clients=" + clients +
+                ", instruments=" + instruments.size() +
+                ", frames=" + frames +
+                ", resyncs=" + resyncs +
+                ", disconnects=" + disconnects +
+                '}';
+    }
+}
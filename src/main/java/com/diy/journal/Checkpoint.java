@@ -0,0 +1,135 @@
+package com.diy.journal;
+
+import com.diy.orderbookmanager.BookCodec;
+import com.diy.orderbookmanager.OrderBookList;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static com.google.common.base.Preconditions.checkState;
+
+
+/**
+ *   Binary image of every resting order of an OrderBookList, tagged with the sequence of the Journal it starts from
+ *
+ *   <p>The sequence is read before the books are copied, and each book is copied under its write lock. An update
+ *   journaled before that sequence is in the image ; one journaled after may be in it too, and replaying it again
+ *   gives the same book because each record holds the absolute quantity of its order. So a recovery loads the
+ *   latest checkpoint and replays the journal from its sequence only.
+ *
+ *   <p>File checkpoint-&lt;sequence&gt;.bin, written to a temporary file then renamed :
+ *   <pre>
+ *   int magic, short version, long sequence
+ *   the books, see BookCodec
+ *   </pre>
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@Slf4j
+public final class Checkpoint {
+
+    private static final int MAGIC = 0x4F42434B;  // OBCK
+    private static final short VERSION = 2;       // 2 : books in BookCodec format
+    private static final int HEADER_SIZE = 4 + 2 + 8;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final String PREFIX = "checkpoint-";
+    private static final String SUFFIX = ".bin";
+
+
+    private Checkpoint() {
+    }
+
+
+
+    /**
+     *   Write the image of the books in the directory of the journal
+     *
+     * @param orderBookList books to copy, journaled by journal
+     * @param journal gives the sequence the checkpoint starts from
+     * @return the checkpoint file
+     */
+    public static Path write(OrderBookList orderBookList, Journal journal) throws IOException {
+
+        checkState(!orderBookList.isMarketByOrder(), "a checkpoint does not carry order ids : the books are market by order");
+        long sequence = journal.getSequence();  // before the copy
+        Path file = journal.getDirectory().resolve(String.format("%s%020d%s", PREFIX, sequence, SUFFIX));
+        Path temporary = journal.getDirectory().resolve(file.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buffer.putInt(MAGIC).putShort(VERSION).putLong(sequence).flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            BookCodec.encode(orderBookList, channel, buffer);
+            channel.force(false);
+        }
+
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        log.info("checkpoint " + file + " written");
+        return file;
+    }
+
+
+
+    /**
+     *   Apply a checkpoint to empty books
+     *
+     * @param file checkpoint
+     * @param orderBookList receives the orders
+     * @return the journal sequence to replay from
+     */
+    public static long load(Path file, OrderBookList orderBookList) throws IOException {
+
+        checkState(!orderBookList.isMarketByOrder(), "a checkpoint does not carry order ids : the books are market by order");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buffer.limit(HEADER_SIZE);   // the header only, BookCodec reads the books from there
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+            checkState(buffer.remaining() == HEADER_SIZE && buffer.getInt() == MAGIC, "%s is not a checkpoint", file);
+            short version = buffer.getShort();
+            checkState(version == VERSION, "checkpoint version %s is not supported", version);
+            long sequence = buffer.getLong();
+
+            BookCodec.decode(channel, buffer, orderBookList);
+            return sequence;
+        }
+    }
+
+
+
+    /**
+     * @param directory of the journal
+     * @return the checkpoint with the highest sequence
+     */
+    public static Optional<Path> latest(Path directory) throws IOException {
+
+        if (!Files.isDirectory(directory)) {
+            return Optional.empty();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> {
+                String name = file.getFileName().toString();
+                return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+            }).max(Path::compareTo);  // the names have a fixed width
+        }
+    }
+}
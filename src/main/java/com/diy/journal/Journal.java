@@ -0,0 +1,381 @@
+package com.diy.journal;
+
+import com.diy.Side.Side;
+import com.diy.domain.InstrumentRegistry;
+import com.diy.orderbookmanager.UpdateListener;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Objects.requireNonNull;
+
+
+/**
+ *   Write-ahead journal of the order changes : fixed-size binary records appended to memory-mapped segment files
+ *
+ *   <p>Registered as an UpdateListener on an OrderBookList, it receives each change under the write lock of its
+ *   book, so the records of a book are in the order the book applied them. A record is 32 bytes, little endian :
+ *   <pre>
+ *   0  price        long, ticks       | INSTRUMENT : ASCII symbol, its first 24 bytes
+ *   8  quantity     long, ticks       |
+ *   16 timestamp    long, millis      |
+ *   24 instrument   int, id in the InstrumentRegistry of the writer
+ *   28 header       int : type (byte 0), side or symbol length (byte 1)
+ *   </pre>
+ *   The header is stored last with a release store : a record whose header is still 0 was not completely written
+ *   and ends the journal. The ids only mean something in the process which wrote them, so each segment declares
+ *   the symbol of an id (INSTRUMENT record) before its first UPDATE, and a segment can be read on its own. A symbol
+ *   longer than 24 bytes goes on in the first 24 bytes of the next record (SYMBOL), written before the header of
+ *   its INSTRUMENT.
+ *
+ *   <p>The segments are named after the sequence of their first UPDATE (journal-&lt;sequence&gt;.log), a new one is
+ *   mapped when the current one is full and on each open. Records reach the page cache as they are appended and
+ *   survive a crash of the process ; flush() forces them to the disk.
+ *
+ *   <p>A change which cannot be appended (segment not mapped, symbol too long) fails the journal : it is logged,
+ *   never thrown to the book which calls onUpdate inside its write section, and the journal takes no record after
+ *   it, so it ends at the last record before the failure and a recovery never replays across a missing one. The
+ *   writer finds it with getFailure(), and flush() throws it.
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@Slf4j
+@ThreadSafe
+public final class Journal implements UpdateListener, Closeable {
+
+    /** records per segment : 32 MB */
+    public static final int DEFAULT_SEGMENT_RECORDS = 1 << 20;
+
+    static final int RECORD_SIZE = 32;
+
+    private static final int PRICE = 0;
+    private static final int QUANTITY = 8;
+    private static final int TIMESTAMP = 16;
+    private static final int INSTRUMENT = 24;
+    private static final int HEADER = 28;
+    private static final int SYMBOL_RECORDS = 2;   // INSTRUMENT and SYMBOL
+    private static final int MAX_SYMBOL_LENGTH = SYMBOL_RECORDS * INSTRUMENT;  // 48, the parser takes up to 32
+
+    private static final byte TYPE_UPDATE = 1;
+    private static final byte TYPE_INSTRUMENT = 2;
+    private static final byte TYPE_SYMBOL = 3;
+    private static final byte BUY = 1;
+    private static final byte SELL = 2;
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+
+    private final Path directory;
+    private final int segmentRecords;
+
+    private MappedByteBuffer segment;
+    private int position;                    // next record of the segment
+    private boolean[] declared = new boolean[64]; // ids with an INSTRUMENT record in the segment
+    private volatile long sequence;          // UPDATE records appended since the journal was created
+    private boolean closed;
+    private volatile RuntimeException failure; // of an append : the journal takes no record after it
+
+
+
+    /**
+     *   Open a journal for append : the UPDATEs already there are counted, the next one goes to a new segment
+     *
+     * @param directory of the segments, created if needed
+     * @param segmentRecords records per segment file
+     */
+    public Journal(Path directory, int segmentRecords) throws IOException {
+
+        checkArgument(segmentRecords > SYMBOL_RECORDS, "a segment holds at least %s records", SYMBOL_RECORDS + 1);
+        this.directory = Files.createDirectories(requireNonNull(directory));
+        this.segmentRecords = segmentRecords;
+        this.sequence = replay(directory, Long.MAX_VALUE, (instrumentId, side, price, quantity, timestamp) -> { });
+        roll();
+    }
+
+
+    public Journal(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_RECORDS);
+    }
+
+
+
+    /**
+     *   Append one change : a few stores into the mapped segment, nothing is allocated
+     *
+     *   <p>Never throws : a change which cannot be appended fails the journal (see getFailure()).
+     */
+    @Override
+    public synchronized void onUpdate(int instrumentId, Side side, long price, long quantity, long timestamp) {
+
+        if (failure != null) {
+            return;  // already logged, the journal ends before the first lost change
+        }
+        try {
+            checkState(!closed, "journal is closed");
+            if (position + SYMBOL_RECORDS + 1 > segmentRecords) {
+                roll();  // room for an INSTRUMENT, its SYMBOL and its UPDATE
+            }
+            if (instrumentId >= declared.length || !declared[instrumentId]) {
+                declare(instrumentId);
+            }
+        } catch (RuntimeException e) {
+            failure = e;
+            log.error("journal " + directory + " failed at sequence " + sequence + ", the later changes are not journaled", e);
+            return;
+        }
+
+        int offset = position++ * RECORD_SIZE;
+        segment.putLong(offset + PRICE, price);
+        segment.putLong(offset + QUANTITY, quantity);
+        segment.putLong(offset + TIMESTAMP, timestamp);
+        segment.putInt(offset + INSTRUMENT, instrumentId);
+        INT.setRelease(segment, offset + HEADER, header(TYPE_UPDATE, side == Side.BUY ? BUY : SELL));
+        sequence++;
+    }
+
+
+
+    private void declare(int instrumentId) {
+
+        byte[] symbol = InstrumentRegistry.getInstance().getSymbol(instrumentId).getBytes(StandardCharsets.US_ASCII);
+        checkArgument(symbol.length <= MAX_SYMBOL_LENGTH, "instrument longer than %s characters", MAX_SYMBOL_LENGTH);
+
+        int offset = position * RECORD_SIZE;
+        int records = symbol.length > INSTRUMENT ? SYMBOL_RECORDS : 1;
+        for (int i = 0; i < records * INSTRUMENT; i++) {
+            segment.put(offset + i / INSTRUMENT * RECORD_SIZE + i % INSTRUMENT, i < symbol.length ? symbol[i] : 0);
+        }
+        if (records > 1) {
+            segment.putInt(offset + RECORD_SIZE + HEADER, header(TYPE_SYMBOL, (byte) 0));
+        }
+        segment.putInt(offset + INSTRUMENT, instrumentId);
+        INT.setRelease(segment, offset + HEADER, header(TYPE_INSTRUMENT, (byte) symbol.length));
+        position += records;
+
+        if (instrumentId >= declared.length) {
+            declared = Arrays.copyOf(declared, Math.max(instrumentId + 1, declared.length * 2));
+        }
+        declared[instrumentId] = true;
+    }
+
+
+
+    /** map a new segment starting at the current sequence */
+    private void roll() {
+
+        Path file = directory.resolve(segmentName(sequence));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {  // an existing one has no UPDATE : it starts at sequence
+            MappedByteBuffer next = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) segmentRecords * RECORD_SIZE);
+            next.order(ByteOrder.LITTLE_ENDIAN);
+            if (segment != null) {
+                segment.force();
+            }
+            segment = next;
+        } catch (IOException e) {
+            throw new UncheckedIOException("cannot create journal segment " + file, e);
+        }
+        position = 0;
+        Arrays.fill(declared, false);
+        log.info("journal segment " + file + " opened at sequence " + sequence);
+    }
+
+
+
+    /**
+     * @return number of UPDATE records in the journal : the sequence of the next one
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+
+    /**
+     * @return the error of the first change which could not be appended, null while the journal takes every change
+     */
+    public RuntimeException getFailure() {
+        return failure;
+    }
+
+
+
+    /**
+     *   Force the records appended so far to the disk
+     *
+     * @throws IllegalStateException if a change could not be appended : the records before it are forced all the same
+     */
+    public synchronized void flush() {
+
+        segment.force();
+        if (failure != null) {
+            throw new IllegalStateException("journal failed at sequence " + sequence + ", the later changes are not journaled", failure);
+        }
+    }
+
+
+
+    /**
+     *   Delete the segments whose records are all before a sequence, e.g. the one of the last Checkpoint
+     *
+     * @param sequence first UPDATE which must be kept
+     * @return number of segments deleted
+     */
+    public synchronized int deleteSegmentsBefore(long sequence) throws IOException {
+
+        List<Path> segments = segments(directory);
+        int deleted = 0;
+        for (int i = 0; i + 1 < segments.size() && sequenceOf(segments.get(i + 1)) <= sequence; i++) {
+            Files.delete(segments.get(i));  // the next segment starts at or before sequence
+            deleted++;
+        }
+        return deleted;
+    }
+
+
+
+    @Override
+    public synchronized void close() {
+
+        if (!closed) {
+            closed = true;
+            segment.force();
+        }
+    }
+
+
+
+    /**
+     *   Read the UPDATEs of a journal from a sequence, in the order they were appended
+     *
+     * @param directory of the segments
+     * @param fromSequence first UPDATE to pass to the listener
+     * @param listener receives the UPDATEs with the ids of this process (InstrumentRegistry)
+     * @return sequence of the next UPDATE, i.e. number of UPDATEs in the journal
+     */
+    public static long replay(Path directory, long fromSequence, UpdateListener listener) throws IOException {
+
+        long sequence = 0;
+        List<Path> segments = segments(directory);
+        for (int i = 0; i < segments.size(); i++) {
+
+            Path file = segments.get(i);
+            sequence = sequenceOf(file);
+            if (i + 1 < segments.size() && sequenceOf(segments.get(i + 1)) <= fromSequence) {
+                continue;  // all before fromSequence
+            }
+            sequence = replaySegment(file, sequence, fromSequence, listener);
+        }
+        return sequence;
+    }
+
+
+
+    private static long replaySegment(Path file, long sequence, long fromSequence, UpdateListener listener) throws IOException {
+
+        MappedByteBuffer records;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            records = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        records.order(ByteOrder.LITTLE_ENDIAN);
+
+        InstrumentRegistry registry = InstrumentRegistry.getInstance();
+        int[] ids = new int[0];  // id of the writer -> id of this process
+        for (int offset = 0; offset + RECORD_SIZE <= records.capacity(); offset += RECORD_SIZE) {
+
+            int header = records.getInt(offset + HEADER);
+            byte type = (byte) header;
+            if (type == TYPE_UPDATE) {
+                if (sequence++ >= fromSequence) {
+                    int instrumentId = records.getInt(offset + INSTRUMENT);
+                    listener.onUpdate(ids[instrumentId], (byte) (header >>> 8) == BUY ? Side.BUY : Side.SELL,
+                            records.getLong(offset + PRICE), records.getLong(offset + QUANTITY), records.getLong(offset + TIMESTAMP));
+                }
+            } else if (type == TYPE_INSTRUMENT) {
+                byte[] symbol = new byte[(byte) (header >>> 8)];
+                for (int c = 0; c < symbol.length; c++) {
+                    symbol[c] = records.get(offset + c / INSTRUMENT * RECORD_SIZE + c % INSTRUMENT);
+                }
+                int instrumentId = records.getInt(offset + INSTRUMENT);
+                if (instrumentId >= ids.length) {
+                    ids = Arrays.copyOf(ids, Math.max(instrumentId + 1, ids.length * 2));
+                }
+                ids[instrumentId] = registry.register(new String(symbol, StandardCharsets.US_ASCII));
+            } else if (type != TYPE_SYMBOL) {
+                break;  // end of the records written
+            }
+        }
+        return sequence;
+    }
+
+
+
+    private static int header(byte type, byte value) {
+        return (type & 0xFF) | (value & 0xFF) << 8;
+    }
+
+
+    static String segmentName(long sequence) {
+        return String.format("%s%020d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX);
+    }
+
+
+    private static long sequenceOf(Path segment) {
+
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+
+    /** segments sorted by their first sequence : the names have a fixed width */
+    private static List<Path> segments(Path directory) throws IOException {
+
+        if (!Files.isDirectory(directory)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segments = new ArrayList<>();
+            files.filter(file -> {
+                String name = file.getFileName().toString();
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }).sorted().forEach(segments::add);
+            return segments;
+        }
+    }
+
+
+    @Override
+    public String toString() {
+        return "Journal{" +
+                "directory=" + directory +
+                ", sequence=" + sequence +
+                '}';
+    }
+}
@@ -0,0 +1,72 @@
+package com.diy.journal;
+
+import com.diy.domain.Order;
+import com.diy.orderbookmanager.OrderBookList;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+
+/**
+ *   Cold start : rebuild the books from the latest Checkpoint and the tail of the Journal
+ *
+ *   <pre>
+ *   OrderBookList orderBookList = new OrderBookList();
+ *   Recovery.recover(directory, orderBookList);
+ *   Journal journal = new Journal(directory);          // appends after the records replayed
+ *   orderBookList.addUpdateListener(journal);
+ *   ...
+ *   Checkpoint.write(orderBookList, journal);          // from time to time, then journal.deleteSegmentsBefore(...)
+ *   </pre>
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@Slf4j
+public final class Recovery {
+
+
+    private Recovery() {
+    }
+
+
+
+    /**
+     * @param directory of the journal and its checkpoints
+     * @param orderBookList empty books, with no Journal registered yet
+     * @return number of journal records replayed after the checkpoint
+     */
+    public static long recover(Path directory, OrderBookList orderBookList) throws IOException {
+
+        checkArgument(isEmpty(orderBookList), "recover into empty books");
+        checkState(!orderBookList.isMarketByOrder(), "the journal does not carry order ids : the books are market by order");
+
+        Optional<Path> checkpoint = Checkpoint.latest(directory);
+        long from = 0;
+        if (checkpoint.isPresent()) {
+            from = Checkpoint.load(checkpoint.get(), orderBookList);
+        }
+
+        long end = Journal.replay(directory, from, (instrumentId, side, price, quantity, timestamp) ->
+                orderBookList.update(new Order(instrumentId, side, price, quantity, timestamp)));
+
+        log.info("recovered " + directory + " : checkpoint " + checkpoint.map(Path::toString).orElse("none")
+                + ", journal replayed from " + from + " to " + end);
+        return Math.max(0, end - from);
+    }
+
+
+
+    private static boolean isEmpty(OrderBookList orderBookList) {
+
+        boolean[] empty = {true};
+        orderBookList.forEachOrderBook(orderBook -> empty[0] &= orderBook.isEmpty());
+        return empty[0];
+    }
+}
@@ -0,0 +1,126 @@
+package com.diy.matching;
+
+import com.diy.Side.Side;
+import com.diy.Utils.FixedPoint;
+import com.diy.domain.Order;
+import com.diy.orderbookmanager.FillListener;
+import com.diy.orderbookmanager.OrderBook;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+
+/**
+ *   Price-time priority matching of aggressive limit and market orders against one OrderBook
+ *
+ *   <p>An aggressive order sweeps the best levels of the other side while they cross its limit, each level from
+ *   its oldest order (OrderBook.match). The fills go to a FillListener as primitives : a fill allocates nothing,
+ *   except the copy of a heap resting order partially filled (at most one per aggressive order, none for OFF_HEAP).
+ *   The quantity left is rested (GTC limit order) or cancelled (IOC, market order), FOK fills all or nothing.
+ *
+ *   <p>Match and rest happen under the write lock of the book (its monitor, re-entered by OrderBook.match and
+ *   OrderBook.update) : no other writer can cross the book in between.
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@ThreadSafe
+public final class MatchingEngine {
+
+    private final OrderBook orderBook;
+
+
+
+    /**
+     * @param orderBook book matched, and where GTC orders rest
+     */
+    public MatchingEngine(OrderBook orderBook) {
+        this.orderBook = requireNonNull(orderBook);
+    }
+
+
+
+    /**
+     *   Aggressive limit order : trades at its price or better
+     *
+     * @param side
+     * @param price limit in ticks of 0.01
+     * @param quantity in ticks of 0.01
+     * @param timestamp of the order, its identity if it rests (GTC)
+     * @param timeInForce GTC, IOC or FOK
+     * @param listener receives the fills
+     * @return quantity filled, in ticks
+     */
+    public long submitLimit(Side side, long price, long quantity, long timestamp, TimeInForce timeInForce, FillListener listener) {
+        return submitLimit(side, price, quantity, timestamp, Order.NO_ORDER_ID, timeInForce, listener);
+    }
+
+
+
+    /**
+     *   Aggressive limit order with its exchange order id, which a market by order book needs to rest it (GTC)
+     *
+     * @param side
+     * @param price limit in ticks of 0.01
+     * @param quantity in ticks of 0.01
+     * @param timestamp of the order
+     * @param orderId exchange order id, or Order.NO_ORDER_ID
+     * @param timeInForce GTC, IOC or FOK
+     * @param listener receives the fills
+     * @return quantity filled, in ticks
+     */
+    public long submitLimit(Side side, long price, long quantity, long timestamp, long orderId, TimeInForce timeInForce, FillListener listener) {
+
+        checkArgument(price > 0 && price <= FixedPoint.MAX_PRICE, "price out of the exchange range (0.01 - 999.99)");
+        checkArgument(quantity > 0, "quantity must be positive");
+        checkArgument(timeInForce != TimeInForce.GTC || orderId != Order.NO_ORDER_ID || !orderBook.isMarketByOrder(),
+                "a GTC order needs an order id to rest in a market by order book");
+
+        if (timeInForce != TimeInForce.GTC) {
+            return orderBook.match(side, price, quantity, timeInForce == TimeInForce.FOK, listener);
+        }
+
+        synchronized (orderBook) {  // match then rest, as one write
+            long filled = orderBook.match(side, price, quantity, false, listener);
+            if (filled < quantity) {
+                orderBook.update(new Order(orderBook.getInstrumentId(), orderId, side, price, quantity - filled, timestamp));
+            }
+            return filled;
+        }
+    }
+
+
+
+    /**
+     *   Aggressive market order : trades at any price, never rests
+     *
+     * @param side
+     * @param quantity in ticks of 0.01
+     * @param timeInForce IOC or FOK
+     * @param listener receives the fills
+     * @return quantity filled, in ticks
+     */
+    public long submitMarket(Side side, long quantity, TimeInForce timeInForce, FillListener listener) {
+
+        checkArgument(timeInForce != TimeInForce.GTC, "a market order cannot rest : use IOC or FOK");
+        checkArgument(quantity > 0, "quantity must be positive");
+        return orderBook.match(side, FixedPoint.NO_PRICE, quantity, timeInForce == TimeInForce.FOK, listener);
+    }
+
+
+
+    public OrderBook getOrderBook() {
+        return orderBook;
+    }
+
+
+    @Override
+    public String toString() {
+        return "MatchingEngine{" +
+                "orderBook=" + orderBook.getInstrument() +
+                '}';
+    }
+}
@@ -0,0 +1,22 @@
+package com.diy.matching;
+
+
+/**
+ *   What happens to the part of an aggressive order which does not trade at once
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+public enum TimeInForce {
+
+    /** good till cancel : a limit order rests in the book with the quantity left */
+    GTC,
+
+    /** immediate or cancel : fill what crosses, cancel the rest */
+    IOC,
+
+    /** fill or kill : fill the whole quantity at once, or nothing */
+    FOK
+
+}
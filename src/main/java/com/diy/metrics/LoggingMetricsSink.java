@@ -0,0 +1,27 @@
+package com.diy.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+
+
+/**
+ *   Logs one line per instrument and operation : calls in the interval, p50 / p99 / p99.9 / max in microseconds
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@Slf4j
+public final class LoggingMetricsSink implements MetricsSink {
+
+    @Override
+    public void onInterval(String instrument, Operation operation, Histogram interval, long count) {
+
+        log.info(String.format("%s %s calls=%d total=%d p50=%.3f p99=%.3f p99.9=%.3f max=%.3f us",
+                instrument, operation, interval.getTotalCount(), count,
+                interval.getValueAtPercentile(50) / 1000.0,
+                interval.getValueAtPercentile(99) / 1000.0,
+                interval.getValueAtPercentile(99.9) / 1000.0,
+                interval.getMaxValue() / 1000.0));
+    }
+}
@@ -0,0 +1,26 @@
+package com.diy.metrics;
+
+import org.HdrHistogram.Histogram;
+
+
+/**
+ *   Receives the latencies recorded since the previous export (see OrderBookMetrics.export)
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@FunctionalInterface
+public interface MetricsSink {
+
+    /**
+     *   Called once per instrument and operation measured during the interval, on the exporting thread
+     *
+     * @param instrument
+     * @param operation
+     * @param interval latencies in nanoseconds since the previous export, owned by the sink
+     * @param count calls since the start, including the batch updates which are counted but not timed
+     */
+    void onInterval(String instrument, Operation operation, Histogram interval, long count);
+
+}
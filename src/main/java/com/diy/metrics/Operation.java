@@ -0,0 +1,40 @@
+package com.diy.metrics;
+
+
+/**
+ *   Measured call of an OrderBookList : one latency histogram and one counter per instrument and operation
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+public enum Operation {
+
+    /** update which inserted a new order */
+    ADD,
+
+    /** update which changed the quantity of a resting order */
+    MODIFY,
+
+    /** update with quantity 0 which removed a resting order */
+    DELETE,
+
+    /** no-op update : same quantity as the resting order, nothing has changed */
+    DUPLICATE,
+
+    /** update with quantity 0 for an order which is not in the book : ignored */
+    IGNORED,
+
+    /** getBestPrice */
+    BEST_PRICE,
+
+    /** getTopOfBook */
+    TOP_OF_BOOK,
+
+    /** level queries : getOrdersUpToLevel, getOrdersAtLevel, the aggregates over levels and snapshot */
+    DEPTH,
+
+    /** message of an IngestPipeline, from its raw bytes published to its update applied (see com.diy.pipeline.MetricsStage) */
+    INGEST
+
+}
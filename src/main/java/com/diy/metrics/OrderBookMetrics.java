@@ -0,0 +1,256 @@
+package com.diy.metrics;
+
+import com.diy.domain.InstrumentRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+
+/**
+ *   Latency histograms and counters of an OrderBookList, per instrument and per Operation
+ *
+ *   <p>Recording is wait-free and allocates nothing : one array read by instrument id, one HdrHistogram Recorder
+ *   (its writer side is a pair of atomic increments) and one counter. The histograms of an instrument and an
+ *   operation are created on their first call, then kept.
+ *
+ *   <p>Readers drain the Recorder into two histograms, one since the start (getCount, getLatencyAtPercentile,
+ *   getHistogram) and one since the previous export (export, exportEvery), so querying does not steal the
+ *   interval of the exporter.
+ *
+ *   <p>Latencies are in nanoseconds, 2 significant digits (1%) up to 10 seconds : about 30 KB per histogram, 5
+ *   histograms per instrument and operation measured.
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@Slf4j
+@ThreadSafe
+public final class OrderBookMetrics {
+
+    static final long HIGHEST_LATENCY = TimeUnit.SECONDS.toNanos(10);
+    static final int SIGNIFICANT_DIGITS = 2;
+
+    private static final int INITIAL_CAPACITY = 64;  // instruments
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    private final InstrumentRegistry registry = InstrumentRegistry.getInstance();
+    private volatile AtomicReferenceArray<Metric[]> metrics = new AtomicReferenceArray<>(INITIAL_CAPACITY); // by instrument id
+
+
+
+    /**
+     *   Record the latency of one call
+     *
+     * @param instrumentId see InstrumentRegistry
+     * @param operation
+     * @param nanos elapsed time, clamped to 10 seconds
+     */
+    public void record(int instrumentId, Operation operation, long nanos) {
+        metric(instrumentId, operation).record(nanos);
+    }
+
+
+    /**
+     *   Count one call without its latency (updates applied in a batch)
+     *
+     * @param instrumentId see InstrumentRegistry
+     * @param operation
+     */
+    public void count(int instrumentId, Operation operation) {
+        metric(instrumentId, operation).count.incrementAndGet();
+    }
+
+
+
+    /**
+     * @param instrument
+     * @param operation
+     * @return calls since the start, timed or not
+     */
+    public long getCount(String instrument, Operation operation) {
+
+        Metric metric = find(instrument, operation);
+        return metric == null ? 0 : metric.count.get();
+    }
+
+
+    /**
+     * @param instrument
+     * @param operation
+     * @param percentile 0 - 100, e.g. 99.9
+     * @return latency in nanoseconds at that percentile since the start, 0 if nothing was recorded
+     */
+    public long getLatencyAtPercentile(String instrument, Operation operation, double percentile) {
+
+        checkArgument(percentile >= 0 && percentile <= 100, "percentile must be between 0 and 100");
+        Metric metric = find(instrument, operation);
+        return metric == null ? 0 : metric.valueAtPercentile(percentile);
+    }
+
+
+    /**
+     * @param instrument
+     * @param operation
+     * @return copy of the latencies in nanoseconds since the start, empty if nothing was recorded
+     */
+    public Histogram getHistogram(String instrument, Operation operation) {
+
+        Metric metric = find(instrument, operation);
+        return metric == null ? new Histogram(HIGHEST_LATENCY, SIGNIFICANT_DIGITS) : metric.total();
+    }
+
+
+
+    /**
+     *   Hand the latencies recorded since the previous export to the sink, by instrument id then operation.
+     *   An instrument and an operation without any call during the interval are skipped.
+     *
+     * @param sink
+     */
+    public void export(MetricsSink sink) {
+
+        AtomicReferenceArray<Metric[]> byInstrument = metrics;
+        for (int instrumentId = 0; instrumentId < byInstrument.length(); instrumentId++) {
+
+            Metric[] byOperation = byInstrument.get(instrumentId);
+            if (byOperation == null) {
+                continue;
+            }
+            for (Operation operation : OPERATIONS) {
+                Metric metric = byOperation[operation.ordinal()];
+                if (metric == null) {
+                    continue;
+                }
+                Histogram interval = metric.interval();
+                if (interval.getTotalCount() > 0) {
+                    sink.onInterval(registry.getSymbol(instrumentId), operation, interval, metric.count.get());
+                }
+            }
+        }
+    }
+
+
+    /**
+     *   Export at a fixed rate until the future is cancelled. A failing sink is logged, the next export still runs.
+     *
+     * @param executor runs the exports
+     * @param period
+     * @param unit
+     * @param sink e.g. LoggingMetricsSink
+     * @return ScheduledFuture to cancel the exports
+     */
+    public ScheduledFuture<?> exportEvery(ScheduledExecutorService executor, long period, TimeUnit unit, MetricsSink sink) {
+
+        checkArgument(period > 0, "period must be positive");
+        return executor.scheduleAtFixedRate(() -> {
+            try {
+                export(sink);
+            } catch (RuntimeException e) {
+                log.error("metrics export failed", e);
+            }
+        }, period, period, unit);
+    }
+
+
+
+    private Metric find(String instrument, Operation operation) {
+
+        int instrumentId = registry.getId(instrument);
+        AtomicReferenceArray<Metric[]> byInstrument = metrics;
+        if (instrumentId == InstrumentRegistry.UNKNOWN || instrumentId >= byInstrument.length()) {
+            return null;
+        }
+        Metric[] byOperation = byInstrument.get(instrumentId);
+        return byOperation == null ? null : byOperation[operation.ordinal()];
+    }
+
+
+    /** the metric of an instrument and an operation, created on its first call */
+    private Metric metric(int instrumentId, Operation operation) {
+
+        AtomicReferenceArray<Metric[]> byInstrument = metrics;
+        Metric[] byOperation = instrumentId < byInstrument.length() ? byInstrument.get(instrumentId) : null;
+        Metric metric = byOperation == null ? null : byOperation[operation.ordinal()];
+        return metric != null ? metric : create(instrumentId, operation);
+    }
+
+
+    /**
+     *   The array grows by copy like the books of OrderBookList ; a metric is published by a volatile write of its
+     *   instrument slot, so a reader sees it fully built.
+     */
+    private synchronized Metric create(int instrumentId, Operation operation) {
+
+        AtomicReferenceArray<Metric[]> byInstrument = metrics;
+        if (instrumentId >= byInstrument.length()) {
+            AtomicReferenceArray<Metric[]> grown = new AtomicReferenceArray<>(Math.max(instrumentId + 1, byInstrument.length() * 2));
+            for (int i = 0; i < byInstrument.length(); i++) {
+                grown.set(i, byInstrument.get(i));
+            }
+            metrics = byInstrument = grown;
+        }
+
+        Metric[] byOperation = byInstrument.get(instrumentId);
+        if (byOperation != null && byOperation[operation.ordinal()] != null) {
+            return byOperation[operation.ordinal()];
+        }
+        byOperation = byOperation == null ? new Metric[OPERATIONS.length] : byOperation.clone();
+        Metric metric = new Metric();
+        byOperation[operation.ordinal()] = metric;
+        byInstrument.set(instrumentId, byOperation);
+        return metric;
+    }
+
+
+
+    /**
+     *   One instrument and one operation : the Recorder written by the measured threads, drained under the lock
+     *   of the Metric by the readers
+     */
+    private static final class Metric {
+
+        private final Recorder recorder = new Recorder(HIGHEST_LATENCY, SIGNIFICANT_DIGITS);
+        private final Histogram total = new Histogram(HIGHEST_LATENCY, SIGNIFICANT_DIGITS);       // since the start
+        private final Histogram unexported = new Histogram(HIGHEST_LATENCY, SIGNIFICANT_DIGITS);  // since the previous export
+        private Histogram drained;                                                                 // recycled by the Recorder
+        private final AtomicLong count = new AtomicLong();
+
+        void record(long nanos) {
+            recorder.recordValue(Math.min(nanos, HIGHEST_LATENCY));
+            count.incrementAndGet();
+        }
+
+        private void drain() {
+            drained = recorder.getIntervalHistogram(drained);
+            total.add(drained);
+            unexported.add(drained);
+        }
+
+        synchronized long valueAtPercentile(double percentile) {
+            drain();
+            return total.getValueAtPercentile(percentile);
+        }
+
+        synchronized Histogram total() {
+            drain();
+            return total.copy();
+        }
+
+        synchronized Histogram interval() {
+            drain();
+            Histogram interval = unexported.copy();
+            unexported.reset();
+            return interval;
+        }
+    }
+}
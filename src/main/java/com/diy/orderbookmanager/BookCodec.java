@@ -0,0 +1,353 @@
+package com.diy.orderbookmanager;
+
+import com.diy.Side.Side;
+import com.diy.domain.InstrumentRegistry;
+import com.diy.domain.Order;
+import com.diy.domain.OrderView;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+
+/**
+ *   Versioned binary snapshot of the resting orders of an OrderBook or of a whole OrderBookList
+ *
+ *   <p>Layout, all the numbers are varints (LEB128, 1 byte up to 127) :
+ *   <pre>
+ *   int magic, byte version, varint number of books
+ *   per book : varint length, ASCII instrument
+ *              per side (bid then ask, from the best level) : varint number of levels
+ *                  per level : varint price distance to the previous level (the first one : its price),
+ *                              varint number of orders
+ *                      per order (arrival order) : varint quantity, zigzag varint timestamp - previous timestamp
+ *   </pre>
+ *   Levels are 1 tick apart in a dense book and the timestamps of a book are close to each other, so most numbers
+ *   take 1 or 2 bytes. Each book is written under its write lock : one point in time per book.
+ *
+ *   <p>The codec writes straight into a ByteBuffer, or through one to a FileChannel, and reads the same way : no
+ *   String, no array and no boxed number per level or per order (decoding builds the Orders the book keeps).
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+public final class BookCodec {
+
+    public static final byte VERSION = 1;
+
+    private static final int MAGIC = 0x4F42534E;  // OBSN
+    private static final int MAX_VARINT = 10;     // bytes of a long
+    private static final int MAX_INSTRUMENT = 255;
+
+
+    private BookCodec() {
+    }
+
+
+
+    /**
+     * @param orderBook
+     * @param buffer written from its position
+     * @throws java.nio.BufferOverflowException if the buffer is too small
+     */
+    public static void encode(OrderBook orderBook, ByteBuffer buffer) throws IOException {
+
+        Output output = new Output(buffer, null);
+        output.header(1);
+        output.book(orderBook);
+    }
+
+
+    /**
+     * @param orderBookList
+     * @param buffer written from its position
+     * @throws java.nio.BufferOverflowException if the buffer is too small
+     */
+    public static void encode(OrderBookList orderBookList, ByteBuffer buffer) throws IOException {
+        encode(orderBookList, new Output(buffer, null));
+    }
+
+
+    /**
+     * @param orderBookList
+     * @param channel written from its position
+     * @param buffer staging buffer, at least 1 KB, its content is lost
+     * @return bytes written
+     */
+    public static long encode(OrderBookList orderBookList, FileChannel channel, ByteBuffer buffer) throws IOException {
+
+        checkArgument(buffer.capacity() >= 1024, "staging buffer must hold at least 1 KB");
+        buffer.clear();
+        Output output = new Output(buffer, channel);
+        encode(orderBookList, output);
+        output.flush();
+        return output.written;
+    }
+
+
+    private static void encode(OrderBookList orderBookList, Output output) throws IOException {
+
+        List<OrderBook> orderBooks = new ArrayList<>();
+        orderBookList.forEachOrderBook(orderBooks::add);
+
+        output.header(orderBooks.size());
+        for (OrderBook orderBook : orderBooks) {
+            output.book(orderBook);
+        }
+    }
+
+
+
+    /**
+     *   Decode one book into an empty OrderBook of the same instrument
+     *
+     * @param buffer read from its position
+     * @param orderBook receives the orders
+     */
+    public static void decode(ByteBuffer buffer, OrderBook orderBook) throws IOException {
+
+        checkState(!orderBook.isMarketByOrder(), "the snapshot does not carry order ids : %s is market by order", orderBook.getInstrument());
+        Input input = new Input(buffer, null);
+        checkState(input.header() == 1, "the snapshot does not hold one book");
+        checkState(input.instrument() == orderBook.getInstrumentId(), "the snapshot is not a book of %s", orderBook.getInstrument());
+        input.book(orderBook);
+    }
+
+
+    /**
+     * @param buffer read from its position
+     * @param orderBookList empty books, receive the orders
+     */
+    public static void decode(ByteBuffer buffer, OrderBookList orderBookList) throws IOException {
+        decode(new Input(buffer, null), orderBookList);
+    }
+
+
+    /**
+     * @param channel read from its position
+     * @param buffer staging buffer, at least 1 KB, its content is lost
+     * @param orderBookList empty books, receive the orders
+     */
+    public static void decode(FileChannel channel, ByteBuffer buffer, OrderBookList orderBookList) throws IOException {
+
+        checkArgument(buffer.capacity() >= 1024, "staging buffer must hold at least 1 KB");
+        buffer.clear().flip();  // empty, filled on demand
+        decode(new Input(buffer, channel), orderBookList);
+    }
+
+
+    private static void decode(Input input, OrderBookList orderBookList) throws IOException {
+
+        checkState(!orderBookList.isMarketByOrder(), "the snapshot does not carry order ids : the books are market by order");
+
+        for (int books = input.header(); books > 0; books--) {
+            int instrumentId = input.instrument();
+            input.book(orderBookList.createOrderBook(instrumentId));
+        }
+    }
+
+
+
+    /**
+     *   Writes varints into a buffer, drained to the channel when it may not hold the next record
+     */
+    private static final class Output implements Consumer<OrderView> {
+
+        private final ByteBuffer buffer;
+        private final FileChannel channel;   // null : the buffer is the destination
+        private long written;
+        private long timestamp;              // of the previous order of the book
+        private IOException failure;         // from the visit of a level
+
+        Output(ByteBuffer buffer, FileChannel channel) {
+            this.buffer = buffer;
+            this.channel = channel;
+        }
+
+        void header(int books) throws IOException {
+            ensure(4 + 1 + MAX_VARINT);
+            buffer.putInt(MAGIC);
+            buffer.put(VERSION);
+            varint(books);
+        }
+
+        void book(OrderBook orderBook) throws IOException {
+
+            byte[] instrument = orderBook.getInstrument().getBytes(StandardCharsets.US_ASCII);
+            checkArgument(instrument.length <= MAX_INSTRUMENT, "instrument longer than %s characters", MAX_INSTRUMENT);
+            ensure(MAX_VARINT + instrument.length);
+            varint(instrument.length);
+            buffer.put(instrument);
+
+            timestamp = 0;
+            synchronized (orderBook) {   // the write lock : one point in time
+                side(orderBook.getBookSide(Side.BUY));
+                side(orderBook.getBookSide(Side.SELL));
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        private void side(BookSide bookSide) throws IOException {
+
+            ensure(MAX_VARINT);
+            varint(bookSide.size());
+            long previous = 0;
+            Iterator<PriceLevel> levels = bookSide.iterator();
+            while (levels.hasNext()) {
+                PriceLevel level = levels.next();
+                ensure(2 * MAX_VARINT);
+                varint(Math.abs(level.getPrice() - previous));  // bids go down, asks go up
+                varint(level.getOrderCount());
+                previous = level.getPrice();
+                level.forEach(this);
+            }
+        }
+
+        /** one order of the level being written */
+        @Override
+        public void accept(OrderView order) {
+
+            try {
+                ensure(2 * MAX_VARINT);
+            } catch (IOException e) {
+                failure = e;
+                return;
+            }
+            varint(order.getQuantityTicks());
+            long delta = order.getTimestampMillis() - timestamp;
+            varint((delta << 1) ^ (delta >> 63));  // zigzag
+            timestamp = order.getTimestampMillis();
+        }
+
+        private void varint(long value) {
+
+            while ((value & ~0x7FL) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        private void ensure(int bytes) throws IOException {
+
+            if (channel != null && buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+
+            if (channel == null || failure != null) {
+                return;
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+
+
+    /**
+     *   Reads varints from a buffer, refilled from the channel when it may not hold the next record
+     */
+    private static final class Input {
+
+        private final ByteBuffer buffer;
+        private final FileChannel channel;   // null : the buffer is the source
+        private final List<Order> orders = new ArrayList<>();   // of one book, reused
+        private UpdateResult[] results = new UpdateResult[16];
+
+        Input(ByteBuffer buffer, FileChannel channel) {
+            this.buffer = buffer;
+            this.channel = channel;
+        }
+
+        int header() throws IOException {
+
+            ensure(4 + 1 + MAX_VARINT);
+            checkState(buffer.getInt() == MAGIC, "not a book snapshot");
+            byte version = buffer.get();
+            checkState(version == VERSION, "book snapshot version %s is not supported", version);
+            return (int) varint();
+        }
+
+        /** @return id of the instrument of the next book */
+        int instrument() throws IOException {
+
+            ensure(MAX_VARINT + MAX_INSTRUMENT);
+            byte[] instrument = new byte[(int) varint()];   // one per book
+            buffer.get(instrument);
+            return InstrumentRegistry.getInstance().register(new String(instrument, StandardCharsets.US_ASCII));
+        }
+
+        /** decode both sides, then apply them as one batch : one acquisition of the write lock */
+        void book(OrderBook orderBook) throws IOException {
+
+            orders.clear();
+            long timestamp = 0;
+            for (Side side : Side.values()) {
+                ensure(MAX_VARINT);
+                long price = 0;
+                for (long levels = varint(); levels > 0; levels--) {
+                    ensure(2 * MAX_VARINT);
+                    long distance = varint();
+                    price = price == 0 ? distance : side == Side.BUY ? price - distance : price + distance;
+                    for (long count = varint(); count > 0; count--) {
+                        ensure(2 * MAX_VARINT);
+                        long quantity = varint();
+                        long zigzag = varint();
+                        timestamp += (zigzag >>> 1) ^ -(zigzag & 1);
+                        orders.add(new Order(orderBook.getInstrumentId(), side, price, quantity, timestamp));
+                    }
+                }
+            }
+
+            if (results.length < orders.size()) {
+                results = new UpdateResult[Math.max(orders.size(), results.length * 2)];
+            }
+            Arrays.fill(results, 0, orders.size(), null);
+            orderBook.update(orders, 0, results);
+        }
+
+        private long varint() {
+
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = buffer.get();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+
+            if (channel == null || buffer.remaining() >= bytes) {
+                return;
+            }
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    break;  // end of the file : what is left must be enough, else BufferUnderflowException
+                }
+            }
+            buffer.flip();
+        }
+    }
+}
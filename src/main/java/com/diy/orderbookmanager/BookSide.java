@@ -0,0 +1,61 @@
+package com.diy.orderbookmanager;
+
+import java.util.Iterator;
+
+
+/**
+ *   One side (bid or ask) of an OrderBook : price levels sorted from the best price
+ *
+ *   <p>Mutations are only called by the OrderBook while it holds its write lock, reads can run concurrently.
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+interface BookSide {
+
+
+    /**
+     * @param price in ticks
+     * @return the level at that price, or null if there is no level
+     */
+    PriceLevel getLevel(long price);
+
+
+    /**
+     * @param price in ticks
+     * @return the level at that price, created if it was not there
+     */
+    PriceLevel getOrCreateLevel(long price);
+
+
+    /**
+     *   Remove the level at that price if there is no order left
+     *
+     * @param price in ticks
+     * @return boolean true if the level has been removed
+     */
+    boolean removeLevelIfEmpty(long price);
+
+
+    /**
+     * @return best price in ticks, or FixedPoint.NO_PRICE if the side is empty
+     */
+    long getBestPrice();
+
+
+    /**
+     * @return number of price levels
+     */
+    int size();
+
+
+    boolean isEmpty();
+
+
+    /**
+     * @return levels from the best price, weakly consistent
+     */
+    Iterator<PriceLevel> iterator();
+
+}
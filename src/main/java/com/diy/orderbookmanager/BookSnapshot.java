@@ -0,0 +1,166 @@
+package com.diy.orderbookmanager;
+
+import com.diy.Side.Side;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+
+/**
+ *   Point in time image of the first levels of a book, in primitive arrays
+ *
+ *   <p>Allocated once by the caller with the depth it needs, then refilled by OrderBookList.snapshot(instrument, snapshot)
+ *   as often as needed : taking a snapshot allocates nothing. Bid and ask are taken at the same sequence.
+ *   Prices and quantities are in ticks of 0.01 (see FixedPoint).
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@NotThreadSafe
+public final class BookSnapshot {
+
+    private final int maxDepth;
+
+    private final long[] bidPrices;
+    private final long[] bidQuantities;  // total quantity of each level
+    private final int[] bidCounts;       // number of orders of each level
+    private final long[] askPrices;
+    private final long[] askQuantities;
+    private final int[] askCounts;
+
+    private int bidDepth;
+    private int askDepth;
+    private String instrument;
+    private long sequence;               // book sequence of the image, the same for both sides
+
+
+
+    /**
+     * @param maxDepth number of levels kept on each side
+     */
+    public BookSnapshot(int maxDepth) {
+
+        checkArgument(maxDepth > 0, "maxDepth must be positive");
+        this.maxDepth = maxDepth;
+        this.bidPrices = new long[maxDepth];
+        this.bidQuantities = new long[maxDepth];
+        this.bidCounts = new int[maxDepth];
+        this.askPrices = new long[maxDepth];
+        this.askQuantities = new long[maxDepth];
+        this.askCounts = new int[maxDepth];
+    }
+
+
+
+    void clear(String instrument) {
+        this.instrument = instrument;
+        this.bidDepth = 0;
+        this.askDepth = 0;
+        this.sequence = 0;
+    }
+
+
+    void setLevel(Side side, int level, long price, long quantity, int count) {
+
+        if (side == Side.BUY) {
+            bidPrices[level] = price;
+            bidQuantities[level] = quantity;
+            bidCounts[level] = count;
+        } else {
+            askPrices[level] = price;
+            askQuantities[level] = quantity;
+            askCounts[level] = count;
+        }
+    }
+
+
+    void setDepth(Side side, int depth) {
+
+        if (side == Side.BUY) {
+            bidDepth = depth;
+        } else {
+            askDepth = depth;
+        }
+    }
+
+
+    void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+
+
+    public String getInstrument() {
+        return instrument;
+    }
+    public long getSequence() {
+        return sequence;
+    }
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+
+    /**
+     * @param side
+     * @return number of levels filled on that side, at most getMaxDepth()
+     */
+    public int getDepth(Side side) {
+        return side == Side.BUY ? bidDepth : askDepth;
+    }
+
+
+    /**
+     * @param side
+     * @param level 0 for the best price
+     * @return price in ticks
+     */
+    public long getPrice(Side side, int level) {
+
+        checkElementIndex(level, getDepth(side));
+        return side == Side.BUY ? bidPrices[level] : askPrices[level];
+    }
+
+
+    /**
+     * @param side
+     * @param level 0 for the best price
+     * @return total quantity of the level in ticks
+     */
+    public long getQuantity(Side side, int level) {
+
+        checkElementIndex(level, getDepth(side));
+        return side == Side.BUY ? bidQuantities[level] : askQuantities[level];
+    }
+
+
+    /**
+     * @param side
+     * @param level 0 for the best price
+     * @return number of orders of the level
+     */
+    public int getOrderCount(Side side, int level) {
+
+        checkElementIndex(level, getDepth(side));
+        return side == Side.BUY ? bidCounts[level] : askCounts[level];
+    }
+
+
+    @Override
+    public String toString() {
+
+        StringBuilder builder = new StringBuilder("BookSnapshot{instrument='").append(instrument)
+                .append("', sequence=").append(sequence).append(", bid=[");
+        for (int i = 0; i < bidDepth; i++) {
+            builder.append(i == 0 ? "" : ", ").append(bidQuantities[i]).append('@').append(bidPrices[i]);
+        }
+        builder.append("], ask=[");
+        for (int i = 0; i < askDepth; i++) {
+            builder.append(i == 0 ? "" : ", ").append(askQuantities[i]).append('@').append(askPrices[i]);
+        }
+        return builder.append("]}").toString();
+    }
+}
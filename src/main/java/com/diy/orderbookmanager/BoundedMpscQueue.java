@@ -0,0 +1,103 @@
+package com.diy.orderbookmanager;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+
+/**
+ *   Bounded lock-free queue : many producers, one consumer
+ *
+ *   <p>Array of slots, each with a sequence number (D. Vyukov's bounded queue). A producer claims a slot with one CAS
+ *   on the tail, the consumer owns the head and needs no CAS at all. No allocation after construction.
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@ThreadSafe
+final class BoundedMpscQueue<E> {
+
+    private final AtomicReferenceArray<E> buffer;
+    private final AtomicLongArray sequences;  // slot i is free for position p when sequence == p, full when sequence == p + 1
+    private final int mask;
+
+    private final AtomicLong tail = new AtomicLong();  // next position claimed by a producer
+    private long head;                                 // next position read by the consumer, consumer thread only
+
+
+
+    /**
+     * @param capacity power of 2
+     */
+    BoundedMpscQueue(int capacity) {
+
+        checkArgument(capacity > 0 && Integer.bitCount(capacity) == 1, "capacity must be a power of 2");
+        this.buffer = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+
+
+    /**
+     * @param element
+     * @return boolean false if the queue is full
+     */
+    boolean offer(E element) {
+
+        requireNonNull(element);
+        long position = tail.get();
+
+        while (true) {
+            int index = (int) position & mask;
+            long gap = sequences.get(index) - position;
+
+            if (gap == 0) {                     // free slot for that position
+                if (tail.compareAndSet(position, position + 1)) {
+                    buffer.lazySet(index, element);
+                    sequences.lazySet(index, position + 1);  // publish to the consumer
+                    return true;
+                }
+                position = tail.get();          // another producer got it
+            } else if (gap < 0) {
+                return false;                   // the consumer has not freed that slot yet : full
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+
+
+    /**
+     *   Consumer thread only
+     *
+     * @return the oldest element, or null if the queue is empty
+     */
+    E poll() {
+
+        int index = (int) head & mask;
+        if (sequences.get(index) != head + 1) {
+            return null;
+        }
+        E element = buffer.get(index);
+        buffer.lazySet(index, null);
+        sequences.lazySet(index, head + mask + 1);  // free for the producers of the next lap
+        head++;
+        return element;
+    }
+
+
+    int capacity() {
+        return mask + 1;
+    }
+
+}
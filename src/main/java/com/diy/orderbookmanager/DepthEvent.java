@@ -0,0 +1,83 @@
+package com.diy.orderbookmanager;
+
+import com.diy.Side.Side;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+
+/**
+ *   One level change of a book, with the new aggregate of that level
+ *
+ *   <p>Flyweight : each OrderBook owns one event and refills it for every change, so publishing allocates nothing.
+ *   Prices and quantities are in ticks of 0.01 (see FixedPoint).
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@NotThreadSafe
+public final class DepthEvent {
+
+    private final String instrument;
+    private DepthEventType type;
+    private Side side;
+    private long price;
+    private long quantity;    // total quantity of the level after the change, 0 once removed
+    private int orderCount;   // number of orders of the level after the change
+    private long sequence;    // sequence of the book change
+
+
+
+    DepthEvent(String instrument) {
+        this.instrument = instrument;
+    }
+
+
+    DepthEvent set(DepthEventType type, Side side, long price, long quantity, int orderCount, long sequence) {
+        this.type = type;
+        this.side = side;
+        this.price = price;
+        this.quantity = quantity;
+        this.orderCount = orderCount;
+        this.sequence = sequence;
+        return this;
+    }
+
+
+
+    public String getInstrument() {
+        return instrument;
+    }
+    public DepthEventType getType() {
+        return type;
+    }
+    public Side getSide() {
+        return side;
+    }
+    public long getPrice() {
+        return price;
+    }
+    public long getQuantity() {
+        return quantity;
+    }
+    public int getOrderCount() {
+        return orderCount;
+    }
+    public long getSequence() {
+        return sequence;
+    }
+
+
+    @Override
+    public String toString() {
+        return "DepthEvent{" +
+                "instrument='" + instrument + '\'' +
+                ", type=" + type +
+                ", side=" + side +
+                ", price=" + price +
+                ", quantity=" + quantity +
+                ", orderCount=" + orderCount +
+                ", sequence=" + sequence +
+                '}';
+    }
+}
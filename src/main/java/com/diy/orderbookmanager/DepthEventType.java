@@ -0,0 +1,24 @@
+package com.diy.orderbookmanager;
+
+
+/**
+ *   Kind of change carried by a DepthEvent
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+public enum DepthEventType {
+
+    /** first order at a new price */
+    LEVEL_ADDED,
+
+    /** total quantity or number of orders of an existing level has changed */
+    LEVEL_CHANGED,
+
+    /** last order of a level removed */
+    LEVEL_REMOVED,
+
+    /** best price of a side has moved, price is FixedPoint.NO_PRICE if the side is now empty */
+    BEST_PRICE_CHANGED
+}
@@ -0,0 +1,22 @@
+package com.diy.orderbookmanager;
+
+
+/**
+ *   Receives the level changes (L2 deltas) of the books
+ *
+ *   <p>Called on the thread which updates the book, while it holds the book write lock : keep it short and
+ *   never update a book from it. The event is reused for the next change, copy what has to be kept.
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@FunctionalInterface
+public interface DepthListener {
+
+    /**
+     * @param event valid during the call only
+     */
+    void onDepthEvent(DepthEvent event);
+
+}
@@ -0,0 +1,74 @@
+package com.diy.orderbookmanager;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Arrays;
+
+import static java.util.Objects.requireNonNull;
+
+
+/**
+ *   Listeners registered on an OrderBookList, shared by all its books
+ *
+ *   <p>Copy on write array : the update thread reads one volatile field and loops, no iterator is created.
+ *   A listener which throws is logged and does not stop the update nor the other listeners.
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@Slf4j
+@ThreadSafe
+final class DepthListeners implements DepthListener {
+
+    private static final DepthListener[] NONE = new DepthListener[0];
+
+    private volatile DepthListener[] listeners = NONE;
+
+
+
+    synchronized void add(DepthListener listener) {
+
+        requireNonNull(listener);
+        DepthListener[] current = listeners;
+        DepthListener[] copy = Arrays.copyOf(current, current.length + 1);
+        copy[current.length] = listener;
+        listeners = copy;
+    }
+
+
+    synchronized boolean remove(DepthListener listener) {
+
+        DepthListener[] current = listeners;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == listener) {
+                DepthListener[] copy = new DepthListener[current.length - 1];
+                System.arraycopy(current, 0, copy, 0, i);
+                System.arraycopy(current, i + 1, copy, i, current.length - i - 1);
+                listeners = copy;
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    boolean isEmpty() {
+        return listeners.length == 0;
+    }
+
+
+    @Override
+    public void onDepthEvent(DepthEvent event) {
+
+        for (DepthListener listener : listeners) {
+            try {
+                listener.onDepthEvent(event);
+            } catch (RuntimeException e) {
+                log.error("DepthListener " + listener + " failed on " + event, e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.diy.orderbookmanager;
+
+import com.diy.Side.Side;
+
+
+/**
+ *   Receives the fills of an aggressive order matched against an OrderBook
+ *
+ *   <p>Called on the thread which matches, while it holds the book write lock, once per resting order hit, in
+ *   price-time priority. Only primitives are passed : nothing is allocated per fill. Keep it short and never
+ *   update a book from it.
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@FunctionalInterface
+public interface FillListener {
+
+    /**
+     * @param instrumentId id in the InstrumentRegistry
+     * @param aggressorSide side of the aggressive order, the resting order is on the other side
+     * @param price price of the resting order, in ticks
+     * @param quantity quantity filled, in ticks
+     * @param restingTimestamp timestamp of the resting order, its identity at that price
+     * @param restingLeft quantity left on the resting order, in ticks, 0 when it has been filled completely
+     */
+    void onFill(int instrumentId, Side aggressorSide, long price, long quantity, long restingTimestamp, long restingLeft);
+
+}
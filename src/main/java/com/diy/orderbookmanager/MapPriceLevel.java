@@ -0,0 +1,150 @@
+package com.diy.orderbookmanager;
+
+import com.diy.domain.Order;
+import com.diy.domain.OrderView;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+
+/**
+ *   PriceLevel of the concurrent books : orders in arrival order in an OrderQueue, indexed by a ConcurrentHashMap
+ *
+ *   <p>The key is the identity of the order and the value its Node in the queue, which holds the latest version :
+ *   add, modify and delete are one keyed operation plus O(1) in the queue. The level can be read while it is updated.
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+final class MapPriceLevel extends PriceLevel {
+
+    private final Map<Order, OrderQueue.Node> index = new ConcurrentHashMap<>();
+    private final OrderQueue queue = new OrderQueue();
+    private final Set<Order> ordersView = new OrdersView();
+
+
+
+    /**
+     * @param price in ticks
+     */
+    MapPriceLevel(long price) {
+        super(price);
+    }
+
+
+
+    @Override
+    long put(Order order) {
+
+        OrderQueue.Node node = index.get(order);
+        if (node == null) {
+            index.put(order, queue.append(order));  // the key stays the first version
+            return ABSENT;
+        }
+        long previous = node.getOrder().getQuantityTicks();
+        node.setOrder(order);
+        return previous;
+    }
+
+
+    @Override
+    long delete(Order order) {
+
+        OrderQueue.Node node = index.remove(order);
+        if (node == null) {
+            return ABSENT;
+        }
+        queue.remove(node);
+        return node.getOrder().getQuantityTicks();
+    }
+
+
+    @Override
+    boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+
+    /**
+     * @return latest version of each order in arrival order, live view
+     */
+    @Override
+    Collection<Order> getOrders() {
+        return ordersView;
+    }
+
+
+    @Override
+    Set<Order> asSet() {
+        return ordersView;
+    }
+
+
+    @Override
+    void forEach(Consumer<? super OrderView> action) {
+        queue.forEach(action);
+    }
+
+
+    @Override
+    long firstQuantity() {
+        return queue.first().getOrder().getQuantityTicks();
+    }
+
+
+    @Override
+    long firstTimestamp() {
+        return queue.first().getOrder().getTimestampMillis();
+    }
+
+
+    @Override
+    void removeFirst() {
+
+        OrderQueue.Node node = queue.first();
+        index.remove(node.getOrder());
+        queue.remove(node);
+    }
+
+
+    /** the orders are immutable : the Node takes a copy with the quantity left */
+    @Override
+    void reduceFirst(long quantity) {
+
+        OrderQueue.Node node = queue.first();
+        node.setOrder(node.getOrder().withQuantity(quantity));
+    }
+
+
+    @Override
+    public String toString() {
+        return ordersView.toString();
+    }
+
+
+
+    /** read-only Set over the queue : iterates in arrival order, contains() goes through the index */
+    private final class OrdersView extends AbstractSet<Order> {
+
+        @Override
+        public Iterator<Order> iterator() {
+            return queue.iterator();
+        }
+
+        @Override
+        public int size() {
+            return getOrderCount();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return index.containsKey(o);
+        }
+    }
+}
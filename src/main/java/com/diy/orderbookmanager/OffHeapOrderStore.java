@@ -0,0 +1,290 @@
+package com.diy.orderbookmanager;
+
+import com.diy.Side.Side;
+import com.diy.domain.InstrumentRegistry;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+
+/**
+ *   Resting orders of one book, outside of the heap
+ *
+ *   <p>One fixed-width record per order in a direct ByteBuffer, addressed by its slot number :
+ *   <pre>
+ *   0  price      long, ticks
+ *   8  quantity   long, ticks
+ *   16 timestamp  long, millis
+ *   24 next       int, next slot of the same level (FIFO), NIL at the tail
+ *   28 prev       int, previous slot of the same level, NIL at the head
+ *   32 chain      int, next slot of the same hash bucket, or next free slot
+ *   36 side       byte, 0 for a free record
+ *   </pre>
+ *   The index (side, price, timestamp) -> slot is a chained hash table whose buckets are a second direct buffer,
+ *   so a resting order costs no object and no reference for the GC to trace. Freed records are reused first,
+ *   both buffers double when full and slots stay valid. The buffers are released with the store.
+ *
+ *   <p>The instrument is the one of the book, it is not repeated in the records.
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@NotThreadSafe
+final class OffHeapOrderStore {
+
+    /** no slot */
+    static final int NIL = -1;
+
+    static final int DEFAULT_CAPACITY = 1 << 10;
+
+    private static final int PRICE = 0;
+    private static final int QUANTITY = 8;
+    private static final int TIMESTAMP = 16;
+    private static final int NEXT = 24;
+    private static final int PREV = 28;
+    private static final int CHAIN = 32;
+    private static final int SIDE = 36;
+    static final int RECORD_SIZE = 40;  // 3 bytes of padding keep the longs aligned
+
+    private static final int MAX_CAPACITY = Integer.highestOneBit(Integer.MAX_VALUE / RECORD_SIZE);
+    private static final byte FREE = 0;
+    private static final byte BUY = 1;
+    private static final byte SELL = 2;
+
+
+    private final int instrumentId;
+    private final String instrument;
+
+    private ByteBuffer records;
+    private ByteBuffer buckets;     // first slot of each chain, one bucket per record
+    private int capacity;           // records
+    private int used;               // records ever handed out, the free ones are in the free list
+    private int freeHead = NIL;
+    private int size;
+
+
+
+    /**
+     * @param instrumentId of the book, in the InstrumentRegistry
+     * @param capacity initial number of records, power of 2
+     */
+    OffHeapOrderStore(int instrumentId, int capacity) {
+
+        checkArgument(capacity > 0 && capacity <= MAX_CAPACITY && Integer.bitCount(capacity) == 1,
+                "capacity must be a power of 2, at most "+MAX_CAPACITY);
+        this.instrumentId = instrumentId;
+        this.instrument = InstrumentRegistry.getInstance().getSymbol(instrumentId);
+        this.capacity = capacity;
+        this.records = ByteBuffer.allocateDirect(capacity * RECORD_SIZE).order(ByteOrder.nativeOrder());
+        this.buckets = newBuckets(capacity);
+    }
+
+
+
+    /**
+     * @param side
+     * @param price in ticks
+     * @param timestamp in millis
+     * @return slot of the order, or NIL
+     */
+    int find(Side side, long price, long timestamp) {
+
+        byte code = code(side);
+        int slot = buckets.getInt(bucket(code, price, timestamp, capacity) << 2);
+        while (slot != NIL) {
+            int offset = slot * RECORD_SIZE;
+            if (records.getLong(offset + TIMESTAMP) == timestamp && records.getLong(offset + PRICE) == price
+                    && records.get(offset + SIDE) == code) {
+                return slot;
+            }
+            slot = records.getInt(offset + CHAIN);
+        }
+        return NIL;
+    }
+
+
+
+    /**
+     *   Store a new order, not linked to any level yet
+     *
+     * @return slot of the order
+     */
+    int allocate(Side side, long price, long quantity, long timestamp) {
+
+        int slot = freeHead;
+        if (slot != NIL) {
+            freeHead = records.getInt(slot * RECORD_SIZE + CHAIN);
+        } else {
+            if (used == capacity) {
+                grow();
+            }
+            slot = used++;
+        }
+
+        int offset = slot * RECORD_SIZE;
+        byte code = code(side);
+        records.putLong(offset + PRICE, price);
+        records.putLong(offset + QUANTITY, quantity);
+        records.putLong(offset + TIMESTAMP, timestamp);
+        records.putInt(offset + NEXT, NIL);
+        records.putInt(offset + PREV, NIL);
+        records.put(offset + SIDE, code);
+
+        int bucket = bucket(code, price, timestamp, capacity) << 2;
+        records.putInt(offset + CHAIN, buckets.getInt(bucket));
+        buckets.putInt(bucket, slot);
+        size++;
+        return slot;
+    }
+
+
+
+    /**
+     *   Give the record back, the caller has unlinked it from its level
+     *
+     * @param slot
+     */
+    void free(int slot) {
+
+        int offset = slot * RECORD_SIZE;
+        int bucket = bucket(records.get(offset + SIDE), records.getLong(offset + PRICE), records.getLong(offset + TIMESTAMP), capacity) << 2;
+
+        int current = buckets.getInt(bucket);
+        if (current == slot) {
+            buckets.putInt(bucket, records.getInt(offset + CHAIN));
+        } else {
+            int next = records.getInt(current * RECORD_SIZE + CHAIN);
+            while (next != slot) {  // the chains are short : one record per bucket on average
+                current = next;
+                next = records.getInt(current * RECORD_SIZE + CHAIN);
+            }
+            records.putInt(current * RECORD_SIZE + CHAIN, records.getInt(offset + CHAIN));
+        }
+
+        records.put(offset + SIDE, FREE);
+        records.putInt(offset + CHAIN, freeHead);
+        freeHead = slot;
+        size--;
+    }
+
+
+
+    /** double the records and the buckets : the records are copied as they are, the chains are rebuilt */
+    private void grow() {
+
+        checkState(capacity < MAX_CAPACITY, "off-heap order store of "+instrument+" is full ("+capacity+" orders)");
+        int newCapacity = capacity << 1;
+
+        ByteBuffer newRecords = ByteBuffer.allocateDirect(newCapacity * RECORD_SIZE).order(ByteOrder.nativeOrder());
+        newRecords.put(records.duplicate().clear());
+        ByteBuffer newBuckets = newBuckets(newCapacity);
+
+        for (int slot = 0; slot < used; slot++) {
+            int offset = slot * RECORD_SIZE;
+            byte code = newRecords.get(offset + SIDE);
+            if (code == FREE) {
+                continue;  // keeps its place in the free list
+            }
+            int bucket = bucket(code, newRecords.getLong(offset + PRICE), newRecords.getLong(offset + TIMESTAMP), newCapacity) << 2;
+            newRecords.putInt(offset + CHAIN, newBuckets.getInt(bucket));
+            newBuckets.putInt(bucket, slot);
+        }
+
+        records = newRecords;
+        buckets = newBuckets;
+        capacity = newCapacity;
+    }
+
+
+
+    private static ByteBuffer newBuckets(int count) {
+
+        ByteBuffer buckets = ByteBuffer.allocateDirect(count << 2).order(ByteOrder.nativeOrder());
+        for (int i = 0; i < count; i++) {
+            buckets.putInt(i << 2, NIL);
+        }
+        return buckets;
+    }
+
+
+    private static int bucket(byte side, long price, long timestamp, int capacity) {
+
+        long hash = (timestamp * 31 + price) * 0x9E3779B97F4A7C15L + side;
+        int h = (int) (hash ^ (hash >>> 32));
+        return (h ^ (h >>> 16)) & (capacity - 1);
+    }
+
+
+    private static byte code(Side side) {
+        return side == Side.BUY ? BUY : SELL;
+    }
+
+
+
+    long getPrice(int slot) {
+        return records.getLong(slot * RECORD_SIZE + PRICE);
+    }
+    long getQuantity(int slot) {
+        return records.getLong(slot * RECORD_SIZE + QUANTITY);
+    }
+    void setQuantity(int slot, long quantity) {
+        records.putLong(slot * RECORD_SIZE + QUANTITY, quantity);
+    }
+    long getTimestamp(int slot) {
+        return records.getLong(slot * RECORD_SIZE + TIMESTAMP);
+    }
+    Side getSide(int slot) {
+        return records.get(slot * RECORD_SIZE + SIDE) == BUY ? Side.BUY : Side.SELL;
+    }
+    int getNext(int slot) {
+        return records.getInt(slot * RECORD_SIZE + NEXT);
+    }
+    void setNext(int slot, int next) {
+        records.putInt(slot * RECORD_SIZE + NEXT, next);
+    }
+    int getPrev(int slot) {
+        return records.getInt(slot * RECORD_SIZE + PREV);
+    }
+    void setPrev(int slot, int prev) {
+        records.putInt(slot * RECORD_SIZE + PREV, prev);
+    }
+
+
+    int getInstrumentId() {
+        return instrumentId;
+    }
+    String getInstrument() {
+        return instrument;
+    }
+
+
+    /**
+     * @return number of orders stored
+     */
+    int size() {
+        return size;
+    }
+
+
+    /**
+     * @return bytes held outside of the heap
+     */
+    long getOffHeapBytes() {
+        return (long) records.capacity() + buckets.capacity();
+    }
+
+
+    @Override
+    public String toString() {
+        return "OffHeapOrderStore{" +
+                "instrument='" + instrument + '\'' +
+                ", size=" + size +
+                ", capacity=" + capacity +
+                '}';
+    }
+}
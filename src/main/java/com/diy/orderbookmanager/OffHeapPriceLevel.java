@@ -0,0 +1,230 @@
+package com.diy.orderbookmanager;
+
+import com.diy.Side.Side;
+import com.diy.domain.Order;
+import com.diy.domain.OrderView;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.function.Consumer;
+
+import static com.diy.orderbookmanager.OffHeapOrderStore.NIL;
+
+
+/**
+ *   PriceLevel whose orders are records of an OffHeapOrderStore
+ *
+ *   <p>The orders of the level are linked in arrival order through the records (head -> tail) : an add goes to the
+ *   tail, a modify keeps its place, a delete unlinks in O(1). The level itself only holds two slot numbers.
+ *   Only for a book owned by one thread (OrderBookType.OFF_HEAP).
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@NotThreadSafe
+final class OffHeapPriceLevel extends PriceLevel {
+
+    private final Side side;
+    private final OffHeapOrderStore store;
+    private final OrderFlyweight flyweight;
+    private final Set<Order> ordersView = new OrdersView();
+
+    private int head = NIL;  // oldest order
+    private int tail = NIL;  // newest order
+
+
+
+    /**
+     * @param side of the level
+     * @param price in ticks
+     * @param store shared by the levels of both sides of the book
+     */
+    OffHeapPriceLevel(Side side, long price, OffHeapOrderStore store) {
+        super(price);
+        this.side = side;
+        this.store = store;
+        this.flyweight = new OrderFlyweight(store);
+    }
+
+
+
+    @Override
+    long put(Order order) {
+
+        int slot = store.find(side, getPrice(), order.getTimestampMillis());
+        if (slot != NIL) {
+            long previous = store.getQuantity(slot);
+            store.setQuantity(slot, order.getQuantityTicks());
+            return previous;
+        }
+
+        slot = store.allocate(side, getPrice(), order.getQuantityTicks(), order.getTimestampMillis());
+        if (tail == NIL) {
+            head = slot;
+        } else {
+            store.setNext(tail, slot);
+            store.setPrev(slot, tail);
+        }
+        tail = slot;
+        return ABSENT;
+    }
+
+
+    @Override
+    long delete(Order order) {
+
+        int slot = store.find(side, getPrice(), order.getTimestampMillis());
+        if (slot == NIL) {
+            return ABSENT;
+        }
+        long removed = store.getQuantity(slot);
+        unlink(slot);
+        return removed;
+    }
+
+
+    /** unlink a record from the level and give it back to the store */
+    private void unlink(int slot) {
+
+        int prev = store.getPrev(slot);
+        int next = store.getNext(slot);
+        if (prev == NIL) {
+            head = next;
+        } else {
+            store.setNext(prev, next);
+        }
+        if (next == NIL) {
+            tail = prev;
+        } else {
+            store.setPrev(next, prev);
+        }
+        store.free(slot);
+    }
+
+
+    @Override
+    boolean isEmpty() {
+        return head == NIL;
+    }
+
+
+    /**
+     * @return copy of the orders, in arrival order
+     */
+    @Override
+    Collection<Order> getOrders() {
+
+        List<Order> orders = new ArrayList<>(getOrderCount());
+        for (int slot = head; slot != NIL; slot = store.getNext(slot)) {
+            orders.add(flyweight.wrap(slot).toOrder());
+        }
+        return orders;
+    }
+
+
+    @Override
+    Set<Order> asSet() {
+        return ordersView;
+    }
+
+
+    /**
+     *   Visit the orders in arrival order through one reused OrderFlyweight, no allocation
+     */
+    @Override
+    void forEach(Consumer<? super OrderView> action) {
+
+        for (int slot = head; slot != NIL; slot = store.getNext(slot)) {
+            action.accept(flyweight.wrap(slot));
+        }
+    }
+
+
+    @Override
+    long firstQuantity() {
+        return store.getQuantity(head);
+    }
+
+
+    @Override
+    long firstTimestamp() {
+        return store.getTimestamp(head);
+    }
+
+
+    @Override
+    void removeFirst() {
+        unlink(head);
+    }
+
+
+    /** the quantity is updated in place : a partial fill allocates nothing */
+    @Override
+    void reduceFirst(long quantity) {
+        store.setQuantity(head, quantity);
+    }
+
+
+    @Override
+    public String toString() {
+
+        StringJoiner joiner = new StringJoiner(", ", "[", "]");
+        forEach(order -> joiner.add(order.toString()));
+        return joiner.toString();
+    }
+
+
+
+    /** read-only Set over the records : iterates in arrival order, each order is copied on the heap when it is read */
+    private final class OrdersView extends AbstractSet<Order> {
+
+        @Override
+        public Iterator<Order> iterator() {
+
+            return new Iterator<Order>() {   // no remove()
+
+                private int next = head;
+
+                @Override
+                public boolean hasNext() {
+                    return next != NIL;
+                }
+
+                @Override
+                public Order next() {
+
+                    if (next == NIL) {
+                        throw new NoSuchElementException();
+                    }
+                    Order order = flyweight.wrap(next).toOrder();
+                    next = store.getNext(next);
+                    return order;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return getOrderCount();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+
+            if (!(o instanceof Order)) {
+                return false;
+            }
+            Order order = (Order) o;
+            return order.getSide() == side && order.getPriceTicks() == getPrice() && order.getInstrumentId() == store.getInstrumentId()
+                    && store.find(side, getPrice(), order.getTimestampMillis()) != NIL;
+        }
+    }
+}
@@ -1,59 +1,148 @@
 package com.diy.orderbookmanager;
 
 import com.diy.Side.Side;
+import com.diy.Utils.FixedPoint;
+import com.diy.collections.LongObjectHashMap;
+import com.diy.domain.InstrumentRegistry;
 import com.diy.domain.Order;
+import com.diy.domain.OrderView;
 import lombok.extern.slf4j.Slf4j;
 
-import javax.annotation.concurrent.Immutable;
 import javax.annotation.concurrent.ThreadSafe;
+import java.lang.invoke.VarHandle;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentSkipListMap;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+import static com.diy.Utils.FixedPoint.toBigDecimal;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Objects.requireNonNull;
 
 
 @Slf4j
 @ThreadSafe
 public final class OrderBook {
 
-    private final Map<BigDecimal, Set<Order>> orderBookBid;  // BigDecimal hit the performance a bit, but it's very accurate in calculation.
-    private final Map<BigDecimal,Set<Order>> orderBookAsk;   // BTC being very expensive, then accuracy matters
-    private final String Instrument;                   // in Crypto price, we have often compounding decimal point operations.
+    private static final int OPTIMISTIC_SNAPSHOT_TRIES = 8;
+
+    private final BookSide orderBookBid;  // keyed by price in ticks of 0.01 (see FixedPoint), no BigDecimal on the update path
+    private final BookSide orderBookAsk;  // long is exact for the price range 0.01 - 999.99
+    private final String Instrument;
+    private final int instrumentId;                      // id in the InstrumentRegistry
+    private final OrderBookType type;
+    private final LongObjectHashMap<OrderIdPriceLevel.Handle> ordersById; // market by order only, guarded by the write lock
+
+    private long sequence;                               // number of changes applied, guarded by the write lock
+    private long movedFrom = FixedPoint.NO_PRICE;        // price the last order applied has left (market by order), guarded by the write lock
+    private volatile long version;                       // seqlock for the snapshots : odd while a writer is in the book
+    private volatile TopOfBook topOfBook = TopOfBook.EMPTY; // immutable, replaced when the best level of a side changes
+
+    private final DepthListeners depthListeners;  // level changes, called under the write lock
+    private final UpdateListeners updateListeners; // order changes (journal), called under the write lock
+    private final DepthEvent depthEvent;          // refilled for each change
 
 
 
     //Constructor
     public OrderBook(String product) {
+        this(product, OrderBookType.SKIP_LIST);
+    }
 
 
-        Comparator<BigDecimal> ascendingPrice = (p1, p2) -> {
-            if (p1.compareTo(p2)==0) {
-                return 0;
-            }
-            if (p1.compareTo(p2)<0) {
-                return 1;
-            }
-            return -1;
-        };
 
-        Comparator<BigDecimal> descendingPrice = (p1,p2) -> {
-            if (p1.compareTo(p2)==0) {
-                return 0;
-            }
-            if (p1.compareTo(p2)>0) {
-                return 1;
-            }
-            return -1;
-        };
+    /**
+     * @param product instrument
+     * @param type storage engine for each side
+     */
+    public OrderBook(String product, OrderBookType type) {
+        this(product, type, new DepthListeners());
+    }
+
+
+
+    /**
+     * @param product instrument
+     * @param type storage engine for each side
+     * @param marketByOrder true to key the orders by their exchange order id (see update)
+     */
+    public OrderBook(String product, OrderBookType type, boolean marketByOrder) {
+        this(product, type, marketByOrder, new DepthListeners(), new UpdateListeners());
+    }
+
 
-        //TreeMap
-        orderBookBid = new ConcurrentSkipListMap<>(ascendingPrice);  //O(log n)  // Treemap concurrent variant
-        orderBookAsk = new ConcurrentSkipListMap<>(descendingPrice);  // O(log n) // Treemap concurrent variant
+
+    /**
+     * @param product instrument
+     * @param type storage engine for each side
+     * @param depthListeners receive the level changes of this book
+     */
+    OrderBook(String product, OrderBookType type, DepthListeners depthListeners) {
+        this(product, type, depthListeners, new UpdateListeners());
+    }
+
+
+
+    /**
+     * @param product instrument
+     * @param type storage engine for each side
+     * @param depthListeners receive the level changes of this book
+     * @param updateListeners receive the order changes of this book
+     */
+    OrderBook(String product, OrderBookType type, DepthListeners depthListeners, UpdateListeners updateListeners) {
+        this(product, type, false, depthListeners, updateListeners);
+    }
+
+
+
+    /**
+     * @param product instrument
+     * @param type storage engine for each side
+     * @param marketByOrder true to key the orders by their exchange order id, SKIP_LIST and PRICE_LADDER only
+     * @param depthListeners receive the level changes of this book
+     * @param updateListeners receive the order changes of this book
+     */
+    OrderBook(String product, OrderBookType type, boolean marketByOrder, DepthListeners depthListeners, UpdateListeners updateListeners) {
+
+        requireNonNull(type);
+        this.instrumentId = InstrumentRegistry.getInstance().register(product);
+        if (marketByOrder) {
+            checkArgument(type.isConcurrent(), "market by order needs SKIP_LIST or PRICE_LADDER, not %s", type);
+            LongObjectHashMap<OrderIdPriceLevel.Handle> index = new LongObjectHashMap<>();  // one for both sides
+            LongFunction<PriceLevel> newLevel = price -> new OrderIdPriceLevel(price, index);
+            this.ordersById = index;
+            orderBookBid = type == OrderBookType.PRICE_LADDER ? new PriceLadderBookSide(true, newLevel) : new SkipListBookSide(true, newLevel);
+            orderBookAsk = type == OrderBookType.PRICE_LADDER ? new PriceLadderBookSide(false, newLevel) : new SkipListBookSide(false, newLevel);
+        } else {
+            this.ordersById = null;
+            switch (type) {
+                case PRICE_LADDER:
+                    orderBookBid = new PriceLadderBookSide(true);   // O(1) highest price first
+                    orderBookAsk = new PriceLadderBookSide(false);  // O(1) lowest price first
+                    break;
+                case TREE_MAP:
+                    orderBookBid = new TreeMapBookSide(true);   // single thread, highest price first
+                    orderBookAsk = new TreeMapBookSide(false);  // single thread, lowest price first
+                    break;
+                case OFF_HEAP:
+                    OffHeapOrderStore store = new OffHeapOrderStore(instrumentId, OffHeapOrderStore.DEFAULT_CAPACITY); // both sides
+                    orderBookBid = new TreeMapBookSide(true, price -> new OffHeapPriceLevel(Side.BUY, price, store));
+                    orderBookAsk = new TreeMapBookSide(false, price -> new OffHeapPriceLevel(Side.SELL, price, store));
+                    break;
+                default:
+                    orderBookBid = new SkipListBookSide(true);   //O(log n)  // Treemap concurrent variant - highest price first
+                    orderBookAsk = new SkipListBookSide(false);  // O(log n) // Treemap concurrent variant - lowest price first
+            }
+        }
         this.Instrument = product;
+        this.type = type;
+        this.depthListeners = requireNonNull(depthListeners);
+        this.updateListeners = requireNonNull(updateListeners);
+        this.depthEvent = new DepthEvent(product);
 
-        log.info("new OrderBook created for "+product+" : "+this+" !");
+        log.info("new OrderBook created for "+product+" ("+type+(marketByOrder ? ", market by order" : "")+")");
     }
 
 
@@ -79,51 +168,249 @@ public final class OrderBook {
 
 
 
-    /****
+    /**
      *
-     *    => Add new Order in Atomic way
+     *    => Apply an update from the exchange in one pass : add, modify or delete (quantity 0)
+     *
+     *    <p>One lookup on the side, one keyed operation in the level, no exception and no temporary collection.
+     *
+     *    <p>A market by order book finds the order by its id instead, wherever it rests : a new quantity at the same
+     *    price keeps its place in the queue, a new price moves it to the back of the queue of its new level (the
+     *    listeners see a delete then an add), a quantity 0 deletes it at the price it rests at.
      *
      * @author  Gothard GOTENI
      * @version 1.0
-     * @since   16/01/2022
+     * @since   23/01/2022
      *
      * @param order
+     * @return UpdateResult
+     */
+    public synchronized UpdateResult update(Order order) { // writers are serialized per book, readers are lock-free
+
+        beginWrite();
+        try {
+            UpdateResult result = apply(order);
+            if (result.isApplied()) {
+                publish(order.getSide(), touched(order.getSide(), order.getPriceTicks()));
+            }
+            return result;
+        } finally {
+            version++;
+        }
+    }
+
+
+
+    /**
      *
-     * @return boolean Successful or Not
+     *    => Apply a batch in one acquisition of the write lock, side by side, and publish the TopOfBook once per side
      *
-     ******/
-    public boolean addOrder(Order order){ // this Method uses Atomic processes
-        boolean success=false;
+     *    <p>Only the orders of this instrument which have no result yet are applied, in their relative order :
+     *    the caller can pass a whole packet mixing several instruments.
+     *
+     * @param orders batch
+     * @param from index of the first order of this book
+     * @param results one result per order, filled for the orders of this book
+     */
+    synchronized void update(List<Order> orders, int from, UpdateResult[] results) {
+
+        beginWrite();
+        try {
+            publish(Side.BUY, applySide(orders, from, results, Side.BUY));
+            publish(Side.SELL, applySide(orders, from, results, Side.SELL));
+        } finally {
+            version++;
+        }
+    }
 
-        BigDecimal price = order.getPrice();
-        Side side = order.getSide();
 
-        Map<BigDecimal, Set<Order>> orderBook = getOrderBookBySide(side);
 
+    /**
+     * @return the best price changed on that side by the batch, or FixedPoint.NO_PRICE if nothing has changed
+     */
+    private long applySide(List<Order> orders, int from, UpdateResult[] results, Side side) {
 
-        Set<Order> OrdersPresent = orderBook.computeIfPresent(price , (k,v) ->{   //Atomic Add to be Thread safe
+        long touched = FixedPoint.NO_PRICE;
+        for (int i = from; i < orders.size(); i++) {
+
+            Order order = orders.get(i);
+            if (results[i] != null || order.getSide() != side || order.getInstrumentId() != instrumentId) {
+                continue;
+            }
+            results[i] = apply(order);
+            if (results[i].isApplied()) {
+                long price = touched(side, order.getPriceTicks());
+                if (touched == FixedPoint.NO_PRICE || isBetter(side, price, touched)) {
+                    touched = price;
+                }
+            }
+        }
+        return touched;
+    }
 
-            //log.debug("computeIfPresent => OrderBook ADD with existing price="+price+" => order "+order);
-            Set<Order> orderSet = orderBook.get(price);
-            orderSet.add(order);
-            return orderSet;
-        }) ;
 
 
-        Set<Order> OrdersAbsent = orderBook.computeIfAbsent(price , k ->{   //Atomic Add to be Thread safe
+    /**
+     *   Apply one update without publishing
+     */
+    private UpdateResult apply(Order order) {
+        return ordersById == null ? applyAtPrice(order) : applyById(order);
+    }
+
 
-            //log.debug("computeIfAbsent => OrderBook ADD with new price="+price+" => order "+order);
-            Set<Order> orderSet = Collections.newSetFromMap(new ConcurrentHashMap<>()); //  (Equivalent to HashSet) O(log(n)) - the same thread-safe and performance guarantees as the map passed as argument
-            orderSet.add(order);                                            //You typically use this method to create a concurrent set from a concurrent map, because there is no ConcurrentHashSet in the API.
-            return orderSet;
-        }) ;
 
+    /**
+     *   Market by order : one primitive lookup of the order id, then the keyed operation at the price it rests at.
+     *   The price an order has left is kept in movedFrom for the publication (see touched). An order without id,
+     *   or with the id of an order of the other side, is NOT_FOUND like any other update which cannot be applied.
+     */
+    private UpdateResult applyById(Order order) {
 
-        if (OrdersAbsent!=null || OrdersPresent!=null ){
-                success=true;
+        if (order.getOrderId() == Order.NO_ORDER_ID) {
+            return UpdateResult.NOT_FOUND;
+        }
+        OrderIdPriceLevel.Handle handle = ordersById.get(order.getOrderId());
+        if (handle == null) {
+            return applyAtPrice(order);  // new order, or NOT_FOUND for a delete
+        }
+        Order resting = handle.getOrder();
+        if (resting.getSide() != order.getSide()) {
+            return UpdateResult.NOT_FOUND;
+        }
+        if (resting.getPriceTicks() == order.getPriceTicks()) {
+            return applyAtPrice(order);
         }
 
-        return success;
+        applyAtPrice(resting.withQuantity(0));
+        movedFrom = resting.getPriceTicks();
+        if (order.getQuantityTicks() == 0) {
+            return UpdateResult.DELETED;
+        }
+        applyAtPrice(order);
+        return UpdateResult.MODIFIED;
+    }
+
+
+
+    /**
+     * @param price price of the order applied
+     * @return the better of that price and the price the order has left, if it has moved
+     */
+    private long touched(Side side, long price) {
+
+        long from = movedFrom;
+        if (from == FixedPoint.NO_PRICE) {
+            return price;
+        }
+        movedFrom = FixedPoint.NO_PRICE;
+        return isBetter(side, from, price) ? from : price;
+    }
+
+
+
+    /**
+     *   Apply one update at the price of the order : one lookup on the side, one keyed operation in the level
+     */
+    private UpdateResult applyAtPrice(Order order) {
+
+        BookSide orderBook = getBookSide(order.getSide());
+        long price = order.getPriceTicks();
+
+        PriceLevel level;
+        UpdateResult result;
+        if (order.getQuantityTicks() > 0) {
+            level = orderBook.getOrCreateLevel(price);
+            result = level.apply(order);
+        } else {
+            level = orderBook.getLevel(price);
+            if (level == null) {
+                return UpdateResult.NOT_FOUND;
+            }
+            result = level.apply(order);
+            if (result == UpdateResult.DELETED && level.isEmpty()) {
+                orderBook.removeLevelIfEmpty(price); // if there is no Order left, then we delete the key (price)
+            }
+        }
+
+        if (result.isApplied()) {
+            changed(order.getSide(), level, result);
+            updated(order);
+        }
+        return result;
+    }
+
+
+
+    /**
+     *   Send an applied order to the UpdateListeners
+     */
+    private void updated(Order order) {
+
+        if (!updateListeners.isEmpty()) {
+            updateListeners.onUpdate(instrumentId, order.getSide(), order.getPriceTicks(), order.getQuantityTicks(), order.getTimestampMillis());
+        }
+    }
+
+
+
+    /**
+     *   Count a change of a level and send it to the DepthListeners
+     *
+     * @param side
+     * @param level level after the change
+     * @param result ADDED, MODIFIED or DELETED
+     */
+    private void changed(Side side, PriceLevel level, UpdateResult result) {
+
+        sequence++;
+        if (depthListeners.isEmpty()) {
+            return;
+        }
+
+        DepthEventType eventType = DepthEventType.LEVEL_CHANGED;
+        if (level.getOrderCount() == 0) {
+            eventType = DepthEventType.LEVEL_REMOVED;           // empty levels are removed from the side
+        } else if (result == UpdateResult.ADDED && level.getOrderCount() == 1) {
+            eventType = DepthEventType.LEVEL_ADDED;             // first order of the level
+        }
+        depthListeners.onDepthEvent(depthEvent.set(eventType, side, level.getPrice(), level.getTotalQuantity(), level.getOrderCount(), sequence));
+    }
+
+
+
+
+    /****
+     *
+     *    => Add new Order in Atomic way
+     *
+     * @author  Gothard GOTENI
+     * @version 1.0
+     * @since   16/01/2022
+     *
+     * @param order
+     *
+     * @return boolean Successful or Not
+     *
+     ******/
+    public synchronized boolean addOrder(Order order){
+
+        if (ordersById != null) {
+            update(order);     // by order id
+            return true;
+        }
+        beginWrite();
+        try {
+            PriceLevel level = getBookSide(order.getSide()).getOrCreateLevel(order.getPriceTicks());
+            UpdateResult result = level.apply(order);
+            if (result.isApplied()) {
+                changed(order.getSide(), level, result);
+                updated(order);
+                publish(order.getSide(), order.getPriceTicks());
+            }
+            return true;
+        } finally {
+            version++;
+        }
     }
 
 
@@ -139,40 +426,235 @@ public final class OrderBook {
      * @param order
      * @return boolean Successful or Not
      */
-    public boolean deleteOrder(Order order) {
+    public synchronized boolean deleteOrder(Order order) {
+
+        if (ordersById != null) {
+            return update(order.withQuantity(0)).isApplied();  // by order id
+        }
+        long price = order.getPriceTicks();
+        BookSide orderBook = getBookSide(order.getSide());
+
+        beginWrite();
+        try {
+            PriceLevel level = orderBook.getLevel(price);
+
+            if (level == null || !level.remove(order)){
+                log.debug("this record order {} does not exist !", order); // counted by OrderBookMetrics as IGNORED
+                return false;
+            }
+
+            orderBook.removeLevelIfEmpty(price); // if there is no Order left, then we delete the key (price)
+            changed(order.getSide(), level, UpdateResult.DELETED);
+            if (!updateListeners.isEmpty()) {
+                updateListeners.onUpdate(instrumentId, order.getSide(), price, 0, order.getTimestampMillis());
+            }
+            publish(order.getSide(), price);
 
-        BigDecimal price = order.getPrice();
-        Side side = order.getSide();
-        boolean success = false;
+            return true;
+        } finally {
+            version++;
+        }
+    }
+
+
+
+    /**
+     *
+     *    => Match an aggressive order against the other side in price-time priority
+     *
+     *    <p>The best levels are swept while they cross the limit, each level from its oldest order (see PriceLevel.match).
+     *    Filled orders leave the book, emptied levels are removed, the DepthListeners get one change per level hit,
+     *    the UpdateListeners one change per resting order hit, and the TopOfBook is published once. Nothing of the aggressive order is left in the book : resting the
+     *    remainder is up to the caller (see com.diy.matching.MatchingEngine).
+     *
+     * @param side side of the aggressive order
+     * @param limitPrice in ticks, or FixedPoint.NO_PRICE for a market order
+     * @param quantity in ticks, > 0
+     * @param allOrNone true to fill the whole quantity or nothing (fill or kill)
+     * @param listener receives the fills, under the write lock
+     * @return quantity filled, in ticks
+     */
+    public synchronized long match(Side side, long limitPrice, long quantity, boolean allOrNone, FillListener listener) {
 
-        Map<BigDecimal, Set<Order>> orderBook = getOrderBookBySide(side);
+        requireNonNull(side);
+        requireNonNull(listener);
+        checkArgument(quantity > 0, "quantity must be positive");
 
+        Side restingSide = side == Side.BUY ? Side.SELL : Side.BUY;
+        BookSide bookSide = getBookSide(restingSide);
+        if (allOrNone && !canFill(bookSide, side, limitPrice, quantity)) {
+            return 0;
+        }
 
-        Set<Order> OrdersPresent = orderBook.computeIfPresent(price , (k,v) ->{   //Atomic Add to be Thread safe
+        beginWrite();
+        try {
+            long remaining = quantity;
+            long touched = FixedPoint.NO_PRICE;
+            long best;
+            while (remaining > 0 && (best = bookSide.getBestPrice()) != FixedPoint.NO_PRICE && crosses(side, best, limitPrice)) {
+
+                PriceLevel level = bookSide.getLevel(best);
+                remaining -= level.match(instrumentId, side, remaining, listener, updateListeners);
+                if (level.isEmpty()) {
+                    bookSide.removeLevelIfEmpty(best);
+                }
+                changed(restingSide, level, UpdateResult.MODIFIED);
+                if (touched == FixedPoint.NO_PRICE) {
+                    touched = best;
+                }
+            }
+            publish(restingSide, touched);
+            return quantity - remaining;
+        } finally {
+            version++;
+        }
+    }
 
-            Set<Order> orderSet = orderBook.get(price);
-            orderSet.remove(order);
-            return orderSet;
-        }) ;
 
 
-        if (OrdersPresent.isEmpty()) { // if there is no Orderbook left
+    /**
+     * @return true if the levels crossing the limit hold at least quantity
+     */
+    private static boolean canFill(BookSide bookSide, Side side, long limitPrice, long quantity) {
 
-            success = true;
-            if (orderBook.remove(price) == null) { // then we delete the key (price)
-                log.error(" - orderBook -Internal Error : key  "+price+" could not be deleted successfully !");
-                success = false;
+        long available = 0;
+        Iterator<PriceLevel> iterator = bookSide.iterator();
+        while (available < quantity && iterator.hasNext()) {
+            PriceLevel level = iterator.next();
+            if (!crosses(side, level.getPrice(), limitPrice)) {
+                break;
             }
-        }else if (OrdersPresent == null){
-            success = false;
-            log.info("this record order "+order+" does not exist !");
-        }else{
-            success = true;
+            available += level.getTotalQuantity();
+        }
+        return available >= quantity;
+    }
+
+
+
+    /**
+     * @return true if an aggressive order of that side and limit trades with a resting order at price
+     */
+    private static boolean crosses(Side side, long price, long limitPrice) {
+        return limitPrice == FixedPoint.NO_PRICE || (side == Side.BUY ? price <= limitPrice : price >= limitPrice);
+    }
+
+
+
+    /**
+     *   Publish a new TopOfBook if the changes have touched the best level of their side
+     *
+     * @param side side of the changes
+     * @param touched best price changed on that side, in ticks, or FixedPoint.NO_PRICE if nothing has changed
+     */
+    private void publish(Side side, long touched) {
+
+        if (touched == FixedPoint.NO_PRICE) {
+            return;
+        }
+
+        TopOfBook top = topOfBook;
+        BookSide bookSide = getBookSide(side);
+        long best = bookSide.getBestPrice();
+        if (best == top.getPrice(side) && (best == FixedPoint.NO_PRICE || isBetter(side, best, touched))) {
+            return; // levels behind the best one : nothing to publish
+        }
+
+        PriceLevel level = best == FixedPoint.NO_PRICE ? null : bookSide.getLevel(best);
+        long quantity = level == null ? 0 : level.getTotalQuantity();
+        int count = level == null ? 0 : level.getOrderCount();
+
+        topOfBook = side == Side.BUY
+                ? new TopOfBook(best, quantity, count, top.getAskPrice(), top.getAskQuantity(), top.getAskCount(), sequence)
+                : new TopOfBook(top.getBidPrice(), top.getBidQuantity(), top.getBidCount(), best, quantity, count, sequence);
+
+        if (best != top.getPrice(side) && !depthListeners.isEmpty()) {
+            depthListeners.onDepthEvent(depthEvent.set(DepthEventType.BEST_PRICE_CHANGED, side, best, quantity, count, sequence));
+        }
+    }
+
+
+
+    /**
+     * @return true if price is strictly better than other on that side : higher for a bid, lower for an ask
+     */
+    private static boolean isBetter(Side side, long price, long other) {
+        return side == Side.BUY ? price > other : price < other;
+    }
+
+
+
+    /**
+     *   Enter the book as a writer (seqlock) : the version is odd before any change of the book can be seen
+     *   (see snapshot). The writer leaves it with version++, a volatile write, after its changes.
+     */
+    private void beginWrite() {
+        version++;
+        VarHandle.storeStoreFence();
+    }
+
+
+
+    /**
+     *   Copy the first levels of both sides into a buffer owned by the caller, no allocation
+     *
+     *   <p>Optimistic read : the levels are copied without the lock, then the copy is kept only if no writer has
+     *   entered the book meanwhile (seqlock). After a few failed tries the copy is made under the write lock.
+     *   Either way bid and ask are taken at the same sequence.
+     *
+     * @param snapshot filled up to snapshot.getMaxDepth() levels per side
+     */
+    public void snapshot(BookSnapshot snapshot) {
+
+        for (int attempt = 0; attempt < OPTIMISTIC_SNAPSHOT_TRIES; attempt++) {
+
+            long before = version;
+            if ((before & 1) == 0) {
+                copyTo(snapshot);
+                VarHandle.loadLoadFence();   // the copy is read before the version is checked again
+                if (version == before) {
+                    return;
+                }
+            }
+            Thread.onSpinWait();
+        }
+
+        synchronized (this) {  // the writers keep coming : wait for our turn
+            copyTo(snapshot);
         }
+    }
+
 
 
+    private void copyTo(BookSnapshot snapshot) {
 
-        return success;
+        snapshot.clear(Instrument);
+        snapshot.setSequence(sequence);
+        copyTo(snapshot, Side.BUY);
+        copyTo(snapshot, Side.SELL);
+    }
+
+
+
+    private void copyTo(BookSnapshot snapshot, Side side) {
+
+        int depth = 0;
+        Iterator<PriceLevel> iterator = getBookSide(side).iterator();
+        while (depth < snapshot.getMaxDepth() && iterator.hasNext()) {
+            PriceLevel level = iterator.next();
+            snapshot.setLevel(side, depth++, level.getPrice(), level.getTotalQuantity(), level.getOrderCount());
+        }
+        snapshot.setDepth(side, depth);
+    }
+
+
+
+    /**
+     *   Best bid and best ask, consistent with each other : one volatile read, no lock, no allocation
+     *
+     * @return TopOfBook, TopOfBook.EMPTY before the first order
+     */
+    public TopOfBook getTopOfBook() {
+        return topOfBook;
     }
 
 
@@ -190,13 +672,12 @@ public final class OrderBook {
     public Map<BigDecimal, Set<Order>> getOrdersUpToLevel(String instrument, Side side, int level) {
 
         Map<BigDecimal, Set<Order>> ordersUpToLeve = new HashMap<>(); //simple hashMap is good enough and it boosts perf
-        Map<BigDecimal, Set<Order>> orderBook = getOrderBookBySide(side);
-        Iterator<Map.Entry<BigDecimal, Set<Order>>> iterator = orderBook.entrySet().iterator();
+        Iterator<PriceLevel> iterator = getBookSide(side).iterator();
 
         for( int cmpt=1;iterator.hasNext();cmpt++){
 
-            Map.Entry<BigDecimal, Set<Order>> entry = iterator.next();
-            ordersUpToLeve.put(entry.getKey(),entry.getValue());
+            PriceLevel priceLevel = iterator.next();
+            ordersUpToLeve.put(toBigDecimal(priceLevel.getPrice()),priceLevel.asSet()); // BigDecimal only at the API edge
 
             if(cmpt==level) {
                 break;
@@ -216,23 +697,28 @@ public final class OrderBook {
     public BigDecimal getAveragePriceOverLevel( Side side, int level) {
 
         BigDecimal averagePrice=BigDecimal.ZERO;
-        BigDecimal numerator=BigDecimal.ZERO;
-        BigDecimal denominator=BigDecimal.ZERO;
+        long numeratorHi=0;   // sum(price x qty) can overflow a long => kept on 128 bits (hi:lo)
+        long numeratorLo=0;
+        long denominator=0;
 
-        Map<BigDecimal, Set<Order>> orderBook = getOrderBookBySide(side);
-        Iterator<Map.Entry<BigDecimal, Set<Order>>> iterator = orderBook.entrySet().iterator();
+        Iterator<PriceLevel> iterator = getBookSide(side).iterator();
 
         for( int cmpt=1;iterator.hasNext();cmpt++){
 
-            Map.Entry<BigDecimal, Set<Order>> entry = iterator.next();
+            PriceLevel priceLevel = iterator.next();
 
-            BigDecimal sumQty =  entry.getValue().stream().map(x ->   x.getQuantity()).reduce((e1,e2)->e1.add(e2)).get();
-            BigDecimal sumPrQty =  sumQty.multiply(entry.getKey()) ;
-            numerator =numerator.add(sumPrQty);
-            denominator=denominator.add(sumQty);
+            long sumQty = priceLevel.getTotalQuantity();
+            long price = priceLevel.getPrice();
 
-            if(cmpt==level || cmpt==orderBook.size()) {
-                return numerator.divide(denominator, RoundingMode.DOWN);
+            long productLo = price * sumQty;
+            long sumLo = numeratorLo + productLo;
+            numeratorHi += Math.multiplyHigh(price, sumQty) + (Long.compareUnsigned(sumLo, numeratorLo) < 0 ? 1 : 0);
+            numeratorLo = sumLo;
+            denominator += sumQty;
+
+            if(cmpt==level || !iterator.hasNext()) {
+                return toBigDecimal(numeratorHi, numeratorLo, 2 * FixedPoint.SCALE)
+                        .divide(toBigDecimal(denominator), RoundingMode.DOWN);
             }
         }
 
@@ -248,23 +734,20 @@ public final class OrderBook {
      */
     public BigDecimal getTotalQtyOverLevel( Side side, int level) {
 
-        BigDecimal totalQtyOverLevel = BigDecimal.ZERO;
+        long totalQtyOverLevel = 0;
 
-        Map<BigDecimal, Set<Order>> orderBook = getOrderBookBySide(side);
-        Iterator<Map.Entry<BigDecimal, Set<Order>>> iterator = orderBook.entrySet().iterator();
+        Iterator<PriceLevel> iterator = getBookSide(side).iterator();
 
         for( int cmpt=1;iterator.hasNext();cmpt++){
 
-            Map.Entry<BigDecimal, Set<Order>> entry = iterator.next();
-            BigDecimal sumQty =  entry.getValue().stream().map(x ->   x.getQuantity()).reduce((e1,e2)->e1.add(e2)).get();
-            totalQtyOverLevel =totalQtyOverLevel.add(sumQty);
+            totalQtyOverLevel += iterator.next().getTotalQuantity();
 
             if(cmpt==level) {
                 break;
             }
         }
 
-        return totalQtyOverLevel ;
+        return toBigDecimal(totalQtyOverLevel) ;
     }
 
 
@@ -281,18 +764,15 @@ public final class OrderBook {
     public Map<BigDecimal, List<Number>> getVolumeWeightedPriceOverLevel( Side side, int level) {
 
         Map<BigDecimal, List<Number>> volumeWeightedPrice= new LinkedHashMap<>();
-        Map<BigDecimal, Set<Order>> orderBook = getOrderBookBySide(side);
-        Iterator<Map.Entry<BigDecimal, Set<Order>>> iterator = orderBook.entrySet().iterator();
+        Iterator<PriceLevel> iterator = getBookSide(side).iterator();
 
         for( int cmpt=1;iterator.hasNext();cmpt++){
 
-            Map.Entry<BigDecimal, Set<Order>> entry = iterator.next();
-            Optional<BigDecimal> sumOpt =  entry.getValue().stream().map(x ->   x.getQuantity()).reduce((e1,e2)->e1.add(e2));
-
-            BigDecimal sum = sumOpt.orElse(BigDecimal.ZERO);
+            PriceLevel priceLevel = iterator.next();
+            BigDecimal sum = toBigDecimal(priceLevel.getTotalQuantity());
 
-            int count =entry.getValue().size();
-            volumeWeightedPrice.put(entry.getKey(), Arrays.asList(count,sum));
+            int count =priceLevel.getOrderCount();
+            volumeWeightedPrice.put(toBigDecimal(priceLevel.getPrice()), Arrays.asList(count,sum));
 
             if(cmpt==level) {
                 break;
@@ -313,9 +793,26 @@ public final class OrderBook {
      *
      *
      * @param side
-     * @return Map<BigDecimal,Set<Order> > : orderbookBid or orderbookAsk
+     * @return Map<Long,Set<Order> > : orderbookBid or orderbookAsk, keyed by price in ticks
      */
-    public Map<BigDecimal,Set<Order> > getOrderBookBySide(Side side) {
+    public Map<Long,Set<Order> > getOrderBookBySide(Side side) {
+
+        Map<Long,Set<Order>> orderBook = new LinkedHashMap<>(); // sorted from the best price
+        Iterator<PriceLevel> iterator = getBookSide(side).iterator();
+        while (iterator.hasNext()) {
+            PriceLevel priceLevel = iterator.next();
+            orderBook.put(priceLevel.getPrice(), priceLevel.asSet());
+        }
+        return orderBook;
+    }
+
+
+
+    /**
+     * @param side
+     * @return BookSide : orderbookBid or orderbookAsk
+     */
+    BookSide getBookSide(Side side) {
 
         switch(side) {
             case BUY : return orderBookBid;
@@ -326,6 +823,84 @@ public final class OrderBook {
 
 
 
+    public String getInstrument() {
+        return Instrument;
+    }
+
+
+    /**
+     * @return id of the instrument in the InstrumentRegistry
+     */
+    public int getInstrumentId() {
+        return instrumentId;
+    }
+
+
+
+    /**
+     * @return storage engine used by this book
+     */
+    public OrderBookType getType() {
+        return type;
+    }
+
+
+
+    /**
+     * @return true if the orders are keyed by their exchange order id
+     */
+    public boolean isMarketByOrder() {
+        return ordersById != null;
+    }
+
+
+
+    /**
+     *
+     *    => Cancel a resting order by its exchange order id, in O(1) wherever it rests (market by order)
+     *
+     * @param orderId exchange order id
+     * @return DELETED, or NOT_FOUND if no order rests with that id
+     */
+    public synchronized UpdateResult cancel(long orderId) {
+
+        Order resting = getOrder(orderId);
+        return resting == null ? UpdateResult.NOT_FOUND : update(resting.withQuantity(0));
+    }
+
+
+
+    /**
+     *
+     *    => Modify a resting order by its exchange order id (market by order) : a new price moves it to its new
+     *    level, a new quantity at the same price keeps its place, a quantity 0 cancels it
+     *
+     * @param orderId exchange order id
+     * @param price in ticks
+     * @param quantity in ticks
+     * @return MODIFIED, DELETED, or NOT_FOUND if no order rests with that id
+     */
+    public synchronized UpdateResult modify(long orderId, long price, long quantity) {
+
+        Order resting = getOrder(orderId);
+        return resting == null ? UpdateResult.NOT_FOUND : update(resting.withPriceAndQuantity(price, quantity));
+    }
+
+
+
+    /**
+     * @param orderId exchange order id
+     * @return latest version of the order resting with that id, or null (market by order)
+     */
+    public synchronized Order getOrder(long orderId) {
+
+        checkState(ordersById != null, "%s is not a market by order book", Instrument);
+        OrderIdPriceLevel.Handle handle = ordersById.get(orderId);
+        return handle == null ? null : handle.getOrder();
+    }
+
+
+
 
 
 
@@ -346,21 +921,31 @@ public final class OrderBook {
 
         if(instrument.equals(this.Instrument)) {
 
-            Map<BigDecimal, Set<Order>> orderBook = getOrderBookBySide(side);
-            Optional<BigDecimal> firstKey =orderBook.keySet().stream().findFirst();
-
-            if(firstKey .isPresent()){
-                bestPrice=Optional.of(firstKey.get());
+            long bestPriceTicks = getBestPriceTicks(side);
+            if(bestPriceTicks != FixedPoint.NO_PRICE){
+                bestPrice=Optional.of(toBigDecimal(bestPriceTicks));
             }
 
         }else{
-            log.info("order for product "+instrument+" ignored ! This OrderBook is set for "+this.Instrument);
+            log.debug("order for product {} ignored ! This OrderBook is set for {}", instrument, this.Instrument);
         }
         return bestPrice;
     }
 
 
 
+    /**
+     *
+     * @param side
+     * @return best price in ticks, or FixedPoint.NO_PRICE if that side is empty
+     */
+    long getBestPriceTicks(Side side){
+
+        return topOfBook.getPrice(side);
+    }
+
+
+
 
     /**
      *
@@ -372,36 +957,84 @@ public final class OrderBook {
      *
      * @param instrument
      * @param side
-     * @param price
+     * @param price in ticks of 0.01
      * @return Collections.emptyList() or List<Order>
      */
-    List<Order> getOrdersAtLevel(String instrument, Side side, BigDecimal price) {
+    List<Order> getOrdersAtLevel(String instrument, Side side, long price) {
 
         List<Order> orderList=Collections.emptyList();
         if(instrument.equals(this.Instrument)) {
-
-            orderList = new ArrayList<>();
-            Map<BigDecimal, Set<Order>> orderBook = getOrderBookBySide(side);
-
-            if (orderBook.containsKey(price)) {
-                orderList = orderBook.get(price).stream().collect(Collectors.toList()); // convert Set to List
-            }else{
-                log.info("No order at Price level "+price+" under Side="+side+" and Instrument="+Instrument);
-            }
+            orderList = getOrdersAtLevel(side, price);
         }else{
-            log.info("order for product "+instrument+" ignored ! This OrderBook is set for "+this.Instrument);
+            log.debug("order for product {} ignored ! This OrderBook is set for {}", instrument, this.Instrument);
         }
 
         return orderList;
     }
 
 
+
+    /**
+     *
+     * @param side
+     * @param price in ticks of 0.01
+     * @return Collections.emptyList() or List<Order>
+     */
+    List<Order> getOrdersAtLevel(Side side, long price) {
+
+        List<Order> orderList=Collections.emptyList();
+        PriceLevel priceLevel = getBookSide(side).getLevel(price);
+
+        if (priceLevel != null) {
+            orderList = new ArrayList<>(priceLevel.getOrders()); // convert to List
+        }
+        return orderList;
+    }
+
+
+    /**
+     *   Visit the orders at one price without copying them : an OFF_HEAP book hands out one reused OrderFlyweight,
+     *   the others their Order objects. The OrderView is only valid during the call.
+     *
+     * @param side
+     * @param price in ticks of 0.01
+     * @param action called for each order of the level, in arrival order for an OFF_HEAP book
+     */
+    public void forEachOrder(Side side, long price, Consumer<? super OrderView> action) {
+
+        PriceLevel priceLevel = getBookSide(side).getLevel(price);
+        if (priceLevel != null) {
+            priceLevel.forEach(action);
+        }
+    }
+
+
+    /**
+     *   Visit every resting order of one side, from the best level, each level in arrival order
+     *
+     *   <p>Under the write lock : the orders visited are those of one point in time. The OrderView is only valid
+     *   during the call (an OFF_HEAP book hands out one reused OrderFlyweight).
+     *
+     * @param side
+     * @param action
+     */
+    public synchronized void forEachOrder(Side side, Consumer<? super OrderView> action) {
+
+        Iterator<PriceLevel> iterator = getBookSide(side).iterator();
+        while (iterator.hasNext()) {
+            iterator.next().forEach(action);
+        }
+    }
+
+
     @Override
     public String toString() {
         return "OrderBook{" +
-                "orderBookBid=" + orderBookBid +
-                ", orderBookAsk=" + orderBookAsk +
-                ", Instrument='" + Instrument + '\'' +
+                "Instrument='" + Instrument + '\'' +
+                ", type=" + type +
+                ", bidLevels=" + orderBookBid.size() +
+                ", askLevels=" + orderBookAsk.size() +
+                ", topOfBook=" + topOfBook +
                 '}';
     }
 
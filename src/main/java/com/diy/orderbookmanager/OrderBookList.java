@@ -1,14 +1,23 @@
 package com.diy.orderbookmanager;
 
 import com.diy.Side.Side;
+import com.diy.Utils.FixedPoint;
+import com.diy.domain.InstrumentRegistry;
 import com.diy.domain.Order;
+import com.diy.metrics.Operation;
+import com.diy.metrics.OrderBookMetrics;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.annotation.concurrent.ThreadSafe;
 import java.math.BigDecimal;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import static com.google.common.collect.MoreCollectors.onlyElement;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import static com.diy.Utils.FixedPoint.toBigDecimal;
+import static com.diy.Utils.FixedPoint.toTicks;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Objects.requireNonNull;
 
 
 @Slf4j
@@ -16,123 +25,240 @@ import static com.google.common.collect.MoreCollectors.onlyElement;
 public final class OrderBookList implements OrderBookManager  {
 
 
-    private final Map<String, OrderBook> orderBookMap;
+    private static final int INITIAL_CAPACITY = 64;  // instruments
+
+    private final InstrumentRegistry registry = InstrumentRegistry.getInstance();
+    private volatile AtomicReferenceArray<OrderBook> orderBooks; // by instrument id, grown under the lock of the list
+    private final OrderBookType orderBookType;
+    private final DepthListeners depthListeners = new DepthListeners(); // shared by every OrderBook of this list
+    private final UpdateListeners updateListeners = new UpdateListeners(); // shared by every OrderBook of this list
+    private final OrderBookMetrics metrics; // null : not measured
+    private final boolean marketByOrder;
 
 
 
     public OrderBookList() {
-        this.orderBookMap = new ConcurrentHashMap<>();   //O(log n) pretty fast, your collection size has to be
-                                                         // very extreme to notice a performance impact
+        this(OrderBookType.SKIP_LIST);
+    }
+
+
+
+    /**
+     * @param orderBookType storage engine used by every OrderBook of this list, must be concurrent
+     */
+    public OrderBookList(OrderBookType orderBookType) {
+        this(orderBookType, null);
+    }
+
+
+
+    /**
+     * @param orderBookType storage engine used by every OrderBook of this list, must be concurrent
+     * @param metrics receives the latency of each update and query, null for none
+     */
+    public OrderBookList(OrderBookType orderBookType, OrderBookMetrics metrics) {
+        this(orderBookType, metrics, false);
+    }
+
+
+
+    /**
+     * @param orderBookType storage engine used by every OrderBook of this list, must be concurrent
+     * @param metrics receives the latency of each update and query, null for none
+     * @param marketByOrder true to key the orders of every book by their exchange order id : every order must carry one
+     */
+    public OrderBookList(OrderBookType orderBookType, OrderBookMetrics metrics, boolean marketByOrder) {
+
+        checkArgument(orderBookType.isConcurrent(), "OrderBookList is read and updated by many threads, "+orderBookType+" is single threaded (see ShardedOrderBookList)");
+        this.orderBooks = new AtomicReferenceArray<>(INITIAL_CAPACITY); // O(1) by instrument id, no String hashed
+        this.orderBookType = requireNonNull(orderBookType);
+        this.metrics = metrics;
+        this.marketByOrder = marketByOrder;
     }
 
 
     /**
-     * Add new order  in Atomic way
      *
-     * <p>Orders for the same instrument, on the same side, with the same price should be kept in the
-     * order as they arrive
+     *   Update the order theOrderBook each time the exchange a new OrderBook
      *
+     *   <p>Single pass : one array read by instrument id, one lookup on the side, one keyed operation in the price level.
+     *   •	If the quantity is not zero the order is inserted, or its quantity is updated
+     *   •	If the quantity is zero the order is removed, and its price level too if it was the last order
+     *   The OrderBook of an instrument is created on its first order and kept afterwards, even empty.
      *
      * @author  Gothard GOTENI
      * @version 1.0
      * @since   23/01/2022
      *
-     * @param order new order to add <br>
-     * @see Order
+     *
+     * @param order
+     * @return boolean Successful or not
      */
-     private boolean addOrder(Order order) { // this Method uses Atomic processes
-
-        //log.debug("=>addOrder order called for ="+order);
-        boolean success=false;
+    @Override
+    public boolean updateOrder(Order order) {
 
-        String instrument = order.getInstrument();
+        return update(order).isApplied();
+    }
 
-         OrderBook orderBookPresent = orderBookMap.computeIfPresent(instrument, (k,v)->{  // do we have already an Orderbook for that Instrument ?
 
-             OrderBook orderBook = orderBookMap.get(instrument);
-             orderBook.addOrder(order);
-             return orderBook;
 
-         });
+    @Override
+    public UpdateResult update(Order order) {
 
+        if (metrics == null) {
+            return apply(order);
+        }
+        long start = System.nanoTime();
+        UpdateResult result = apply(order);
+        metrics.record(order.getInstrumentId(), operation(result), System.nanoTime() - start);
+        return result;
+    }
 
-         OrderBook orderBookAbsent = orderBookMap.computeIfAbsent(instrument , k->{  // if no, then we create an OrderBook for that specific Instrument
 
-             OrderBook orderBook = new OrderBook(instrument);
-             orderBook.addOrder(order);
-             return orderBook;
-         });
+    /**
+     *   Duplicates and ignored deletes are counted by the OrderBookMetrics, not logged : no String built per update
+     */
+    private UpdateResult apply(Order order) {
 
+        OrderBook orderBook = orderBook(order.getInstrumentId());
 
-         if (orderBookPresent!=null || orderBookAbsent!=null ){
-             success=true;
-         }
+        if (orderBook == null) {
+            if (order.getQuantityTicks() == 0) {
+                return UpdateResult.NOT_FOUND; // nothing to delete
+            }
+            orderBook = createOrderBook(order.getInstrumentId()); // first order for that Instrument
+        }
+        return orderBook.update(order);
+    }
 
-         //log.debug("orderBookMap =" + orderBookMap);
-        //log.debug("Add completed : successful =" + success);
 
-        return success;
+    /**
+     *
+     *   Cancel a resting order by its exchange order id, in O(1) wherever it rests (market by order)
+     *
+     * @param instrument
+     * @param orderId exchange order id
+     * @return DELETED, or NOT_FOUND
+     */
+    public UpdateResult cancelOrder(String instrument, long orderId) {
+
+        checkState(marketByOrder, "not a market by order list");
+        long start = start();
+        OrderBook orderBook = orderBook(instrument);
+        UpdateResult result = orderBook == null ? UpdateResult.NOT_FOUND : orderBook.cancel(orderId);
+        measured(orderBook, operation(result), start);
+        return result;
     }
 
 
 
+    /**
+     *
+     *   Modify a resting order by its exchange order id (market by order) : a new price moves it to its new level,
+     *   a new quantity at the same price keeps its place in the queue
+     *
+     * @param instrument
+     * @param orderId exchange order id
+     * @param price in ticks
+     * @param quantity in ticks, 0 cancels the order
+     * @return MODIFIED, DELETED, or NOT_FOUND
+     */
+    public UpdateResult modifyOrder(String instrument, long orderId, long price, long quantity) {
+
+        checkState(marketByOrder, "not a market by order list");
+        long start = start();
+        OrderBook orderBook = orderBook(instrument);
+        UpdateResult result = orderBook == null ? UpdateResult.NOT_FOUND : orderBook.modify(orderId, price, quantity);
+        measured(orderBook, operation(result), start);
+        return result;
+    }
+
 
 
+    /**
+     * @param instrument
+     * @param orderId exchange order id
+     * @return the order resting with that id, or null (market by order)
+     */
+    public Order getOrder(String instrument, long orderId) {
 
+        checkState(marketByOrder, "not a market by order list");
+        OrderBook orderBook = orderBook(instrument);
+        return orderBook == null ? null : orderBook.getOrder(orderId);
+    }
 
 
     /**
-     *
-     *  Delete an existing order  in Atomic way
-     *
-     *
-     * @author  Gothard GOTENI
-     * @version 1.0
-     * @since   23/01/2022
-     *
-     * Delete an existing order . Returns false if no such order exists
-     *
-     * @param order unique identifier of existing order
-     * @return boolean True if the order was successfully deleted, false otherwise
+     * @return true if the orders are keyed by their exchange order id
      */
-    private boolean deleteOrder(Order order) {
+    public boolean isMarketByOrder() {
+        return marketByOrder;
+    }
+
 
-        log.debug("=>Delete order called for ="+order);
-        boolean success = false;
+
+    private static Operation operation(UpdateResult result) {
+
+        switch (result) {
+            case ADDED:
+                return Operation.ADD;
+            case MODIFIED:
+                return Operation.MODIFY;
+            case DELETED:
+                return Operation.DELETE;
+            case DUPLICATE:
+                return Operation.DUPLICATE;
+            default:
+                return Operation.IGNORED;
+        }
+    }
 
 
-        String instrument = order.getInstrument();
 
 
-        OrderBook orderBookPresent = orderBookMap.computeIfPresent(instrument, (k,v)->{  // do we have already an Orderbook for that Instrument ?
 
-            OrderBook orderBook = orderBookMap.get(instrument);
-            orderBook.deleteOrder(order);
-            log.debug(" ! State of the orderBook before finalize the Delete ="+orderBook);
-            return orderBook;
 
-        });
 
 
-        if (orderBookPresent.isEmpty()) { // if there is no OrderBook left
+    /**
+     *
+     *   Batch of updates : grouped by instrument, each OrderBook is taken once and applies its orders side by side,
+     *   then publishes its TopOfBook once. Orders of the same instrument keep their relative order.
+     *   The OrderBookMetrics count each result, without latency : the cost of a batch is not the cost of one order.
+     *
+     * @param orders
+     * @param results one result per order, same index, at least orders.size() long
+     */
+    @Override
+    public void updateOrders(List<Order> orders, UpdateResult[] results) {
 
+        int size = orders.size();
+        checkArgument(results.length >= size, "results is shorter than orders");
+        Arrays.fill(results, 0, size, null);
 
-            if (orderBookMap.remove(instrument) == null) { // then we delete the key (price)
-                log.error(" - orderBookList -Internal Error : key  " + instrument + " could not be deleted successfully !");
-                success = false;
+        for (int i = 0; i < size; i++) {
+
+            if (results[i] != null) {
+                continue;  // already applied with an earlier order of the same instrument
+            }
+            Order order = orders.get(i);
+            OrderBook orderBook = orderBook(order.getInstrumentId());
+
+            if (orderBook == null) {
+                if (order.getQuantityTicks() == 0) {
+                    results[i] = UpdateResult.NOT_FOUND;
+                    continue;
+                }
+                orderBook = createOrderBook(order.getInstrumentId());
             }
-            success = true;
-            log.info("Delete Order + key removal completed : success =" + success);
-
-        }else if (orderBookPresent == null){
-            success = false;
-            log.info("I cant find any orderBook with key="+instrument+" for order ="+order);
-        }else{
-            success = true;
-            log.info("Delete Order completed : success =" + success);
+            orderBook.update(orders, i, results);
         }
 
-        return success;
+        if (metrics != null) {
+            for (int i = 0; i < size; i++) {
+                metrics.count(orders.get(i).getInstrumentId(), operation(results[i]));
+            }
+        }
     }
 
 
@@ -141,66 +267,75 @@ public final class OrderBookList implements OrderBookManager  {
 
 
 
+
     /**
-     *
-     *   Update the order theOrderBook each time the exchange a new OrderBook
-     *
-     *
-     * @author  Gothard GOTENI
-     * @version 1.0
-     * @since   23/01/2022
-     *
-     *
-     * @param order
-     * @return boolean Successful or not
+     * @param instrumentId
+     * @return OrderBook of that instrument, or null
      */
-    @Override
-    public boolean updateOrder(Order order) {
+    private OrderBook orderBook(int instrumentId) {
 
-        String instrument=order.getInstrument();
-        Side side = order.getSide();
-        BigDecimal price = order.getPrice();
+        AtomicReferenceArray<OrderBook> books = orderBooks;
+        return instrumentId < books.length() ? books.get(instrumentId) : null;
+    }
 
-        List<Order> orderList=getOrdersAtLevel(instrument, side, price);
 
-        try {
-                                                // we pick up the order we are looking for
-            Order vOrder = orderList.stream()  // return 1 Element  ( Expected behaviour )  // return 2 Element => IllegalArgumentException // return 0 Element => NoSuchElementException
-                    .filter(x -> x.equals(order))
-                    .collect(onlyElement());
+    /**
+     * @param instrument
+     * @return OrderBook of that instrument, or null
+     */
+    private OrderBook orderBook(String instrument) {
 
-            if (vOrder.getQuantity().compareTo(order.getQuantity())==0) {
-                log.info("Transaction Ignored, nothing has changed on that order!"); // save time and improve perf
-                return false;
-            }
+        int instrumentId = registry.getId(instrument);
+        return instrumentId == InstrumentRegistry.UNKNOWN ? null : orderBook(instrumentId);
+    }
 
 
-            if (order.getQuantity().signum() > 0) { //•	If the quantity is not zero it means order book level at specified price needs to be updated (or inserted if it was not there)
-                if (!deleteOrder(order)) {return false;}
-                if (!addOrder(order)) {
-                    return false;
-                }
-            } else if (order.getQuantity().compareTo(BigDecimal.ZERO) == 0) { //•	If the quantity is zero it means the order book level at specified price must be removed from the book
-                if (!deleteOrder(order)) {return false;}
-            }
+    /**
+     *   Latency of a query since start, if this list is measured and the instrument has a book
+     *
+     * @param orderBook queried, or null
+     * @param operation
+     * @param start System.nanoTime() before the query
+     */
+    private void measured(OrderBook orderBook, Operation operation, long start) {
 
-        } catch (IllegalArgumentException  e) { //two or more elements
-            log.error(" ! Internal Error, you cant have duplicate 'unique' Element in the orderBookMap :"+ orderBookMap);
-            throw e;
-        } catch (NoSuchElementException  e) {  //stream is empty
+        if (metrics != null && orderBook != null) {
+            metrics.record(orderBook.getInstrumentId(), operation, System.nanoTime() - start);
+        }
+    }
 
-            if(order.getQuantity().signum() >0) {
-                if (!addOrder(order)) {
-                    return false; //  We add order if it does not exist
-                }
-            }else{
-                log.info("ignored. You cant add an order with Qty<=0 (you sent '"+order.getQuantity()+"')");
-                return false;
-            }
 
+    /**
+     * @return System.nanoTime() if this list is measured, else 0 without reading the clock
+     */
+    private long start() {
+        return metrics == null ? 0 : System.nanoTime();
+    }
+
+
+    /**
+     *   First order of an instrument : the array grows by copy if the id is beyond it, readers keep the old one meanwhile
+     *
+     * @param instrumentId
+     * @return OrderBook of that instrument, created if needed
+     */
+    synchronized OrderBook createOrderBook(int instrumentId) {
+
+        AtomicReferenceArray<OrderBook> books = orderBooks;
+        if (instrumentId >= books.length()) {
+            AtomicReferenceArray<OrderBook> grown = new AtomicReferenceArray<>(Math.max(instrumentId + 1, books.length() * 2));
+            for (int i = 0; i < books.length(); i++) {
+                grown.set(i, books.get(i));
+            }
+            orderBooks = books = grown;
         }
 
-        return true;
+        OrderBook orderBook = books.get(instrumentId);
+        if (orderBook == null) {
+            orderBook = new OrderBook(registry.getSymbol(instrumentId), orderBookType, marketByOrder, depthListeners, updateListeners);
+            books.set(instrumentId, orderBook);
+        }
+        return orderBook;
     }
 
 
@@ -208,27 +343,128 @@ public final class OrderBookList implements OrderBookManager  {
 
 
 
+    /**
+     *   Receive every level change (L2 delta) of every instrument, on the thread which applies it
+     *
+     * @param listener
+     */
+    public void addDepthListener(DepthListener listener) {
+        depthListeners.add(listener);
+    }
+
+
+    /**
+     * @param listener
+     * @return boolean true if it was registered
+     */
+    public boolean removeDepthListener(DepthListener listener) {
+        return depthListeners.remove(listener);
+    }
+
 
 
     /**
+     *   Receive every change of a resting order of every instrument, on the thread which applies it (see com.diy.journal.Journal)
      *
-     * @author  Gothard GOTENI
-     * @version 1.0
-     * @since   23/01/2022
+     * @param listener
+     */
+    public void addUpdateListener(UpdateListener listener) {
+        updateListeners.add(listener);
+    }
+
+
+    /**
+     * @param listener
+     * @return boolean true if it was registered
+     */
+    public boolean removeUpdateListener(UpdateListener listener) {
+        return updateListeners.remove(listener);
+    }
+
+
+
+    /**
+     *   Visit the OrderBook of each instrument seen so far, by instrument id
      *
+     * @param action
+     */
+    public void forEachOrderBook(Consumer<? super OrderBook> action) {
+
+        AtomicReferenceArray<OrderBook> books = orderBooks;
+        for (int i = 0; i < books.length(); i++) {
+            OrderBook orderBook = books.get(i);
+            if (orderBook != null) {
+                action.accept(orderBook);
+            }
+        }
+    }
+
+
+
+
+
+
+    /**
+     *   Point in time image of the first levels of an instrument, copied into a buffer owned by the caller.
+     *   Bid and ask are taken at the same sequence, nothing is allocated.
      *
      * @param instrument
-     * @return boolean
+     * @param snapshot reusable buffer, filled up to its max depth on each side
+     * @return boolean false if there is no book for that instrument (the snapshot is then empty)
      */
-    private boolean hasInstrument(String instrument){
+    public boolean snapshot(String instrument, BookSnapshot snapshot) {
 
-        if (orderBookMap.containsKey(instrument)) {
-            return true;
-        }else{
-            //log.info("This OrderBookList does not have any record for OrderBook "+instrument+" !");
+        long start = start();
+        OrderBook orderBook = orderBook(instrument);
+        if (orderBook == null) {
+            snapshot.clear(instrument);
             return false;
         }
+        orderBook.snapshot(snapshot);
+        measured(orderBook, Operation.DEPTH, start);
+        return true;
+    }
+
+
+
+
+
+
+    /**
+     *   Best bid and best ask of an instrument : one map lookup and one volatile read, no lock, no allocation
+     *
+     * @param instrument
+     * @return TopOfBook, TopOfBook.EMPTY if there is no order for that instrument
+     */
+    public TopOfBook getTopOfBook(String instrument) {
+
+        long start = start();
+        OrderBook orderBook = orderBook(instrument);
+        if (orderBook == null) {
+            return TopOfBook.EMPTY;
+        }
+        TopOfBook topOfBook = orderBook.getTopOfBook();
+        measured(orderBook, Operation.TOP_OF_BOOK, start);
+        return topOfBook;
+    }
+
 
+    /**
+     *   Same as getTopOfBook(String) with the id of the instrument (InstrumentRegistry) : one array read, no hashing
+     *
+     * @param instrumentId
+     * @return TopOfBook, TopOfBook.EMPTY if there is no order for that instrument
+     */
+    public TopOfBook getTopOfBook(int instrumentId) {
+
+        long start = start();
+        OrderBook orderBook = orderBook(instrumentId);
+        if (orderBook == null) {
+            return TopOfBook.EMPTY;
+        }
+        TopOfBook topOfBook = orderBook.getTopOfBook();
+        measured(orderBook, Operation.TOP_OF_BOOK, start);
+        return topOfBook;
     }
 
 
@@ -255,13 +491,11 @@ public final class OrderBookList implements OrderBookManager  {
     @Override
     public Optional<BigDecimal> getBestPrice(String instrument, Side side) {
 
-        Optional<BigDecimal> bestPrice = Optional.empty();
-
-        if (this.hasInstrument(instrument)){
-            bestPrice=orderBookMap.get(instrument).getBestPrice(instrument,side);
-        }
-        log.debug("BestPrice="+bestPrice);
-        return bestPrice;
+        long start = start();
+        OrderBook orderBook = orderBook(instrument); // read from the published TopOfBook
+        long bestPrice = orderBook == null ? FixedPoint.NO_PRICE : orderBook.getBestPriceTicks(side);
+        measured(orderBook, Operation.BEST_PRICE, start);
+        return bestPrice == FixedPoint.NO_PRICE ? Optional.empty() : Optional.of(toBigDecimal(bestPrice));
     }
 
 
@@ -283,11 +517,14 @@ public final class OrderBookList implements OrderBookManager  {
     @Override
     public Map<BigDecimal, Set<Order>> getOrdersUpToLevel(String instrument, Side side, int level) {
 
+        long start = start();
         Map ordersUpToLeve = Collections.EMPTY_MAP;
-        if (this.hasInstrument(instrument)){
+        OrderBook orderBook = orderBook(instrument);
+        if (orderBook != null){
 
-            ordersUpToLeve=orderBookMap.get(instrument).getOrdersUpToLevel( instrument,  side,  level);
+            ordersUpToLeve=orderBook.getOrdersUpToLevel( instrument,  side,  level);
         }
+        measured(orderBook, Operation.DEPTH, start);
 
         return ordersUpToLeve ;
     }
@@ -306,11 +543,14 @@ public final class OrderBookList implements OrderBookManager  {
     @Override
     public BigDecimal getAveragePriceOverLevel(String instrument, Side side, int level) {
 
+        long start = start();
         BigDecimal averagePrice=BigDecimal.ZERO;
-        if (this.hasInstrument(instrument)){
+        OrderBook orderBook = orderBook(instrument);
+        if (orderBook != null){
 
-            averagePrice=orderBookMap.get(instrument).getAveragePriceOverLevel(   side,  level);
+            averagePrice=orderBook.getAveragePriceOverLevel(   side,  level);
         }
+        measured(orderBook, Operation.DEPTH, start);
 
         return averagePrice ;
 
@@ -329,11 +569,14 @@ public final class OrderBookList implements OrderBookManager  {
     @Override
     public BigDecimal getTotalQtyOverLevel(String instrument, Side side, int level) {
 
+        long start = start();
         BigDecimal totalQtyOverLevel=BigDecimal.ZERO;
-        if (this.hasInstrument(instrument)){
+        OrderBook orderBook = orderBook(instrument);
+        if (orderBook != null){
 
-            totalQtyOverLevel=orderBookMap.get(instrument).getTotalQtyOverLevel(   side,  level);
+            totalQtyOverLevel=orderBook.getTotalQtyOverLevel(   side,  level);
         }
+        measured(orderBook, Operation.DEPTH, start);
 
         return totalQtyOverLevel ;
     }
@@ -350,12 +593,15 @@ public final class OrderBookList implements OrderBookManager  {
     @Override
     public Map<BigDecimal,List<Number>> getVolumeWeightedPriceOverLevel(String instrument, Side side, int level) {
 
+        long start = start();
         Map<BigDecimal, List<Number>> volumeWeightedPrice = Collections.EMPTY_MAP;
 
-        if (this.hasInstrument(instrument)){
+        OrderBook orderBook = orderBook(instrument);
+        if (orderBook != null){
 
-            volumeWeightedPrice=orderBookMap.get(instrument).getVolumeWeightedPriceOverLevel(   side,  level);
+            volumeWeightedPrice=orderBook.getVolumeWeightedPriceOverLevel(   side,  level);
         }
+        measured(orderBook, Operation.DEPTH, start);
 
         return volumeWeightedPrice ;
     }
@@ -385,11 +631,14 @@ public final class OrderBookList implements OrderBookManager  {
     @Override
     public List<Order> getOrdersAtLevel(String instrument, Side side, BigDecimal price) {
 
+        long start = start();
         List<Order> orderList=new ArrayList<>();
 
-        if (this.hasInstrument(instrument)){
-            orderList=orderBookMap.get(instrument).getOrdersAtLevel(instrument,side,price);
+        OrderBook orderBook = orderBook(instrument);
+        if (orderBook != null){
+            orderList=orderBook.getOrdersAtLevel(side,toTicks(price)); // BigDecimal -> ticks at the API edge
         }
+        measured(orderBook, Operation.DEPTH, start);
 
         return orderList;
     }
@@ -405,26 +654,47 @@ public final class OrderBookList implements OrderBookManager  {
 
         Map< String , List<Map <BigDecimal,Set<Order>>> >  orderBookList = new HashMap<>();
 
-        orderBookMap.forEach((k,v)->{
+        AtomicReferenceArray<OrderBook> books = orderBooks;
+        for (int instrumentId = 0; instrumentId < books.length(); instrumentId++) {
 
-            Map<BigDecimal, Set<Order>> orderBookBid =v.getOrderBookBySide(Side.BUY);
-            Map<BigDecimal, Set<Order>> orderBookAsk=v.getOrderBookBySide(Side.SELL);
+            OrderBook v = books.get(instrumentId);
+            if (v == null || v.isEmpty()) {   // a book left empty by its last delete is not listed, as before
+                continue;
+            }
+            Map<BigDecimal, Set<Order>> orderBookBid =toBigDecimalKeys(v.getOrderBookBySide(Side.BUY));
+            Map<BigDecimal, Set<Order>> orderBookAsk=toBigDecimalKeys(v.getOrderBookBySide(Side.SELL));
 
-            orderBookList.put(k,Arrays.asList(orderBookBid,orderBookAsk) );
+            orderBookList.put(registry.getSymbol(instrumentId),Arrays.asList(orderBookBid,orderBookAsk) );
+        }
 
-        });
+        return orderBookList;
 
-        log.debug("FullOrderBook="+orderBookList);
+    }
 
-        return orderBookList;
 
+    /**
+     *   Ticks keyed side -> BigDecimal keyed side, keeping the price ordering of the book
+     *
+     * @param orderBook
+     * @return Map<BigDecimal, Set<Order>>
+     */
+    private static Map<BigDecimal, Set<Order>> toBigDecimalKeys(Map<Long, Set<Order>> orderBook) {
+
+        Map<BigDecimal, Set<Order>> converted = new LinkedHashMap<>();
+        orderBook.forEach((price, orders) -> converted.put(toBigDecimal(price), orders));
+        return converted;
     }
 
 
     @Override
     public String toString() {
+
+        int[] count = {0};
+        forEachOrderBook(orderBook -> count[0]++);
         return "OrderBookList{" +
-                "orderBookMap=" + orderBookMap +
+                "orderBookType=" + orderBookType +
+                ", marketByOrder=" + marketByOrder +
+                ", orderBooks=" + count[0] +
                 '}';
     }
 
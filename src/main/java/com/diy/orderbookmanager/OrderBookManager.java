@@ -28,6 +28,52 @@ public interface OrderBookManager {
 
 
 
+    /**
+     *
+     *   Same as updateOrder, with the detail of what has been done
+     *
+     * @param order
+     * @return UpdateResult
+     */
+    UpdateResult update(Order order);
+
+
+
+    /**
+     *
+     *   Apply a batch of updates (e.g. every level update of one exchange packet)
+     *
+     *   <p>Orders of the same instrument keep their relative order. An implementation can group them by
+     *   instrument and side to take each book once and publish its derived state once per batch.
+     *
+     * @param orders
+     * @return UpdateResult[] one result per order, same index
+     */
+    default UpdateResult[] updateOrders(List<Order> orders) {
+
+        UpdateResult[] results = new UpdateResult[orders.size()];
+        updateOrders(orders, results);
+        return results;
+    }
+
+
+
+    /**
+     *
+     *   Same as updateOrders(List), the results are written in a buffer owned by the caller
+     *
+     * @param orders
+     * @param results one result per order, same index, at least orders.size() long
+     */
+    default void updateOrders(List<Order> orders, UpdateResult[] results) {
+
+        for (int i = 0; i < orders.size(); i++) {
+            results[i] = update(orders.get(i));
+        }
+    }
+
+
+
 
 
     /**
@@ -59,7 +105,7 @@ public interface OrderBookManager {
 
     /********************
      *
-     * getFullOrderBook
+     * getFullOrderBook : bids then asks of every instrument with at least one resting order
      *
      * @return List < <BigDecimal, Set<Order>> >
      */
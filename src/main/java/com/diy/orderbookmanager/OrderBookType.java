@@ -0,0 +1,41 @@
+package com.diy.orderbookmanager;
+
+
+/**
+ *   Storage engine used by an OrderBook for each side
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+public enum OrderBookType {
+
+    /** ConcurrentSkipListMap per side : O(log n) insert / delete / best price */
+    SKIP_LIST(true),
+
+    /** dense array indexed by tick (0.01 - 999.99) per side : O(1) insert / delete / best price */
+    PRICE_LADDER(true),
+
+    /** TreeMap per side, levels and orders indexed by primitive keys (LongObjectHashMap) : O(1) update of an existing level,
+     *  O(log n) to create or remove one, no CAS, no volatile. Only for a book owned by one thread (ShardedOrderBookList) */
+    TREE_MAP(false),
+
+    /** TreeMap per side, the orders are fixed-width records in a direct ByteBuffer (OffHeapOrderStore) : no heap object
+     *  per resting order. Only for a book owned by one thread (ShardedOrderBookList) */
+    OFF_HEAP(false);
+
+
+    private final boolean concurrent;
+
+    OrderBookType(boolean concurrent) {
+        this.concurrent = concurrent;
+    }
+
+
+    /**
+     * @return true if the book can be read while another thread updates it
+     */
+    public boolean isConcurrent() {
+        return concurrent;
+    }
+}
@@ -0,0 +1,101 @@
+package com.diy.orderbookmanager;
+
+import com.diy.Side.Side;
+import com.diy.domain.Order;
+import com.diy.domain.OrderView;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+
+import static com.diy.Utils.FixedPoint.toBigDecimal;
+
+
+/**
+ *   Reusable view over one order record of an OffHeapOrderStore
+ *
+ *   <p>Same accessors as Order, read straight from the record : nothing is copied and nothing is allocated
+ *   (except by getPrice, getQuantity and getTimestamp, as for Order). The view is moved from record to record,
+ *   so it is only valid during the call which gives it out : keep toOrder() if the order is needed afterwards.
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@NotThreadSafe
+public final class OrderFlyweight implements OrderView {
+
+    private final OffHeapOrderStore store;
+    private int slot = OffHeapOrderStore.NIL;
+
+
+
+    OrderFlyweight(OffHeapOrderStore store) {
+        this.store = store;
+    }
+
+
+    OrderFlyweight wrap(int slot) {
+        this.slot = slot;
+        return this;
+    }
+
+
+
+    @Override
+    public String getInstrument() {
+        return store.getInstrument();
+    }
+    @Override
+    public int getInstrumentId() {
+        return store.getInstrumentId();
+    }
+    @Override
+    public Side getSide() {
+        return store.getSide(slot);
+    }
+    @Override
+    public BigDecimal getPrice() {
+        return toBigDecimal(getPriceTicks());
+    }
+    @Override
+    public BigDecimal getQuantity() {
+        return toBigDecimal(getQuantityTicks());
+    }
+    @Override
+    public Timestamp getTimestamp() {
+        return new Timestamp(getTimestampMillis());
+    }
+    @Override
+    public long getPriceTicks() {
+        return store.getPrice(slot);
+    }
+    @Override
+    public long getQuantityTicks() {
+        return store.getQuantity(slot);
+    }
+    @Override
+    public long getTimestampMillis() {
+        return store.getTimestamp(slot);
+    }
+
+
+    /**
+     * @return heap copy of the order currently viewed
+     */
+    public Order toOrder() {
+        return new Order(getInstrumentId(), getSide(), getPriceTicks(), getQuantityTicks(), getTimestampMillis());
+    }
+
+
+    @Override
+    public String toString() {
+        return "OrderFlyweight{" +
+                "instrument='" + getInstrument() + '\'' +
+                ", side=" + getSide() +
+                ", price=" + getPrice() +
+                ", quantity=" + getQuantity() +
+                ", timestamp=" + getTimestamp() +
+                '}';
+    }
+}
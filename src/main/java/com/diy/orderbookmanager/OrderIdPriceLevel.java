@@ -0,0 +1,170 @@
+package com.diy.orderbookmanager;
+
+import com.diy.collections.LongObjectHashMap;
+import com.diy.domain.Order;
+import com.diy.domain.OrderView;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkState;
+
+
+/**
+ *   PriceLevel of the market by order books : orders in arrival order in an OrderQueue, indexed by their exchange
+ *   order id in one map for the whole book
+ *
+ *   <p>The index maps an order id to its Handle : the level and the Node of the order. A cancel or a modify by id is
+ *   one primitive lookup then O(1) in the queue, wherever the order rests ; the book moves an order to another
+ *   level by a delete at its old price then an add at the new one (see OrderBook). The index is only touched under the book write lock : the readers
+ *   of the level walk the queue.
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+final class OrderIdPriceLevel extends PriceLevel {
+
+    private final LongObjectHashMap<Handle> orders;   // of the whole book, by order id
+    private final OrderQueue queue = new OrderQueue();
+    private final Set<Order> ordersView = new OrdersView();
+
+
+
+    /**
+     * @param price in ticks
+     * @param orders index of the book, shared by all its levels
+     */
+    OrderIdPriceLevel(long price, LongObjectHashMap<Handle> orders) {
+        super(price);
+        this.orders = orders;
+    }
+
+
+
+    @Override
+    long put(Order order) {
+
+        Handle handle = orders.get(order.getOrderId());
+        if (handle == null) {
+            orders.put(order.getOrderId(), new Handle(this, queue.append(order)));
+            return ABSENT;
+        }
+        checkState(handle.level == this, "order %s rests at another price", order.getOrderId());  // moved by the book
+        long previous = handle.getOrder().getQuantityTicks();
+        handle.node.setOrder(order);
+        return previous;
+    }
+
+
+    @Override
+    long delete(Order order) {
+
+        Handle handle = orders.get(order.getOrderId());
+        if (handle == null || handle.level != this) {
+            return ABSENT;
+        }
+        orders.remove(order.getOrderId());
+        queue.remove(handle.node);
+        return handle.getOrder().getQuantityTicks();
+    }
+
+
+    @Override
+    boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+
+    @Override
+    Collection<Order> getOrders() {
+        return ordersView;
+    }
+
+
+    @Override
+    Set<Order> asSet() {
+        return ordersView;
+    }
+
+
+    @Override
+    void forEach(Consumer<? super OrderView> action) {
+        queue.forEach(action);
+    }
+
+
+    @Override
+    long firstQuantity() {
+        return queue.first().getOrder().getQuantityTicks();
+    }
+
+
+    @Override
+    long firstTimestamp() {
+        return queue.first().getOrder().getTimestampMillis();
+    }
+
+
+    @Override
+    void removeFirst() {
+
+        OrderQueue.Node node = queue.first();
+        orders.remove(node.getOrder().getOrderId());
+        queue.remove(node);
+    }
+
+
+    /** the orders are immutable : the Node takes a copy with the quantity left */
+    @Override
+    void reduceFirst(long quantity) {
+
+        OrderQueue.Node node = queue.first();
+        node.setOrder(node.getOrder().withQuantity(quantity));
+    }
+
+
+    @Override
+    public String toString() {
+        return ordersView.toString();
+    }
+
+
+
+    /**
+     *   Where an order rests : its level and its Node, which holds its latest version
+     */
+    static final class Handle {
+
+        private final OrderIdPriceLevel level;
+        private final OrderQueue.Node node;
+
+        private Handle(OrderIdPriceLevel level, OrderQueue.Node node) {
+            this.level = level;
+            this.node = node;
+        }
+
+        Order getOrder() {
+            return node.getOrder();
+        }
+    }
+
+
+
+    /** read-only Set over the queue : iterates in arrival order, contains() walks the queue (the index is the writer's) */
+    private final class OrdersView extends AbstractSet<Order> {
+
+        @Override
+        public Iterator<Order> iterator() {
+            return queue.iterator();
+        }
+
+        @Override
+        public int size() {
+            return getOrderCount();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.diy.orderbookmanager;
+
+import com.diy.domain.Order;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+
+/**
+ *   Orders of one price level in arrival order (time priority) : doubly linked list of Nodes
+ *
+ *   <p>append is O(1) at the tail, remove is O(1) with the Node returned by append (the handle kept by the level
+ *   index), a modify replaces the order of its Node and keeps its place. Iteration walks the Nodes, nothing is copied.
+ *
+ *   <p>One writer (the thread holding the book write lock), any number of readers without lock : the writer
+ *   publishes with release stores, the readers only follow next. A removed Node keeps its next, so a reader
+ *   standing on it carries on with the rest of the queue (weakly consistent, like the concurrent collections).
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@ThreadSafe
+final class OrderQueue implements Iterable<Order> {
+
+    private static final VarHandle ORDER;
+    private static final VarHandle NEXT;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            ORDER = lookup.findVarHandle(Node.class, "order", Order.class);
+            NEXT = lookup.findVarHandle(Node.class, "next", Node.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+
+    private final Node head = new Node(null);  // sentinel, head.next is the oldest order
+    private Node tail = head;                  // writer only
+
+
+
+    /**
+     *   Add an order behind the others
+     *
+     * @param order
+     * @return Node of the order, to modify or remove it later
+     */
+    Node append(Order order) {
+
+        Node node = new Node(order);
+        node.prev = tail;
+        NEXT.setRelease(tail, node);  // the node is complete before a reader can reach it
+        tail = node;
+        return node;
+    }
+
+
+
+    /**
+     *   Unlink a Node in O(1)
+     *
+     * @param node returned by append, still in the queue
+     */
+    void remove(Node node) {
+
+        Node prev = node.prev;
+        Node next = node.next;
+        NEXT.setRelease(prev, next);
+        if (next == null) {
+            tail = prev;
+        } else {
+            next.prev = prev;
+        }
+        node.prev = null;  // node.next is kept for the readers standing on it
+    }
+
+
+
+    boolean isEmpty() {
+        return head.next == null;
+    }
+
+
+    /**
+     * @return the oldest Node, or null
+     */
+    Node first() {
+        return head.next;
+    }
+
+
+
+    /**
+     * @return the orders from the oldest to the newest, live and read-only
+     */
+    @Override
+    public Iterator<Order> iterator() {
+
+        return new Iterator<Order>() {   // no remove()
+
+            private Node next = head.next;
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Order next() {
+
+                Node node = next;
+                if (node == null) {
+                    throw new NoSuchElementException();
+                }
+                next = node.next;
+                return node.order;
+            }
+        };
+    }
+
+
+    @Override
+    public void forEach(Consumer<? super Order> action) {
+
+        for (Node node = head.next; node != null; node = node.next) {
+            action.accept(node.order);
+        }
+    }
+
+
+
+    /**
+     *   Place of one order in the queue : holds its latest version
+     */
+    static final class Node {
+
+        private volatile Order order;
+        private volatile Node next;
+        private Node prev;  // writer only
+
+        private Node(Order order) {
+            ORDER.set(this, order);  // plain store : published by the release store of append
+        }
+
+        Order getOrder() {
+            return order;
+        }
+
+        /** new version of the order, same place in the queue */
+        void setOrder(Order order) {
+            ORDER.setRelease(this, order);
+        }
+
+        /**
+         * @return the next Node in time priority, or null
+         */
+        Node next() {
+            return next;
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.diy.orderbookmanager;
+
+import com.diy.Utils.FixedPoint;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongFunction;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+
+/**
+ *   BookSide on a dense array indexed by tick : O(1) insert / delete / best price
+ *
+ *   <p>The price domain is bounded (0.01 - 999.99 => 99,999 ticks), so each level sits at index = price in ticks.
+ *   The best index is maintained incrementally, when the best level goes away we scan forward to the next one.
+ *   Level iteration scans forward from the best index. An occupancy bitset (1 bit per tick) lets both scans
+ *   jump over 64 empty ticks at a time instead of reading every slot.
+ *
+ *   <p>The slots are cut in pages of 1024 ticks, allocated the first time a price of the page gets a level and
+ *   kept afterwards : a book only pays for the price ranges it trades in (4 KB per page) and an empty side holds
+ *   the bitset (12 KB) and a table of 98 null pages, instead of the 100,000 slots.
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@ThreadSafe
+final class PriceLadderBookSide implements BookSide {
+
+    /** lowest price accepted, in ticks (0.01) */
+    static final int MIN_PRICE = 1;
+
+    /** highest price accepted, in ticks (999.99) : Order rejects a price above it, whatever the engine */
+    static final int MAX_PRICE = (int) FixedPoint.MAX_PRICE;
+
+    private static final int EMPTY = -1;
+
+    private static final int PAGE_SHIFT = 10;  // 1024 ticks per page
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+
+
+    private final AtomicReferenceArray<AtomicReferenceArray<PriceLevel>> pages;  // index >> PAGE_SHIFT, null until used
+    private final long[] occupied;     // bit i set <=> level at tick i, published by the volatile write on size
+    private final boolean descending;  // bid side : highest price first
+    private final int step;            // direction from best to worst price, best - step is just before the best
+    private final LongFunction<PriceLevel> newLevel;
+
+    private volatile int best = EMPTY; // index of the best level
+    private volatile int size;         // number of levels, single writer
+
+
+
+    /**
+     * @param descending true for the bid side (highest price first), false for the ask side (lowest price first)
+     */
+    PriceLadderBookSide(boolean descending) {
+        this(descending, MapPriceLevel::new);
+    }
+
+
+    /**
+     * @param descending true for the bid side (highest price first), false for the ask side (lowest price first)
+     * @param newLevel creates the level of a price, which holds the orders
+     */
+    PriceLadderBookSide(boolean descending, LongFunction<PriceLevel> newLevel) {
+        this.pages = new AtomicReferenceArray<>((MAX_PRICE >> PAGE_SHIFT) + 1);
+        this.occupied = new long[(MAX_PRICE >> 6) + 1];
+        this.descending = descending;
+        this.step = descending ? -1 : 1;
+        this.newLevel = newLevel;
+    }
+
+
+    @Override
+    public PriceLevel getLevel(long price) {
+
+        if (price < MIN_PRICE || price > MAX_PRICE) {
+            return null;
+        }
+        return level((int) price);
+    }
+
+
+    @Override
+    public PriceLevel getOrCreateLevel(long price) {
+
+        checkArgument(price >= MIN_PRICE && price <= MAX_PRICE, "price out of the ladder range (0.01 - 999.99)");
+        int index = (int) price;
+
+        AtomicReferenceArray<PriceLevel> page = pages.get(index >> PAGE_SHIFT);
+        if (page == null) {
+            page = new AtomicReferenceArray<>(PAGE_SIZE);
+            pages.set(index >> PAGE_SHIFT, page);
+        }
+        PriceLevel level = page.get(index & (PAGE_SIZE - 1));
+        if (level == null) {
+
+            level = newLevel.apply(price);
+            page.set(index & (PAGE_SIZE - 1), level);
+            occupied[index >> 6] |= 1L << index;
+            size++;
+
+            int currentBest = best;
+            if (currentBest == EMPTY || isBetter(index, currentBest)) {
+                best = index;
+            }
+        }
+        return level;
+    }
+
+
+    @Override
+    public boolean removeLevelIfEmpty(long price) {
+
+        if (price < MIN_PRICE || price > MAX_PRICE) {
+            return false;
+        }
+        int index = (int) price;
+        AtomicReferenceArray<PriceLevel> page = pages.get(index >> PAGE_SHIFT);
+        PriceLevel level = page == null ? null : page.get(index & (PAGE_SIZE - 1));
+        if (level == null || !level.isEmpty()) {
+            return false;
+        }
+
+        page.set(index & (PAGE_SIZE - 1), null);
+        occupied[index >> 6] &= ~(1L << index);
+        size--;
+
+        if (index == best) {  // scan forward to the next best level
+            best = size == 0 ? EMPTY : nextIndex(index);
+        }
+        return true;
+    }
+
+
+    @Override
+    public long getBestPrice() {
+
+        int currentBest = best;
+        return currentBest == EMPTY ? FixedPoint.NO_PRICE : currentBest;
+    }
+
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+
+    @Override
+    public boolean isEmpty() {
+        return best == EMPTY;
+    }
+
+
+    @Override
+    public Iterator<PriceLevel> iterator() {
+
+        return new Iterator<PriceLevel>() {
+
+            private int index = EMPTY;
+            private PriceLevel next = advance(best == EMPTY ? EMPTY : best - step);
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public PriceLevel next() {
+
+                PriceLevel level = next;
+                if (level == null) {
+                    throw new NoSuchElementException();
+                }
+                next = advance(index);
+                return level;
+            }
+
+            private PriceLevel advance(int from) {  // weakly consistent like the skip list
+
+                for (int i = from == EMPTY ? EMPTY : nextIndex(from); i != EMPTY; i = nextIndex(i)) {
+                    PriceLevel level = level(i);
+                    if (level != null) {
+                        index = i;
+                        return level;
+                    }
+                }
+                return null;
+            }
+        };
+    }
+
+
+    private boolean isBetter(int index, int other) {
+        return descending ? index > other : index < other;
+    }
+
+
+    private PriceLevel level(int index) {
+
+        AtomicReferenceArray<PriceLevel> page = pages.get(index >> PAGE_SHIFT);
+        return page == null ? null : page.get(index & (PAGE_SIZE - 1));
+    }
+
+
+
+    /**
+     * @param from index to start after
+     * @return the index of the next level after 'from' (worse price), or EMPTY
+     */
+    private int nextIndex(int from) {
+
+        if (size == 0) {  // volatile read : makes the writer's bitset visible
+            return EMPTY;
+        }
+        if (descending) {
+            int i = from - 1;
+            if (i < MIN_PRICE) {
+                return EMPTY;
+            }
+            int word = i >> 6;
+            long bits = occupied[word] & (-1L >>> (63 - (i & 63)));  // bits at or below i
+            while (true) {
+                if (bits != 0) {
+                    int next = (word << 6) + 63 - Long.numberOfLeadingZeros(bits);
+                    return next >= MIN_PRICE ? next : EMPTY;
+                }
+                if (--word < 0) {
+                    return EMPTY;
+                }
+                bits = occupied[word];
+            }
+        } else {
+            int i = from + 1;
+            if (i > MAX_PRICE) {
+                return EMPTY;
+            }
+            int word = i >> 6;
+            long bits = occupied[word] & (-1L << (i & 63));  // bits at or above i
+            while (true) {
+                if (bits != 0) {
+                    int next = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    return next <= MAX_PRICE ? next : EMPTY;
+                }
+                if (++word >= occupied.length) {
+                    return EMPTY;
+                }
+                bits = occupied[word];
+            }
+        }
+    }
+
+
+    @Override
+    public String toString() {
+
+        StringJoiner joiner = new StringJoiner(", ", "{", "}");
+        for (Iterator<PriceLevel> iterator = iterator(); iterator.hasNext(); ) {
+            PriceLevel level = iterator.next();
+            joiner.add(level.getPrice() + "=" + level);
+        }
+        return joiner.toString();
+    }
+
+}
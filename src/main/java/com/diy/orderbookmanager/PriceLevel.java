@@ -0,0 +1,214 @@
+package com.diy.orderbookmanager;
+
+import com.diy.Side.Side;
+import com.diy.domain.Order;
+import com.diy.domain.OrderView;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.function.Consumer;
+
+
+/**
+ *   All the orders of one side of a book at one price
+ *
+ *   <p>Orders are keyed by their identity (Order.equals : instrument, side, price, timestamp), so an add, a modify
+ *   or a delete is a single keyed operation in the storage of the level (MapPriceLevel for the concurrent books,
+ *   TimestampPriceLevel and OffHeapPriceLevel for the books owned by one thread).
+ *   Each level keeps its orders in arrival order (time priority) : a new order goes behind the others in O(1),
+ *   a modify keeps its place, a delete unlinks it in O(1), and the orders are visited in that order without a copy.
+ *   The total quantity and the number of orders are maintained on each update, the depth queries read them in O(1).
+ *   Mutations are only called by the OrderBook while it holds its write lock.
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+abstract class PriceLevel {
+
+    /** returned by put() and delete() when the order was not in the level */
+    static final long ABSENT = -1L;
+
+
+    private final long price;             // in ticks
+
+    private volatile long totalQuantity;  // in ticks, single writer
+    private volatile int orderCount;      // single writer
+
+
+
+    /**
+     * @param price in ticks
+     */
+    PriceLevel(long price) {
+        this.price = price;
+    }
+
+
+
+    /**
+     *   Add or modify (quantity > 0) or delete (quantity == 0) an order, one lookup in the level
+     *
+     * @param order
+     * @return UpdateResult
+     */
+    final UpdateResult apply(Order order) {
+
+        if (order.getQuantityTicks() == 0) {
+            return remove(order) ? UpdateResult.DELETED : UpdateResult.NOT_FOUND;
+        }
+
+        long previous = put(order);
+        if (previous == ABSENT) {
+            totalQuantity += order.getQuantityTicks();
+            orderCount++;
+            return UpdateResult.ADDED;
+        }
+        if (previous == order.getQuantityTicks()) {
+            return UpdateResult.DUPLICATE;
+        }
+        totalQuantity += order.getQuantityTicks() - previous;
+        return UpdateResult.MODIFIED;
+    }
+
+
+    /**
+     * @param order
+     * @return boolean true if the order was there
+     */
+    final boolean remove(Order order) {
+
+        long removed = delete(order);
+        if (removed == ABSENT) {
+            return false;
+        }
+        totalQuantity -= removed;
+        orderCount--;
+        return true;
+    }
+
+
+
+    /**
+     *   Fill an aggressive order against this level in time priority : the oldest order first, each filled order
+     *   leaves the level, the last one hit may keep a part of its quantity
+     *
+     * @param instrumentId of the book
+     * @param aggressorSide side of the aggressive order
+     * @param quantity to fill, in ticks
+     * @param listener receives one fill per resting order hit
+     * @param updates receives the new quantity of each resting order hit
+     * @return quantity filled, in ticks
+     */
+    final long match(int instrumentId, Side aggressorSide, long quantity, FillListener listener, UpdateListener updates) {
+
+        Side restingSide = aggressorSide == Side.BUY ? Side.SELL : Side.BUY;
+        long remaining = quantity;
+        while (remaining > 0 && !isEmpty()) {
+
+            long resting = firstQuantity();
+            long timestamp = firstTimestamp();
+            long filled = Math.min(remaining, resting);
+            if (filled == resting) {
+                removeFirst();
+                orderCount--;
+            } else {
+                reduceFirst(resting - filled);
+            }
+            totalQuantity -= filled;
+            remaining -= filled;
+            listener.onFill(instrumentId, aggressorSide, price, filled, timestamp, resting - filled);
+            updates.onUpdate(instrumentId, restingSide, price, resting - filled, timestamp);
+        }
+        return quantity - remaining;
+    }
+
+
+
+    /**
+     *   Store the latest version of an order, an order already there keeps its place in the level
+     *
+     * @param order quantity > 0
+     * @return quantity of the previous version in ticks, or ABSENT
+     */
+    abstract long put(Order order);
+
+
+    /**
+     * @param order
+     * @return quantity of the removed order in ticks, or ABSENT
+     */
+    abstract long delete(Order order);
+
+
+    abstract boolean isEmpty();
+
+
+    /**
+     * @return latest version of each order, in arrival order
+     */
+    abstract Collection<Order> getOrders();
+
+
+    /**
+     * @return latest version of each order as a live read-only Set, in arrival order
+     */
+    abstract Set<Order> asSet();
+
+
+    /**
+     *   Visit the orders of the level in arrival order without copying them, the OrderView is only valid during the call
+     *
+     * @param action
+     */
+    abstract void forEach(Consumer<? super OrderView> action);
+
+
+
+    /**
+     * @return quantity of the oldest order in ticks, the level is not empty
+     */
+    abstract long firstQuantity();
+
+
+    /**
+     * @return timestamp of the oldest order, the level is not empty
+     */
+    abstract long firstTimestamp();
+
+
+    /**
+     *   Remove the oldest order in O(1), the level is not empty
+     */
+    abstract void removeFirst();
+
+
+    /**
+     *   Partial fill of the oldest order : it keeps its place with a smaller quantity
+     *
+     * @param quantity left, in ticks, > 0
+     */
+    abstract void reduceFirst(long quantity);
+
+
+
+    long getPrice() {
+        return price;
+    }
+
+
+    /**
+     * @return sum of the quantities at this price, in ticks
+     */
+    long getTotalQuantity() {
+        return totalQuantity;
+    }
+
+
+    /**
+     * @return number of orders at this price
+     */
+    int getOrderCount() {
+        return orderCount;
+    }
+}
@@ -0,0 +1,567 @@
+package com.diy.orderbookmanager;
+
+import com.diy.Side.Side;
+import com.diy.collections.LongObjectHashMap;
+import com.diy.domain.InstrumentRegistry;
+import com.diy.domain.Order;
+import com.diy.domain.OrderView;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static com.diy.Utils.FixedPoint.toBigDecimal;
+import static com.diy.Utils.FixedPoint.toTicks;
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+
+/**
+ *   OrderBookManager where each instrument is owned by one thread
+ *
+ *   <p>Instruments are spread over N shards by id (InstrumentRegistry), round robin. Each shard is one thread with a bounded lock-free queue,
+ *   it is the only thread which touches its books, so the books use plain structures (OrderBookType.TREE_MAP by
+ *   default) : the monitor of each book is only ever taken by its shard thread, so it is never contended, and the
+ *   throughput grows with the number of shards.
+ *
+ *   <p>submit(Order) is the feed path : it only enqueues the order. updateOrder and the queries go through the
+ *   same queue and wait for the shard, so a query sees every update submitted before it by the same thread,
+ *   and always sees a book between two updates, never in the middle of one.
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@Slf4j
+@ThreadSafe
+public final class ShardedOrderBookList implements OrderBookManager, AutoCloseable {
+
+    /** messages waiting in each shard queue */
+    public static final int DEFAULT_QUEUE_CAPACITY = 1 << 16;
+
+    private static final int SPIN_TRIES = 10_000;       // empty polls before the shard parks
+    private static final long IDLE_PARK_NANOS = 50_000;
+    private static final Object STOP = new Object();
+
+
+    private final Shard[] shards;
+    private final InstrumentRegistry registry = InstrumentRegistry.getInstance();
+    private final OrderBookType orderBookType;
+    private final Map<String, OrderBook> published = new ConcurrentHashMap<>(); // books by instrument, for getTopOfBook only
+    private final DepthListeners depthListeners = new DepthListeners();
+    private volatile boolean closed;
+
+
+
+    /**
+     * @param shardCount number of threads, e.g. one per core
+     */
+    public ShardedOrderBookList(int shardCount) {
+        this(shardCount, OrderBookType.TREE_MAP, DEFAULT_QUEUE_CAPACITY);
+    }
+
+
+    /**
+     * @param shardCount number of threads
+     * @param orderBookType storage engine of the books, TREE_MAP is enough as a book is only used by its shard,
+     *                      OFF_HEAP keeps the resting orders out of the heap
+     * @param queueCapacity messages waiting in each shard queue, power of 2
+     */
+    public ShardedOrderBookList(int shardCount, OrderBookType orderBookType, int queueCapacity) {
+
+        checkArgument(shardCount > 0, "shardCount must be positive");
+        this.orderBookType = requireNonNull(orderBookType);
+        this.shards = new Shard[shardCount];
+
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i, queueCapacity);
+            Thread thread = new Thread(shards[i], "orderbook-shard-" + i);
+            thread.setDaemon(true);
+            shards[i].thread = thread;
+            thread.start();
+        }
+    }
+
+
+
+    /**
+     *   Feed path : hand the order to the shard of its instrument and return without waiting.
+     *   Waits only if the shard queue is full.
+     *
+     * @param order
+     */
+    public void submit(Order order) {
+
+        shardOf(order.getInstrumentId()).enqueue(order);
+    }
+
+
+
+    /**
+     *   Same as submit(Order), waiting for the shard to apply it
+     *
+     * @param order
+     * @return boolean Successful or not
+     */
+    @Override
+    public boolean updateOrder(Order order) {
+
+        return update(order).isApplied();
+    }
+
+
+
+    @Override
+    public UpdateResult update(Order order) {
+
+        Shard shard = shardOf(order.getInstrumentId());
+        return call(shard, () -> shard.apply(order));
+    }
+
+
+
+    /**
+     *   Batch of updates : one task per shard concerned, the shards apply their part in parallel.
+     *   In a shard, each OrderBook applies its orders side by side and publishes its TopOfBook once.
+     *
+     * @param orders
+     * @param results one result per order, same index, at least orders.size() long
+     */
+    @Override
+    public void updateOrders(List<Order> orders, UpdateResult[] results) {
+
+        int size = orders.size();
+        checkArgument(results.length >= size, "results is shorter than orders");
+        Arrays.fill(results, 0, size, null);
+
+        boolean[] concerned = new boolean[shards.length];
+        for (int i = 0; i < size; i++) {
+            concerned[shardOf(orders.get(i).getInstrumentId()).index] = true;
+        }
+
+        List<FutureTask<Void>> tasks = new ArrayList<>();
+        for (Shard shard : shards) {
+            if (concerned[shard.index]) {
+                FutureTask<Void> task = new FutureTask<>(() -> shard.apply(orders, results), null);
+                shard.enqueue(task);
+                tasks.add(task);
+            }
+        }
+        for (FutureTask<Void> task : tasks) {
+            await(task, "batch");
+        }
+    }
+
+
+
+    @Override
+    public Optional<BigDecimal> getBestPrice(String instrument, Side side) {
+
+        return query(instrument, orderBook -> orderBook.getBestPrice(instrument, side), Optional.empty());
+    }
+
+
+
+    @Override
+    public List<Order> getOrdersAtLevel(String instrument, Side side, BigDecimal price) {
+
+        long priceTicks = toTicks(price);  // BigDecimal -> ticks at the API edge
+        return query(instrument, orderBook -> orderBook.getOrdersAtLevel(instrument, side, priceTicks), new ArrayList<>());
+    }
+
+
+
+    @Override
+    public Map<BigDecimal, Set<Order>> getOrdersUpToLevel(String instrument, Side side, int level) {
+
+        return query(instrument, orderBook -> copyOf(orderBook.getOrdersUpToLevel(instrument, side, level)), Collections.emptyMap());
+    }
+
+
+
+    @Override
+    public BigDecimal getAveragePriceOverLevel(String instrument, Side side, int level) {
+
+        return query(instrument, orderBook -> orderBook.getAveragePriceOverLevel(side, level), BigDecimal.ZERO);
+    }
+
+
+
+    @Override
+    public BigDecimal getTotalQtyOverLevel(String instrument, Side side, int level) {
+
+        return query(instrument, orderBook -> orderBook.getTotalQtyOverLevel(side, level), BigDecimal.ZERO);
+    }
+
+
+
+    @Override
+    public Map<BigDecimal, List<Number>> getVolumeWeightedPriceOverLevel(String instrument, Side side, int level) {
+
+        return query(instrument, orderBook -> orderBook.getVolumeWeightedPriceOverLevel(side, level), Collections.emptyMap());
+    }
+
+
+
+    /**
+     *   Each shard copies its own books, one after the other
+     *
+     * @return Map<String, List<Map<BigDecimal, Set<Order>>>>
+     */
+    @Override
+    public Map<String, List<Map<BigDecimal, Set<Order>>>> getFullOrderBook() {
+
+        Map<String, List<Map<BigDecimal, Set<Order>>>> orderBookList = new HashMap<>();
+
+        for (Shard shard : shards) {
+            orderBookList.putAll(call(shard, () -> {
+
+                Map<String, List<Map<BigDecimal, Set<Order>>>> books = new HashMap<>();
+                shard.books.forEach((instrumentId, orderBook) -> {
+                    if (!orderBook.isEmpty()) {   // an emptied book stays in the shard, it is not listed
+                        books.put(registry.getSymbol((int) instrumentId), Arrays.asList(
+                                copyOfSide(orderBook.getOrderBookBySide(Side.BUY)),
+                                copyOfSide(orderBook.getOrderBookBySide(Side.SELL))));
+                    }
+                });
+                return books;
+            }));
+        }
+        return orderBookList;
+    }
+
+
+
+    /**
+     *   Point in time image of the first levels of an instrument, taken by its shard between two updates
+     *
+     * @param instrument
+     * @param snapshot reusable buffer, filled up to its max depth on each side
+     * @return boolean false if there is no book for that instrument (the snapshot is then empty)
+     */
+    public boolean snapshot(String instrument, BookSnapshot snapshot) {
+
+        requireNonNull(snapshot);
+        boolean found = query(instrument, orderBook -> {
+            orderBook.snapshot(snapshot);
+            return true;
+        }, false);
+
+        if (!found) {
+            snapshot.clear(instrument);
+        }
+        return found;
+    }
+
+
+
+    /**
+     *   Visit the orders at one price in the thread of the shard, without copying them (OrderBook.forEachOrder).
+     *   With OrderBookType.OFF_HEAP the action receives one reused OrderFlyweight, only valid during the call.
+     *
+     * @param instrument
+     * @param side
+     * @param price
+     * @param action runs in the shard thread, must not call this ShardedOrderBookList
+     * @return boolean false if there is no book for that instrument
+     */
+    public boolean forEachOrder(String instrument, Side side, BigDecimal price, Consumer<? super OrderView> action) {
+
+        requireNonNull(action);
+        long priceTicks = toTicks(price);
+        return query(instrument, orderBook -> {
+            orderBook.forEachOrder(side, priceTicks, action);
+            return true;
+        }, false);
+    }
+
+
+
+    /**
+     *   Best bid and best ask published by the shard : no queue round trip, one volatile read.
+     *   Orders submitted just before may not be applied yet.
+     *
+     * @param instrument
+     * @return TopOfBook, TopOfBook.EMPTY if there is no order for that instrument
+     */
+    public TopOfBook getTopOfBook(String instrument) {
+
+        OrderBook orderBook = published.get(instrument);
+        return orderBook == null ? TopOfBook.EMPTY : orderBook.getTopOfBook();
+    }
+
+
+
+    /**
+     *   Receive every level change (L2 delta), on the thread of the shard which owns the instrument
+     *
+     * @param listener
+     */
+    public void addDepthListener(DepthListener listener) {
+        depthListeners.add(listener);
+    }
+
+
+    /**
+     * @param listener
+     * @return boolean true if it was registered
+     */
+    public boolean removeDepthListener(DepthListener listener) {
+        return depthListeners.remove(listener);
+    }
+
+
+
+    /**
+     * @return number of shards (threads)
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+
+
+
+    /**
+     *   Apply everything already submitted, then stop the shard threads. If the caller is interrupted meanwhile,
+     *   it stops waiting for them and keeps its interrupt flag.
+     */
+    @Override
+    public void close() {
+
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Shard shard : shards) {
+            shard.offer(STOP);
+        }
+        try {
+            for (Shard shard : shards) {
+                shard.thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+
+
+
+    private Shard shardOf(int instrumentId) {
+        return shards[instrumentId % shards.length];  // ids are dense : the instruments are spread evenly
+    }
+
+
+
+    /**
+     *   Run a query on the book of an instrument, in the thread of its shard
+     */
+    private <T> T query(String instrument, Function<OrderBook, T> query, T noOrderBook) {
+
+        int instrumentId = registry.getId(instrument);
+        if (instrumentId == InstrumentRegistry.UNKNOWN) {
+            return noOrderBook;  // never seen : no shard has a book for it
+        }
+        Shard shard = shardOf(instrumentId);
+        return call(shard, () -> {
+            OrderBook orderBook = shard.books.get(instrumentId);
+            return orderBook == null ? noOrderBook : query.apply(orderBook);
+        });
+    }
+
+
+
+    private static <T> T call(Shard shard, Callable<T> callable) {
+
+        FutureTask<T> task = new FutureTask<>(callable);
+        shard.enqueue(task);
+        return await(task, "shard " + shard.index);
+    }
+
+
+
+    private static <T> T await(FutureTask<T> task, String waitingFor) {
+
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for " + waitingFor, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+
+
+    /**
+     *   The levels of a shard book are plain collections : the caller gets its own copy
+     */
+    private static Map<BigDecimal, Set<Order>> copyOf(Map<BigDecimal, Set<Order>> levels) {
+
+        Map<BigDecimal, Set<Order>> copy = new LinkedHashMap<>();
+        levels.forEach((price, orders) -> copy.put(price, new LinkedHashSet<>(orders)));
+        return copy;
+    }
+
+
+    private static Map<BigDecimal, Set<Order>> copyOfSide(Map<Long, Set<Order>> levels) {
+
+        Map<BigDecimal, Set<Order>> copy = new LinkedHashMap<>();  // keeps the price ordering of the book
+        levels.forEach((price, orders) -> copy.put(toBigDecimal(price), new LinkedHashSet<>(orders)));
+        return copy;
+    }
+
+
+
+    @Override
+    public String toString() {
+        return "ShardedOrderBookList{" +
+                "shards=" + shards.length +
+                ", orderBookType=" + orderBookType +
+                '}';
+    }
+
+
+
+
+
+    /**
+     *   One thread, its queue and the books it owns
+     */
+    private final class Shard implements Runnable {
+
+        private final int index;
+        private final BoundedMpscQueue<Object> queue;       // Order, FutureTask or STOP
+        private final LongObjectHashMap<OrderBook> books = new LongObjectHashMap<>();  // by instrument id, shard thread only
+        private Thread thread;
+
+
+
+        Shard(int index, int queueCapacity) {
+            this.index = index;
+            this.queue = new BoundedMpscQueue<>(queueCapacity);
+        }
+
+
+        void enqueue(Object message) {
+
+            if (closed) {
+                throw new IllegalStateException("ShardedOrderBookList is closed");
+            }
+            offer(message);
+        }
+
+
+        void offer(Object message) {
+
+            while (!queue.offer(message)) {  // full : back pressure on the producer
+                Thread.yield();
+            }
+        }
+
+
+        UpdateResult apply(Order order) {
+
+            OrderBook orderBook = books.get(order.getInstrumentId());
+            if (orderBook == null) {
+                if (order.getQuantityTicks() == 0) {
+                    return UpdateResult.NOT_FOUND;
+                }
+                orderBook = newOrderBook(order.getInstrumentId());
+            }
+            return orderBook.update(order);
+        }
+
+
+        private OrderBook newOrderBook(int instrumentId) {
+
+            String instrument = registry.getSymbol(instrumentId);
+            OrderBook orderBook = new OrderBook(instrument, orderBookType, depthListeners);
+            books.put(instrumentId, orderBook);
+            published.put(instrument, orderBook);
+            return orderBook;
+        }
+
+
+        /**
+         *   Every order of the batch which belongs to this shard, each OrderBook taken once
+         */
+        void apply(List<Order> orders, UpdateResult[] results) {
+
+            for (int i = 0; i < orders.size(); i++) {
+
+                Order order = orders.get(i);
+                if (shardOf(order.getInstrumentId()) != this || results[i] != null) {
+                    continue;  // other shard, or already applied with an earlier order of the same instrument
+                }
+                OrderBook orderBook = books.get(order.getInstrumentId());
+                if (orderBook == null) {
+                    if (order.getQuantityTicks() == 0) {
+                        results[i] = UpdateResult.NOT_FOUND;
+                        continue;
+                    }
+                    orderBook = newOrderBook(order.getInstrumentId());
+                }
+                orderBook.update(orders, i, results);
+            }
+        }
+
+
+        @Override
+        public void run() {
+
+            int idle = 0;
+            while (true) {
+
+                Object message = queue.poll();
+                if (message == null) {
+                    if (++idle < SPIN_TRIES) {
+                        Thread.onSpinWait();
+                    } else {
+                        LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    }
+                    continue;
+                }
+                idle = 0;
+
+                if (message == STOP) {
+                    break;
+                }
+                try {
+                    if (message instanceof Order) {
+                        apply((Order) message);
+                    } else {
+                        ((Runnable) message).run();
+                    }
+                } catch (RuntimeException e) {
+                    log.error("shard " + index + " : " + message + " failed", e);
+                }
+            }
+
+            for (Object message = queue.poll(); message != null; message = queue.poll()) { // sent after close()
+                if (message instanceof Future) {
+                    ((Future<?>) message).cancel(false);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,96 @@
+package com.diy.orderbookmanager;
+
+import com.diy.Utils.FixedPoint;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+
+
+/**
+ *   BookSide on a ConcurrentSkipListMap : O(log n) insert / delete / best price
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@ThreadSafe
+final class SkipListBookSide implements BookSide {
+
+    private final ConcurrentSkipListMap<Long, PriceLevel> levels;  // Treemap concurrent variant
+    private final Function<Long, PriceLevel> newLevel;
+
+
+
+    /**
+     * @param descending true for the bid side (highest price first), false for the ask side (lowest price first)
+     */
+    SkipListBookSide(boolean descending) {
+        this(descending, MapPriceLevel::new);
+    }
+
+
+    /**
+     * @param descending true for the bid side (highest price first), false for the ask side (lowest price first)
+     * @param newLevel creates the level of a price, which holds the orders
+     */
+    SkipListBookSide(boolean descending, LongFunction<PriceLevel> newLevel) {
+        this.levels = descending ? new ConcurrentSkipListMap<>(Comparator.reverseOrder()) : new ConcurrentSkipListMap<>();
+        this.newLevel = newLevel::apply;  // bound once, not per level created
+    }
+
+
+    @Override
+    public PriceLevel getLevel(long price) {
+        return levels.get(price);
+    }
+
+
+    @Override
+    public PriceLevel getOrCreateLevel(long price) {
+        return levels.computeIfAbsent(price, newLevel);
+    }
+
+
+    @Override
+    public boolean removeLevelIfEmpty(long price) {
+
+        PriceLevel level = levels.get(price);
+        return level != null && level.isEmpty() && levels.remove(price, level);
+    }
+
+
+    @Override
+    public long getBestPrice() {
+
+        Map.Entry<Long, PriceLevel> first = levels.firstEntry();
+        return first == null ? FixedPoint.NO_PRICE : first.getKey();
+    }
+
+
+    @Override
+    public int size() {
+        return levels.size();
+    }
+
+
+    @Override
+    public boolean isEmpty() {
+        return levels.isEmpty();
+    }
+
+
+    @Override
+    public Iterator<PriceLevel> iterator() {
+        return levels.values().iterator();
+    }
+
+
+    @Override
+    public String toString() {
+        return levels.toString();
+    }
+
+}
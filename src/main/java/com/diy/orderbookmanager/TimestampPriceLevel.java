@@ -0,0 +1,157 @@
+package com.diy.orderbookmanager;
+
+import com.diy.collections.LongObjectHashMap;
+import com.diy.domain.Order;
+import com.diy.domain.OrderView;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.function.Consumer;
+
+
+/**
+ *   PriceLevel for a book owned by one thread (OrderBookType.TREE_MAP) : orders keyed by their timestamp
+ *
+ *   <p>Instrument, side and price are the same for every order of a level, so the timestamp alone is the identity
+ *   of an order here. It is kept as a primitive key in a LongObjectHashMap (no boxing, no call to Order.hashCode /
+ *   equals) whose value is the Node of the order in the OrderQueue of the level (arrival order).
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@NotThreadSafe
+final class TimestampPriceLevel extends PriceLevel {
+
+    private final LongObjectHashMap<OrderQueue.Node> index = new LongObjectHashMap<>();
+    private final OrderQueue queue = new OrderQueue();
+    private final Set<Order> ordersView = new OrdersView();
+
+
+
+    /**
+     * @param price in ticks
+     */
+    TimestampPriceLevel(long price) {
+        super(price);
+    }
+
+
+
+    @Override
+    long put(Order order) {
+
+        OrderQueue.Node node = index.get(order.getTimestampMillis());
+        if (node == null) {
+            index.put(order.getTimestampMillis(), queue.append(order));
+            return ABSENT;
+        }
+        long previous = node.getOrder().getQuantityTicks();
+        node.setOrder(order);
+        return previous;
+    }
+
+
+    @Override
+    long delete(Order order) {
+
+        OrderQueue.Node node = index.remove(order.getTimestampMillis());
+        if (node == null) {
+            return ABSENT;
+        }
+        queue.remove(node);
+        return node.getOrder().getQuantityTicks();
+    }
+
+
+    @Override
+    boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+
+    /**
+     * @return latest version of each order in arrival order, live view
+     */
+    @Override
+    Collection<Order> getOrders() {
+        return ordersView;
+    }
+
+
+    @Override
+    Set<Order> asSet() {
+        return ordersView;
+    }
+
+
+    @Override
+    void forEach(Consumer<? super OrderView> action) {
+        queue.forEach(action);
+    }
+
+
+    @Override
+    long firstQuantity() {
+        return queue.first().getOrder().getQuantityTicks();
+    }
+
+
+    @Override
+    long firstTimestamp() {
+        return queue.first().getOrder().getTimestampMillis();
+    }
+
+
+    @Override
+    void removeFirst() {
+
+        OrderQueue.Node node = queue.first();
+        index.remove(node.getOrder().getTimestampMillis());
+        queue.remove(node);
+    }
+
+
+    /** the orders are immutable : the Node takes a copy with the quantity left */
+    @Override
+    void reduceFirst(long quantity) {
+
+        OrderQueue.Node node = queue.first();
+        node.setOrder(node.getOrder().withQuantity(quantity));
+    }
+
+
+    @Override
+    public String toString() {
+        return ordersView.toString();
+    }
+
+
+
+    /** read-only Set over the queue : iterates in arrival order, contains() goes through the index */
+    private final class OrdersView extends AbstractSet<Order> {
+
+        @Override
+        public Iterator<Order> iterator() {
+            return queue.iterator();
+        }
+
+        @Override
+        public int size() {
+            return getOrderCount();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+
+            if (!(o instanceof Order)) {
+                return false;
+            }
+            OrderQueue.Node node = index.get(((Order) o).getTimestampMillis());
+            return node != null && node.getOrder().equals(o);
+        }
+    }
+}
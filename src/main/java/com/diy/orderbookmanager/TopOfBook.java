@@ -0,0 +1,97 @@
+package com.diy.orderbookmanager;
+
+import com.diy.Side.Side;
+import com.diy.Utils.FixedPoint;
+
+import javax.annotation.concurrent.Immutable;
+
+
+/**
+ *   Best bid and best ask of a book at one point in time
+ *
+ *   <p>Published by the OrderBook through a volatile field each time an update changes the best level of a side :
+ *   a reader gets both sides, consistent with each other, with one volatile read and no allocation.
+ *   Prices and quantities are in ticks of 0.01 (see FixedPoint), the price is FixedPoint.NO_PRICE for an empty side.
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@Immutable
+public final class TopOfBook {
+
+    /** no order on either side */
+    public static final TopOfBook EMPTY = new TopOfBook(FixedPoint.NO_PRICE, 0, 0, FixedPoint.NO_PRICE, 0, 0, 0);
+
+
+    private final long bidPrice;
+    private final long bidQuantity;   // total quantity at the best bid
+    private final int bidCount;       // number of orders at the best bid
+    private final long askPrice;
+    private final long askQuantity;
+    private final int askCount;
+    private final long sequence;      // sequence of the book update which produced this top of book
+
+
+
+    public TopOfBook(long bidPrice, long bidQuantity, int bidCount, long askPrice, long askQuantity, int askCount, long sequence) {
+        this.bidPrice = bidPrice;
+        this.bidQuantity = bidQuantity;
+        this.bidCount = bidCount;
+        this.askPrice = askPrice;
+        this.askQuantity = askQuantity;
+        this.askCount = askCount;
+        this.sequence = sequence;
+    }
+
+
+
+    public long getBidPrice() {
+        return bidPrice;
+    }
+    public long getBidQuantity() {
+        return bidQuantity;
+    }
+    public int getBidCount() {
+        return bidCount;
+    }
+    public long getAskPrice() {
+        return askPrice;
+    }
+    public long getAskQuantity() {
+        return askQuantity;
+    }
+    public int getAskCount() {
+        return askCount;
+    }
+    public long getSequence() {
+        return sequence;
+    }
+
+
+    public boolean hasBid() {
+        return bidPrice != FixedPoint.NO_PRICE;
+    }
+    public boolean hasAsk() {
+        return askPrice != FixedPoint.NO_PRICE;
+    }
+
+
+    /**
+     * @param side
+     * @return best price of that side in ticks, or FixedPoint.NO_PRICE
+     */
+    public long getPrice(Side side) {
+        return side == Side.BUY ? bidPrice : askPrice;
+    }
+
+
+    @Override
+    public String toString() {
+        return "TopOfBook{" +
+                "bid=" + bidQuantity + "@" + bidPrice + " (" + bidCount + ")" +
+                ", ask=" + askQuantity + "@" + askPrice + " (" + askCount + ")" +
+                ", sequence=" + sequence +
+                '}';
+    }
+}
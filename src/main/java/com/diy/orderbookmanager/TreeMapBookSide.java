@@ -0,0 +1,113 @@
+package com.diy.orderbookmanager;
+
+import com.diy.Utils.FixedPoint;
+import com.diy.collections.LongObjectHashMap;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.TreeMap;
+import java.util.function.LongFunction;
+
+
+/**
+ *   BookSide on a plain TreeMap : O(log n) insert / delete of a level, no CAS and no volatile
+ *
+ *   <p>The levels are also indexed by price in a LongObjectHashMap : finding the level of an update is O(1) without
+ *   boxing the price, the TreeMap is only touched when a level is created or removed and by the ordered reads.
+ *
+ *   <p>Only for a book owned by one thread, which does both the updates and the reads (ShardedOrderBookList).
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@NotThreadSafe
+final class TreeMapBookSide implements BookSide {
+
+    private final TreeMap<Long, PriceLevel> levels;        // ordered from the best price
+    private final LongObjectHashMap<PriceLevel> byPrice = new LongObjectHashMap<>();
+    private final LongFunction<PriceLevel> newLevel;
+
+
+
+    /**
+     * @param descending true for the bid side (highest price first), false for the ask side (lowest price first)
+     */
+    TreeMapBookSide(boolean descending) {
+        this(descending, TimestampPriceLevel::new);
+    }
+
+
+    /**
+     * @param descending true for the bid side (highest price first), false for the ask side (lowest price first)
+     * @param newLevel creates the level of a price, which holds the orders
+     */
+    TreeMapBookSide(boolean descending, LongFunction<PriceLevel> newLevel) {
+        this.levels = descending ? new TreeMap<>(Comparator.reverseOrder()) : new TreeMap<>();
+        this.newLevel = newLevel;
+    }
+
+
+    @Override
+    public PriceLevel getLevel(long price) {
+        return byPrice.get(price);
+    }
+
+
+    @Override
+    public PriceLevel getOrCreateLevel(long price) {
+
+        PriceLevel level = byPrice.get(price);
+        if (level == null) {
+            level = newLevel.apply(price);
+            byPrice.put(price, level);
+            levels.put(price, level);
+        }
+        return level;
+    }
+
+
+    @Override
+    public boolean removeLevelIfEmpty(long price) {
+
+        PriceLevel level = byPrice.get(price);
+        if (level == null || !level.isEmpty()) {
+            return false;
+        }
+        byPrice.remove(price);
+        levels.remove(price);
+        return true;
+    }
+
+
+    @Override
+    public long getBestPrice() {
+        return levels.isEmpty() ? FixedPoint.NO_PRICE : levels.firstKey();
+    }
+
+
+    @Override
+    public int size() {
+        return levels.size();
+    }
+
+
+    @Override
+    public boolean isEmpty() {
+        return levels.isEmpty();
+    }
+
+
+    @Override
+    public Iterator<PriceLevel> iterator() {
+        return levels.values().iterator();
+    }
+
+
+    @Override
+    public String toString() {
+        return levels.toString();
+    }
+
+}
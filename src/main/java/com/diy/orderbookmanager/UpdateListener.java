@@ -0,0 +1,31 @@
+package com.diy.orderbookmanager;
+
+import com.diy.Side.Side;
+
+
+/**
+ *   Receives every change of a resting order, in the order the book applies them (write-ahead journal)
+ *
+ *   <p>Called on the thread which updates the book, while it holds the book write lock, for each update which has
+ *   changed the book and for each resting order hit by a match. The quantity is the new absolute quantity of the
+ *   order (0 when it has left the book), so applying the calls again in the same order rebuilds the same book.
+ *   Only primitives are passed : keep it short and never update a book from it. An exception is logged, it does not
+ *   reach the writer : a listener which must not lose a change keeps its own failure state (see com.diy.journal.Journal).
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@FunctionalInterface
+public interface UpdateListener {
+
+    /**
+     * @param instrumentId id in the InstrumentRegistry
+     * @param side of the order
+     * @param price in ticks
+     * @param quantity new quantity in ticks, 0 for a delete
+     * @param timestamp identity of the order at that price
+     */
+    void onUpdate(int instrumentId, Side side, long price, long quantity, long timestamp);
+
+}
@@ -0,0 +1,77 @@
+package com.diy.orderbookmanager;
+
+import com.diy.Side.Side;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Arrays;
+
+import static java.util.Objects.requireNonNull;
+
+
+/**
+ *   UpdateListeners registered on an OrderBookList, shared by all its books
+ *
+ *   <p>Copy on write array, as DepthListeners. The listeners are called inside the write section of the book, so an
+ *   exception never goes back to the writer : it would leave the book half changed (level updated, TopOfBook not
+ *   published, a batch cut in two). A listener which throws is logged and the others still run ; one which must not
+ *   lose a change, such as the Journal, keeps its own failure state.
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@Slf4j
+@ThreadSafe
+final class UpdateListeners implements UpdateListener {
+
+    private static final UpdateListener[] NONE = new UpdateListener[0];
+
+    private volatile UpdateListener[] listeners = NONE;
+
+
+
+    synchronized void add(UpdateListener listener) {
+
+        requireNonNull(listener);
+        UpdateListener[] current = listeners;
+        UpdateListener[] copy = Arrays.copyOf(current, current.length + 1);
+        copy[current.length] = listener;
+        listeners = copy;
+    }
+
+
+    synchronized boolean remove(UpdateListener listener) {
+
+        UpdateListener[] current = listeners;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == listener) {
+                UpdateListener[] copy = new UpdateListener[current.length - 1];
+                System.arraycopy(current, 0, copy, 0, i);
+                System.arraycopy(current, i + 1, copy, i, current.length - i - 1);
+                listeners = copy;
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    boolean isEmpty() {
+        return listeners.length == 0;
+    }
+
+
+    @Override
+    public void onUpdate(int instrumentId, Side side, long price, long quantity, long timestamp) {
+
+        for (UpdateListener listener : listeners) {
+            try {
+                listener.onUpdate(instrumentId, side, price, quantity, timestamp);
+            } catch (RuntimeException e) {
+                log.error("UpdateListener " + listener + " failed on " + side + " " + price + "x" + quantity + "@" + timestamp, e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,42 @@
+package com.diy.orderbookmanager;
+
+
+/**
+ *   Outcome of one update applied to an OrderBook
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+public enum UpdateResult {
+
+    /** new order inserted */
+    ADDED(true),
+
+    /** quantity of an existing order changed */
+    MODIFIED(true),
+
+    /** quantity 0 : existing order removed */
+    DELETED(true),
+
+    /** same quantity as the existing order : nothing has changed */
+    DUPLICATE(false),
+
+    /** quantity 0 for an order which is not in the book : ignored */
+    NOT_FOUND(false);
+
+
+    private final boolean applied;
+
+    UpdateResult(boolean applied) {
+        this.applied = applied;
+    }
+
+
+    /**
+     * @return true if the book has changed
+     */
+    public boolean isApplied() {
+        return applied;
+    }
+}
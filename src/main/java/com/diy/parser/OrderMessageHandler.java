@@ -0,0 +1,53 @@
+package com.diy.parser;
+
+import com.diy.Side.Side;
+
+
+/**
+ *   Receives the messages decoded by the OrderParser, on the parsing thread
+ *
+ *   <p>Values are primitives : price and quantity in ticks of 0.01 (see FixedPoint), timestamp in milliseconds
+ *   since epoch. The instrument comes with its id in the InstrumentRegistry, the String is the one of the registry,
+ *   it can be compared with ==.
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+public interface OrderMessageHandler {
+
+
+    /**
+     *   A message has been decoded
+     *
+     * @param instrumentId id of the instrument in the InstrumentRegistry
+     * @param instrument interned instrument
+     * @param side either buy or sell
+     * @param price in ticks of 0.01, always positive
+     * @param quantity in ticks of 0.01, 0 means delete
+     * @param timestamp UNIX timestamp (milliseconds since epoch)
+     */
+    void onOrder(int instrumentId, String instrument, Side side, long price, long quantity, long timestamp);
+
+
+    /**
+     *   A message has been decoded, with the exchange order id of the market by order feeds. The handlers which key
+     *   the orders by id override it, the others get the message without its id.
+     *
+     * @param orderId exchange order id, or Order.NO_ORDER_ID if the message has none
+     */
+    default void onOrder(int instrumentId, String instrument, long orderId, Side side, long price, long quantity, long timestamp) {
+        onOrder(instrumentId, instrument, side, price, quantity, timestamp);
+    }
+
+
+    /**
+     *   A message could not be decoded, nothing has been sent to onOrder for it
+     *
+     * @param error reason
+     * @param offset start of the message in the buffer given to the parser
+     * @param length length of the message
+     */
+    void onError(ParseError error, int offset, int length);
+
+}
@@ -0,0 +1,406 @@
+package com.diy.parser;
+
+import com.diy.Side.Side;
+import com.diy.Utils.FixedPoint;
+import com.diy.domain.InstrumentRegistry;
+import com.diy.domain.Order;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static java.util.Objects.requireNonNull;
+
+
+/**
+ *   Zero-allocation decoder for the exchange format (ASCII) :  t=1638848595|i=BTCUSD|p=32.99|q=100|s=b
+ *
+ *   <p>The market by order feeds add the exchange order id after the side :  ...|s=b|o=8812004
+ *
+ *   <p>The bytes are decoded in place, straight into primitive fields : no String.split, no substring, no BigDecimal.
+ *   The instrument is resolved from its bytes to its id in the InstrumentRegistry (one hash, one compare), so no
+ *   String is created per message either.
+ *   Malformed input is reported to OrderMessageHandler.onError, nothing is thrown.
+ *
+ *   <p>One parser per thread : it keeps a cursor and a wrapper for the last byte[] it has seen.
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@NotThreadSafe
+public final class OrderParser {
+
+    /** instrument universe from the exchange spec */
+    public static final String[] DEFAULT_UNIVERSE = {"BTCUSD", "ETHUSD", "SOLUSD"};
+
+    private static final int MAX_INSTRUMENT_LENGTH = 32;
+    private static final long ERROR = Long.MIN_VALUE;  // returned by the field decoders, the cursor is left on the bad byte
+
+
+    private final boolean acceptUnknownInstruments;
+    private final InstrumentRegistry registry = InstrumentRegistry.getInstance();
+    private boolean[] known;     // by instrument id : part of the universe of this parser
+    private String[] instruments;
+    private int universeSize;
+
+    private int cursor;          // position of the next byte to decode
+    private ByteBuffer wrapped;  // last byte[] seen, wrapped once
+
+
+
+    /**
+     *   Parser for BTCUSD, ETHUSD, SOLUSD ; any other instrument is reported as UNKNOWN_INSTRUMENT
+     */
+    public OrderParser() {
+        this(false, DEFAULT_UNIVERSE);
+    }
+
+
+    /**
+     * @param acceptUnknownInstruments true to add an instrument to the universe the first time it is seen,
+     *                                 false to report it as UNKNOWN_INSTRUMENT
+     * @param universe known instruments
+     */
+    public OrderParser(boolean acceptUnknownInstruments, String... universe) {
+
+        requireNonNull(universe);
+        this.acceptUnknownInstruments = acceptUnknownInstruments;
+        this.known = new boolean[Math.max(registry.size(), 4)];
+        this.instruments = new String[Math.max(universe.length, 4)];
+        for (String instrument : universe) {
+            intern(registry.register(instrument));
+        }
+    }
+
+
+
+    /**
+     *   Decode one message
+     *
+     * @param buffer message bytes, read with absolute gets : position and limit are not changed
+     * @param offset start of the message
+     * @param length length of the message, a trailing '\r' or '\n' is ignored
+     * @param handler receives the order or the error
+     * @return boolean true if the message has been decoded
+     */
+    public boolean parse(ByteBuffer buffer, int offset, int length, OrderMessageHandler handler) {
+
+        int end = offset + length;
+        while (end > offset && (buffer.get(end - 1) == '\n' || buffer.get(end - 1) == '\r')) {
+            end--;
+        }
+        cursor = offset;
+
+        // t=
+        if (!expectTag(buffer, end, 't')) {
+            return error(handler, ParseError.MISSING_FIELD, offset, length);
+        }
+        long timestamp = decodeTimestamp(buffer, end);
+        if (timestamp == ERROR) {
+            return error(handler, cursor >= end ? ParseError.MISSING_FIELD : ParseError.BAD_TIMESTAMP, offset, length);
+        }
+
+        // i=
+        if (!expectTag(buffer, end, 'i')) {
+            return error(handler, ParseError.MISSING_FIELD, offset, length);
+        }
+        int instrumentId = decodeInstrument(buffer, end);
+        if (instrumentId == InstrumentRegistry.UNKNOWN) {
+            return error(handler, cursor >= end ? ParseError.MISSING_FIELD : ParseError.UNKNOWN_INSTRUMENT, offset, length);
+        }
+
+        // p=
+        if (!expectTag(buffer, end, 'p')) {
+            return error(handler, ParseError.MISSING_FIELD, offset, length);
+        }
+        long price = decodeDecimal(buffer, end);
+        if (price == ERROR) {
+            return error(handler, cursor >= end ? ParseError.MISSING_FIELD : ParseError.BAD_PRICE, offset, length);
+        }
+        if (price <= 0) {
+            return error(handler, ParseError.PRICE_NOT_POSITIVE, offset, length);
+        }
+        if (price > FixedPoint.MAX_PRICE) {
+            return error(handler, ParseError.PRICE_OUT_OF_RANGE, offset, length);
+        }
+
+        // q=
+        if (!expectTag(buffer, end, 'q')) {
+            return error(handler, ParseError.MISSING_FIELD, offset, length);
+        }
+        long quantity = decodeDecimal(buffer, end);
+        if (quantity == ERROR) {
+            return error(handler, cursor >= end ? ParseError.MISSING_FIELD : ParseError.BAD_QUANTITY, offset, length);
+        }
+        if (quantity < 0) {
+            return error(handler, ParseError.NEGATIVE_QUANTITY, offset, length);
+        }
+
+        // s=  (last field, or followed by o=)
+        if (!expectTag(buffer, end, 's') || cursor >= end) {
+            return error(handler, ParseError.MISSING_FIELD, offset, length);
+        }
+        Side side;
+        switch (buffer.get(cursor++)) {
+            case 'b':
+            case 'B':
+                side = Side.BUY;
+                break;
+            case 's':
+            case 'S':
+                side = Side.SELL;
+                break;
+            default:
+                return error(handler, ParseError.BAD_SIDE, offset, length);
+        }
+
+        // o=  (optional)
+        long orderId = Order.NO_ORDER_ID;
+        if (cursor != end) {
+            if (buffer.get(cursor) != '|' || !(++cursor < end && expectTag(buffer, end, 'o'))) {
+                return error(handler, ParseError.TRAILING_DATA, offset, length);
+            }
+            orderId = decodeOrderId(buffer, end);
+            if (orderId == ERROR) {
+                return error(handler, ParseError.BAD_ORDER_ID, offset, length);
+            }
+        }
+
+        handler.onOrder(instrumentId, registry.getSymbol(instrumentId), orderId, side, price, quantity, timestamp);
+        return true;
+    }
+
+
+
+    /**
+     *   Decode one message from a byte[]
+     *
+     * @param buffer message bytes
+     * @param offset start of the message
+     * @param length length of the message
+     * @param handler receives the order or the error
+     * @return boolean true if the message has been decoded
+     */
+    public boolean parse(byte[] buffer, int offset, int length, OrderMessageHandler handler) {
+
+        if (wrapped == null || wrapped.array() != buffer) { // wrap once per array, not once per message
+            wrapped = ByteBuffer.wrap(buffer);
+        }
+        return parse(wrapped, offset, length, handler);
+    }
+
+
+
+    /**
+     *   Decode every complete line ('\n' terminated) of a block, empty lines are skipped
+     *
+     * @param buffer block of newline-delimited messages, read with absolute gets
+     * @param offset start of the block
+     * @param length length of the block
+     * @param handler receives the orders and the errors, offsets are relative to the buffer
+     * @return int number of bytes consumed : everything up to and including the last '\n'.
+     *     An incomplete last line is left to the caller.
+     */
+    public int parseLines(ByteBuffer buffer, int offset, int length, OrderMessageHandler handler) {
+
+        int end = offset + length;
+        int lineStart = offset;
+
+        for (int i = offset; i < end; i++) {
+            if (buffer.get(i) == '\n') {
+                if (i > lineStart && !(i == lineStart + 1 && buffer.get(lineStart) == '\r')) {
+                    parse(buffer, lineStart, i - lineStart, handler);
+                }
+                lineStart = i + 1;
+            }
+        }
+        return lineStart - offset;
+    }
+
+
+
+    /**
+     * @return the instruments known by this parser, in the order they were interned
+     */
+    public String[] getUniverse() {
+        return Arrays.copyOf(instruments, universeSize);
+    }
+
+
+
+    private boolean expectTag(ByteBuffer buffer, int end, char tag) {
+
+        if (cursor + 1 >= end || buffer.get(cursor) != tag || buffer.get(cursor + 1) != '=') {
+            return false;
+        }
+        cursor += 2;
+        return true;
+    }
+
+
+
+    private long decodeTimestamp(ByteBuffer buffer, int end) {
+
+        long value = 0;
+        int start = cursor;
+        for (; cursor < end; cursor++) {
+            byte b = buffer.get(cursor);
+            if (b == '|') {
+                if (cursor == start) {
+                    return ERROR;
+                }
+                cursor++;
+                return value;
+            }
+            if (b < '0' || b > '9' || value > (Long.MAX_VALUE - 9) / 10) {
+                return ERROR;
+            }
+            value = value * 10 + (b - '0');
+        }
+        return ERROR; // no '|'
+    }
+
+
+
+    /**
+     *   Positive integer up to the end of the message
+     */
+    private long decodeOrderId(ByteBuffer buffer, int end) {
+
+        long value = 0;
+        if (cursor >= end) {
+            return ERROR;
+        }
+        for (; cursor < end; cursor++) {
+            byte b = buffer.get(cursor);
+            if (b < '0' || b > '9' || value > (Long.MAX_VALUE - 9) / 10) {
+                return ERROR;
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value == 0 ? ERROR : value;
+    }
+
+
+
+    /**
+     *   Decimal with a scale of 0 to 2, straight into ticks of 0.01. Extra decimals are dropped (RoundingMode.DOWN).
+     */
+    private long decodeDecimal(ByteBuffer buffer, int end) {
+
+        boolean negative = false;
+        if (cursor < end && buffer.get(cursor) == '-') {
+            negative = true;
+            cursor++;
+        }
+
+        long value = 0;
+        int digits = 0;
+        int decimals = -1; // -1 => no '.' seen yet
+
+        for (; cursor < end; cursor++) {
+            byte b = buffer.get(cursor);
+            if (b == '|') {
+                if (digits == 0) {
+                    return ERROR;
+                }
+                cursor++;
+                for (int d = Math.max(decimals, 0); d < FixedPoint.SCALE; d++) {
+                    value *= 10;
+                }
+                return negative ? -value : value;
+            }
+            if (b == '.') {
+                if (decimals >= 0) {
+                    return ERROR;
+                }
+                decimals = 0;
+                continue;
+            }
+            if (b < '0' || b > '9' || value > (Long.MAX_VALUE / 1000)) {
+                return ERROR;
+            }
+            if (decimals == FixedPoint.SCALE) {
+                continue; // RoundingMode.DOWN
+            }
+            if (decimals >= 0) {
+                decimals++;
+            }
+            value = value * 10 + (b - '0');
+            digits++;
+        }
+        return ERROR; // no '|'
+    }
+
+
+
+    /**
+     * @return the id of the instrument, or InstrumentRegistry.UNKNOWN (cursor left before the end if the field was
+     *     there but unknown)
+     */
+    private int decodeInstrument(ByteBuffer buffer, int end) {
+
+        int start = cursor;
+        int stop = start;
+        while (stop < end && buffer.get(stop) != '|') {
+            stop++;
+        }
+        if (stop >= end) {
+            cursor = end;
+            return InstrumentRegistry.UNKNOWN;
+        }
+        int length = stop - start;
+        cursor = stop + 1;
+        if (length == 0 || length > MAX_INSTRUMENT_LENGTH) {
+            return InstrumentRegistry.UNKNOWN;
+        }
+
+        int id = registry.getId(buffer, start, length);
+        if (id != InstrumentRegistry.UNKNOWN && id < known.length && known[id]) {
+            return id;
+        }
+        if (!acceptUnknownInstruments) {
+            return InstrumentRegistry.UNKNOWN;
+        }
+        if (id == InstrumentRegistry.UNKNOWN) {
+            byte[] symbol = new byte[length];  // only the first time this instrument is seen
+            for (int i = 0; i < length; i++) {
+                symbol[i] = buffer.get(start + i);
+                if (symbol[i] < '!' || symbol[i] > '~') {
+                    return InstrumentRegistry.UNKNOWN;  // printable ASCII only, as the InstrumentRegistry
+                }
+            }
+            id = registry.register(new String(symbol, StandardCharsets.US_ASCII));
+        }
+        return intern(id);
+    }
+
+
+
+    /** add an instrument to the universe of this parser */
+    private int intern(int id) {
+
+        if (id >= known.length) {
+            known = Arrays.copyOf(known, Math.max(id + 1, known.length * 2));
+        }
+        if (!known[id]) {
+            known[id] = true;
+            if (universeSize == instruments.length) {
+                instruments = Arrays.copyOf(instruments, universeSize * 2);
+            }
+            instruments[universeSize++] = registry.getSymbol(id);
+        }
+        return id;
+    }
+
+
+
+    private static boolean error(OrderMessageHandler handler, ParseError error, int offset, int length) {
+
+        handler.onError(error, offset, length);
+        return false;
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.diy.parser;
+
+
+/**
+ *   Reason why a message could not be decoded by the OrderParser
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+public enum ParseError {
+
+    /** a field is missing or the fields are not in the t|i|p|q|s order */
+    MISSING_FIELD(true),
+
+    /** t= is not a positive number of milliseconds */
+    BAD_TIMESTAMP(true),
+
+    /** i= is empty or is not part of the instrument universe */
+    UNKNOWN_INSTRUMENT(false),
+
+    /** p= is not a decimal with a scale of 0 to 2 */
+    BAD_PRICE(true),
+
+    /** p= is zero */
+    PRICE_NOT_POSITIVE(false),
+
+    /** p= is above 999.99, the highest price of the exchange */
+    PRICE_OUT_OF_RANGE(false),
+
+    /** q= is not a decimal with a scale of 0 to 2 */
+    BAD_QUANTITY(true),
+
+    /** q= is negative */
+    NEGATIVE_QUANTITY(false),
+
+    /** s= is neither 'b' nor 's' */
+    BAD_SIDE(true),
+
+    /** something other than o= follows the side */
+    TRAILING_DATA(true),
+
+    /** o= is not a positive integer */
+    BAD_ORDER_ID(true);
+
+
+    private final boolean formatError;
+
+    ParseError(boolean formatError) {
+        this.formatError = formatError;
+    }
+
+
+    /**
+     * @return true if the bytes are not in the exchange format, false if the format is fine but the value is not accepted
+     */
+    public boolean isFormatError() {
+        return formatError;
+    }
+}
@@ -0,0 +1,33 @@
+package com.diy.pipeline;
+
+import com.diy.orderbookmanager.OrderBookManager;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+
+/**
+ *   Second stage : the only thread of the pipeline which updates the books
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@NotThreadSafe
+final class ApplyStage implements StageHandler {
+
+    private final OrderBookManager orderBookManager;
+
+
+    ApplyStage(OrderBookManager orderBookManager) {
+        this.orderBookManager = orderBookManager;
+    }
+
+
+    @Override
+    public void onEvent(IngestEvent event, long sequence, boolean endOfBatch) {
+
+        if (event.order != null) {
+            event.result = orderBookManager.update(event.order);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.diy.pipeline;
+
+import com.diy.Side.Side;
+import com.diy.domain.Order;
+import com.diy.orderbookmanager.UpdateResult;
+import com.diy.parser.ParseError;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+
+/**
+ *   One slot of the ring of an IngestPipeline, filled stage by stage
+ *
+ *   <p>The slots are allocated with the ring and reused for every message : the producer stamps the message, the
+ *   parse stage sets the order fields (or the error), the apply stage sets the result. A consumer stage reads them
+ *   during StageHandler.onEvent only, the slot is refilled once every consumer has passed it.
+ *   Prices and quantities are in ticks of 0.01 (see FixedPoint).
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@NotThreadSafe
+public final class IngestEvent {
+
+    final int offset;        // of the raw bytes of this slot in the ring buffer
+    int length;              // of the raw message
+    long publishedNanos;     // System.nanoTime() when the producer published it
+
+    ParseError error;        // null if the message has been decoded
+    int instrumentId;
+    Side side;
+    long price;
+    long quantity;
+    long timestamp;
+    Order order;             // built by the parse stage, kept by the book
+
+    UpdateResult result;     // null if not applied (parse error)
+
+
+
+    IngestEvent(int offset) {
+        this.offset = offset;
+    }
+
+
+    /** new message in the slot : forget the previous one */
+    void reset(int length, long publishedNanos) {
+        this.length = length;
+        this.publishedNanos = publishedNanos;
+        this.error = null;
+        this.order = null;
+        this.result = null;
+    }
+
+
+
+    /**
+     * @return length of the raw message
+     */
+    public int getLength() {
+        return length;
+    }
+    /**
+     * @return System.nanoTime() when the message was published
+     */
+    public long getPublishedNanos() {
+        return publishedNanos;
+    }
+    /**
+     * @return why the message could not be decoded, null if it was
+     */
+    public ParseError getError() {
+        return error;
+    }
+    public int getInstrumentId() {
+        return instrumentId;
+    }
+    public Side getSide() {
+        return side;
+    }
+    public long getPrice() {
+        return price;
+    }
+    public long getQuantity() {
+        return quantity;
+    }
+    public long getTimestamp() {
+        return timestamp;
+    }
+    /**
+     * @return the decoded order, null if the message could not be decoded
+     */
+    public Order getOrder() {
+        return order;
+    }
+    /**
+     * @return outcome of the update, null if the message could not be decoded
+     */
+    public UpdateResult getResult() {
+        return result;
+    }
+    /**
+     * @return true if the update has changed a book
+     */
+    public boolean isApplied() {
+        return result != null && result.isApplied();
+    }
+
+
+    @Override
+    public String toString() {
+        return "IngestEvent{" +
+                "error=" + error +
+                ", instrumentId=" + instrumentId +
+                ", side=" + side +
+                ", price=" + price +
+                ", quantity=" + quantity +
+                ", timestamp=" + timestamp +
+                ", result=" + result +
+                '}';
+    }
+}
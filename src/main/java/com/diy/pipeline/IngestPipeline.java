@@ -0,0 +1,344 @@
+package com.diy.pipeline;
+
+import com.diy.orderbookmanager.OrderBookManager;
+import com.diy.parser.OrderParser;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadFactory;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Objects.requireNonNull;
+
+
+/**
+ *   Staged ingestion of raw exchange messages into an OrderBookManager, over one preallocated ring of slots
+ *
+ *   <pre>
+ *   source thread --publish--> [parse] --> [apply] --+--> [consumer 0]  journal
+ *                                                    +--> [consumer 1]  metrics
+ *                                                    +--> [consumer n]  delta publication...
+ *   </pre>
+ *   The source copies the bytes of a message into the next slot and publishes its sequence. Each stage is one
+ *   thread which waits on the sequence of the stage in front of it (SequenceBarrier), handles every slot available
+ *   in one batch, then publishes its own sequence : no lock and no queue between the stages, nothing allocated per
+ *   message but the Order kept by the book. The consumer stages run side by side behind the apply stage, and the
+ *   source waits for the slowest of them before it reuses a slot.
+ *
+ *   <p>Each stage runs its own thread from the ThreadFactory. The Runnable given to the factory is named after the
+ *   stage (ingest-parse, ingest-apply, ingest-consumer-0...), so a factory can pin each one to its own core with an
+ *   affinity library. The WaitStrategy sets what a stage does while it has nothing to do.
+ *
+ *   <p>publish and publishLines are for one source thread. Every other method can be called from any thread.
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@Slf4j
+@ThreadSafe
+public final class IngestPipeline implements AutoCloseable {
+
+    /** slots of the ring */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    /** longest raw message accepted, in bytes */
+    public static final int DEFAULT_MAX_MESSAGE_LENGTH = 128;
+
+
+    private final IngestEvent[] ring;
+    private final int mask;
+    private final int maxMessageLength;
+    private final ByteBuffer bytes;          // raw messages, maxMessageLength per slot
+    private final WaitStrategy waitStrategy;
+
+    private final Sequence cursor = new Sequence();  // last slot published by the source
+    private final ParseStage parseStage;
+    private final Stage[] stages;                    // parse, apply, then the consumers
+    private final Sequence[] gating;                 // of the last stages : a slot is free once they have passed it
+
+    private long next;                               // source thread only : sequence of the next message
+    private long gatingCache = Sequence.INITIAL;     // source thread only : last lowest sequence of the last stages
+    private volatile boolean closed;
+
+
+
+    /**
+     * @param orderBookManager receives every decoded message, from the apply stage only
+     * @param consumers run after the apply stage, one thread each
+     */
+    public IngestPipeline(OrderBookManager orderBookManager, StageHandler... consumers) {
+        this(orderBookManager, WaitStrategy.PARK, consumers);
+    }
+
+
+    /**
+     * @param orderBookManager receives every decoded message, from the apply stage only
+     * @param waitStrategy of every stage and of the source when the ring is full
+     * @param consumers run after the apply stage, one thread each
+     */
+    public IngestPipeline(OrderBookManager orderBookManager, WaitStrategy waitStrategy, StageHandler... consumers) {
+        this(orderBookManager, new OrderParser(true, OrderParser.DEFAULT_UNIVERSE), DEFAULT_CAPACITY, DEFAULT_MAX_MESSAGE_LENGTH,
+                waitStrategy, IngestPipeline::newThread, consumers);
+    }
+
+
+    /**
+     * @param orderBookManager receives every decoded message, from the apply stage only
+     * @param parser used by the parse stage only, with the instrument universe of the source
+     * @param capacity slots of the ring, power of 2
+     * @param maxMessageLength longest raw message accepted, in bytes
+     * @param waitStrategy of every stage and of the source when the ring is full
+     * @param threadFactory creates the thread of each stage, started at once
+     * @param consumers run after the apply stage, one thread each
+     */
+    public IngestPipeline(OrderBookManager orderBookManager, OrderParser parser, int capacity, int maxMessageLength,
+                          WaitStrategy waitStrategy, ThreadFactory threadFactory, StageHandler... consumers) {
+
+        checkArgument(capacity > 0 && Integer.bitCount(capacity) == 1, "capacity must be a power of 2");
+        checkArgument(maxMessageLength > 0, "maxMessageLength must be positive");
+        checkArgument((long) capacity * maxMessageLength <= Integer.MAX_VALUE, "capacity * maxMessageLength must be under 2GB");
+        requireNonNull(orderBookManager);
+        requireNonNull(parser);
+        this.waitStrategy = requireNonNull(waitStrategy);
+        this.maxMessageLength = maxMessageLength;
+        this.mask = capacity - 1;
+        this.bytes = ByteBuffer.allocateDirect(capacity * maxMessageLength);
+        this.ring = new IngestEvent[capacity];
+        for (int i = 0; i < capacity; i++) {
+            ring[i] = new IngestEvent(i * maxMessageLength);
+        }
+
+        this.parseStage = new ParseStage(parser, bytes);
+        this.stages = new Stage[2 + consumers.length];
+        stages[0] = new Stage("ingest-parse", parseStage, cursor);
+        stages[1] = new Stage("ingest-apply", new ApplyStage(orderBookManager), stages[0].sequence);
+        for (int i = 0; i < consumers.length; i++) {
+            stages[2 + i] = new Stage("ingest-consumer-" + i, requireNonNull(consumers[i]), stages[1].sequence);
+        }
+
+        this.gating = new Sequence[Math.max(consumers.length, 1)];
+        for (int i = 0; i < gating.length; i++) {
+            gating[i] = stages[consumers.length == 0 ? 1 : 2 + i].sequence;
+        }
+
+        for (Stage stage : stages) {
+            stage.thread = threadFactory.newThread(stage);
+            stage.thread.start();
+        }
+    }
+
+
+    private static Thread newThread(Runnable stage) {
+
+        Thread thread = new Thread(stage, stage.toString());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+
+
+    /**
+     *   Copy one message into the next slot and publish it. Waits if the ring is full.
+     *
+     * @param buffer read with absolute gets : position and limit are not changed
+     * @param offset start of the message
+     * @param length length of the message, at most maxMessageLength
+     * @return long sequence of the message
+     */
+    public long publish(ByteBuffer buffer, int offset, int length) {
+
+        IngestEvent event = claim(length);
+        for (int i = 0; i < length; i++) {
+            bytes.put(event.offset + i, buffer.get(offset + i));
+        }
+        return commit(event, length);
+    }
+
+
+    /**
+     *   Same as publish(ByteBuffer, int, int) for a byte[]
+     *
+     * @param buffer message bytes
+     * @param offset start of the message
+     * @param length length of the message, at most maxMessageLength
+     * @return long sequence of the message
+     */
+    public long publish(byte[] buffer, int offset, int length) {
+
+        IngestEvent event = claim(length);
+        for (int i = 0; i < length; i++) {
+            bytes.put(event.offset + i, buffer[offset + i]);
+        }
+        return commit(event, length);
+    }
+
+
+    /**
+     *   Publish every complete line ('\n' terminated) of a block read from the source, empty lines are skipped
+     *
+     * @param buffer block of newline-delimited messages, read with absolute gets
+     * @param offset start of the block
+     * @param length length of the block
+     * @return int number of bytes consumed : everything up to and including the last '\n'.
+     *     An incomplete last line is left to the caller.
+     */
+    public int publishLines(ByteBuffer buffer, int offset, int length) {
+
+        int end = offset + length;
+        int lineStart = offset;
+
+        for (int i = offset; i < end; i++) {
+            if (buffer.get(i) == '\n') {
+                if (i > lineStart && !(i == lineStart + 1 && buffer.get(lineStart) == '\r')) {
+                    publish(buffer, lineStart, i - lineStart);
+                }
+                lineStart = i + 1;
+            }
+        }
+        return lineStart - offset;
+    }
+
+
+    /** the slot of the next sequence, once the last stages have passed it */
+    private IngestEvent claim(int length) {
+
+        checkState(!closed, "the pipeline is closed");
+        checkArgument(length >= 0 && length <= maxMessageLength, "message of %s bytes, the maximum is %s", length, maxMessageLength);
+
+        long wrapPoint = next - ring.length;  // sequence which was in that slot
+        if (wrapPoint > gatingCache) {
+            for (int attempt = 0; wrapPoint > (gatingCache = Sequence.minimum(gating, Long.MAX_VALUE)); attempt++) {
+                waitStrategy.idle(attempt);
+            }
+        }
+        return ring[(int) next & mask];
+    }
+
+
+    private long commit(IngestEvent event, int length) {
+
+        long sequence = next++;
+        event.reset(length, System.nanoTime());
+        cursor.set(sequence);  // release : the slot is complete before the parse stage sees it
+        return sequence;
+    }
+
+
+
+    /**
+     *   Wait until every stage has handled every message published so far
+     */
+    public void drain() {
+
+        long published = cursor.get();
+        for (int attempt = 0; Sequence.minimum(gating, Long.MAX_VALUE) < published; attempt++) {
+            waitStrategy.idle(attempt);
+        }
+    }
+
+
+    /**
+     *   Drain the pipeline, then stop its threads. Nothing can be published afterwards. If the caller is interrupted
+     *   meanwhile, it stops waiting for the threads and keeps its interrupt flag.
+     */
+    @Override
+    public void close() {
+
+        if (closed) {
+            return;
+        }
+        closed = true;
+        drain();
+        for (Stage stage : stages) {
+            stage.barrier.alert();
+        }
+        try {
+            for (Stage stage : stages) {
+                stage.thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+
+    /**
+     * @return number of messages published
+     */
+    public long getPublished() {
+        return cursor.get() + 1;
+    }
+
+
+    /**
+     * @return number of messages the parse stage could not decode
+     */
+    public long getParseErrors() {
+        return parseStage.getErrors();
+    }
+
+
+    @Override
+    public String toString() {
+        return "IngestPipeline{" +
+                "capacity=" + ring.length +
+                ", waitStrategy=" + waitStrategy +
+                ", stages=" + stages.length +
+                ", published=" + getPublished() +
+                '}';
+    }
+
+
+
+    /**
+     *   One thread : waits for the slots the stage in front of it has passed, hands them to the handler in sequence
+     *   order, then publishes its own sequence for the stages behind it
+     */
+    private final class Stage implements Runnable {
+
+        private final String name;
+        private final StageHandler handler;
+        private final SequenceBarrier barrier;
+        private final Sequence sequence = new Sequence();
+        private Thread thread;
+
+
+        Stage(String name, StageHandler handler, Sequence dependency) {
+            this.name = name;
+            this.handler = handler;
+            this.barrier = new SequenceBarrier(new Sequence[]{dependency}, waitStrategy);
+        }
+
+
+        @Override
+        public void run() {
+
+            long nextSequence = sequence.get() + 1;
+            while (true) {
+
+                long available = barrier.waitFor(nextSequence);
+                if (available == SequenceBarrier.ALERTED) {
+                    return;
+                }
+                for (; nextSequence <= available; nextSequence++) {
+                    try {
+                        handler.onEvent(ring[(int) nextSequence & mask], nextSequence, nextSequence == available);
+                    } catch (Exception e) {
+                        log.error(name + " failed on sequence " + nextSequence, e);  // the message is skipped by this stage only
+                    }
+                }
+                sequence.set(available);
+            }
+        }
+
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.diy.pipeline;
+
+import com.diy.journal.Journal;
+
+import static java.util.Objects.requireNonNull;
+
+
+/**
+ *   Consumer stage which appends the applied updates to a Journal, off the apply thread
+ *
+ *   <p>Use it instead of OrderBookList.addUpdateListener(journal), not with it. A record is written after its update
+ *   is applied, so a Checkpoint stays consistent with the journal (see Checkpoint). Fills of a MatchingEngine do not
+ *   go through the pipeline : a book matched outside of it needs the journal as UpdateListener.
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+public final class JournalStage implements StageHandler {
+
+    private final Journal journal;
+
+
+    public JournalStage(Journal journal) {
+        this.journal = requireNonNull(journal);
+    }
+
+
+    @Override
+    public void onEvent(IngestEvent event, long sequence, boolean endOfBatch) {
+
+        if (event.isApplied()) {
+            journal.onUpdate(event.instrumentId, event.side, event.price, event.quantity, event.timestamp);
+        }
+    }
+}
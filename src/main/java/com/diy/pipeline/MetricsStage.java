@@ -0,0 +1,34 @@
+package com.diy.pipeline;
+
+import com.diy.metrics.Operation;
+import com.diy.metrics.OrderBookMetrics;
+
+import static java.util.Objects.requireNonNull;
+
+
+/**
+ *   Consumer stage which records the latency of each decoded message, from its raw bytes published to this stage
+ *   (parse, apply and the waits between the stages), as Operation.INGEST of its instrument
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+public final class MetricsStage implements StageHandler {
+
+    private final OrderBookMetrics metrics;
+
+
+    public MetricsStage(OrderBookMetrics metrics) {
+        this.metrics = requireNonNull(metrics);
+    }
+
+
+    @Override
+    public void onEvent(IngestEvent event, long sequence, boolean endOfBatch) {
+
+        if (event.order != null) {
+            metrics.record(event.instrumentId, Operation.INGEST, System.nanoTime() - event.publishedNanos);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.diy.pipeline;
+
+import com.diy.Side.Side;
+import com.diy.domain.Order;
+import com.diy.parser.OrderMessageHandler;
+import com.diy.parser.OrderParser;
+import com.diy.parser.ParseError;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.nio.ByteBuffer;
+
+
+/**
+ *   First stage : decodes the raw bytes of the slot in place and builds the Order the book will keep
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@NotThreadSafe
+final class ParseStage implements StageHandler, OrderMessageHandler {
+
+    private final OrderParser parser;
+    private final ByteBuffer bytes;   // raw bytes of every slot
+    private IngestEvent event;        // being decoded
+    private volatile long errors;     // written by the stage thread only
+
+
+
+    ParseStage(OrderParser parser, ByteBuffer bytes) {
+        this.parser = parser;
+        this.bytes = bytes;
+    }
+
+
+    @Override
+    public void onEvent(IngestEvent event, long sequence, boolean endOfBatch) {
+
+        this.event = event;
+        parser.parse(bytes, event.offset, event.length, this);
+    }
+
+
+    @Override
+    public void onOrder(int instrumentId, String instrument, Side side, long price, long quantity, long timestamp) {
+        onOrder(instrumentId, instrument, Order.NO_ORDER_ID, side, price, quantity, timestamp);
+    }
+
+
+    @Override
+    public void onOrder(int instrumentId, String instrument, long orderId, Side side, long price, long quantity, long timestamp) {
+
+        event.instrumentId = instrumentId;
+        event.side = side;
+        event.price = price;
+        event.quantity = quantity;
+        event.timestamp = timestamp;
+        event.order = new Order(instrumentId, orderId, side, price, quantity, timestamp);
+    }
+
+
+    @Override
+    public void onError(ParseError error, int offset, int length) {
+
+        event.error = error;
+        errors++;
+    }
+
+
+    long getErrors() {
+        return errors;
+    }
+}
@@ -0,0 +1,84 @@
+package com.diy.pipeline;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+
+/**
+ *   Last sequence processed by a stage (or published by the producer), read by the stages behind it
+ *
+ *   <p>One writer, which publishes with a release store : everything it wrote in the slots up to that sequence is
+ *   visible to a reader which sees the new value. The value sits between two 56 bytes paddings (the superclass and
+ *   the subclass fields stay apart in memory), so the sequences of two stages never share a cache line.
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+final class Sequence extends SequenceValue {
+
+    static final long INITIAL = -1;  // nothing yet
+
+    @SuppressWarnings("unused")
+    private long p9, p10, p11, p12, p13, p14, p15;
+
+
+    Sequence() {
+        VALUE.setRelease(this, INITIAL);
+    }
+
+
+    long get() {
+        return (long) VALUE.getAcquire(this);
+    }
+
+    /** writer only */
+    void set(long sequence) {
+        VALUE.setRelease(this, sequence);
+    }
+
+
+    /**
+     * @param sequences
+     * @param minimum returned if sequences is empty
+     * @return the lowest of the sequences
+     */
+    static long minimum(Sequence[] sequences, long minimum) {
+
+        long lowest = sequences.length == 0 ? minimum : Long.MAX_VALUE;
+        for (Sequence sequence : sequences) {
+            lowest = Math.min(lowest, sequence.get());
+        }
+        return lowest;
+    }
+
+
+    @Override
+    public String toString() {
+        return Long.toString(get());
+    }
+}
+
+
+abstract class SequencePadding {
+
+    @SuppressWarnings("unused")
+    private long p1, p2, p3, p4, p5, p6, p7;
+}
+
+
+abstract class SequenceValue extends SequencePadding {
+
+    static final VarHandle VALUE;
+
+    static {
+        try {
+            VALUE = MethodHandles.lookup().findVarHandle(SequenceValue.class, "value", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @SuppressWarnings("unused")
+    private volatile long value;
+}
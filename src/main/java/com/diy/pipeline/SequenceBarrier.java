@@ -0,0 +1,55 @@
+package com.diy.pipeline;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+
+/**
+ *   What a stage waits on : the sequences of the stages in front of it (the producer cursor for the first one)
+ *
+ *   <p>No lock : the stage reads the sequences until the lowest reaches the one it needs, idling with its
+ *   WaitStrategy in between. It then gets every slot available at once, so a stage which fell behind catches up by
+ *   batches. alert() makes a waiting stage give up, to stop the pipeline.
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@ThreadSafe
+final class SequenceBarrier {
+
+    static final long ALERTED = Long.MIN_VALUE;
+
+    private final Sequence[] dependencies;
+    private final WaitStrategy waitStrategy;
+    private volatile boolean alerted;
+
+
+
+    SequenceBarrier(Sequence[] dependencies, WaitStrategy waitStrategy) {
+        this.dependencies = dependencies;
+        this.waitStrategy = waitStrategy;
+    }
+
+
+
+    /**
+     * @param sequence next slot the stage needs
+     * @return highest sequence available, at least sequence, or ALERTED
+     */
+    long waitFor(long sequence) {
+
+        long available;
+        for (int attempt = 0; (available = Sequence.minimum(dependencies, Long.MAX_VALUE)) < sequence; attempt++) {
+            if (alerted) {
+                return ALERTED;
+            }
+            waitStrategy.idle(attempt);
+        }
+        return available;
+    }
+
+
+    void alert() {
+        alerted = true;
+    }
+}
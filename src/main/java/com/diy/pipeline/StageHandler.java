@@ -0,0 +1,24 @@
+package com.diy.pipeline;
+
+
+/**
+ *   Work of one consumer stage of an IngestPipeline (journal, metrics, delta publication...)
+ *
+ *   <p>Called on the thread of the stage, once per message in sequence order, after the update has been applied.
+ *   The consumer stages run side by side : each one sees every message, none waits for another.
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@FunctionalInterface
+public interface StageHandler {
+
+    /**
+     * @param event valid during the call only
+     * @param sequence of the message in the pipeline, from 0
+     * @param endOfBatch true for the last message available to the stage : the moment to flush what was buffered
+     */
+    void onEvent(IngestEvent event, long sequence, boolean endOfBatch) throws Exception;
+
+}
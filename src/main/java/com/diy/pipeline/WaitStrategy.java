@@ -0,0 +1,63 @@
+package com.diy.pipeline;
+
+import java.util.concurrent.locks.LockSupport;
+
+
+/**
+ *   What a stage of an IngestPipeline does while the sequence it waits for is not there yet
+ *
+ *   <p>The choice trades latency for CPU : BUSY_SPIN keeps one core per stage at 100% and reacts in nanoseconds,
+ *   PARK frees the core when the feed is quiet and takes tens of microseconds to wake up.
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+public enum WaitStrategy {
+
+    /** spin on the sequence : lowest latency, for a stage pinned to its own core */
+    BUSY_SPIN {
+        @Override
+        void idle(int attempt) {
+            Thread.onSpinWait();
+        }
+    },
+
+    /** spin a while, then give the core to another thread between two checks */
+    YIELD {
+        @Override
+        void idle(int attempt) {
+            if (attempt < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+    },
+
+    /** spin, yield, then park for a short time : low CPU when idle */
+    PARK {
+        @Override
+        void idle(int attempt) {
+            if (attempt < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else if (attempt < SPIN_TRIES + YIELD_TRIES) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+    };
+
+
+    private static final int SPIN_TRIES = 1_000;
+    private static final int YIELD_TRIES = 100;
+    private static final long PARK_NANOS = 50_000;
+
+
+    /**
+     * @param attempt number of checks already done for that sequence, from 0
+     */
+    abstract void idle(int attempt);
+
+}
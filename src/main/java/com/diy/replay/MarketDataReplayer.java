@@ -0,0 +1,186 @@
+package com.diy.replay;
+
+import com.diy.Side.Side;
+import com.diy.domain.Order;
+import com.diy.orderbookmanager.OrderBookManager;
+import com.diy.parser.OrderMessageHandler;
+import com.diy.parser.OrderParser;
+import com.diy.parser.ParseError;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+
+/**
+ *   Replay a market-data capture file (newline-delimited exchange format) into an OrderBookManager
+ *
+ *   <p>The file is memory-mapped with FileChannel.map, region by region (a MappedByteBuffer is limited to 2GB),
+ *   and the line boundaries are found in the mapped bytes : no copy, no String per record.
+ *   A region always starts at the beginning of a line, so a record is never split between two regions.
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@Slf4j
+@NotThreadSafe
+public final class MarketDataReplayer {
+
+    /** size of one mapped region */
+    static final int DEFAULT_REGION_SIZE = 1 << 30;
+
+    private static final long SPIN_THRESHOLD_NANOS = 100_000; // below that we spin, above we park
+
+
+    private final OrderBookManager orderBookManager;
+    private final OrderParser parser;
+    private final ReplayPacing pacing;
+    private final double speed;
+    private final int regionSize;
+
+    // state of the current replay, reused by the handler
+    private long records;
+    private long applied;
+    private long errors;
+    private long firstTimestamp;
+    private long firstNanos;
+
+
+
+    /**
+     * @param orderBookManager receives every record
+     * @param pacing as fast as possible, or honouring the t= timestamps
+     */
+    public MarketDataReplayer(OrderBookManager orderBookManager, ReplayPacing pacing) {
+        this(orderBookManager, new OrderParser(true, OrderParser.DEFAULT_UNIVERSE), pacing, 1.0, DEFAULT_REGION_SIZE);
+    }
+
+
+    /**
+     * @param orderBookManager receives every record
+     * @param parser decoder, with the instrument universe of the file
+     * @param pacing as fast as possible, or honouring the t= timestamps
+     * @param speed with ReplayPacing.TIMESTAMPS : 1.0 is real time, 10.0 is 10 times faster
+     * @param regionSize bytes mapped at once, must be bigger than the longest line
+     */
+    public MarketDataReplayer(OrderBookManager orderBookManager, OrderParser parser, ReplayPacing pacing, double speed, int regionSize) {
+
+        checkArgument(speed > 0, "speed must be positive");
+        checkArgument(regionSize > 0, "regionSize must be positive");
+        this.orderBookManager = requireNonNull(orderBookManager);
+        this.parser = requireNonNull(parser);
+        this.pacing = requireNonNull(pacing);
+        this.speed = speed;
+        this.regionSize = regionSize;
+    }
+
+
+
+    /**
+     *   Replay the whole file
+     *
+     * @param file capture file
+     * @return ReplayResult
+     * @throws IOException if the file cannot be mapped, or if a line does not fit in a region
+     */
+    public ReplayResult replay(Path file) throws IOException {
+
+        records = 0;
+        applied = 0;
+        errors = 0;
+        firstTimestamp = -1;
+        long startNanos = System.nanoTime();
+
+        long size;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+
+            size = channel.size();
+            long position = 0;
+
+            while (position < size) {
+
+                int length = (int) Math.min(regionSize, size - position);
+                boolean lastRegion = position + length == size;
+                MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+                int consumed = parser.parseLines(region, 0, length, handler);
+
+                if (lastRegion && consumed < length) {  // last line without '\n'
+                    parser.parse(region, consumed, length - consumed, handler);
+                    consumed = length;
+                }
+                if (consumed == 0) {
+                    throw new IOException("line longer than the region size (" + regionSize + " bytes) at offset " + position + " in " + file);
+                }
+                position += consumed; // next region starts at the beginning of the next line
+            }
+        }
+
+        ReplayResult result = new ReplayResult(records, applied, errors, size, System.nanoTime() - startNanos);
+        log.info("replay of " + file + " completed : " + result);
+        return result;
+    }
+
+
+
+    private final OrderMessageHandler handler = new OrderMessageHandler() {
+
+        @Override
+        public void onOrder(int instrumentId, String instrument, Side side, long price, long quantity, long timestamp) {
+            onOrder(instrumentId, instrument, Order.NO_ORDER_ID, side, price, quantity, timestamp);
+        }
+
+        @Override
+        public void onOrder(int instrumentId, String instrument, long orderId, Side side, long price, long quantity, long timestamp) {
+
+            records++;
+            if (pacing == ReplayPacing.TIMESTAMPS) {
+                waitFor(timestamp);
+            }
+            if (orderBookManager.updateOrder(new Order(instrumentId, orderId, side, price, quantity, timestamp))) {
+                applied++;
+            }
+        }
+
+        @Override
+        public void onError(ParseError error, int offset, int length) {
+            errors++;
+            log.debug("record skipped : " + error);
+        }
+    };
+
+
+
+    /**
+     *   Wait until the record is due : (timestamp - first timestamp) / speed after the first record
+     *
+     * @param timestamp t= of the record, in milliseconds
+     */
+    private void waitFor(long timestamp) {
+
+        if (firstTimestamp < 0) {
+            firstTimestamp = timestamp;
+            firstNanos = System.nanoTime();
+            return;
+        }
+
+        long dueNanos = firstNanos + (long) ((timestamp - firstTimestamp) * 1_000_000L / speed);
+        for (long remaining = dueNanos - System.nanoTime(); remaining > 0; remaining = dueNanos - System.nanoTime()) {
+            if (remaining > SPIN_THRESHOLD_NANOS) {
+                LockSupport.parkNanos(remaining - SPIN_THRESHOLD_NANOS);
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.diy.replay;
+
+
+/**
+ *   How fast the MarketDataReplayer feeds the OrderBookManager
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+public enum ReplayPacing {
+
+    /** no wait between two records : rebuild the books as fast as possible */
+    AS_FAST_AS_POSSIBLE,
+
+    /** honour the gap between the t= timestamps of two records (scaled by the replay speed) */
+    TIMESTAMPS;
+}
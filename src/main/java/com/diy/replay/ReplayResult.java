@@ -0,0 +1,59 @@
+package com.diy.replay;
+
+import javax.annotation.concurrent.Immutable;
+
+
+/**
+ *   What a replay has done
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+@Immutable
+public final class ReplayResult {
+
+    private final long records;     // records decoded and sent to updateOrder
+    private final long applied;     // records for which updateOrder returned true
+    private final long errors;      // malformed records, skipped
+    private final long bytes;       // size of the file
+    private final long elapsedNanos;
+
+
+    public ReplayResult(long records, long applied, long errors, long bytes, long elapsedNanos) {
+        this.records = records;
+        this.applied = applied;
+        this.errors = errors;
+        this.bytes = bytes;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+
+    public long getRecords() {
+        return records;
+    }
+    public long getApplied() {
+        return applied;
+    }
+    public long getErrors() {
+        return errors;
+    }
+    public long getBytes() {
+        return bytes;
+    }
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+
+    @Override
+    public String toString() {
+        return "ReplayResult{" +
+                "records=" + records +
+                ", applied=" + applied +
+                ", errors=" + errors +
+                ", bytes=" + bytes +
+                ", elapsedMs=" + elapsedNanos / 1_000_000 +
+                '}';
+    }
+}
@@ -0,0 +1,125 @@
+import com.diy.Side.Side;
+import com.diy.domain.Order;
+import com.diy.orderbookmanager.BookCodec;
+import com.diy.orderbookmanager.OrderBook;
+import com.diy.orderbookmanager.OrderBookList;
+import com.diy.orderbookmanager.OrderBookType;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.*;
+
+
+public class BookCodecTest {
+
+
+    /** random adds, modifies and deletes : the timestamps do not follow the arrival order */
+    private static void fill(String instrument, SplittableRandom random, int count, Consumer<Order> book) {
+
+        for (int i = 0; i < count; i++) {
+            Side side = random.nextBoolean() ? Side.BUY : Side.SELL;
+            long price = side == Side.BUY ? 49_000 + random.nextInt(1_000) : 50_000 + random.nextInt(1_000);
+            long quantity = random.nextInt(5) == 0 ? 0 : 1 + random.nextInt(1_000_000);
+            book.accept(new Order(instrument, side, price, quantity, 1_638_848_595_000L + random.nextInt(100_000)));
+        }
+    }
+
+
+
+    @Test
+    public void TestOrderBookRoundTrip() throws IOException {
+
+        System.out.println("________________ TestOrderBookRoundTrip");
+
+        for (OrderBookType type : OrderBookType.values()) {
+
+            OrderBook orderBook = new OrderBook("BTCUSD", type);
+            fill("BTCUSD", new SplittableRandom(3), 20_000, orderBook::update);
+
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+            BookCodec.encode(orderBook, buffer);
+            buffer.flip();
+
+            OrderBook decoded = new OrderBook("BTCUSD", type);
+            BookCodec.decode(buffer, decoded);
+            assertFalse(buffer.hasRemaining());
+            assertEquals(type.name(), BookFixtures.image(orderBook), BookFixtures.image(decoded));
+            assertEquals(orderBook.getTopOfBook().getBidPrice(), decoded.getTopOfBook().getBidPrice());
+            assertEquals(orderBook.getTopOfBook().getAskQuantity(), decoded.getTopOfBook().getAskQuantity());
+        }
+    }
+
+
+
+    @Test
+    public void TestOrderBookListRoundTripThroughFileChannel() throws IOException {
+
+        System.out.println("________________ TestOrderBookListRoundTripThroughFileChannel");
+
+        OrderBookList orderBookList = new OrderBookList(OrderBookType.PRICE_LADDER);
+        SplittableRandom random = new SplittableRandom(5);
+        for (String instrument : new String[]{"BTCUSD", "ETHUSD", "SOLUSD"}) {
+            fill(instrument, random, 10_000, orderBookList::update);
+        }
+
+        Path file = Files.createTempFile("books", ".bin");
+        file.toFile().deleteOnExit();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1024);   // many refills
+
+        long written;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            written = BookCodec.encode(orderBookList, channel, buffer);
+        }
+        assertEquals(Files.size(file), written);
+
+        OrderBookList decoded = new OrderBookList(OrderBookType.SKIP_LIST);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            BookCodec.decode(channel, buffer, decoded);
+        }
+        assertEquals(BookFixtures.image(orderBookList), BookFixtures.image(decoded));
+    }
+
+
+
+    @Test
+    public void TestDenseBookTakesFewBytesPerOrder() throws IOException {
+
+        System.out.println("________________ TestDenseBookTakesFewBytesPerOrder");
+
+        OrderBook orderBook = new OrderBook("BTCUSD", OrderBookType.SKIP_LIST);
+        int orders = 0;
+        for (int level = 0; level < 1_000; level++) {
+            for (int n = 0; n < 4; n++) {
+                orderBook.update(new Order("BTCUSD", Side.BUY, 49_999 - level, 100 + n, 1_638_848_595_000L + orders++));
+                orderBook.update(new Order("BTCUSD", Side.SELL, 50_000 + level, 100 + n, 1_638_848_595_000L + orders++));
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+        BookCodec.encode(orderBook, buffer);
+        assertTrue(buffer.position() + " bytes", buffer.position() < 4 * orders);   // 2 bytes of quantity, 1 of timestamp, levels on 2 bytes
+    }
+
+
+
+    @Test(expected = IllegalStateException.class)
+    public void TestUnknownVersionIsRejected() throws IOException {
+
+        System.out.println("________________ TestUnknownVersionIsRejected");
+
+        OrderBook orderBook = new OrderBook("BTCUSD", OrderBookType.SKIP_LIST);
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        BookCodec.encode(orderBook, buffer);
+        buffer.put(4, (byte) (BookCodec.VERSION + 1)).flip();
+
+        BookCodec.decode(buffer, new OrderBook("BTCUSD", OrderBookType.SKIP_LIST));
+    }
+}
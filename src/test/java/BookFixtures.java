@@ -0,0 +1,93 @@
+import com.diy.Side.Side;
+import com.diy.orderbookmanager.BookSnapshot;
+import com.diy.orderbookmanager.OrderBook;
+import com.diy.orderbookmanager.OrderBookList;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+
+/**
+ *   Helpers shared by the tests which feed books and compare them
+ *
+ * @author  Gothard GOTENI
+ * @version 1.0
+ * @since   23/01/2022
+ */
+final class BookFixtures {
+
+    private BookFixtures() {
+    }
+
+
+    /** every resting order with its quantity, in book order */
+    static List<String> image(OrderBook orderBook) {
+
+        List<String> image = new ArrayList<>();
+        for (Side side : Side.values()) {
+            orderBook.forEachOrder(side, order -> image.add(orderBook.getInstrument() + " " + side + " " + order.getPriceTicks()
+                    + "x" + order.getQuantityTicks() + "@" + order.getTimestampMillis()));
+        }
+        return image;
+    }
+
+
+    /** every resting order with its quantity, book by book, in book order */
+    static List<String> image(OrderBookList orderBookList) {
+
+        List<String> image = new ArrayList<>();
+        orderBookList.forEachOrderBook(orderBook -> image.addAll(image(orderBook)));
+        return image;
+    }
+
+
+    /**
+     *   Adds, modifies and deletes of orders resting around 500.00, in the exchange format
+     *
+     * @param levels prices per side : bids from 500.00 - levels ticks, asks from 500.00
+     */
+    static List<String> messages(SplittableRandom random, int count, int levels) {
+
+        List<String> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            boolean buy = random.nextBoolean();
+            int price = buy ? 50_000 - levels + random.nextInt(levels) : 50_000 + random.nextInt(levels);
+            int quantity = random.nextInt(4) == 0 ? 0 : 1 + random.nextInt(10_000);
+            messages.add(String.format("t=%d|i=%s|p=%d.%02d|q=%d.%02d|s=%s", random.nextInt(200), random.nextBoolean() ? "BTCUSD" : "ETHUSD",
+                    price / 100, price % 100, quantity / 100, quantity % 100, buy ? "b" : "s"));
+        }
+        return messages;
+    }
+
+
+    /** levels of one instrument, "side price" to quantity */
+    static Map<String, Long> levels(OrderBookList orderBookList, String instrument) {
+
+        BookSnapshot snapshot = new BookSnapshot(100);
+        orderBookList.snapshot(instrument, snapshot);
+        Map<String, Long> levels = new HashMap<>();
+        for (Side side : Side.values()) {
+            for (int level = 0; level < snapshot.getDepth(side); level++) {
+                levels.put(side + " " + snapshot.getPrice(side, level), snapshot.getQuantity(side, level));
+            }
+        }
+        return levels;
+    }
+
+
+    /** the first levels of one side, price to quantity, best first */
+    static Map<Long, Long> levels(OrderBookList orderBookList, String instrument, Side side, int depth) {
+
+        BookSnapshot snapshot = new BookSnapshot(depth);
+        orderBookList.snapshot(instrument, snapshot);
+        Map<Long, Long> levels = new LinkedHashMap<>();
+        for (int level = 0; level < snapshot.getDepth(side); level++) {
+            levels.put(snapshot.getPrice(side, level), snapshot.getQuantity(side, level));
+        }
+        return levels;
+    }
+}
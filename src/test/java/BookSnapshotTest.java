@@ -0,0 +1,79 @@
+import com.diy.Side.Side;
+import com.diy.domain.Order;
+import com.diy.orderbookmanager.BookSnapshot;
+import com.diy.orderbookmanager.OrderBookList;
+import com.diy.orderbookmanager.OrderBookType;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.diy.Utils.Utils.toOrder;
+import static org.junit.Assert.*;
+
+
+public class BookSnapshotTest {
+
+    private static final OrderBookType[] TYPES = {OrderBookType.SKIP_LIST, OrderBookType.PRICE_LADDER};
+
+
+    @Test
+    public void TestBookSnapshot() throws InterruptedException {
+
+        System.out.println("________________ TestBookSnapshot");
+
+        for (OrderBookType type : TYPES) {
+
+            OrderBookList orderBookList = new OrderBookList(type);
+            BookSnapshot snapshot = new BookSnapshot(2);
+
+            assertFalse(orderBookList.snapshot("BTCUSD", snapshot));
+            assertEquals(0, snapshot.getDepth(Side.BUY));
+
+            orderBookList.updateOrder(toOrder("t=1638848595|i=BTCUSD|p=32.99|q=100|s=b"));
+            orderBookList.updateOrder(toOrder("t=1638848596|i=BTCUSD|p=33.10|q=50|s=b"));
+            orderBookList.updateOrder(toOrder("t=1638848597|i=BTCUSD|p=33.10|q=5|s=b"));
+            orderBookList.updateOrder(toOrder("t=1638848598|i=BTCUSD|p=30|q=1|s=b"));
+            orderBookList.updateOrder(toOrder("t=1638848599|i=BTCUSD|p=34|q=2|s=s"));
+
+            assertTrue(orderBookList.snapshot("BTCUSD", snapshot));
+            assertEquals(5, snapshot.getSequence());
+            assertEquals(2, snapshot.getDepth(Side.BUY));   // limited by the buffer
+            assertEquals(3310, snapshot.getPrice(Side.BUY, 0));
+            assertEquals(5500, snapshot.getQuantity(Side.BUY, 0));
+            assertEquals(2, snapshot.getOrderCount(Side.BUY, 0));
+            assertEquals(3299, snapshot.getPrice(Side.BUY, 1));
+            assertEquals(1, snapshot.getDepth(Side.SELL));
+            assertEquals(3400, snapshot.getPrice(Side.SELL, 0));
+
+            // each batch moves the same quantity on both sides : a consistent image always has bid total == ask total
+            BookSnapshot full = new BookSnapshot(100);
+            Thread writer = new Thread(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    List<Order> batch = new ArrayList<>();
+                    batch.add(new Order("ETHUSD", Side.BUY, 1000 - i % 50, 1 + i % 7, i));
+                    batch.add(new Order("ETHUSD", Side.SELL, 2000 + i % 50, 1 + i % 7, i));
+                    if (i >= 10) {
+                        batch.add(new Order("ETHUSD", Side.BUY, 1000 - (i - 10) % 50, 0, i - 10));
+                        batch.add(new Order("ETHUSD", Side.SELL, 2000 + (i - 10) % 50, 0, i - 10));
+                    }
+                    orderBookList.updateOrders(batch);
+                }
+            });
+            writer.start();
+            while (writer.isAlive()) {
+                if (orderBookList.snapshot("ETHUSD", full)) {
+                    long bidTotal = 0, askTotal = 0;
+                    for (int level = 0; level < full.getDepth(Side.BUY); level++) {
+                        bidTotal += full.getQuantity(Side.BUY, level);
+                    }
+                    for (int level = 0; level < full.getDepth(Side.SELL); level++) {
+                        askTotal += full.getQuantity(Side.SELL, level);
+                    }
+                    assertEquals(full.toString(), bidTotal, askTotal);
+                }
+            }
+            writer.join();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+import com.diy.Side.Side;
+import com.diy.conflation.ConflatedDepth;
+import com.diy.conflation.ConflatedSubscriber;
+import com.diy.conflation.LevelHandler;
+import com.diy.orderbookmanager.OrderBookList;
+import com.diy.orderbookmanager.OrderBookType;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static com.diy.Utils.Utils.toOrder;
+import static org.junit.Assert.*;
+
+
+public class ConflationTest {
+
+    /** levels of one instrument as drained by a subscriber, "side price" to quantity */
+    private static final class View implements LevelHandler {
+
+        final Map<String, Long> levels = new HashMap<>();
+
+        @Override
+        public void onLevel(Side side, long price, long quantity, int orderCount) {
+            if (quantity == 0) {
+                levels.remove(side + " " + price);
+            } else {
+                levels.put(side + " " + price, quantity);
+            }
+        }
+    }
+
+
+    @Test
+    public void TestSubscribersSeeTheLatestLevels() {
+
+        System.out.println("________________ TestSubscribersSeeTheLatestLevels");
+
+        OrderBookList orderBookList = new OrderBookList(OrderBookType.PRICE_LADDER);
+        ConflatedDepth conflatedDepth = new ConflatedDepth(1 << 10);
+        orderBookList.addDepthListener(conflatedDepth);
+        ConflatedSubscriber eager = conflatedDepth.subscribe("BTCUSD");
+        ConflatedSubscriber late = conflatedDepth.subscribe("BTCUSD");
+        View eagerView = new View();
+        View lateView = new View();
+
+        for (String message : BookFixtures.messages(new SplittableRandom(3), 5_000, 30)) {
+            orderBookList.updateOrder(toOrder(message));
+            eager.drain(eagerView);
+            assertFalse(eager.hasChanges());
+        }
+        assertEquals(BookFixtures.levels(orderBookList, "BTCUSD"), eagerView.levels);
+        assertEquals(0, eager.getResyncs());
+
+        ConflatedSubscriber ethereum = conflatedDepth.subscribe("ETHUSD");   // joins after the changes
+        View ethereumView = new View();
+        ethereum.drain(ethereumView);
+        late.drain(lateView);
+        assertEquals(BookFixtures.levels(orderBookList, "ETHUSD"), ethereumView.levels);
+        assertEquals(BookFixtures.levels(orderBookList, "BTCUSD"), lateView.levels);
+        assertEquals(1, late.getResyncs());
+        assertEquals(0, late.drain(lateView));
+    }
+
+
+
+    @Test
+    public void TestOneLevelChangedManyTimesIsDeliveredOnce() {
+
+        System.out.println("________________ TestOneLevelChangedManyTimesIsDeliveredOnce");
+
+        OrderBookList orderBookList = new OrderBookList(OrderBookType.SKIP_LIST);
+        ConflatedDepth conflatedDepth = new ConflatedDepth(1 << 10);
+        orderBookList.addDepthListener(conflatedDepth);
+        ConflatedSubscriber subscriber = conflatedDepth.subscribe("BTCUSD");
+
+        for (int i = 1; i <= 500; i++) {
+            orderBookList.updateOrder(toOrder("t=1|i=BTCUSD|p=500.00|q=" + i + ".00|s=b"));
+        }
+        List<Long> quantities = new ArrayList<>();
+        assertEquals(1, subscriber.drain((side, price, quantity, orderCount) -> quantities.add(quantity)));
+        assertEquals(List.of(50_000L), quantities);
+        assertEquals(0, subscriber.getResyncs());
+
+        for (int i = 1; i <= 5_000; i++) {   // laps the ring
+            orderBookList.updateOrder(toOrder("t=2|i=BTCUSD|p=499.00|q=" + i + ".00|s=b"));
+        }
+        quantities.clear();
+        assertEquals(1, subscriber.drain((side, price, quantity, orderCount) -> quantities.add(quantity)));
+        assertEquals(List.of(500_000L), quantities);
+        assertEquals(1, subscriber.getResyncs());
+    }
+
+
+
+    @Test
+    public void TestConcurrentSubscribersConvergeWithTheBook() throws InterruptedException {
+
+        System.out.println("________________ TestConcurrentSubscribersConvergeWithTheBook");
+
+        OrderBookList orderBookList = new OrderBookList(OrderBookType.PRICE_LADDER);
+        ConflatedDepth conflatedDepth = new ConflatedDepth(1 << 6);
+        orderBookList.addDepthListener(conflatedDepth);
+        List<String> messages = BookFixtures.messages(new SplittableRandom(5), 50_000, 30);
+
+        int readers = 3;
+        View[] views = new View[readers];
+        ConflatedSubscriber[] subscribers = new ConflatedSubscriber[readers];
+        Thread[] threads = new Thread[readers];
+        Thread writer = new Thread(() -> messages.forEach(message -> orderBookList.updateOrder(toOrder(message))));
+
+        for (int i = 0; i < readers; i++) {
+            View view = views[i] = new View();
+            ConflatedSubscriber subscriber = subscribers[i] = conflatedDepth.subscribe(i == 0 ? "ETHUSD" : "BTCUSD");
+            threads[i] = new Thread(() -> {
+                while (writer.isAlive() || subscriber.hasChanges()) {
+                    if (subscriber.drain(view) == 0) {
+                        Thread.yield();
+                    }
+                }
+            });
+        }
+
+        writer.start();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        writer.join();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (int i = 0; i < readers; i++) {
+            System.out.println(subscribers[i]);
+            assertEquals(BookFixtures.levels(orderBookList, subscribers[i].getInstrument()), views[i].levels);
+        }
+    }
+}
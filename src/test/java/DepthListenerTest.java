@@ -0,0 +1,52 @@
+import com.diy.orderbookmanager.DepthListener;
+import com.diy.orderbookmanager.OrderBookList;
+import com.diy.orderbookmanager.OrderBookType;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.diy.Utils.Utils.toOrder;
+import static org.junit.Assert.*;
+
+
+public class DepthListenerTest {
+
+    private static final OrderBookType[] TYPES = {OrderBookType.SKIP_LIST, OrderBookType.PRICE_LADDER};
+
+
+    @Test
+    public void TestDepthEvents() {
+
+        System.out.println("________________ TestDepthEvents");
+
+        for (OrderBookType type : TYPES) {
+
+            OrderBookList orderBookList = new OrderBookList(type);
+            List<String> events = new ArrayList<>();  // the event is reused : keep a copy
+            DepthListener listener = e -> events.add(e.getInstrument()+" "+e.getType()+" "+e.getSide()+" "+e.getPrice()+" "+e.getQuantity()+" "+e.getOrderCount()+" #"+e.getSequence());
+            orderBookList.addDepthListener(listener);
+
+            orderBookList.updateOrder(toOrder("t=1638848595|i=BTCUSD|p=32.99|q=100|s=b"));
+            orderBookList.updateOrder(toOrder("t=1638848596|i=BTCUSD|p=32.99|q=50|s=b"));
+            orderBookList.updateOrder(toOrder("t=1638848597|i=BTCUSD|p=30|q=1|s=b"));
+            orderBookList.updateOrder(toOrder("t=1638848597|i=BTCUSD|p=30|q=1|s=b"));  // duplicate : no event
+            orderBookList.updateOrder(toOrder("t=1638848595|i=BTCUSD|p=32.99|q=0|s=b"));
+            orderBookList.updateOrder(toOrder("t=1638848596|i=BTCUSD|p=32.99|q=0|s=b"));
+
+            assertEquals(Arrays.asList(
+                    "BTCUSD LEVEL_ADDED BUY 3299 10000 1 #1",
+                    "BTCUSD BEST_PRICE_CHANGED BUY 3299 10000 1 #1",
+                    "BTCUSD LEVEL_CHANGED BUY 3299 15000 2 #2",
+                    "BTCUSD LEVEL_ADDED BUY 3000 100 1 #3",
+                    "BTCUSD LEVEL_CHANGED BUY 3299 5000 1 #4",
+                    "BTCUSD LEVEL_REMOVED BUY 3299 0 0 #5",
+                    "BTCUSD BEST_PRICE_CHANGED BUY 3000 100 1 #5"), events);
+
+            assertTrue(orderBookList.removeDepthListener(listener));
+            orderBookList.updateOrder(toOrder("t=1638848598|i=BTCUSD|p=31|q=1|s=b"));
+            assertEquals(7, events.size());
+        }
+    }
+}
@@ -0,0 +1,222 @@
+import com.diy.feed.FeedHandler;
+import com.diy.feed.LoopbackPublisher;
+import com.diy.feed.SnapshotRecovery;
+import com.diy.orderbookmanager.BookCodec;
+import com.diy.orderbookmanager.OrderBookList;
+import com.diy.orderbookmanager.OrderBookType;
+import com.diy.parser.OrderParser;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.BooleanSupplier;
+
+import static com.diy.Utils.Utils.toOrder;
+import static org.junit.Assert.*;
+
+
+public class FeedHandlerTest {
+
+    private final List<AutoCloseable> resources = new ArrayList<>();
+
+
+    @After
+    public void close() throws Exception {
+        for (AutoCloseable resource : resources) {
+            resource.close();
+        }
+    }
+
+
+    private static ByteBuffer packet(List<String> messages) {
+        return ByteBuffer.wrap((String.join("\n", messages) + "\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+
+    /** the exchange side : its books after the packets sent so far, as a snapshot at the last sequence */
+    private static final class Exchange {
+
+        final OrderBookList orderBookList = new OrderBookList(OrderBookType.PRICE_LADDER);
+        long sequence;
+
+        void apply(List<String> messages) {
+            messages.forEach(message -> orderBookList.updateOrder(toOrder(message)));
+            sequence++;
+        }
+
+        long snapshot(ByteBuffer buffer) throws IOException {
+            BookCodec.encode(orderBookList, buffer);
+            return sequence;
+        }
+    }
+
+
+    private FeedHandler newHandler(OrderBookList orderBookList, Exchange exchange, int reorderCapacity, long reorderTimeoutNanos) throws IOException {
+
+        DatagramChannel channel = FeedHandler.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        FeedHandler handler = new FeedHandler(channel, orderBookList, new SnapshotRecovery(orderBookList, exchange::snapshot, 1 << 22),
+                new OrderParser(), FeedHandler.DEFAULT_MAX_PACKET_SIZE, reorderCapacity, reorderTimeoutNanos, 1);
+        resources.add(handler);
+        return handler;
+    }
+
+
+    private static void pollUntil(FeedHandler handler, BooleanSupplier done) throws IOException {
+
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (!done.getAsBoolean()) {
+            assertTrue("timed out : " + handler, System.nanoTime() < deadline);
+            if (handler.poll() == 0) {
+                Thread.yield();
+            }
+        }
+    }
+
+
+
+    @Test
+    public void TestReplayOfCaptureAtBurstyRate() throws Exception {
+
+        System.out.println("________________ TestReplayOfCaptureAtBurstyRate");
+
+        List<String> messages = BookFixtures.messages(new SplittableRandom(3), 20_000, 10);
+        Path file = Files.createTempFile("capture", ".txt");
+        file.toFile().deleteOnExit();
+        Files.write(file, messages, StandardCharsets.US_ASCII);
+
+        Exchange exchange = new Exchange();
+        for (int i = 0; i < messages.size(); i += 16) {
+            exchange.apply(messages.subList(i, Math.min(i + 16, messages.size())));   // the packets of the publisher
+        }
+
+        DatagramChannel channel = FeedHandler.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        OrderBookList orderBookList = new OrderBookList(OrderBookType.SKIP_LIST);
+        FeedHandler handler = new FeedHandler(channel, orderBookList, new SnapshotRecovery(orderBookList, exchange::snapshot, 1 << 22));
+        resources.add(handler);
+        LoopbackPublisher publisher = new LoopbackPublisher((InetSocketAddress) channel.getLocalAddress(), FeedHandler.DEFAULT_MAX_PACKET_SIZE, 16, 200_000, 8);
+        resources.add(publisher);
+
+        Thread source = new Thread(() -> {
+            try {
+                assertEquals(exchange.sequence, publisher.replay(file));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        source.start();
+        pollUntil(handler, () -> handler.getExpectedSequence() > exchange.sequence);
+        source.join();
+
+        System.out.println(handler);
+        assertEquals(BookFixtures.image(exchange.orderBookList), BookFixtures.image(orderBookList));  // lost packets, if any, came back with a recovery
+        assertEquals(0, handler.getParseErrors());
+    }
+
+
+
+    @Test
+    public void TestOutOfOrderPacketsAreReordered() throws Exception {
+
+        System.out.println("________________ TestOutOfOrderPacketsAreReordered");
+
+        List<String> messages = BookFixtures.messages(new SplittableRandom(5), 300, 10);
+        Exchange exchange = new Exchange();
+        OrderBookList orderBookList = new OrderBookList(OrderBookType.PRICE_LADDER);
+        FeedHandler handler = newHandler(orderBookList, exchange, 8, 60_000_000_000L);   // no recovery during the test
+        LoopbackPublisher publisher = new LoopbackPublisher((InetSocketAddress) handler.getLocalAddress());
+        resources.add(publisher);
+
+        List<List<String>> packets = Arrays.asList(messages.subList(0, 100), messages.subList(100, 200), messages.subList(200, 300));
+        packets.forEach(exchange::apply);
+
+        publisher.send(1, packet(packets.get(0)));
+        publisher.send(3, packet(packets.get(2)));
+        publisher.send(3, packet(packets.get(2)));
+        pollUntil(handler, () -> handler.getPackets() == 3);
+        assertEquals(2, handler.getExpectedSequence());   // 3 waits for 2
+
+        publisher.send(2, packet(packets.get(1)));
+        publisher.send(2, packet(packets.get(1)));
+        pollUntil(handler, () -> handler.getPackets() == 5);
+
+        assertEquals(4, handler.getExpectedSequence());
+        assertEquals(1, handler.getGaps());
+        assertEquals(2, handler.getDuplicates());
+        assertEquals(0, handler.getRecoveries());
+        assertEquals(300, handler.getMessages());
+        assertEquals(BookFixtures.image(exchange.orderBookList), BookFixtures.image(orderBookList));
+    }
+
+
+
+    @Test
+    public void TestLostPacketTriggersRecovery() throws Exception {
+
+        System.out.println("________________ TestLostPacketTriggersRecovery");
+
+        List<String> messages = BookFixtures.messages(new SplittableRandom(7), 400, 10);
+        Exchange exchange = new Exchange();
+        OrderBookList orderBookList = new OrderBookList(OrderBookType.PRICE_LADDER);
+        FeedHandler handler = newHandler(orderBookList, exchange, 8, 1_000_000);
+        LoopbackPublisher publisher = new LoopbackPublisher((InetSocketAddress) handler.getLocalAddress());
+        resources.add(publisher);
+
+        List<List<String>> packets = Arrays.asList(messages.subList(0, 100), messages.subList(100, 200),
+                messages.subList(200, 300), messages.subList(300, 400));
+        exchange.apply(packets.get(0));
+        exchange.apply(packets.get(1));
+        exchange.apply(packets.get(2));
+
+        publisher.send(1, packet(packets.get(0)));
+        publisher.send(3, packet(packets.get(2)));   // 2 is lost
+        pollUntil(handler, () -> handler.getRecoveries() == 1);   // after the reorder timeout
+        assertEquals(4, handler.getExpectedSequence());
+        assertEquals(BookFixtures.image(exchange.orderBookList), BookFixtures.image(orderBookList));
+
+        exchange.apply(packets.get(3));
+        publisher.send(4, packet(packets.get(3)));
+        pollUntil(handler, () -> handler.getExpectedSequence() == 5);
+        assertEquals(BookFixtures.image(exchange.orderBookList), BookFixtures.image(orderBookList));
+    }
+
+
+
+    @Test
+    public void TestLateJoinerRecoversAtOnce() throws Exception {
+
+        System.out.println("________________ TestLateJoinerRecoversAtOnce");
+
+        List<String> messages = BookFixtures.messages(new SplittableRandom(11), 1_100, 10);
+        Exchange exchange = new Exchange();
+        OrderBookList orderBookList = new OrderBookList(OrderBookType.PRICE_LADDER);
+        FeedHandler handler = newHandler(orderBookList, exchange, 4, 1_000_000);
+        LoopbackPublisher publisher = new LoopbackPublisher((InetSocketAddress) handler.getLocalAddress());
+        resources.add(publisher);
+
+        for (int i = 0; i < 1_000; i += 100) {
+            exchange.apply(messages.subList(i, i + 100));   // packets 1 to 10, sent before the handler joined
+        }
+        publisher.send(10, packet(messages.subList(900, 1_000)));   // beyond the reorder buffer
+        pollUntil(handler, () -> handler.getPackets() == 1);
+
+        assertEquals(1, handler.getRecoveries());
+        assertEquals(11, handler.getExpectedSequence());
+        assertEquals(BookFixtures.image(exchange.orderBookList), BookFixtures.image(orderBookList));
+
+        exchange.apply(messages.subList(1_000, 1_100));
+        publisher.send(11, packet(messages.subList(1_000, 1_100)));
+        pollUntil(handler, () -> handler.getExpectedSequence() == 12);
+        assertEquals(BookFixtures.image(exchange.orderBookList), BookFixtures.image(orderBookList));
+    }
+}
@@ -0,0 +1,185 @@
+import com.diy.Side.Side;
+import com.diy.gateway.GatewayClient;
+import com.diy.gateway.MarketDataGateway;
+import com.diy.orderbookmanager.OrderBookList;
+import com.diy.orderbookmanager.OrderBookType;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.function.BooleanSupplier;
+
+import static com.diy.Utils.Utils.toOrder;
+import static org.junit.Assert.*;
+
+
+public class GatewayTest {
+
+    private final List<AutoCloseable> resources = new ArrayList<>();
+
+
+    @After
+    public void close() throws Exception {
+        for (AutoCloseable resource : resources) {
+            resource.close();
+        }
+    }
+
+
+    private static boolean inSync(GatewayClient client, OrderBookList orderBookList, String instrument, int depth) {
+        return client.getLevels(instrument, Side.BUY).equals(BookFixtures.levels(orderBookList, instrument, Side.BUY, depth))
+                && client.getLevels(instrument, Side.SELL).equals(BookFixtures.levels(orderBookList, instrument, Side.SELL, depth));
+    }
+
+
+    private static void pollUntil(List<GatewayClient> clients, BooleanSupplier done) throws IOException {
+
+        long deadline = System.nanoTime() + 20_000_000_000L;
+        while (!done.getAsBoolean()) {
+            assertTrue("timed out", System.nanoTime() < deadline);
+            for (GatewayClient client : clients) {
+                client.poll(0);
+            }
+            Thread.yield();
+        }
+    }
+
+
+    private MarketDataGateway newGateway(OrderBookList orderBookList, int maxQueuedBytes, int sendBufferSize) throws IOException {
+
+        MarketDataGateway gateway = new MarketDataGateway(orderBookList, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+                maxQueuedBytes, sendBufferSize);
+        resources.add(gateway);
+        return gateway;
+    }
+
+
+    private GatewayClient newClient(MarketDataGateway gateway, int receiveBufferSize) throws IOException {
+
+        GatewayClient client = new GatewayClient(gateway.getLocalAddress(), receiveBufferSize);
+        resources.add(client);
+        return client;
+    }
+
+
+
+    @Test
+    public void TestSnapshotThenDeltasMatchTheBook() throws Exception {
+
+        System.out.println("________________ TestSnapshotThenDeltasMatchTheBook");
+
+        OrderBookList orderBookList = new OrderBookList(OrderBookType.PRICE_LADDER);
+        List<String> messages = BookFixtures.messages(new SplittableRandom(3), 6_000, 30);
+        messages.subList(0, 1_000).forEach(message -> orderBookList.updateOrder(toOrder(message)));
+        MarketDataGateway gateway = newGateway(orderBookList, MarketDataGateway.DEFAULT_MAX_QUEUED_BYTES, 0);
+
+        List<GatewayClient> clients = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            GatewayClient client = newClient(gateway, 0);
+            client.subscribe("BTCUSD", 1 + i % 10);
+            if (i % 2 == 0) {
+                client.subscribe("ETHUSD", 5);
+            }
+            clients.add(client);
+        }
+        pollUntil(clients, () -> clients.stream().allMatch(client -> client.getSnapshots() == (clients.indexOf(client) % 2 == 0 ? 2 : 1)));
+        for (int i = 0; i < clients.size(); i++) {
+            assertTrue(inSync(clients.get(i), orderBookList, "BTCUSD", 1 + i % 10));
+        }
+
+        for (String message : messages.subList(1_000, messages.size())) {
+            orderBookList.updateOrder(toOrder(message));
+        }
+        pollUntil(clients, () -> {
+            for (int i = 0; i < clients.size(); i++) {
+                if (!inSync(clients.get(i), orderBookList, "BTCUSD", 1 + i % 10)
+                        || (i % 2 == 0 && !inSync(clients.get(i), orderBookList, "ETHUSD", 5))) {
+                    return false;
+                }
+            }
+            return true;
+        });
+
+        System.out.println(gateway);
+        assertEquals(200, gateway.getClients());
+        assertEquals(0, gateway.getResyncs());
+        assertTrue(clients.get(9).getDeltas() > 0);
+        assertTrue(clients.get(9).getSequence("BTCUSD") > 0);
+        assertEquals(-1, clients.get(1).getSequence("ETHUSD"));
+    }
+
+
+
+    @Test
+    public void TestSlowReaderIsResynchronisedWithoutStallingTheOthers() throws Exception {
+
+        System.out.println("________________ TestSlowReaderIsResynchronisedWithoutStallingTheOthers");
+
+        OrderBookList orderBookList = new OrderBookList(OrderBookType.SKIP_LIST);
+        MarketDataGateway gateway = newGateway(orderBookList, 4_096, 4_096);
+        GatewayClient slow = newClient(gateway, 2_048);
+        GatewayClient fast = newClient(gateway, 0);
+        slow.subscribe("BTCUSD", 20);
+        fast.subscribe("BTCUSD", 20);
+
+        List<String> messages = BookFixtures.messages(new SplittableRandom(5), 40_000, 30);
+        for (int i = 0; i < messages.size(); i++) {
+            orderBookList.updateOrder(toOrder(messages.get(i)));   // the slow client never reads meanwhile
+            if (i % 10 == 0) {
+                fast.poll(0);
+            }
+        }
+        pollUntil(List.of(fast), () -> inSync(fast, orderBookList, "BTCUSD", 20));
+        assertTrue(gateway.getResyncs() > 0);
+        assertEquals(1, fast.getSnapshots());
+
+        pollUntil(List.of(slow), () -> inSync(slow, orderBookList, "BTCUSD", 20));
+        System.out.println(gateway + " " + slow);
+        assertTrue(slow.getSnapshots() > 1);
+        assertEquals(fast.getSequence("BTCUSD"), slow.getSequence("BTCUSD"));
+    }
+
+
+
+    @Test
+    public void TestUnsubscribeAndBadCommand() throws Exception {
+
+        System.out.println("________________ TestUnsubscribeAndBadCommand");
+
+        OrderBookList orderBookList = new OrderBookList(OrderBookType.PRICE_LADDER);
+        MarketDataGateway gateway = newGateway(orderBookList, MarketDataGateway.DEFAULT_MAX_QUEUED_BYTES, 0);
+        GatewayClient client = newClient(gateway, 0);
+        client.subscribe("BTCUSD", 3);
+        client.subscribe("ETHUSD", 3);
+        pollUntil(List.of(client), () -> client.getSnapshots() == 2);
+
+        orderBookList.updateOrder(toOrder("t=1|i=ETHUSD|p=100.00|q=1.00|s=b"));
+        pollUntil(List.of(client), () -> client.getDeltas() == 1);
+        assertEquals(Map.of(10_000L, 100L), client.getLevels("ETHUSD", Side.BUY));
+
+        client.unsubscribe("ETHUSD");
+        client.subscribe("BTCUSD", 1);   // new depth : a new snapshot
+        pollUntil(List.of(client), () -> client.getSnapshots() == 3);
+        orderBookList.updateOrder(toOrder("t=2|i=ETHUSD|p=101.00|q=1.00|s=b"));
+        orderBookList.updateOrder(toOrder("t=3|i=BTCUSD|p=101.00|q=1.00|s=b"));
+        pollUntil(List.of(client), () -> client.getDeltas() == 2);
+        assertTrue(client.getLevels("ETHUSD", Side.BUY).isEmpty());
+        assertEquals(Map.of(10_100L, 100L), client.getLevels("BTCUSD", Side.BUY));
+
+        try (SocketChannel raw = SocketChannel.open(gateway.getLocalAddress())) {
+            raw.write(ByteBuffer.wrap("SUB BTCUSD 1000\n".getBytes(StandardCharsets.US_ASCII)));
+            assertEquals(-1, raw.read(ByteBuffer.allocate(64)));   // disconnected
+        }
+        assertEquals(1, gateway.getDisconnects());
+        assertEquals(1, gateway.getClients());
+    }
+}
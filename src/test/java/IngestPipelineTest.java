@@ -0,0 +1,178 @@
+import com.diy.journal.Journal;
+import com.diy.journal.Recovery;
+import com.diy.metrics.Operation;
+import com.diy.metrics.OrderBookMetrics;
+import com.diy.orderbookmanager.OrderBookList;
+import com.diy.orderbookmanager.OrderBookType;
+import com.diy.orderbookmanager.UpdateResult;
+import com.diy.parser.OrderParser;
+import com.diy.parser.ParseError;
+import com.diy.pipeline.IngestPipeline;
+import com.diy.pipeline.JournalStage;
+import com.diy.pipeline.MetricsStage;
+import com.diy.pipeline.WaitStrategy;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.diy.Utils.Utils.toOrder;
+import static org.junit.Assert.*;
+
+
+public class IngestPipelineTest {
+
+    private final List<Path> directories = new ArrayList<>();
+
+
+    @After
+    public void deleteDirectories() throws IOException {
+
+        for (Path directory : directories) {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+
+    @Test
+    public void TestMessagesGoThroughEveryStageInOrder() {
+
+        System.out.println("________________ TestMessagesGoThroughEveryStageInOrder");
+
+        List<String> messages = BookFixtures.messages(new SplittableRandom(3), 5_000, 10);
+        messages.add(1_000, "t=1|i=BTCUSD|p=abc|q=1|s=b");
+
+        OrderBookList expected = new OrderBookList(OrderBookType.PRICE_LADDER);
+        List<UpdateResult> expectedResults = new ArrayList<>();
+        for (String message : messages) {
+            expectedResults.add(message.contains("abc") ? null : expected.update(toOrder(message)));
+        }
+
+        OrderBookList orderBookList = new OrderBookList(OrderBookType.PRICE_LADDER);
+        List<UpdateResult> results = new ArrayList<>();
+        List<Long> sequences = new ArrayList<>();
+        List<ParseError> errors = new ArrayList<>();
+        IngestPipeline pipeline = new IngestPipeline(orderBookList,
+                (event, sequence, endOfBatch) -> {
+                    results.add(event.getResult());
+                    if (event.getError() != null) {
+                        errors.add(event.getError());
+                    }
+                },
+                (event, sequence, endOfBatch) -> sequences.add(sequence));
+
+        for (String message : messages) {
+            byte[] bytes = message.getBytes(StandardCharsets.US_ASCII);
+            pipeline.publish(bytes, 0, bytes.length);
+        }
+        pipeline.close();
+
+        assertEquals(messages.size(), pipeline.getPublished());
+        assertEquals(1, pipeline.getParseErrors());
+        assertEquals(List.of(ParseError.BAD_PRICE), errors);
+        assertEquals(expectedResults, results);
+        for (int i = 0; i < sequences.size(); i++) {
+            assertEquals(i, sequences.get(i).longValue());
+        }
+        assertEquals(messages.size(), sequences.size());
+        assertEquals(BookFixtures.image(expected), BookFixtures.image(orderBookList));
+    }
+
+
+
+    @Test
+    public void TestSmallRingWrapsWithEveryWaitStrategy() {
+
+        System.out.println("________________ TestSmallRingWrapsWithEveryWaitStrategy");
+
+        List<String> messages = BookFixtures.messages(new SplittableRandom(5), 2_000, 10);
+        StringBuilder block = new StringBuilder();
+        for (String message : messages) {
+            block.append(message).append('\n');
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(block.toString().getBytes(StandardCharsets.US_ASCII));
+
+        OrderBookList expected = new OrderBookList(OrderBookType.SKIP_LIST);
+        messages.forEach(message -> expected.updateOrder(toOrder(message)));
+
+        for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+
+            OrderBookList orderBookList = new OrderBookList(OrderBookType.SKIP_LIST);
+            long[] seen = {0};
+            IngestPipeline pipeline = new IngestPipeline(orderBookList, new OrderParser(), 64, 64, waitStrategy,
+                    runnable -> {
+                        Thread thread = new Thread(runnable, runnable + "-" + waitStrategy);
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    (event, sequence, endOfBatch) -> seen[0]++);
+
+            assertEquals(buffer.limit(), pipeline.publishLines(buffer, 0, buffer.limit()));
+            pipeline.drain();
+            assertEquals(waitStrategy.name(), messages.size(), seen[0]);
+            assertEquals(waitStrategy.name(), BookFixtures.image(expected), BookFixtures.image(orderBookList));
+            pipeline.close();
+        }
+    }
+
+
+
+    @Test
+    public void TestJournalAndMetricsStages() throws IOException {
+
+        System.out.println("________________ TestJournalAndMetricsStages");
+
+        Path directory = Files.createTempDirectory("pipeline");
+        directories.add(directory);
+
+        OrderBookMetrics metrics = new OrderBookMetrics();
+        OrderBookList orderBookList = new OrderBookList(OrderBookType.PRICE_LADDER);
+        Journal journal = new Journal(directory, 512);
+        List<String> messages = BookFixtures.messages(new SplittableRandom(7), 3_000, 10);
+
+        IngestPipeline pipeline = new IngestPipeline(orderBookList, WaitStrategy.YIELD, new JournalStage(journal), new MetricsStage(metrics),
+                (event, sequence, endOfBatch) -> {
+                    throw new IllegalStateException("a failing consumer does not stop the others");
+                });
+        for (String message : messages) {
+            byte[] bytes = message.getBytes(StandardCharsets.US_ASCII);
+            pipeline.publish(ByteBuffer.wrap(bytes), 0, bytes.length);
+        }
+        pipeline.close();
+        journal.close();
+
+        assertEquals(messages.size(), metrics.getCount("BTCUSD", Operation.INGEST) + metrics.getCount("ETHUSD", Operation.INGEST));
+        assertTrue(metrics.getLatencyAtPercentile("BTCUSD", Operation.INGEST, 99.9) > 0);
+
+        OrderBookList recovered = new OrderBookList();
+        Recovery.recover(directory, recovered);
+        assertFalse(BookFixtures.image(orderBookList).isEmpty());
+        assertEquals(BookFixtures.image(orderBookList), BookFixtures.image(recovered));
+    }
+
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void TestMessageLongerThanSlotIsRejected() {
+
+        System.out.println("________________ TestMessageLongerThanSlotIsRejected");
+
+        try (IngestPipeline pipeline = new IngestPipeline(new OrderBookList())) {
+            pipeline.publish(new byte[IngestPipeline.DEFAULT_MAX_MESSAGE_LENGTH + 1], 0, IngestPipeline.DEFAULT_MAX_MESSAGE_LENGTH + 1);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+import com.diy.Side.Side;
+import com.diy.domain.InstrumentRegistry;
+import com.diy.domain.Order;
+import com.diy.orderbookmanager.OrderBookList;
+import com.diy.orderbookmanager.OrderBookType;
+import com.diy.orderbookmanager.TopOfBook;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.*;
+
+
+public class InstrumentRegistryTest {
+
+    private static final OrderBookType[] TYPES = {OrderBookType.SKIP_LIST, OrderBookType.PRICE_LADDER};
+
+
+    @Test
+    public void TestDenseIdsFromStringsAndBytes() {
+
+        System.out.println("________________ TestDenseIdsFromStringsAndBytes");
+
+        InstrumentRegistry registry = InstrumentRegistry.getInstance();
+        int first = registry.register("REG0");
+
+        for (int i = 1; i < 5_000; i++) {   // several resizes of the table
+            assertEquals(first + i, registry.register("REG" + i));
+        }
+        for (int i = 0; i < 5_000; i++) {
+            String symbol = "REG" + i;
+            assertEquals(first + i, registry.register(symbol));
+            assertEquals(first + i, registry.getId(symbol));
+            assertEquals(symbol, registry.getSymbol(first + i));
+
+            ByteBuffer message = ByteBuffer.wrap(("i=" + symbol + "|").getBytes(StandardCharsets.US_ASCII));
+            assertEquals(first + i, registry.getId(message, 2, symbol.length()));
+        }
+
+        assertEquals(InstrumentRegistry.UNKNOWN, registry.getId("NOT_REGISTERED"));
+        assertEquals(InstrumentRegistry.UNKNOWN, registry.getId(ByteBuffer.wrap("REG".getBytes(StandardCharsets.US_ASCII)), 0, 3));
+        assertTrue(registry.size() >= first + 5_000);
+    }
+
+
+
+    @Test
+    public void TestConcurrentRegistration() throws InterruptedException {
+
+        System.out.println("________________ TestConcurrentRegistration");
+
+        InstrumentRegistry registry = InstrumentRegistry.getInstance();
+        Set<Integer> ids = ConcurrentHashMap.newKeySet();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 1_000; i++) {
+                    int id = registry.register("CONC" + i);  // every thread registers the same symbols
+                    assertEquals("CONC" + i, registry.getSymbol(id));
+                    ids.add(id);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(1_000, ids.size());
+    }
+
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void TestUnknownId() {
+
+        System.out.println("________________ TestUnknownId");
+
+        InstrumentRegistry.getInstance().getSymbol(Integer.MAX_VALUE);
+    }
+
+
+
+    @Test
+    public void TestThousandsOfInstruments() {
+
+        System.out.println("________________ TestThousandsOfInstruments");
+
+        for (OrderBookType type : TYPES) {
+
+            OrderBookList orderBookList = new OrderBookList(type);
+            int nbrInstruments = 3_000;   // the book array grows several times, a ladder allocates only the pages it uses
+
+            for (int i = 0; i < nbrInstruments; i++) {
+                assertTrue(orderBookList.updateOrder(new Order("INS" + i, Side.BUY, 100 + i % 500, 100, i)));
+            }
+            for (int i = 0; i < nbrInstruments; i++) {
+                String instrument = "INS" + i;
+                assertEquals(100 + i % 500, orderBookList.getTopOfBook(instrument).getBidPrice());
+                assertEquals(orderBookList.getTopOfBook(instrument), orderBookList.getTopOfBook(InstrumentRegistry.getInstance().getId(instrument)));
+            }
+            assertEquals(nbrInstruments, orderBookList.getFullOrderBook().size());
+            assertSame(TopOfBook.EMPTY, orderBookList.getTopOfBook("NEVER_SEEN"));
+            assertEquals(Optional.empty(), orderBookList.getBestPrice("NEVER_SEEN", Side.BUY));
+        }
+    }
+}
@@ -0,0 +1,264 @@
+import com.diy.Side.Side;
+import com.diy.domain.Order;
+import com.diy.journal.Checkpoint;
+import com.diy.journal.Journal;
+import com.diy.journal.Recovery;
+import com.diy.matching.MatchingEngine;
+import com.diy.matching.TimeInForce;
+import com.diy.orderbookmanager.OrderBook;
+import com.diy.orderbookmanager.OrderBookList;
+import com.diy.orderbookmanager.TopOfBook;
+import com.diy.orderbookmanager.UpdateResult;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.diy.Utils.Utils.toOrder;
+import static org.junit.Assert.*;
+
+
+public class JournalTest {
+
+    private static final String[] INSTRUMENTS = {"BTCUSD", "ETHUSD", "SOLUSD"};
+
+    private final List<Path> directories = new ArrayList<>();
+
+
+    private Path newDirectory() throws IOException {
+
+        Path directory = Files.createTempDirectory("journal");
+        directories.add(directory);
+        return directory;
+    }
+
+
+    @After
+    public void deleteDirectories() throws IOException {
+
+        for (Path directory : directories) {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+
+    /** adds, modifies and deletes of orders resting around 500.00 */
+    private static void feed(OrderBookList orderBookList, SplittableRandom random, int count) {
+
+        for (int i = 0; i < count; i++) {
+            Side side = random.nextBoolean() ? Side.BUY : Side.SELL;
+            long price = side == Side.BUY ? 49_990 + random.nextInt(10) : 50_000 + random.nextInt(10);
+            long quantity = random.nextInt(4) == 0 ? 0 : 1 + random.nextInt(10_000);
+            orderBookList.updateOrder(new Order(INSTRUMENTS[random.nextInt(INSTRUMENTS.length)], side, price, quantity, random.nextInt(50)));
+        }
+    }
+
+
+    private static OrderBook orderBook(OrderBookList orderBookList, String instrument) {
+
+        List<OrderBook> found = new ArrayList<>();
+        orderBookList.forEachOrderBook(orderBook -> {
+            if (orderBook.getInstrument().equals(instrument)) {
+                found.add(orderBook);
+            }
+        });
+        return found.get(0);
+    }
+
+
+    private long segments(Path directory) throws IOException {
+
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith("journal-")).count();
+        }
+    }
+
+
+
+    @Test
+    public void TestRecoverFromJournal() throws IOException {
+
+        System.out.println("________________ TestRecoverFromJournal");
+
+        Path directory = newDirectory();
+        OrderBookList orderBookList = new OrderBookList();
+        Journal journal = new Journal(directory, 256);   // several segments
+        orderBookList.addUpdateListener(journal);
+
+        SplittableRandom random = new SplittableRandom(7);
+        feed(orderBookList, random, 2_000);
+        MatchingEngine engine = new MatchingEngine(orderBook(orderBookList, "BTCUSD"));
+        engine.submitMarket(Side.BUY, 15_000, TimeInForce.IOC, (i, s, p, q, t, l) -> { });          // fills are journaled
+        engine.submitLimit(Side.SELL, 49_995, 40_000, 99, TimeInForce.GTC, (i, s, p, q, t, l) -> { });  // and so is the rest
+        feed(orderBookList, random, 500);
+        journal.close();
+
+        assertTrue(segments(directory) > 2);
+
+        OrderBookList recovered = new OrderBookList();
+        assertEquals(journal.getSequence(), Recovery.recover(directory, recovered));
+        assertFalse(BookFixtures.image(orderBookList).isEmpty());
+        assertEquals(BookFixtures.image(orderBookList), BookFixtures.image(recovered));
+    }
+
+
+
+    @Test
+    public void TestRecoverFromCheckpointAndJournalTail() throws IOException {
+
+        System.out.println("________________ TestRecoverFromCheckpointAndJournalTail");
+
+        Path directory = newDirectory();
+        OrderBookList orderBookList = new OrderBookList();
+        Journal journal = new Journal(directory, 256);
+        orderBookList.addUpdateListener(journal);
+
+        SplittableRandom random = new SplittableRandom(11);
+        feed(orderBookList, random, 3_000);
+        Checkpoint.write(orderBookList, journal);
+        long checkpointSequence = journal.getSequence();
+        feed(orderBookList, random, 300);
+        assertTrue(journal.deleteSegmentsBefore(checkpointSequence) > 0);
+        journal.close();
+
+        OrderBookList recovered = new OrderBookList();
+        assertEquals(journal.getSequence() - checkpointSequence, Recovery.recover(directory, recovered));
+        assertEquals(BookFixtures.image(orderBookList), BookFixtures.image(recovered));
+
+        // restart : the journal goes on after the records already there
+        Journal reopened = new Journal(directory, 256);
+        assertEquals(journal.getSequence(), reopened.getSequence());
+        recovered.addUpdateListener(reopened);
+        feed(recovered, random, 300);
+        reopened.close();
+
+        OrderBookList again = new OrderBookList();
+        Recovery.recover(directory, again);
+        assertEquals(BookFixtures.image(recovered), BookFixtures.image(again));
+    }
+
+
+
+    @Test
+    public void TestIncompleteRecordEndsJournal() throws IOException {
+
+        System.out.println("________________ TestIncompleteRecordEndsJournal");
+
+        Path directory = newDirectory();
+        OrderBookList orderBookList = new OrderBookList();
+        Journal journal = new Journal(directory, 256);
+        orderBookList.addUpdateListener(journal);
+
+        assertTrue(orderBookList.updateOrder(toOrder("t=1|i=BTCUSD|p=32.99|q=100|s=b")));
+        assertTrue(orderBookList.updateOrder(toOrder("t=2|i=BTCUSD|p=32.99|q=50|s=b")));
+        assertTrue(orderBookList.updateOrder(toOrder("t=3|i=BTCUSD|p=32.99|q=30|s=b")));
+        journal.close();
+
+        // crash while the third update was written : its header is not there yet
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.collect(Collectors.toList()).get(0);
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4), 3 * 32 + 28);  // INSTRUMENT, UPDATE, UPDATE, UPDATE
+        }
+
+        OrderBookList recovered = new OrderBookList();
+        assertEquals(2, Recovery.recover(directory, recovered));
+        assertEquals(2, recovered.getOrdersAtLevel("BTCUSD", Side.BUY, new BigDecimal("32.99")).size());
+    }
+
+
+
+    @Test
+    public void TestFailedJournalEndsBeforeTheLostChange() throws IOException {
+
+        System.out.println("________________ TestFailedJournalEndsBeforeTheLostChange");
+
+        Path directory = newDirectory();
+        OrderBookList orderBookList = new OrderBookList();
+        Journal journal = new Journal(directory, 256);
+        orderBookList.addUpdateListener(journal);
+
+        String symbol = "A_SYMBOL_OF_32_CHARACTERS_LONG__";  // the longest the parser takes : two records
+        assertTrue(orderBookList.updateOrder(toOrder("t=1|i=BTCUSD|p=32.99|q=100|s=b")));
+        assertTrue(orderBookList.updateOrder(toOrder("t=2|i=" + symbol + "|p=1.00|q=100|s=s")));
+        assertNull(journal.getFailure());
+
+        // the book takes it, the journal cannot : the writer is not stopped, the journal is
+        String tooLong = "AN_INSTRUMENT_SYMBOL_TOO_LONG_FOR_TWO_RECORDS_OF_THE_JOURNAL";
+        assertTrue(orderBookList.updateOrder(new Order(tooLong, Side.BUY, 100, 100, 3)));
+        assertTrue(orderBookList.updateOrder(toOrder("t=4|i=BTCUSD|p=32.99|q=50|s=b")));
+        assertEquals(100, orderBookList.getTopOfBook(tooLong).getBidQuantity());
+        assertTrue(journal.getFailure() instanceof IllegalArgumentException);
+        assertEquals(2, journal.getSequence());
+        try {
+            journal.flush();
+            fail("the journal has failed");
+        } catch (IllegalStateException expected) {
+        }
+        journal.close();
+
+        OrderBookList recovered = new OrderBookList();
+        assertEquals(2, Recovery.recover(directory, recovered));
+        assertEquals(1, recovered.getOrdersAtLevel("BTCUSD", Side.BUY, new BigDecimal("32.99")).size());
+        assertEquals(1, recovered.getOrdersAtLevel(symbol, Side.SELL, new BigDecimal("1.00")).size());
+    }
+
+
+
+    @Test
+    public void TestThrowingListenerLeavesTheBooksConsistent() {
+
+        System.out.println("________________ TestThrowingListenerLeavesTheBooksConsistent");
+
+        OrderBookList orderBookList = new OrderBookList();
+        List<Long> seen = new ArrayList<>();
+        orderBookList.addUpdateListener((instrumentId, side, price, quantity, timestamp) -> {
+            throw new IllegalStateException("listener down");
+        });
+        orderBookList.addUpdateListener((instrumentId, side, price, quantity, timestamp) -> seen.add(quantity));
+
+        assertTrue(orderBookList.updateOrder(toOrder("t=1|i=BTCUSD|p=32.99|q=100|s=b")));
+        assertTrue(orderBookList.updateOrder(toOrder("t=2|i=BTCUSD|p=33.00|q=100|s=b")));
+        assertEquals(3300, orderBookList.getTopOfBook("BTCUSD").getBidPrice());
+
+        // a batch is applied whole
+        List<Order> batch = List.of(toOrder("t=3|i=BTCUSD|p=33.10|q=10|s=s"), toOrder("t=2|i=BTCUSD|p=33.00|q=0|s=b"),
+                toOrder("t=4|i=ETHUSD|p=20.00|q=5|s=b"), toOrder("t=1|i=BTCUSD|p=32.99|q=70|s=b"));
+        UpdateResult[] results = new UpdateResult[batch.size()];
+        orderBookList.updateOrders(batch, results);
+        assertArrayEquals(new UpdateResult[]{UpdateResult.ADDED, UpdateResult.DELETED, UpdateResult.ADDED, UpdateResult.MODIFIED}, results);
+        TopOfBook top = orderBookList.getTopOfBook("BTCUSD");
+        assertEquals(3299, top.getBidPrice());
+        assertEquals(7000, top.getBidQuantity());
+        assertEquals(3310, top.getAskPrice());
+        assertEquals(Optional.of(new BigDecimal("32.99")), orderBookList.getBestPrice("BTCUSD", Side.BUY));
+
+        // a match empties the best level : it leaves the book
+        OrderBook orderBook = orderBook(orderBookList, "BTCUSD");
+        MatchingEngine engine = new MatchingEngine(orderBook);
+        assertEquals(1000, engine.submitLimit(Side.BUY, 3310, 1000, 5, TimeInForce.IOC, (instrumentId, aggressorSide, price, quantity, restingTimestamp, restingLeft) -> { }));
+        assertEquals(Optional.empty(), orderBookList.getBestPrice("BTCUSD", Side.SELL));
+        assertEquals(0, orderBookList.getTopOfBook("BTCUSD").getAskQuantity());
+
+        assertEquals(List.of(10_000L, 10_000L, 0L, 7_000L, 1_000L, 500L, 0L), seen);   // the batch side by side
+    }
+}
@@ -0,0 +1,85 @@
+import com.diy.collections.LongObjectHashMap;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.*;
+
+
+public class LongObjectHashMapTest {
+
+
+    @Test
+    public void TestPutGetRemove() {
+
+        System.out.println("________________ TestPutGetRemove");
+
+        LongObjectHashMap<String> map = new LongObjectHashMap<>();
+
+        assertNull(map.put(3299, "a"));
+        assertNull(map.put(-1, "b"));
+        assertEquals("a", map.put(3299, "c"));
+        assertEquals(2, map.size());
+        assertEquals("c", map.get(3299));
+        assertEquals("b", map.get(-1));
+        assertNull(map.get(0));
+        assertTrue(map.containsKey(-1));
+
+        assertEquals("c", map.remove(3299));
+        assertNull(map.remove(3299));
+        assertEquals(1, map.size());
+        assertEquals("[b]", new ArrayList<>(map.values()).toString());
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(-1));
+    }
+
+
+
+    @Test
+    public void TestSameAsHashMapUnderChurn() {
+
+        System.out.println("________________ TestSameAsHashMapUnderChurn");
+
+        LongObjectHashMap<Long> map = new LongObjectHashMap<>(4);
+        Map<Long, Long> expected = new HashMap<>();
+        SplittableRandom random = new SplittableRandom(42);
+
+        for (int i = 0; i < 200_000; i++) {
+            long key = random.nextInt(2_000) * 100L;   // clustered keys, like prices in ticks : long probe sequences
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+
+        for (long key = 0; key < 200_000; key += 100) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+        List<Long> values = new ArrayList<>();
+        map.forEach((key, value) -> {
+            assertEquals(expected.get(key), value);
+            values.add(value);
+        });
+        assertEquals(expected.size(), values.size());
+        assertEquals(expected.size(), map.values().size());
+    }
+
+
+
+    @Test(expected = NullPointerException.class)
+    public void TestNullValueRejected() {
+
+        System.out.println("________________ TestNullValueRejected");
+
+        new LongObjectHashMap<String>().put(1, null);
+    }
+
+}
@@ -0,0 +1,236 @@
+import com.diy.Side.Side;
+import com.diy.conflation.ConflatedDepth;
+import com.diy.conflation.ConflatedSubscriber;
+import com.diy.domain.Order;
+import com.diy.feed.SnapshotRecovery;
+import com.diy.matching.MatchingEngine;
+import com.diy.matching.TimeInForce;
+import com.diy.orderbookmanager.BookCodec;
+import com.diy.orderbookmanager.OrderBook;
+import com.diy.orderbookmanager.OrderBookList;
+import com.diy.orderbookmanager.OrderBookType;
+import com.diy.orderbookmanager.TopOfBook;
+import com.diy.orderbookmanager.UpdateResult;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static com.diy.Utils.Utils.toOrder;
+import static org.junit.Assert.*;
+
+
+public class MarketByOrderTest {
+
+    private static final OrderBookType[] TYPES = {OrderBookType.SKIP_LIST, OrderBookType.PRICE_LADDER};
+
+
+    /** quantities of the orders resting at that price, in queue order */
+    private static List<Long> queue(OrderBook orderBook, Side side, long price) {
+
+        List<Long> quantities = new ArrayList<>();
+        orderBook.forEachOrder(side, price, order -> quantities.add(order.getQuantityTicks()));
+        return quantities;
+    }
+
+
+    @Test
+    public void TestModifyAndCancelByOrderId() {
+
+        System.out.println("________________ TestModifyAndCancelByOrderId");
+
+        for (OrderBookType type : TYPES) {
+
+            OrderBook orderBook = new OrderBook("BTCUSD", type, true);
+            assertEquals(UpdateResult.ADDED, orderBook.update(new Order("BTCUSD", 1, Side.BUY, 10_000, 1_000, 1)));
+            assertEquals(UpdateResult.ADDED, orderBook.update(new Order("BTCUSD", 2, Side.BUY, 10_000, 2_000, 2)));
+            assertEquals(UpdateResult.ADDED, orderBook.update(new Order("BTCUSD", 3, Side.BUY, 9_900, 500, 3)));
+
+            assertEquals(UpdateResult.MODIFIED, orderBook.modify(1, 10_000, 1_500));   // same price : keeps its place
+            assertEquals(List.of(1_500L, 2_000L), queue(orderBook, Side.BUY, 10_000));
+
+            assertEquals(UpdateResult.MODIFIED, orderBook.modify(1, 10_100, 1_500));   // better price : new best level
+            TopOfBook top = orderBook.getTopOfBook();
+            assertEquals(10_100, top.getBidPrice());
+            assertEquals(1_500, top.getBidQuantity());
+            assertEquals(List.of(2_000L), queue(orderBook, Side.BUY, 10_000));
+            assertEquals(10_100, orderBook.getOrder(1).getPriceTicks());
+
+            assertEquals(UpdateResult.MODIFIED, orderBook.modify(1, 9_900, 1_500));    // leaves the best level : back of the queue
+            assertEquals(10_000, orderBook.getTopOfBook().getBidPrice());
+            assertEquals(List.of(500L, 1_500L), queue(orderBook, Side.BUY, 9_900));
+
+            assertEquals(UpdateResult.DELETED, orderBook.cancel(2));
+            top = orderBook.getTopOfBook();
+            assertEquals(9_900, top.getBidPrice());
+            assertEquals(2_000, top.getBidQuantity());
+            assertEquals(2, top.getBidCount());
+            assertEquals(UpdateResult.NOT_FOUND, orderBook.cancel(2));
+            assertEquals(UpdateResult.NOT_FOUND, orderBook.modify(42, 9_900, 100));
+            assertNull(orderBook.getOrder(2));
+
+            // a delete by the feed is found by its id, whatever price it carries
+            assertEquals(UpdateResult.DELETED, orderBook.update(new Order("BTCUSD", 3, Side.BUY, 12_345, 0, 4)));
+            assertEquals(List.of(1_500L), queue(orderBook, Side.BUY, 9_900));
+            assertEquals(1_500, orderBook.getTopOfBook().getBidQuantity());
+
+            // an order without id, or with the id of an order of the other side, is ignored
+            assertEquals(UpdateResult.NOT_FOUND, orderBook.update(new Order("BTCUSD", Side.BUY, 9_900, 100, 5)));
+            assertEquals(UpdateResult.NOT_FOUND, orderBook.update(new Order("BTCUSD", 1, Side.SELL, 9_900, 100, 6)));
+            assertEquals(List.of(1_500L), queue(orderBook, Side.BUY, 9_900));
+            assertEquals(1, orderBook.getTopOfBook().getBidCount());
+        }
+
+        try {
+            new OrderBook("BTCUSD", OrderBookType.TREE_MAP, true);
+            fail("market by order needs a concurrent book");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+
+
+    @Test
+    public void TestFeedWithOrderIdsKeepsTheLevels() {
+
+        System.out.println("________________ TestFeedWithOrderIdsKeepsTheLevels");
+
+        for (OrderBookType type : TYPES) {
+
+            OrderBookList orderBookList = new OrderBookList(type, null, true);
+            ConflatedDepth conflatedDepth = new ConflatedDepth();
+            orderBookList.addDepthListener(conflatedDepth);
+            ConflatedSubscriber subscriber = conflatedDepth.subscribe("SOLUSD");
+            Map<String, Long> drained = new HashMap<>();
+
+            Map<Long, long[]> resting = new HashMap<>();   // order id -> side (0 buy), price, quantity
+            SplittableRandom random = new SplittableRandom(7);
+            long nextId = 1;
+            for (int i = 0; i < 20_000; i++) {
+
+                long orderId;
+                long[] order;
+                if (resting.isEmpty() || random.nextInt(3) == 0) {
+                    orderId = nextId++;
+                    order = new long[]{random.nextInt(2), 0, 0};
+                } else {
+                    orderId = 1 + random.nextInt((int) nextId - 1);
+                    order = resting.getOrDefault(orderId, new long[]{random.nextInt(2), 0, 0});
+                }
+                long price = order[0] == 0 ? 4_970 + random.nextInt(30) : 5_000 + random.nextInt(30);
+                long quantity = random.nextInt(4) == 0 ? 0 : 1 + random.nextInt(10_000);
+                String message = String.format("t=%d|i=SOLUSD|p=%d.%02d|q=%d.%02d|s=%s|o=%d", i + 1, price / 100, price % 100,
+                        quantity / 100, quantity % 100, order[0] == 0 ? "b" : "s", orderId);
+
+                UpdateResult result = orderBookList.update(toOrder(message));
+                if (quantity == 0) {
+                    assertEquals(resting.remove(orderId) != null ? UpdateResult.DELETED : UpdateResult.NOT_FOUND, result);
+                } else {
+                    assertEquals(resting.put(orderId, new long[]{order[0], price, quantity}) != null ? UpdateResult.MODIFIED : UpdateResult.ADDED, result);
+                }
+                if (random.nextInt(50) == 0) {
+                    subscriber.drain((side, level, levelQuantity, orderCount) -> drained.put(side + " " + level, levelQuantity));
+                }
+            }
+
+            Map<String, Long> expected = new HashMap<>();
+            resting.forEach((orderId, order) -> expected.merge((order[0] == 0 ? Side.BUY : Side.SELL) + " " + order[1], order[2], Long::sum));
+            assertEquals(expected, BookFixtures.levels(orderBookList, "SOLUSD"));
+
+            subscriber.drain((side, level, levelQuantity, orderCount) -> drained.put(side + " " + level, levelQuantity));
+            drained.values().removeIf(quantity -> quantity == 0);
+            assertEquals(expected, drained);
+
+            long orderId = resting.keySet().iterator().next();
+            assertEquals(resting.get(orderId)[2], orderBookList.getOrder("SOLUSD", orderId).getQuantityTicks());
+            assertEquals(UpdateResult.DELETED, orderBookList.cancelOrder("SOLUSD", orderId));
+            assertNull(orderBookList.getOrder("SOLUSD", orderId));
+        }
+
+        try {
+            toOrder("t=1|i=SOLUSD|p=50.00|q=1|s=b|o=");
+            fail("empty order id");
+        } catch (NumberFormatException expected) {
+        }
+        try {
+            toOrder("t=1|i=SOLUSD|p=50.00|q=1|s=b|x=1");
+            fail("unknown field after the side");
+        } catch (NumberFormatException expected) {
+        }
+    }
+
+
+
+    @Test
+    public void TestMatchedOrdersLeaveTheIndex() {
+
+        System.out.println("________________ TestMatchedOrdersLeaveTheIndex");
+
+        for (OrderBookType type : TYPES) {
+
+            OrderBook orderBook = new OrderBook("ETHUSD", type, true);
+            orderBook.update(toOrder("t=1|i=ETHUSD|p=100.00|q=10|s=s|o=11"));
+            orderBook.update(toOrder("t=2|i=ETHUSD|p=100.00|q=10|s=s|o=12"));
+            orderBook.update(toOrder("t=3|i=ETHUSD|p=101.00|q=10|s=s|o=13"));
+
+            List<Long> fills = new ArrayList<>();
+            long filled = orderBook.match(Side.BUY, 10_000, 1_500, false,
+                    (instrumentId, aggressorSide, price, quantity, restingTimestamp, restingLeft) -> fills.add(quantity));
+            assertEquals(1_500, filled);
+            assertEquals(List.of(1_000L, 500L), fills);
+
+            assertNull(orderBook.getOrder(11));
+            assertEquals(500, orderBook.getOrder(12).getQuantityTicks());
+            assertEquals(UpdateResult.NOT_FOUND, orderBook.cancel(11));
+            assertEquals(UpdateResult.MODIFIED, orderBook.modify(13, 10_000, 1_000));   // joins order 12 at 100.00
+            assertEquals(List.of(500L, 1_000L), queue(orderBook, Side.SELL, 10_000));
+            assertEquals(UpdateResult.DELETED, orderBook.cancel(12));
+
+            TopOfBook top = orderBook.getTopOfBook();
+            assertEquals(10_000, top.getAskPrice());
+            assertEquals(1_000, top.getAskQuantity());
+            assertEquals(1, top.getAskCount());
+            assertNull(orderBook.getOrder(12));
+
+            MatchingEngine engine = new MatchingEngine(orderBook);    // GTC : the remainder rests with its id
+            assertEquals(1_000, engine.submitLimit(Side.BUY, 10_000, 1_500, 4, 14, TimeInForce.GTC, (instrumentId, aggressorSide, price, quantity, restingTimestamp, restingLeft) -> { }));
+            assertEquals(500, orderBook.getOrder(14).getQuantityTicks());
+            try {
+                engine.submitLimit(Side.BUY, 9_900, 100, 5, TimeInForce.GTC, (instrumentId, aggressorSide, price, quantity, restingTimestamp, restingLeft) -> { });
+                fail("a GTC order without id cannot rest");
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+
+
+    @Test
+    public void TestSnapshotsWithoutOrderIdsAreRejected() throws IOException {
+
+        System.out.println("________________ TestSnapshotsWithoutOrderIdsAreRejected");
+
+        OrderBookList orderBookList = new OrderBookList(OrderBookType.PRICE_LADDER);
+        orderBookList.updateOrder(toOrder("t=1|i=BTCUSD|p=100.00|q=10|s=b"));
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 10);
+        BookCodec.encode(orderBookList, buffer);
+        buffer.flip();
+
+        OrderBookList marketByOrder = new OrderBookList(OrderBookType.PRICE_LADDER, null, true);
+        try {
+            BookCodec.decode(buffer, marketByOrder);
+            fail("the snapshot has no order ids");
+        } catch (IllegalStateException expected) {
+        }
+        try {
+            new SnapshotRecovery(marketByOrder, snapshot -> 0, 1 << 10);
+            fail("the snapshot has no order ids");
+        } catch (IllegalStateException expected) {
+        }
+    }
+}
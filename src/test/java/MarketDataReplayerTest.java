@@ -0,0 +1,98 @@
+import com.diy.Side.Side;
+import com.diy.orderbookmanager.OrderBookList;
+import com.diy.orderbookmanager.OrderBookManager;
+import com.diy.parser.OrderParser;
+import com.diy.replay.MarketDataReplayer;
+import com.diy.replay.ReplayPacing;
+import com.diy.replay.ReplayResult;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+
+public class MarketDataReplayerTest {
+
+
+    private static Path captureFile(String content) throws IOException {
+
+        Path file = Files.createTempFile("capture", ".txt");
+        file.toFile().deleteOnExit();
+        Files.write(file, content.getBytes(StandardCharsets.US_ASCII));
+        return file;
+    }
+
+
+
+    @Test
+    public void TestReplayRebuildsTheBook() throws IOException {
+
+        System.out.println("________________ TestReplayRebuildsTheBook");
+
+        Path file = captureFile(
+                "t=1638848595|i=BTCUSD|p=32.99|q=100|s=b\n" +
+                "t=1638848596|i=BTCUSD|p=33.5|q=100|s=s\n" +
+                "t=1638848597|i=BTCUSD|p=33.1|q=100|s=b\n" +
+                "garbage\n" +
+                "t=1638848597|i=BTCUSD|p=33.1|q=0|s=b\n" +
+                "t=1638848598|i=ETHUSD|p=1.25|q=3|s=s");  // no '\n' at the end of the file
+
+        OrderBookManager orderBookManager = new OrderBookList();
+        ReplayResult result = new MarketDataReplayer(orderBookManager, ReplayPacing.AS_FAST_AS_POSSIBLE).replay(file);
+
+        assertEquals(5, result.getRecords());
+        assertEquals(5, result.getApplied());
+        assertEquals(1, result.getErrors());
+        assertEquals(Optional.of(new BigDecimal("32.99")), orderBookManager.getBestPrice("BTCUSD", Side.BUY));
+        assertEquals(Optional.of(new BigDecimal("33.50")), orderBookManager.getBestPrice("BTCUSD", Side.SELL));
+        assertEquals(Optional.of(new BigDecimal("1.25")), orderBookManager.getBestPrice("ETHUSD", Side.SELL));
+    }
+
+
+
+    @Test
+    public void TestReplayAcrossRegions() throws IOException {
+
+        System.out.println("________________ TestReplayAcrossRegions");
+
+        StringBuilder content = new StringBuilder();
+        int nbrRecords = 1_000;
+        for (int i = 0; i < nbrRecords; i++) {
+            content.append("t=").append(1638848595L + i).append("|i=SOLUSD|p=").append(1 + i % 500).append(".5|q=10|s=s\n");
+        }
+        Path file = captureFile(content.toString());
+
+        OrderBookManager orderBookManager = new OrderBookList();
+        MarketDataReplayer replayer = new MarketDataReplayer(orderBookManager, new OrderParser(), ReplayPacing.AS_FAST_AS_POSSIBLE, 1.0, 100); // lines cross the 100 bytes regions
+        ReplayResult result = replayer.replay(file);
+
+        assertEquals(nbrRecords, result.getRecords());
+        assertEquals(0, result.getErrors());
+        assertEquals(new BigDecimal("10000.00"), orderBookManager.getTotalQtyOverLevel("SOLUSD", Side.SELL, 500));
+    }
+
+
+
+    @Test
+    public void TestReplayHonoursTimestamps() throws IOException {
+
+        System.out.println("________________ TestReplayHonoursTimestamps");
+
+        Path file = captureFile(
+                "t=1000|i=BTCUSD|p=1|q=1|s=b\n" +
+                "t=1100|i=BTCUSD|p=2|q=1|s=b\n" +
+                "t=1200|i=BTCUSD|p=3|q=1|s=b\n");
+
+        ReplayResult result = new MarketDataReplayer(new OrderBookList(), new OrderParser(), ReplayPacing.TIMESTAMPS, 2.0, 1 << 20).replay(file);
+
+        assertEquals(3, result.getRecords());
+        assertTrue(result.getElapsedNanos() >= 100_000_000L); // 200ms of market time at speed 2
+    }
+
+}
@@ -0,0 +1,126 @@
+import com.diy.Side.Side;
+import com.diy.Utils.FixedPoint;
+import com.diy.domain.Order;
+import com.diy.matching.MatchingEngine;
+import com.diy.matching.TimeInForce;
+import com.diy.orderbookmanager.OrderBook;
+import com.diy.orderbookmanager.OrderBookType;
+import com.diy.orderbookmanager.TopOfBook;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.diy.Utils.Utils.toOrder;
+import static org.junit.Assert.*;
+
+
+public class MatchingEngineTest {
+
+
+    /** asks : 3 orders at 32.99 (t=1, 2, 3), 1 at 33.00 (t=4) */
+    private static MatchingEngine newEngine(OrderBookType type) {
+
+        OrderBook orderBook = new OrderBook("BTCUSD", type);
+        orderBook.update(toOrder("t=1|i=BTCUSD|p=32.99|q=100|s=s"));
+        orderBook.update(toOrder("t=2|i=BTCUSD|p=32.99|q=50|s=s"));
+        orderBook.update(toOrder("t=3|i=BTCUSD|p=32.99|q=30|s=s"));
+        orderBook.update(toOrder("t=4|i=BTCUSD|p=33.00|q=200|s=s"));
+        orderBook.update(toOrder("t=5|i=BTCUSD|p=32.00|q=10|s=b"));
+        return new MatchingEngine(orderBook);
+    }
+
+
+
+    @Test
+    public void TestSweepInPriceTimePriority() {
+
+        System.out.println("________________ TestSweepInPriceTimePriority");
+
+        for (OrderBookType type : OrderBookType.values()) {
+
+            MatchingEngine engine = newEngine(type);
+            List<String> fills = new ArrayList<>();
+
+            long filled = engine.submitLimit(Side.BUY, 3300, 25000, 10, TimeInForce.IOC,
+                    (instrumentId, side, price, quantity, restingTimestamp, restingLeft) -> fills.add(price + "x" + quantity + "@" + restingTimestamp + "/" + restingLeft));
+
+            assertEquals(25000, filled);
+            assertEquals(type.name(), Arrays.asList("3299x10000@1/0", "3299x5000@2/0", "3299x3000@3/0", "3300x7000@4/13000"), fills);
+
+            TopOfBook top = engine.getOrderBook().getTopOfBook();
+            assertEquals(3300, top.getAskPrice());
+            assertEquals(13000, top.getAskQuantity());
+            assertEquals(1, top.getAskCount());
+            assertEquals(3200, top.getBidPrice());   // IOC : nothing rests
+            assertEquals(Arrays.asList(toOrder("t=4|i=BTCUSD|p=33.00|q=130|s=s")),
+                    new ArrayList<>(engine.getOrderBook().getOrdersUpToLevel("BTCUSD", Side.SELL, 1).values().iterator().next()));
+        }
+    }
+
+
+
+    @Test
+    public void TestPartialFillKeepsTimePriority() {
+
+        System.out.println("________________ TestPartialFillKeepsTimePriority");
+
+        for (OrderBookType type : OrderBookType.values()) {
+
+            MatchingEngine engine = newEngine(type);
+            assertEquals(4000, engine.submitMarket(Side.BUY, 4000, TimeInForce.IOC, (i, s, p, q, t, l) -> { }));
+
+            List<String> fills = new ArrayList<>();
+            assertEquals(12000, engine.submitMarket(Side.BUY, 12000, TimeInForce.IOC, (i, s, p, q, t, l) -> fills.add(q + "@" + t + "/" + l)));
+            assertEquals(type.name(), Arrays.asList("6000@1/0", "5000@2/0", "1000@3/2000"), fills);   // t=1 first with its 60.00 left
+
+            TopOfBook top = engine.getOrderBook().getTopOfBook();
+            assertEquals(3299, top.getAskPrice());
+            assertEquals(2000, top.getAskQuantity());
+            assertEquals(1, top.getAskCount());
+        }
+    }
+
+
+
+    @Test
+    public void TestTimeInForce() {
+
+        System.out.println("________________ TestTimeInForce");
+
+        for (OrderBookType type : OrderBookType.values()) {
+
+            MatchingEngine engine = newEngine(type);
+            OrderBook orderBook = engine.getOrderBook();
+
+            assertEquals(0, engine.submitLimit(Side.BUY, 3299, 18001, 10, TimeInForce.FOK, (i, s, p, q, t, l) -> fail()));  // 180.00 at 32.99
+            assertEquals(0, engine.submitMarket(Side.BUY, 38001, TimeInForce.FOK, (i, s, p, q, t, l) -> fail()));          // 380.00 in the book
+            assertEquals(18000, orderBook.getTopOfBook().getAskQuantity());
+
+            assertEquals(18000, engine.submitLimit(Side.BUY, 3299, 18000, 11, TimeInForce.FOK, (i, s, p, q, t, l) -> { }));
+            assertEquals(3300, orderBook.getTopOfBook().getAskPrice());
+
+            assertEquals(20000, engine.submitLimit(Side.BUY, 3300, 25000, 12, TimeInForce.GTC, (i, s, p, q, t, l) -> { }));
+            TopOfBook top = orderBook.getTopOfBook();
+            assertEquals(FixedPoint.NO_PRICE, top.getAskPrice());
+            assertEquals(3300, top.getBidPrice());   // the rest of the order is now the best bid
+            assertEquals(5000, top.getBidQuantity());
+            assertEquals(new Order("BTCUSD", Side.BUY, 3300, 5000, 12), orderBook.getOrdersUpToLevel("BTCUSD", Side.BUY, 1).values().iterator().next().iterator().next());
+
+            assertEquals(0, engine.submitLimit(Side.SELL, 3400, 100, 13, TimeInForce.IOC, (i, s, p, q, t, l) -> fail()));  // does not cross
+            assertEquals(6000, engine.submitMarket(Side.SELL, 7000, TimeInForce.IOC, (i, s, p, q, t, l) -> assertEquals(Side.SELL, s)));
+            assertTrue(orderBook.isEmpty());
+        }
+    }
+
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void TestMarketOrderCannotRest() {
+
+        System.out.println("________________ TestMarketOrderCannotRest");
+
+        newEngine(OrderBookType.SKIP_LIST).submitMarket(Side.BUY, 100, TimeInForce.GTC, (i, s, p, q, t, l) -> { });
+    }
+}
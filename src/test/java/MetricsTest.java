@@ -0,0 +1,144 @@
+import com.diy.Side.Side;
+import com.diy.domain.Order;
+import com.diy.metrics.Operation;
+import com.diy.metrics.OrderBookMetrics;
+import com.diy.orderbookmanager.OrderBookList;
+import com.diy.orderbookmanager.OrderBookType;
+import com.diy.orderbookmanager.UpdateResult;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.diy.Utils.Utils.toOrder;
+import static org.junit.Assert.*;
+
+
+public class MetricsTest {
+
+
+    @Test
+    public void TestUpdatesAreCountedByOutcome() {
+
+        System.out.println("________________ TestUpdatesAreCountedByOutcome");
+
+        OrderBookMetrics metrics = new OrderBookMetrics();
+        OrderBookList orderBookList = new OrderBookList(OrderBookType.PRICE_LADDER, metrics);
+
+        assertTrue(orderBookList.updateOrder(toOrder("t=1|i=BTCUSD|p=32.99|q=100|s=b")));    // add
+        assertTrue(orderBookList.updateOrder(toOrder("t=2|i=BTCUSD|p=32.99|q=100|s=b")));    // add
+        assertTrue(orderBookList.updateOrder(toOrder("t=1|i=BTCUSD|p=32.99|q=50|s=b")));     // modify
+        assertFalse(orderBookList.updateOrder(toOrder("t=1|i=BTCUSD|p=32.99|q=50|s=b")));    // duplicate
+        assertTrue(orderBookList.updateOrder(toOrder("t=2|i=BTCUSD|p=32.99|q=0|s=b")));      // delete
+        assertFalse(orderBookList.updateOrder(toOrder("t=9|i=BTCUSD|p=32.99|q=0|s=b")));     // ignored
+        assertFalse(orderBookList.updateOrder(toOrder("t=9|i=METRICS1|p=32.99|q=0|s=b")));   // ignored, no book yet
+        assertTrue(orderBookList.updateOrder(toOrder("t=3|i=ETHUSD|p=12.00|q=10|s=s")));     // add, other instrument
+
+        assertEquals(2, metrics.getCount("BTCUSD", Operation.ADD));
+        assertEquals(1, metrics.getCount("BTCUSD", Operation.MODIFY));
+        assertEquals(1, metrics.getCount("BTCUSD", Operation.DUPLICATE));
+        assertEquals(1, metrics.getCount("BTCUSD", Operation.DELETE));
+        assertEquals(1, metrics.getCount("BTCUSD", Operation.IGNORED));
+        assertEquals(1, metrics.getCount("METRICS1", Operation.IGNORED));
+        assertEquals(1, metrics.getCount("ETHUSD", Operation.ADD));
+        assertEquals(0, metrics.getCount("ETHUSD", Operation.DELETE));
+        assertEquals(0, metrics.getCount("NOTRADED", Operation.ADD));
+
+        assertEquals(2, metrics.getHistogram("BTCUSD", Operation.ADD).getTotalCount());
+        assertTrue(metrics.getLatencyAtPercentile("BTCUSD", Operation.ADD, 99.9) > 0);
+        assertTrue(metrics.getLatencyAtPercentile("BTCUSD", Operation.ADD, 99.9) >= metrics.getLatencyAtPercentile("BTCUSD", Operation.ADD, 50));
+        assertEquals(0, metrics.getLatencyAtPercentile("ETHUSD", Operation.DELETE, 99.9));
+    }
+
+
+
+    @Test
+    public void TestBatchUpdatesAreCountedNotTimed() {
+
+        System.out.println("________________ TestBatchUpdatesAreCountedNotTimed");
+
+        OrderBookMetrics metrics = new OrderBookMetrics();
+        OrderBookList orderBookList = new OrderBookList(OrderBookType.SKIP_LIST, metrics);
+
+        List<Order> orders = Arrays.asList(toOrder("t=1|i=METRICS2|p=32.99|q=100|s=b"),
+                toOrder("t=1|i=METRICS2|p=32.99|q=100|s=b"),
+                toOrder("t=1|i=METRICS2|p=32.99|q=0|s=b"));
+        UpdateResult[] results = new UpdateResult[3];
+        orderBookList.updateOrders(orders, results);
+
+        assertEquals(1, metrics.getCount("METRICS2", Operation.ADD));
+        assertEquals(1, metrics.getCount("METRICS2", Operation.DUPLICATE));
+        assertEquals(1, metrics.getCount("METRICS2", Operation.DELETE));
+        assertEquals(0, metrics.getHistogram("METRICS2", Operation.ADD).getTotalCount());
+    }
+
+
+
+    @Test
+    public void TestQueriesAreTimed() {
+
+        System.out.println("________________ TestQueriesAreTimed");
+
+        OrderBookMetrics metrics = new OrderBookMetrics();
+        OrderBookList orderBookList = new OrderBookList(OrderBookType.SKIP_LIST, metrics);
+        orderBookList.updateOrder(toOrder("t=1|i=BTCUSD|p=32.99|q=100|s=b"));
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(orderBookList.getBestPrice("BTCUSD", Side.BUY).isPresent());
+        }
+        orderBookList.getTopOfBook("BTCUSD");
+        orderBookList.getOrdersUpToLevel("BTCUSD", Side.BUY, 5);
+        orderBookList.getOrdersAtLevel("BTCUSD", Side.BUY, new BigDecimal("32.99"));
+        orderBookList.getTotalQtyOverLevel("BTCUSD", Side.BUY, 5);
+        orderBookList.getBestPrice("NOTRADED", Side.BUY);   // no book : not measured
+
+        assertEquals(10, metrics.getCount("BTCUSD", Operation.BEST_PRICE));
+        assertEquals(1, metrics.getCount("BTCUSD", Operation.TOP_OF_BOOK));
+        assertEquals(3, metrics.getCount("BTCUSD", Operation.DEPTH));
+        assertEquals(0, metrics.getCount("NOTRADED", Operation.BEST_PRICE));
+    }
+
+
+
+    @Test
+    public void TestExportHandsOverEachIntervalOnce() throws InterruptedException {
+
+        System.out.println("________________ TestExportHandsOverEachIntervalOnce");
+
+        OrderBookMetrics metrics = new OrderBookMetrics();
+        OrderBookList orderBookList = new OrderBookList(OrderBookType.PRICE_LADDER, metrics);
+        for (int t = 0; t < 100; t++) {
+            orderBookList.updateOrder(new Order("METRICS3", Side.SELL, 50_000 + t % 10, 100, t));
+        }
+
+        List<String> exported = new ArrayList<>();
+        metrics.getLatencyAtPercentile("METRICS3", Operation.ADD, 99.9);   // a query does not take the interval
+        metrics.export((instrument, operation, interval, count) -> exported.add(instrument + " " + operation + " " + interval.getTotalCount() + "/" + count));
+        assertEquals(Arrays.asList("METRICS3 ADD 100/100"), exported);
+
+        exported.clear();
+        orderBookList.updateOrder(new Order("METRICS3", Side.SELL, 50_000, 0, 0));
+        metrics.export((instrument, operation, interval, count) -> exported.add(instrument + " " + operation + " " + interval.getTotalCount() + "/" + count));
+        assertEquals(Arrays.asList("METRICS3 DELETE 1/1"), exported);   // nothing new for ADD
+        assertEquals(100, metrics.getHistogram("METRICS3", Operation.ADD).getTotalCount());
+
+        // periodic export
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        CountDownLatch exports = new CountDownLatch(2);
+        try {
+            metrics.exportEvery(executor, 10, TimeUnit.MILLISECONDS, (instrument, operation, interval, count) -> exports.countDown());
+            orderBookList.updateOrder(new Order("METRICS3", Side.SELL, 50_001, 0, 1));
+            Thread.sleep(50);
+            orderBookList.updateOrder(new Order("METRICS3", Side.SELL, 50_002, 0, 2));
+            assertTrue(exports.await(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -3,6 +3,8 @@ import com.diy.domain.Order;
 import com.diy.orderbookmanager.OrderBook;
 import com.diy.orderbookmanager.OrderBookList;
 import com.diy.orderbookmanager.OrderBookManager;
+import com.diy.orderbookmanager.OrderBookType;
+import com.diy.orderbookmanager.UpdateResult;
 import org.junit.Test;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
@@ -22,6 +24,20 @@ import static org.mockito.Mockito.*;
 public class OrderBookServiceAppTest {
 
 
+    /** storage engine under test, overridden by the engine specific suites */
+    protected OrderBookType orderBookType() {
+        return OrderBookType.SKIP_LIST;
+    }
+
+    private OrderBookList newOrderBookList() {
+        return new OrderBookList(orderBookType());
+    }
+
+    private OrderBook newOrderBook(String instrument) {
+        return new OrderBook(instrument, orderBookType());
+    }
+
+
     /*******************************
      *
      *      Object Creation
@@ -34,7 +50,7 @@ public class OrderBookServiceAppTest {
 
         System.out.println("________________ TestOrderBookIsCreatedOK");
 
-        OrderBook orderBook = new OrderBook("BTCUSD"); // OrderBook is created
+        OrderBook orderBook = newOrderBook("BTCUSD"); // OrderBook is created
 
         assertTrue(orderBook instanceof OrderBook);
         assertTrue(orderBook.toString() instanceof String);
@@ -52,7 +68,7 @@ public class OrderBookServiceAppTest {
 
         System.out.println("________________ TestOrderBookListIsCreatedOK");
 
-        OrderBookList orderBookList = new OrderBookList();
+        OrderBookList orderBookList = newOrderBookList();
 
         assertTrue(orderBookList instanceof OrderBookList);
         assertTrue(orderBookList.toString() instanceof String);
@@ -109,7 +125,7 @@ public class OrderBookServiceAppTest {
 
         System.out.println("________________ TestOrderBookManagerSimpleAdd");
 
-        OrderBookManager orderBookManager = new OrderBookList();
+        OrderBookManager orderBookManager = newOrderBookList();
         Order order = toOrder("t=1638848595|i=BTCUSD|p=32.99|q=100|s=b"); // create an Order
         boolean successState = orderBookManager.updateOrder(order);  // perform ADD
 
@@ -123,7 +139,7 @@ public class OrderBookServiceAppTest {
 
         System.out.println("________________ TestOrderBookManagerSimpleAdd");
 
-        OrderBookManager orderBookManager = new OrderBookList();
+        OrderBookManager orderBookManager = newOrderBookList();
         Order order = toOrder("t=1638848595|i=BTCUSD|p=32.99|q=0|s=b"); // create an Order
         boolean successState = orderBookManager.updateOrder(order);  // perform ADD
 
@@ -140,7 +156,7 @@ public class OrderBookServiceAppTest {
 
         System.out.println("________________ TestOrderBookManagerSimpleDelete");
 
-        OrderBookManager orderBookManager = new OrderBookList();
+        OrderBookManager orderBookManager = newOrderBookList();
         Order order = toOrder("t=1638848595|i=BTCUSD|p=32.99|q=100|s=b"); // create an Order
         boolean successState = orderBookManager.updateOrder(order);  // perform ADD
 
@@ -160,7 +176,7 @@ public class OrderBookServiceAppTest {
 
         System.out.println("________________ TestOrderBookManagerSimpleUpdate");
 
-        OrderBookManager orderBookManager = new OrderBookList();
+        OrderBookManager orderBookManager = newOrderBookList();
         Order order = toOrder("t=1638848595|i=BTCUSD|p=32.90|q=100|s=b"); // create an Order
         boolean successState = orderBookManager.updateOrder(order);  // perform ADD
 
@@ -175,6 +191,31 @@ public class OrderBookServiceAppTest {
 
 
 
+    @Test
+    public void TestOrderBookListUpdateResult() {
+
+        System.out.println("________________ TestOrderBookListUpdateResult");
+
+        OrderBookList orderBookList = newOrderBookList();
+
+        assertEquals(UpdateResult.NOT_FOUND, orderBookList.update(toOrder("t=1638848595|i=BTCUSD|p=32.90|q=0|s=b")));
+        assertEquals(UpdateResult.ADDED, orderBookList.update(toOrder("t=1638848595|i=BTCUSD|p=32.90|q=100|s=b")));
+        assertEquals(UpdateResult.DUPLICATE, orderBookList.update(toOrder("t=1638848595|i=BTCUSD|p=32.9|q=100.00|s=b")));
+        assertEquals(UpdateResult.MODIFIED, orderBookList.update(toOrder("t=1638848595|i=BTCUSD|p=32.90|q=55|s=b")));
+
+        List<Order> orders = orderBookList.getOrdersAtLevel("BTCUSD", Side.BUY, new BigDecimal("32.90"));
+        assertEquals(1, orders.size());
+        assertEquals(new BigDecimal("55.00"), orders.get(0).getQuantity()); // latest quantity is kept
+
+        assertEquals(UpdateResult.DELETED, orderBookList.update(toOrder("t=1638848595|i=BTCUSD|p=32.90|q=0|s=b")));
+        assertEquals(UpdateResult.NOT_FOUND, orderBookList.update(toOrder("t=1638848595|i=BTCUSD|p=32.90|q=0|s=b")));
+
+        assertEquals(Optional.empty(), orderBookList.getBestPrice("BTCUSD", Side.BUY));
+        assertTrue(orderBookList.getOrdersAtLevel("BTCUSD", Side.BUY, new BigDecimal("32.90")).isEmpty());
+    }
+
+
+
 
     //Mock Test
 
@@ -218,7 +259,7 @@ public class OrderBookServiceAppTest {
 
         System.out.println("________________ TestOrderBookManagerSimpleDuplicate");
 
-        OrderBookManager orderBookManager = new OrderBookList();
+        OrderBookManager orderBookManager = newOrderBookList();
         Order order = toOrder("t=1638848595|i=BTCUSD|p=32.90|q=100.50|s=b"); // create an Order
         boolean successState = orderBookManager.updateOrder(order);  // perform ADD
 
@@ -240,7 +281,7 @@ public class OrderBookServiceAppTest {
 
         System.out.println("________________ TestOrderBookManagerBestPrice");
 
-        OrderBookManager orderBookManager = new OrderBookList();
+        OrderBookManager orderBookManager = newOrderBookList();
 
         Order order = toOrder("t=1638848595|i=BTCUSD|p=32.99|q=100|s=b");
         boolean successState = orderBookManager.updateOrder(order);
@@ -258,12 +299,13 @@ public class OrderBookServiceAppTest {
     }
 
 
+
     @Test
     public void TestOrderBookManagerGetOrdersAtLevel() {
 
         System.out.println("________________ TestOrderBookManagerGetOrdersAtLevel");
 
-        OrderBookManager orderBookManager = new OrderBookList();
+        OrderBookManager orderBookManager = newOrderBookList();
         Order order = toOrder("t=1638848595|i=BTCUSD|p=32.99|q=100|s=s");
         assertTrue(orderBookManager.updateOrder(order));// Add order
 
@@ -284,12 +326,34 @@ public class OrderBookServiceAppTest {
     }
 
 
+
+    @Test
+    public void TestFullOrderBookListsOnlyBooksWithOrders() {
+
+        System.out.println("________________ TestFullOrderBookListsOnlyBooksWithOrders");
+
+        OrderBookManager orderBookManager = newOrderBookList();
+        assertTrue(orderBookManager.updateOrder(toOrder("t=1638848595|i=BTCUSD|p=32.99|q=100|s=b")));
+        assertTrue(orderBookManager.updateOrder(toOrder("t=1638848596|i=ETHUSD|p=12|q=5|s=s")));
+        assertTrue(orderBookManager.updateOrder(toOrder("t=1638848596|i=ETHUSD|p=12|q=0|s=s")));   // ETHUSD left empty
+
+        Map<String, List<Map<BigDecimal, Set<Order>>>> fullOrderBook = orderBookManager.getFullOrderBook();
+        assertEquals(Collections.singleton("BTCUSD"), fullOrderBook.keySet());
+        assertEquals(Collections.singleton(new BigDecimal("32.99")), fullOrderBook.get("BTCUSD").get(0).keySet());
+        assertTrue(fullOrderBook.get("BTCUSD").get(1).isEmpty());
+
+        assertTrue(orderBookManager.updateOrder(toOrder("t=1638848597|i=ETHUSD|p=12|q=5|s=s")));   // the book is reused
+        assertEquals(new HashSet<>(Arrays.asList("BTCUSD", "ETHUSD")), orderBookManager.getFullOrderBook().keySet());
+    }
+
+
+
     @Test
     public void TestGetOrdersUpToLevel() {
 
         System.out.println("________________ TestGetOrdersUpToLevel");
 
-        OrderBookManager orderBookManager = new OrderBookList();
+        OrderBookManager orderBookManager = newOrderBookList();
 
         Order order = toOrder("t=1638848596|i=BTCUSD|p=32.99|q=100|s=s");
         assertTrue(orderBookManager.updateOrder(order));// Add order
@@ -334,7 +398,7 @@ public class OrderBookServiceAppTest {
 
 
         //2. Inject Order  + Calculate average Price
-        OrderBookManager orderBookManager = new OrderBookList();
+        OrderBookManager orderBookManager = newOrderBookList();
 
         Iterator<Map.Entry<BigDecimal,BigDecimal>> iterator = mapQtyPrice.entrySet().iterator();
         while(iterator.hasNext()){
@@ -386,7 +450,7 @@ public class OrderBookServiceAppTest {
 
 
         //2. Inject Order
-        OrderBookManager orderBookManager = new OrderBookList();
+        OrderBookManager orderBookManager = newOrderBookList();
 
         Iterator<Map.Entry<BigDecimal,BigDecimal>> iterator = mapQtyPrice.entrySet().iterator();
         while(iterator.hasNext()){
@@ -408,6 +472,33 @@ public class OrderBookServiceAppTest {
 
 
 
+    @Test
+    public void TestLevelAggregatesFollowModifyAndDelete(){
+
+        System.out.println("________________ TestLevelAggregatesFollowModifyAndDelete ");
+
+        OrderBookManager orderBookManager = newOrderBookList();
+
+        orderBookManager.updateOrder(toOrder("t=1638848595|i=BTCUSD|p=32.90|q=100|s=b"));
+        orderBookManager.updateOrder(toOrder("t=1638848596|i=BTCUSD|p=32.90|q=50.5|s=b"));
+        orderBookManager.updateOrder(toOrder("t=1638848597|i=BTCUSD|p=30|q=10|s=b"));
+        orderBookManager.updateOrder(toOrder("t=1638848595|i=BTCUSD|p=32.90|q=20|s=b"));  // modify : 100 -> 20
+        orderBookManager.updateOrder(toOrder("t=1638848596|i=BTCUSD|p=32.90|q=50.5|s=b")); // duplicate
+
+        assertEquals(new BigDecimal("70.50"), orderBookManager.getTotalQtyOverLevel("BTCUSD",Side.BUY, 1));
+        assertEquals(new BigDecimal("80.50"), orderBookManager.getTotalQtyOverLevel("BTCUSD",Side.BUY, 2));
+        assertEquals(Arrays.asList(2, new BigDecimal("70.50")),
+                orderBookManager.getVolumeWeightedPriceOverLevel("BTCUSD",Side.BUY, 1).get(new BigDecimal("32.90")));
+
+        orderBookManager.updateOrder(toOrder("t=1638848596|i=BTCUSD|p=32.90|q=0|s=b")); // delete
+
+        assertEquals(new BigDecimal("30.00"), orderBookManager.getTotalQtyOverLevel("BTCUSD",Side.BUY, 2));
+        assertEquals(Arrays.asList(1, new BigDecimal("20.00")),
+                orderBookManager.getVolumeWeightedPriceOverLevel("BTCUSD",Side.BUY, 1).get(new BigDecimal("32.90")));
+    }
+
+
+
 
 
 
@@ -461,7 +552,7 @@ public class OrderBookServiceAppTest {
 
 
         //2. Inject Order
-        OrderBookManager orderBookManager = new OrderBookList();
+        OrderBookManager orderBookManager = newOrderBookList();
 
         int cmpt=0;
         for(Position e : listPosition){
@@ -527,7 +618,7 @@ public class OrderBookServiceAppTest {
             listPosition.add(new Position(qty,price));
         }
 
-        OrderBookManager orderBookManager = new OrderBookList();
+        OrderBookManager orderBookManager = newOrderBookList();
 
         ExecutorService service = Executors.newFixedThreadPool(10);
         //Define the Latch
@@ -613,7 +704,7 @@ public class OrderBookServiceAppTest {
     public void TestOrderBookManagerNullArg()  {
 
         System.out.println("________________ TestOrderBookManagerNullArg ");
-        OrderBookManager orderBookManager = new OrderBookList();
+        OrderBookManager orderBookManager = newOrderBookList();
         orderBookManager.updateOrder(null);
 
     }
@@ -623,7 +714,7 @@ public class OrderBookServiceAppTest {
     public void TestOrderBookManagerGetBestPriceNullArg()  {
 
         System.out.println("________________ TestOrderBookManagerGetBestPriceNullArg ");
-        OrderBookManager orderBookManager = new OrderBookList();
+        OrderBookManager orderBookManager = newOrderBookList();
         orderBookManager.getBestPrice(null,null);
 
     }
@@ -633,13 +724,38 @@ public class OrderBookServiceAppTest {
     public void TestOrderBookManagerGetOrdersAtLevelNullArg()  {
 
         System.out.println("________________ TestOrderBookManagerGetOrdersAtLevelNullArg ");
-        OrderBookManager orderBookManager = new OrderBookList();
+        OrderBookManager orderBookManager = newOrderBookList();
         orderBookManager.getOrdersAtLevel(null,null, new BigDecimal("0"));
 
     }
 
 
 
+    @Test
+    public void TestPriceAboveTheExchangeRangeIsRejected() {
+
+        System.out.println("________________ TestPriceAboveTheExchangeRangeIsRejected");
+
+        OrderBookManager orderBookManager = newOrderBookList();
+        assertTrue(orderBookManager.updateOrder(toOrder("t=1638848595|i=BTCUSD|p=999.99|q=100|s=s")));
+
+        try {
+            toOrder("t=1638848596|i=BTCUSD|p=1000.00|q=100|s=s");
+            fail("1000.00 is above the exchange range");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            orderBookManager.updateOrder(new Order("BTCUSD", Side.SELL, 100_000, 10_000, 1638848597L));
+            fail("1000.00 is above the exchange range");
+        } catch (IllegalArgumentException expected) {
+        }
+
+        assertEquals(Optional.of(new BigDecimal("999.99")), orderBookManager.getBestPrice("BTCUSD", Side.SELL));
+        assertEquals(1, orderBookManager.getOrdersAtLevel("BTCUSD", Side.SELL, new BigDecimal("999.99")).size());
+    }
+
+
+
     @Test(expected = NumberFormatException.class)
     public void TestOrderNullPointerException() {
         System.out.println("________________ TestOrderWrongArgument ");
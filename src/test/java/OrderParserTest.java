@@ -0,0 +1,176 @@
+import com.diy.Side.Side;
+import com.diy.domain.InstrumentRegistry;
+import com.diy.parser.OrderMessageHandler;
+import com.diy.parser.OrderParser;
+import com.diy.parser.ParseError;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+
+public class OrderParserTest {
+
+
+    /** keeps what the parser sent, for the assertions */
+    private static final class Recorder implements OrderMessageHandler {
+
+        final List<String> orders = new ArrayList<>();
+        final List<ParseError> errors = new ArrayList<>();
+        String lastInstrument;
+        int lastInstrumentId = InstrumentRegistry.UNKNOWN;
+
+        @Override
+        public void onOrder(int instrumentId, String instrument, Side side, long price, long quantity, long timestamp) {
+            lastInstrument = instrument;
+            lastInstrumentId = instrumentId;
+            orders.add(timestamp + "|" + instrument + "|" + price + "|" + quantity + "|" + side);
+        }
+
+        @Override
+        public void onError(ParseError error, int offset, int length) {
+            errors.add(error);
+        }
+    }
+
+
+    private static byte[] ascii(String message) {
+        return message.getBytes(StandardCharsets.US_ASCII);
+    }
+
+
+
+    @Test
+    public void TestParseAllFields() {
+
+        System.out.println("________________ TestParseAllFields");
+
+        OrderParser parser = new OrderParser();
+        Recorder recorder = new Recorder();
+        byte[] message = ascii("t=1638848595|i=BTCUSD|p=32.99|q=100|s=b");
+
+        assertTrue(parser.parse(message, 0, message.length, recorder));
+        assertEquals("[1638848595|BTCUSD|3299|10000|BUY]", recorder.orders.toString());
+        assertSame("BTCUSD", recorder.lastInstrument); // interned against the universe
+    }
+
+
+
+    @Test
+    public void TestParseScaleDoesNotMatter() {
+
+        System.out.println("________________ TestParseScaleDoesNotMatter");
+
+        OrderParser parser = new OrderParser();
+        Recorder recorder = new Recorder();
+
+        for (String message : new String[]{"t=1|i=ETHUSD|p=12.3|q=0.5|s=S", "t=1|i=ETHUSD|p=12.30|q=0.50|s=s", "t=1|i=ETHUSD|p=12.309|q=.5|s=s"}) {
+            byte[] bytes = ascii(message);
+            assertTrue(parser.parse(ByteBuffer.wrap(bytes), 0, bytes.length, recorder));
+        }
+        assertEquals(1, recorder.orders.stream().distinct().count());
+        assertEquals("1|ETHUSD|1230|50|SELL", recorder.orders.get(0));
+    }
+
+
+
+    @Test
+    public void TestParseErrorsAreReported() {
+
+        System.out.println("________________ TestParseErrorsAreReported");
+
+        OrderParser parser = new OrderParser();
+        Recorder recorder = new Recorder();
+
+        String[] messages = {
+                "t=|i=BTCUSD|p=32.88|q=123|s=s",
+                "t=1|i=XRPUSD|p=32.88|q=123|s=s",
+                "t=1|i=BTCUSD|p=32.8.8|q=123|s=s",
+                "t=1|i=BTCUSD|p=0|q=123|s=s",
+                "t=1|i=BTCUSD|p=1000.00|q=123|s=s",
+                "t=1|i=BTCUSD|p=32.88|q=-1|s=s",
+                "t=1|i=BTCUSD|p=32.88|q=1|s=x",
+                "t=1|i=BTCUSD|p=32.88|q=1|s=bb",
+                "t=1|i=BTCUSD|q=1|p=32.88|s=b",
+                "t=1|i=BTCUSD",
+        };
+        for (String message : messages) {
+            byte[] bytes = ascii(message);
+            assertFalse(message, parser.parse(bytes, 0, bytes.length, recorder));
+        }
+
+        assertTrue(recorder.orders.isEmpty());
+        assertEquals("[BAD_TIMESTAMP, UNKNOWN_INSTRUMENT, BAD_PRICE, PRICE_NOT_POSITIVE, PRICE_OUT_OF_RANGE, NEGATIVE_QUANTITY, BAD_SIDE, TRAILING_DATA, MISSING_FIELD, MISSING_FIELD]",
+                recorder.errors.toString());
+    }
+
+
+
+    @Test
+    public void TestParseUnknownInstrumentIsInternedOnce() {
+
+        System.out.println("________________ TestParseUnknownInstrumentIsInternedOnce");
+
+        OrderParser parser = new OrderParser(true, OrderParser.DEFAULT_UNIVERSE);
+        Recorder recorder = new Recorder();
+
+        byte[] message = ascii("t=1|i=XRPUSD|p=1|q=1|s=b");
+        assertTrue(parser.parse(message, 0, message.length, recorder));
+        String first = recorder.lastInstrument;
+        assertTrue(parser.parse(message, 0, message.length, recorder));
+
+        assertSame(first, recorder.lastInstrument);
+        assertEquals(4, parser.getUniverse().length);
+        assertEquals(InstrumentRegistry.getInstance().getId("XRPUSD"), recorder.lastInstrumentId);
+
+        byte[] garbled = "t=1|i=XRP\u00e9USD|p=1|q=1|s=b".getBytes(StandardCharsets.UTF_8);   // reported, not thrown
+        assertFalse(parser.parse(garbled, 0, garbled.length, recorder));
+        assertEquals("[UNKNOWN_INSTRUMENT]", recorder.errors.toString());
+        assertEquals(4, parser.getUniverse().length);
+    }
+
+
+
+    @Test
+    public void TestParseResolvesInstrumentIds() {
+
+        System.out.println("________________ TestParseResolvesInstrumentIds");
+
+        InstrumentRegistry registry = InstrumentRegistry.getInstance();
+        OrderParser parser = new OrderParser();
+        Recorder recorder = new Recorder();
+
+        byte[] message = ascii("t=1|i=ETHUSD|p=1|q=1|s=b");
+        assertTrue(parser.parse(message, 0, message.length, recorder));
+        assertEquals(registry.getId("ETHUSD"), recorder.lastInstrumentId);
+        assertSame("ETHUSD", registry.getSymbol(recorder.lastInstrumentId));
+
+        registry.register("ADAUSD");   // known to the registry, not to the universe of this parser
+        byte[] other = ascii("t=1|i=ADAUSD|p=1|q=1|s=b");
+        assertFalse(parser.parse(other, 0, other.length, recorder));
+        assertEquals("[UNKNOWN_INSTRUMENT]", recorder.errors.toString());
+    }
+
+
+
+    @Test
+    public void TestParseLines() {
+
+        System.out.println("________________ TestParseLines");
+
+        OrderParser parser = new OrderParser();
+        Recorder recorder = new Recorder();
+
+        byte[] block = ascii("t=1|i=BTCUSD|p=1|q=1|s=b\r\n\nt=2|i=SOLUSD|p=2|q=2|s=s\nt=3|i=BTCUSD|p=3");
+        int consumed = parser.parseLines(ByteBuffer.wrap(block), 0, block.length, recorder);
+
+        assertEquals(2, recorder.orders.size());
+        assertTrue(recorder.errors.isEmpty());
+        assertEquals("t=3|i=BTCUSD|p=3", new String(block, consumed, block.length - consumed, StandardCharsets.US_ASCII)); // incomplete line left
+    }
+
+}
@@ -0,0 +1,46 @@
+import com.diy.Side.Side;
+import com.diy.domain.Order;
+import com.diy.orderbookmanager.OrderBookList;
+import com.diy.orderbookmanager.OrderBookManager;
+import com.diy.orderbookmanager.OrderBookType;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.diy.Utils.Utils.StringToBigDecimal;
+import static com.diy.Utils.Utils.toOrder;
+import static org.junit.Assert.*;
+
+
+public class OrderQueueTest {
+
+    private static final OrderBookType[] TYPES = {OrderBookType.SKIP_LIST, OrderBookType.PRICE_LADDER};
+
+
+    @Test
+    public void TestOrdersAtLevelInArrivalOrder() {
+
+        System.out.println("________________ TestOrdersAtLevelInArrivalOrder");
+
+        for (OrderBookType type : TYPES) {
+
+            OrderBookManager orderBookManager = new OrderBookList(type);
+            assertTrue(orderBookManager.updateOrder(toOrder("t=1638848597|i=BTCUSD|p=32.99|q=100|s=b")));
+            assertTrue(orderBookManager.updateOrder(toOrder("t=1638848595|i=BTCUSD|p=32.99|q=50|s=b")));  // older timestamp, arrives later
+            assertTrue(orderBookManager.updateOrder(toOrder("t=1638848596|i=BTCUSD|p=32.99|q=7|s=b")));
+            assertTrue(orderBookManager.updateOrder(toOrder("t=1638848595|i=BTCUSD|p=32.99|q=60|s=b")));  // modify keeps its place
+            assertTrue(orderBookManager.updateOrder(toOrder("t=1638848597|i=BTCUSD|p=32.99|q=0|s=b")));   // delete the first
+            assertTrue(orderBookManager.updateOrder(toOrder("t=1638848598|i=BTCUSD|p=32.99|q=9|s=b")));
+
+            List<Order> orderList = orderBookManager.getOrdersAtLevel("BTCUSD", Side.BUY, StringToBigDecimal("32.99"));
+            assertEquals(Arrays.asList(toOrder("t=1638848595|i=BTCUSD|p=32.99|q=60|s=b"), toOrder("t=1638848596|i=BTCUSD|p=32.99|q=7|s=b"),
+                    toOrder("t=1638848598|i=BTCUSD|p=32.99|q=9|s=b")), orderList);
+            assertEquals(new BigDecimal("60.00"), orderList.get(0).getQuantity());
+            assertEquals(new ArrayList<>(orderList),
+                    new ArrayList<>(orderBookManager.getOrdersUpToLevel("BTCUSD", Side.BUY, 1).get(new BigDecimal("32.99"))));
+        }
+    }
+}
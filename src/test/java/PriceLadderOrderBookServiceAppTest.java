@@ -0,0 +1,80 @@
+import com.diy.Side.Side;
+import com.diy.domain.Order;
+import com.diy.orderbookmanager.OrderBookList;
+import com.diy.orderbookmanager.OrderBookManager;
+import com.diy.orderbookmanager.OrderBookType;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static com.diy.Utils.Utils.toOrder;
+import static org.junit.Assert.*;
+
+
+/**
+ *   Runs the whole OrderBookServiceAppTest suite against the PRICE_LADDER engine
+ */
+public class PriceLadderOrderBookServiceAppTest extends OrderBookServiceAppTest {
+
+
+    @Override
+    protected OrderBookType orderBookType() {
+        return OrderBookType.PRICE_LADDER;
+    }
+
+
+
+    @Test
+    public void TestPriceLadderBestPriceMovesOnDelete() {
+
+        System.out.println("________________ TestPriceLadderBestPriceMovesOnDelete");
+
+        OrderBookManager orderBookManager = new OrderBookList(OrderBookType.PRICE_LADDER);
+
+        assertTrue(orderBookManager.updateOrder(toOrder("t=1638848595|i=BTCUSD|p=0.01|q=100|s=s")));
+        assertTrue(orderBookManager.updateOrder(toOrder("t=1638848596|i=BTCUSD|p=999.99|q=100|s=s")));
+        assertTrue(orderBookManager.updateOrder(toOrder("t=1638848597|i=BTCUSD|p=12.3|q=100|s=b")));
+        assertTrue(orderBookManager.updateOrder(toOrder("t=1638848598|i=BTCUSD|p=12.31|q=100|s=b")));
+
+        assertEquals(Optional.of(new BigDecimal("0.01")), orderBookManager.getBestPrice("BTCUSD", Side.SELL));
+        assertEquals(Optional.of(new BigDecimal("12.31")), orderBookManager.getBestPrice("BTCUSD", Side.BUY));
+
+        assertTrue(orderBookManager.updateOrder(toOrder("t=1638848595|i=BTCUSD|p=0.01|q=0|s=s")));  // remove the best ask
+        assertTrue(orderBookManager.updateOrder(toOrder("t=1638848598|i=BTCUSD|p=12.31|q=0|s=b"))); // remove the best bid
+
+        assertEquals(Optional.of(new BigDecimal("999.99")), orderBookManager.getBestPrice("BTCUSD", Side.SELL));
+        assertEquals(Optional.of(new BigDecimal("12.30")), orderBookManager.getBestPrice("BTCUSD", Side.BUY));
+
+        Map<BigDecimal, Set<Order>> bids = orderBookManager.getOrdersUpToLevel("BTCUSD", Side.BUY, 5);
+        assertEquals(1, bids.size());
+    }
+
+
+
+    @Test
+    public void TestPriceLadderLevelsAreSortedFromBestPrice() {
+
+        System.out.println("________________ TestPriceLadderLevelsAreSortedFromBestPrice");
+
+        OrderBookManager orderBookManager = new OrderBookList(OrderBookType.PRICE_LADDER);
+
+        String[] prices = {"50.5", "10", "75.25", "33.33"};
+        long timestamp = 1638848595;
+        for (String price : prices) {
+            assertTrue(orderBookManager.updateOrder(toOrder("t=" + timestamp++ + "|i=ETHUSD|p=" + price + "|q=10|s=b")));
+            assertTrue(orderBookManager.updateOrder(toOrder("t=" + timestamp++ + "|i=ETHUSD|p=" + price + "|q=10|s=s")));
+        }
+
+        List<BigDecimal> bids = new ArrayList<>(orderBookManager.getVolumeWeightedPriceOverLevel("ETHUSD", Side.BUY, 10).keySet());
+        List<BigDecimal> asks = new ArrayList<>(orderBookManager.getVolumeWeightedPriceOverLevel("ETHUSD", Side.SELL, 10).keySet());
+
+        assertEquals("[75.25, 50.50, 33.33, 10.00]", bids.toString());
+        assertEquals("[10.00, 33.33, 50.50, 75.25]", asks.toString());
+    }
+
+}
@@ -0,0 +1,233 @@
+import com.diy.Side.Side;
+import com.diy.domain.Order;
+import com.diy.orderbookmanager.BookSnapshot;
+import com.diy.orderbookmanager.OrderBook;
+import com.diy.orderbookmanager.OrderBookList;
+import com.diy.orderbookmanager.OrderBookType;
+import com.diy.orderbookmanager.ShardedOrderBookList;
+import com.diy.orderbookmanager.TopOfBook;
+import com.diy.orderbookmanager.UpdateResult;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.diy.Utils.Utils.toOrder;
+import static org.junit.Assert.*;
+
+
+public class ShardedOrderBookListTest {
+
+
+    @Test
+    public void TestShardedUpdateAndQueries() {
+
+        System.out.println("________________ TestShardedUpdateAndQueries");
+
+        try (ShardedOrderBookList orderBookManager = new ShardedOrderBookList(2)) {
+
+            assertTrue(orderBookManager.updateOrder(toOrder("t=1638848595|i=BTCUSD|p=32.99|q=100|s=b")));
+            assertTrue(orderBookManager.updateOrder(toOrder("t=1638848596|i=BTCUSD|p=33.10|q=50|s=b")));
+            assertTrue(orderBookManager.updateOrder(toOrder("t=1638848597|i=ETHUSD|p=12|q=7|s=s")));
+            assertFalse(orderBookManager.updateOrder(toOrder("t=1638848597|i=ETHUSD|p=12|q=7|s=s")));  // duplicate
+            assertFalse(orderBookManager.updateOrder(toOrder("t=1638848598|i=SOLUSD|p=1|q=0|s=s")));   // nothing to delete
+            assertTrue(orderBookManager.updateOrder(toOrder("t=1638848595|i=BTCUSD|p=32.99|q=0|s=b")));
+
+            assertEquals(Optional.of(new BigDecimal("33.10")), orderBookManager.getBestPrice("BTCUSD", Side.BUY));
+            assertEquals(Optional.of(new BigDecimal("12.00")), orderBookManager.getBestPrice("ETHUSD", Side.SELL));
+            assertEquals(Optional.empty(), orderBookManager.getBestPrice("SOLUSD", Side.SELL));
+            assertEquals(3310, orderBookManager.getTopOfBook("BTCUSD").getBidPrice());
+            assertSame(TopOfBook.EMPTY, orderBookManager.getTopOfBook("SOLUSD"));
+
+            assertEquals(new BigDecimal("50.00"), orderBookManager.getTotalQtyOverLevel("BTCUSD", Side.BUY, 5));
+            assertEquals(1, orderBookManager.getOrdersAtLevel("ETHUSD", Side.SELL, new BigDecimal("12")).size());
+            assertEquals(1, orderBookManager.getOrdersUpToLevel("BTCUSD", Side.BUY, 5).size());
+            assertEquals(2, orderBookManager.getFullOrderBook().size());
+            assertTrue(orderBookManager.updateOrder(toOrder("t=1638848597|i=ETHUSD|p=12|q=0|s=s")));
+            assertEquals(Collections.singleton("BTCUSD"), orderBookManager.getFullOrderBook().keySet());   // ETHUSD left empty
+
+            BookSnapshot snapshot = new BookSnapshot(10);
+            assertTrue(orderBookManager.snapshot("BTCUSD", snapshot));
+            assertEquals(1, snapshot.getDepth(Side.BUY));
+            assertEquals(3310, snapshot.getPrice(Side.BUY, 0));
+            assertFalse(orderBookManager.snapshot("SOLUSD", snapshot));
+        }
+    }
+
+
+
+    @Test
+    public void TestShardedSubmitFromOneFeedPerInstrument() throws InterruptedException {
+
+        System.out.println("________________ TestShardedSubmitFromOneFeedPerInstrument");
+
+        String[] instruments = {"BTCUSD", "ETHUSD", "SOLUSD", "ADAUSD", "XRPUSD", "DOTUSD", "LTCUSD", "BCHUSD"};
+        int nbrOrders = 20_000;
+
+        try (ShardedOrderBookList orderBookManager = new ShardedOrderBookList(4, OrderBookType.TREE_MAP, 1 << 10)) {
+
+            List<Thread> feeds = new ArrayList<>();
+            for (String instrument : instruments) {
+                feeds.add(new Thread(() -> {
+                    for (int i = 0; i < nbrOrders; i++) {
+                        orderBookManager.submit(new Order(instrument, Side.BUY, 1 + i % 100, 100, i));
+                        if (i % 2 == 1) {
+                            orderBookManager.submit(new Order(instrument, Side.BUY, 1 + i % 100, 0, i)); // delete every other order
+                        }
+                    }
+                }));
+            }
+            feeds.forEach(Thread::start);
+            for (Thread feed : feeds) {
+                feed.join();
+            }
+
+            for (String instrument : instruments) {  // queued after every submit : sees all of them
+                Map<BigDecimal, List<Number>> levels = orderBookManager.getVolumeWeightedPriceOverLevel(instrument, Side.BUY, 1000);
+                assertEquals(50, levels.size());
+                assertEquals(new BigDecimal(nbrOrders / 2), orderBookManager.getTotalQtyOverLevel(instrument, Side.BUY, 1000).setScale(0));
+            }
+        }
+    }
+
+
+
+    @Test
+    public void TestShardedUpdateOrdersBatch() {
+
+        System.out.println("________________ TestShardedUpdateOrdersBatch");
+
+        try (ShardedOrderBookList orderBookManager = new ShardedOrderBookList(3)) {
+
+            List<Order> packet = Arrays.asList(
+                    toOrder("t=1638848590|i=BTCUSD|p=32.99|q=100|s=b"),
+                    toOrder("t=1638848591|i=ETHUSD|p=12|q=5|s=s"),
+                    toOrder("t=1638848592|i=SOLUSD|p=1|q=0|s=s"),
+                    toOrder("t=1638848590|i=BTCUSD|p=32.99|q=0|s=b"),
+                    toOrder("t=1638848593|i=BTCUSD|p=30|q=1|s=b"));
+
+            UpdateResult[] results = orderBookManager.updateOrders(packet);
+
+            assertArrayEquals(new UpdateResult[]{UpdateResult.ADDED, UpdateResult.ADDED, UpdateResult.NOT_FOUND,
+                    UpdateResult.DELETED, UpdateResult.ADDED}, results);
+            assertEquals(3000, orderBookManager.getTopOfBook("BTCUSD").getBidPrice());
+            assertEquals(1200, orderBookManager.getTopOfBook("ETHUSD").getAskPrice());
+        }
+    }
+
+
+
+    @Test
+    public void TestShardedOffHeapBooks() {
+
+        System.out.println("________________ TestShardedOffHeapBooks");
+
+        try (ShardedOrderBookList orderBookManager = new ShardedOrderBookList(2, OrderBookType.OFF_HEAP, 1 << 10)) {
+
+            assertTrue(orderBookManager.updateOrder(toOrder("t=1638848595|i=BTCUSD|p=32.99|q=100|s=b")));
+            assertTrue(orderBookManager.updateOrder(toOrder("t=1638848596|i=BTCUSD|p=32.99|q=50|s=b")));
+            assertTrue(orderBookManager.updateOrder(toOrder("t=1638848597|i=BTCUSD|p=32.99|q=7|s=b")));
+            assertTrue(orderBookManager.updateOrder(toOrder("t=1638848595|i=BTCUSD|p=32.99|q=80|s=b")));   // modify keeps its place
+            assertFalse(orderBookManager.updateOrder(toOrder("t=1638848595|i=BTCUSD|p=32.99|q=80|s=b")));  // duplicate
+            assertTrue(orderBookManager.updateOrder(toOrder("t=1638848596|i=BTCUSD|p=32.99|q=0|s=b")));
+            assertFalse(orderBookManager.updateOrder(toOrder("t=1638848596|i=BTCUSD|p=32.99|q=0|s=b")));   // already deleted
+            assertTrue(orderBookManager.updateOrder(toOrder("t=1638848595|i=BTCUSD|p=32.99|q=3|s=s")));    // same key on the other side
+
+            List<Order> orders = orderBookManager.getOrdersAtLevel("BTCUSD", Side.BUY, new BigDecimal("32.99"));
+            assertEquals(Arrays.asList(toOrder("t=1638848595|i=BTCUSD|p=32.99|q=80|s=b"), toOrder("t=1638848597|i=BTCUSD|p=32.99|q=7|s=b")), orders);
+            assertEquals(new BigDecimal("80.00"), orders.get(0).getQuantity());
+            assertEquals(new BigDecimal("87.00"), orderBookManager.getTotalQtyOverLevel("BTCUSD", Side.BUY, 1));
+            assertEquals(new BigDecimal("3.00"), orderBookManager.getTotalQtyOverLevel("BTCUSD", Side.SELL, 1));
+            assertTrue(orderBookManager.getOrdersUpToLevel("BTCUSD", Side.BUY, 1).get(new BigDecimal("32.99"))
+                    .contains(toOrder("t=1638848597|i=BTCUSD|p=32.99|q=7|s=b")));
+
+            List<Long> quantities = new ArrayList<>();
+            assertTrue(orderBookManager.forEachOrder("BTCUSD", Side.BUY, new BigDecimal("32.99"), order -> quantities.add(order.getQuantityTicks())));
+            assertEquals(Arrays.asList(8000L, 700L), quantities);
+            assertFalse(orderBookManager.forEachOrder("SOLUSD", Side.BUY, new BigDecimal("32.99"), order -> fail()));
+        }
+    }
+
+
+
+    @Test
+    public void TestTreeMapLevelsKeepArrivalOrder() {
+
+        System.out.println("________________ TestTreeMapLevelsKeepArrivalOrder");
+
+        try (ShardedOrderBookList orderBookManager = new ShardedOrderBookList(2, OrderBookType.TREE_MAP, 1 << 10)) {
+
+            assertTrue(orderBookManager.updateOrder(toOrder("t=1638848597|i=BTCUSD|p=32.99|q=100|s=s")));
+            assertTrue(orderBookManager.updateOrder(toOrder("t=1638848595|i=BTCUSD|p=32.99|q=50|s=s")));
+            assertTrue(orderBookManager.updateOrder(toOrder("t=1638848596|i=BTCUSD|p=32.99|q=7|s=s")));
+            assertTrue(orderBookManager.updateOrder(toOrder("t=1638848597|i=BTCUSD|p=32.99|q=80|s=s")));   // modify keeps its place
+            assertTrue(orderBookManager.updateOrder(toOrder("t=1638848595|i=BTCUSD|p=32.99|q=0|s=s")));
+
+            List<Order> orders = orderBookManager.getOrdersAtLevel("BTCUSD", Side.SELL, new BigDecimal("32.99"));
+            assertEquals(Arrays.asList(toOrder("t=1638848597|i=BTCUSD|p=32.99|q=80|s=s"), toOrder("t=1638848596|i=BTCUSD|p=32.99|q=7|s=s")), orders);
+            assertEquals(orders, new ArrayList<>(orderBookManager.getOrdersUpToLevel("BTCUSD", Side.SELL, 1).get(new BigDecimal("32.99"))));
+        }
+    }
+
+
+
+    @Test
+    public void TestOffHeapOrderBookGrowsAndReusesRecords() {
+
+        System.out.println("________________ TestOffHeapOrderBookGrowsAndReusesRecords");
+
+        OrderBook orderBook = new OrderBook("BTCUSD", OrderBookType.OFF_HEAP);
+        int nbrOrders = 5_000;  // several times the initial capacity of the store
+
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < nbrOrders; i++) {
+                assertEquals(UpdateResult.ADDED, orderBook.update(new Order("BTCUSD", i % 2 == 0 ? Side.BUY : Side.SELL, 1 + i % 10, 1 + i, i)));
+            }
+            int bidCount = 0;
+            for (List<Number> level : orderBook.getVolumeWeightedPriceOverLevel(Side.BUY, 20).values()) {
+                bidCount += (int) level.get(0);
+            }
+            assertEquals(nbrOrders / 2, bidCount);
+
+            List<Order> orders = new ArrayList<>(orderBook.getOrdersUpToLevel("BTCUSD", Side.BUY, 1).get(new BigDecimal("0.09"))); // arrival order
+            assertEquals(nbrOrders / 10, orders.size());
+            for (int i = 1; i < orders.size(); i++) {
+                assertTrue(orders.get(i - 1).getTimestampMillis() < orders.get(i).getTimestampMillis());
+            }
+
+            for (int i = 0; i < nbrOrders; i++) {
+                assertEquals(UpdateResult.DELETED, orderBook.update(new Order("BTCUSD", i % 2 == 0 ? Side.BUY : Side.SELL, 1 + i % 10, 0, i)));
+            }
+            assertTrue(orderBook.isEmpty());
+            assertFalse(orderBook.getTopOfBook().hasBid());
+        }
+    }
+
+
+
+    @Test(expected = IllegalStateException.class)
+    public void TestShardedOrderBookListClosed() {
+
+        System.out.println("________________ TestShardedOrderBookListClosed");
+
+        ShardedOrderBookList orderBookManager = new ShardedOrderBookList(1);
+        orderBookManager.close();
+        orderBookManager.submit(toOrder("t=1638848595|i=BTCUSD|p=32.99|q=100|s=b"));
+    }
+
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void TestOrderBookListRejectsSingleThreadedBooks() {
+
+        System.out.println("________________ TestOrderBookListRejectsSingleThreadedBooks");
+
+        new OrderBookList(OrderBookType.TREE_MAP);
+    }
+
+}
@@ -0,0 +1,57 @@
+import com.diy.Side.Side;
+import com.diy.orderbookmanager.OrderBookList;
+import com.diy.orderbookmanager.OrderBookType;
+import com.diy.orderbookmanager.TopOfBook;
+import org.junit.Test;
+
+import java.util.Optional;
+
+import static com.diy.Utils.Utils.toOrder;
+import static org.junit.Assert.*;
+
+
+public class TopOfBookTest {
+
+    private static final OrderBookType[] TYPES = {OrderBookType.SKIP_LIST, OrderBookType.PRICE_LADDER};
+
+
+    @Test
+    public void TestTopOfBook() {
+
+        System.out.println("________________ TestTopOfBook");
+
+        for (OrderBookType type : TYPES) {
+
+            OrderBookList orderBookList = new OrderBookList(type);
+            assertSame(TopOfBook.EMPTY, orderBookList.getTopOfBook("BTCUSD"));
+
+            orderBookList.updateOrder(toOrder("t=1638848595|i=BTCUSD|p=32.99|q=100|s=b"));
+            orderBookList.updateOrder(toOrder("t=1638848596|i=BTCUSD|p=32.99|q=50|s=b"));
+            orderBookList.updateOrder(toOrder("t=1638848597|i=BTCUSD|p=33.50|q=10|s=s"));
+
+            TopOfBook top = orderBookList.getTopOfBook("BTCUSD");
+            assertEquals(3299, top.getBidPrice());
+            assertEquals(15000, top.getBidQuantity());
+            assertEquals(2, top.getBidCount());
+            assertEquals(3350, top.getAskPrice());
+            assertEquals(1000, top.getAskQuantity());
+            assertEquals(1, top.getAskCount());
+            assertEquals(3, top.getSequence());
+
+            orderBookList.updateOrder(toOrder("t=1638848598|i=BTCUSD|p=30|q=10|s=b"));  // behind the best bid : nothing published
+            assertSame(top, orderBookList.getTopOfBook("BTCUSD"));
+
+            orderBookList.updateOrder(toOrder("t=1638848595|i=BTCUSD|p=32.99|q=0|s=b"));
+            orderBookList.updateOrder(toOrder("t=1638848596|i=BTCUSD|p=32.99|q=0|s=b")); // best bid level removed
+            top = orderBookList.getTopOfBook("BTCUSD");
+            assertEquals(3000, top.getBidPrice());
+            assertEquals(1, top.getBidCount());
+            assertEquals(3350, top.getAskPrice());
+            assertEquals(6, top.getSequence());
+
+            orderBookList.updateOrder(toOrder("t=1638848597|i=BTCUSD|p=33.50|q=0|s=s"));
+            assertFalse(orderBookList.getTopOfBook("BTCUSD").hasAsk());
+            assertEquals(Optional.empty(), orderBookList.getBestPrice("BTCUSD", Side.SELL));
+        }
+    }
+}
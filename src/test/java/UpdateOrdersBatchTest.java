@@ -0,0 +1,57 @@
+import com.diy.Side.Side;
+import com.diy.domain.Order;
+import com.diy.orderbookmanager.OrderBookList;
+import com.diy.orderbookmanager.OrderBookType;
+import com.diy.orderbookmanager.TopOfBook;
+import com.diy.orderbookmanager.UpdateResult;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static com.diy.Utils.Utils.toOrder;
+import static org.junit.Assert.*;
+
+
+public class UpdateOrdersBatchTest {
+
+    private static final OrderBookType[] TYPES = {OrderBookType.SKIP_LIST, OrderBookType.PRICE_LADDER};
+
+
+    @Test
+    public void TestUpdateOrdersBatch() {
+
+        System.out.println("________________ TestUpdateOrdersBatch");
+
+        for (OrderBookType type : TYPES) {
+
+            OrderBookList orderBookList = new OrderBookList(type);
+
+            List<Order> packet = Arrays.asList(
+                    toOrder("t=1638848590|i=SOLUSD|p=1|q=0|s=s"),         // unknown order
+                    toOrder("t=1638848591|i=BTCUSD|p=32.99|q=100|s=b"),
+                    toOrder("t=1638848592|i=ETHUSD|p=12|q=5|s=s"),
+                    toOrder("t=1638848593|i=BTCUSD|p=33.50|q=10|s=s"),
+                    toOrder("t=1638848594|i=BTCUSD|p=33.10|q=20|s=b"),
+                    toOrder("t=1638848591|i=BTCUSD|p=32.99|q=70|s=b"),      // modify
+                    toOrder("t=1638848591|i=BTCUSD|p=32.99|q=70|s=b"),      // duplicate
+                    toOrder("t=1638848594|i=BTCUSD|p=33.10|q=0|s=b"),       // delete
+                    toOrder("t=1638848595|i=SOLUSD|p=1|q=3|s=s"));
+
+            UpdateResult[] results = orderBookList.updateOrders(packet);
+
+            assertArrayEquals(new UpdateResult[]{UpdateResult.NOT_FOUND, UpdateResult.ADDED, UpdateResult.ADDED, UpdateResult.ADDED,
+                    UpdateResult.ADDED, UpdateResult.MODIFIED, UpdateResult.DUPLICATE, UpdateResult.DELETED, UpdateResult.ADDED}, results);
+
+            TopOfBook top = orderBookList.getTopOfBook("BTCUSD");
+            assertEquals(3299, top.getBidPrice());
+            assertEquals(7000, top.getBidQuantity());
+            assertEquals(3350, top.getAskPrice());
+            assertEquals(5, top.getSequence());  // published once, after the last change of the batch
+            assertEquals(Optional.of(new BigDecimal("12.00")), orderBookList.getBestPrice("ETHUSD", Side.SELL));
+            assertEquals(Optional.of(new BigDecimal("1.00")), orderBookList.getBestPrice("SOLUSD", Side.SELL));
+        }
+    }
+}